@@ -47,72 +47,40 @@ package example_6;
 import java.util.HashMap;
 import java.util.Map;
 
-public final class AsyncTimer {
-    // The timer thread class.
-    private static final class TimerThread extends Thread {
-        // Each timer has a name, a duration and a listener
-        // who is informed when the timer has expired.
-        private String        _name;
+import statemap.TimerWheel;
 
-        private long          _duration;
+// Named timers run on one shared timing wheel rather than a
+// thread per timer.
+public final class AsyncTimer {
+    // A running timer: its duration, listener and scheduled
+    // timeout.
+    private static final class Timer {
+        private final String        _name;
 
-        private TimerListener _listener;
+        private long                _duration;
 
-        // When the AsyncTimer stops this timer, this
-        // boolean is set to true.
-        private boolean       _wasStopped;
+        private final TimerListener _listener;
 
-        // When this timer is reset, this boolean is
-        // set to true.
-        private boolean       _wasReset;
+        private TimerWheel.Timeout  _timeout;
 
-        // When the timer has successfully done its
-        // task, this boolean is set to true.
-        private boolean       _isDone;
+        // Counts the schedules, so that an expiry racing a reset
+        // is recognized as stale. Guarded by AsyncTimer.class.
+        private int                 _epoch;
 
-        public TimerThread(String name, long millisecs, TimerListener listener) {
+        public Timer(String name, long millisecs, TimerListener listener) {
             _name = name;
             _duration = millisecs;
             _listener = listener;
-            _wasStopped = false;
-            _wasReset = false;
-            _isDone = false;
         }
 
-        @Override
-        public void run() {
-            // Keep doing this until the timer has either
-            // successfully completed a sleep or it is
-            // stopped.
-            while (_isDone == false && _wasStopped == false) {
-                // Go to sleep. When the timer has expired, first
-                // tell the listener and then the alarm clock.
-                try {
-                    sleep(_duration);
-
-                    // Only issue this timeout if the timer
-                    // was not stopped.
-                    if (_wasStopped == false && _wasReset == false) {
-                        // The timer has successfully done
-                        // its task.
-                        _isDone = true;
-
-                        // Tell the alarm clock to delete this
-                        // timer. Do this before issuing the
-                        // callback in case the callback tries
-                        // to create this timer again.
-                        AsyncTimer.timerDone(_name);
-
-                        // Issue the callback to the interested
-                        // party.
-                        _listener.handleTimeout(_name);
-                    }
-                } catch (InterruptedException e) {
-                    // If this timer has been reset, then
-                    // reset the flag to false and go to sleep
-                    // again.
-                    _wasReset = false;
-                }
+        // Runs on the wheel thread when the timer scheduled in
+        // the given epoch expires.
+        private void expire(int epoch) {
+            // Tell the alarm clock to delete this timer. Do this
+            // before issuing the callback in case the callback
+            // tries to create this timer again.
+            if (AsyncTimer.timerDone(_name, this, epoch) == true) {
+                _listener.handleTimeout(_name);
             }
 
             return;
@@ -123,83 +91,69 @@ public final class AsyncTimer {
             return _name;
         }
 
-        private void resetTimer() {
-            _wasReset = true;
-            return;
-        }
-
-        private void resetTimer(long millisecs) {
-            _wasReset = true;
-            _duration = millisecs;
-            return;
-        }
+        // Schedules the timer in a new epoch. An expiry already
+        // running for the previous epoch is then ignored.
+        private void schedule() {
+            final int epoch = ++_epoch;
 
-        private void stopTimer() {
-            _wasStopped = true;
+            _timeout = _wheel.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        expire(epoch);
+                    }
+                }, _duration);
             return;
         }
     }
 
     // Keep track of all the currently running timers.
-    private static Map<String, TimerThread> _timerMap;
+    private static final Map<String, Timer> _timerMap =
+        new HashMap<String, Timer>();
 
-    static {
-        _timerMap = new HashMap<String, TimerThread>();
-    }
+    // All timers share this wheel and its thread.
+    private static final TimerWheel _wheel =
+        new TimerWheel("AsyncTimer", 1L);
 
     // Reset a timer, reusing its current duration.
-    public static boolean resetTimer(String name) {
-        boolean Retcode;
-        TimerThread Timer;
+    public static synchronized boolean resetTimer(String name) {
+        Timer timer = _timerMap.get(name);
 
         // If there is no such timer, fail this request.
-        if ((Timer = _timerMap.get(name)) == null) {
-            Retcode = false;
-        } else {
-            Retcode = true;
-
-            Timer.resetTimer();
-            Timer.interrupt();
+        if (timer != null) {
+            timer._timeout.cancel();
+            timer.schedule();
         }
 
-        return Retcode;
+        return (timer != null);
     }
 
     // Reset a timer to the new timeout.
-    public static boolean resetTimer(String name, long millisecs) {
-        boolean Retcode;
-        TimerThread Timer;
+    public static synchronized boolean resetTimer(String name, long millisecs) {
+        Timer timer = _timerMap.get(name);
 
         // If there is no such timer, fail this request.
-        if ((Timer = _timerMap.get(name)) == null) {
-            Retcode = false;
-        } else {
-            Retcode = true;
-
-            Timer.resetTimer(millisecs);
-            Timer.interrupt();
+        if (timer != null) {
+            timer._timeout.cancel();
+            timer._duration = millisecs;
+            timer.schedule();
         }
 
-        return Retcode;
+        return (timer != null);
     }
 
     // Create a new timer. Let the caller know when it expires.
-    public static boolean startTimer(String name, long millisecs,
-                                     TimerListener listener) {
+    public static synchronized boolean startTimer(String name, long millisecs,
+                                                  TimerListener listener) {
         boolean Retcode;
 
         // Fail if there already exists a timer by this name.
         if (_timerMap.containsKey(name) == true) {
             Retcode = false;
         } else {
-            // Create a new thread and pass in the necessary
-            // info.
-            TimerThread NewTimer = new TimerThread(name, millisecs, listener);
+            Timer timer = new Timer(name, millisecs, listener);
 
-            _timerMap.put(name, NewTimer);
-
-            // Start the timer.
-            NewTimer.start();
+            _timerMap.put(name, timer);
+            timer.schedule();
 
             Retcode = true;
         }
@@ -208,28 +162,23 @@ public final class AsyncTimer {
     }
 
     // Stop all running timers.
-    public static void stopAllTimers() {
-        for (TimerThread timer : _timerMap.values()) {
-            timer.stopTimer();
-            timer.interrupt();
+    public static synchronized void stopAllTimers() {
+        for (Timer timer : _timerMap.values()) {
+            timer._timeout.cancel();
         }
 
-        // Remove all the timer threads from the map.
+        // Remove all the timers from the map.
         _timerMap.clear();
 
         return;
     }
 
     // Stop a running timer.
-    public static boolean stopTimer(String name) {
-        TimerThread timer;
+    public static synchronized boolean stopTimer(String name) {
+        Timer timer = _timerMap.remove(name);
 
-        // First, tell the timer to stop. Then remove
-        // the timer from the map.
-        if ((timer = _timerMap.get(name)) != null) {
-            timer.stopTimer();
-            _timerMap.remove(name);
-            timer.interrupt();
+        if (timer != null) {
+            timer._timeout.cancel();
         }
 
         // This method always succeeds because even if the timer
@@ -237,10 +186,20 @@ public final class AsyncTimer {
         return true;
     }
 
-    private static synchronized void timerDone(String name) {
-        // Remove the timer from the list and delete it.
-        _timerMap.remove(name);
-        return;
+    // Removes the expired timer unless it was stopped, replaced
+    // or reset since the expiring epoch was scheduled. Returns
+    // true if the timeout should be issued.
+    private static synchronized boolean timerDone(String name,
+                                                  Timer timer,
+                                                  int epoch) {
+        boolean retcode =
+            (_timerMap.get(name) == timer && timer._epoch == epoch);
+
+        if (retcode == true) {
+            _timerMap.remove(name);
+        }
+
+        return retcode;
     }
 
     // This is a singleton object.
@@ -81,7 +81,6 @@
 package example_6;
 
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -122,49 +121,29 @@ public abstract class TcpConnection implements DatagramSocketListener,
     /* package */static final long MIN_TIMEOUT   = 1;
 
     // Use this table to translate received segment flags into
-    // state map transitions.
-    private static Method[]         _transition_table;
+    // state map transition identifiers.
+    private static final int[]      _transition_table;
 
     static {
-        try {
-            Class<?> context = TcpConnectionContext.class;
-            Class<?>[] parameters = new Class[1];
-            Method undefined;
-            int i;
-
-            // All "TCP flag" transitions take a DatagramPacket as
-            // a parameter.
-            parameters[0] = TcpSegment.class;
-
-            _transition_table = new Method[TcpSegment.FLAG_MASK + 1];
+        int i;
 
-            // First, set all transitions to undefined.
-            undefined = context.getDeclaredMethod("UNDEF", parameters);
-            for (i = 0; i < _transition_table.length; ++i) {
-                _transition_table[i] = undefined;
-            }
+        _transition_table = new int[TcpSegment.FLAG_MASK + 1];
 
-            // Now go back and set the known transitions.
-            _transition_table[TcpSegment.FIN] = context.getDeclaredMethod("FIN",
-                                                                          parameters);
-            _transition_table[TcpSegment.SYN] = context.getDeclaredMethod("SYN",
-                                                                          parameters);
-            _transition_table[TcpSegment.RST] = context.getDeclaredMethod("RST",
-                                                                          parameters);
-            _transition_table[TcpSegment.PSH] = context.getDeclaredMethod("PSH",
-                                                                          parameters);
-            _transition_table[TcpSegment.ACK] = context.getDeclaredMethod("ACK",
-                                                                          parameters);
-            _transition_table[TcpSegment.URG] = context.getDeclaredMethod("URG",
-                                                                          parameters);
-            _transition_table[TcpSegment.FIN_ACK] = context.getDeclaredMethod("FIN_ACK",
-                                                                              parameters);
-            _transition_table[TcpSegment.SYN_ACK] = context.getDeclaredMethod("SYN_ACK",
-                                                                              parameters);
-            _transition_table[TcpSegment.PSH_ACK] = context.getDeclaredMethod("PSH_ACK",
-                                                                              parameters);
-        } catch (Exception jex) {
+        // First, set all transitions to undefined.
+        for (i = 0; i < _transition_table.length; ++i) {
+            _transition_table[i] = TcpConnectionContext.UNDEF_ID;
         }
+
+        // Now go back and set the known transitions.
+        _transition_table[TcpSegment.FIN] = TcpConnectionContext.FIN_ID;
+        _transition_table[TcpSegment.SYN] = TcpConnectionContext.SYN_ID;
+        _transition_table[TcpSegment.RST] = TcpConnectionContext.RST_ID;
+        _transition_table[TcpSegment.PSH] = TcpConnectionContext.PSH_ID;
+        _transition_table[TcpSegment.ACK] = TcpConnectionContext.ACK_ID;
+        _transition_table[TcpSegment.URG] = TcpConnectionContext.URG_ID;
+        _transition_table[TcpSegment.FIN_ACK] = TcpConnectionContext.FIN_ACK_ID;
+        _transition_table[TcpSegment.SYN_ACK] = TcpConnectionContext.SYN_ACK_ID;
+        _transition_table[TcpSegment.PSH_ACK] = TcpConnectionContext.PSH_ACK_ID;
     }
 
     // "Accepted" socket constructor.
@@ -245,11 +224,9 @@ public abstract class TcpConnection implements DatagramSocketListener,
         synchronized (this) {
             try {
                 TcpSegment segment = new TcpSegment(packet);
-                Object[] args = new Object[1];
 
                 // Generate the appropriate transition based on
                 // the header flags.
-                args[0] = segment;
 
                 // DEBUG
                 //                 System.out.println(
@@ -265,7 +242,8 @@ public abstract class TcpConnection implements DatagramSocketListener,
                 // transitions.
                 // _outputTransitions();
 
-                _transition_table[segment.getFlags()].invoke(_fsm, args);
+                _fsm.dispatch(_transition_table[segment.getFlags()],
+                              segment);
             } catch (Exception jex) {
                 System.err.println(jex);
                 jex.printStackTrace();
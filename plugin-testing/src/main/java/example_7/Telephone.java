@@ -58,8 +58,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -363,7 +361,7 @@ public final class Telephone {
 
     private static Timer                _timer;
 
-    private static Map<String, Method>  _timerTransitionMap;
+    private static Map<String, Integer> _timerTransitionMap;
 
     // The telephone's time display.
     private static SimpleDateFormat     _ClockFormatter   = null;
@@ -389,31 +387,16 @@ public final class Telephone {
 
     static {
         _timer = new Timer(true);
-        _timerTransitionMap = new HashMap<String, Method>();
+        _timerTransitionMap = new HashMap<String, Integer>();
 
         _ClockFormatter = new SimpleDateFormat("    HH:mm a    MMMM dd, yyyy");
 
         // Fill in the static associations between timer names
         // and their transition.
-        Class<?> context = TelephoneContext.class;
-        Class<?>[] parameters = new Class[0];
-
-        try {
-            _timerTransitionMap.put("ClockTimer",
-                                    context.getDeclaredMethod("ClockTimer",
-                                                              parameters));
-            _timerTransitionMap.put("OffHookTimer",
-                                    context.getDeclaredMethod("OffHookTimer",
-                                                              parameters));
-            _timerTransitionMap.put("LoopTimer",
-                                    context.getDeclaredMethod("LoopTimer",
-                                                              parameters));
-            _timerTransitionMap.put("RingTimer",
-                                    context.getDeclaredMethod("RingTimer",
-                                                              parameters));
-        } catch (NoSuchMethodException nsmex) {
-            nsmex.printStackTrace(System.out);
-        }
+        _timerTransitionMap.put("ClockTimer", TelephoneContext.ClockTimer_ID);
+        _timerTransitionMap.put("OffHookTimer", TelephoneContext.OffHookTimer_ID);
+        _timerTransitionMap.put("LoopTimer", TelephoneContext.LoopTimer_ID);
+        _timerTransitionMap.put("RingTimer", TelephoneContext.RingTimer_ID);
     }
 
     public Telephone(Container pane) {
@@ -482,17 +465,10 @@ public final class Telephone {
         TelephoneTimer task = _timerMap.remove(timer);
 
         if (task != null && _fsm != null) {
-            try {
-                Method transition = _timerTransitionMap.get(timer);
-                Object[] args;
+            Integer transition = _timerTransitionMap.get(timer);
 
-                if (transition != null) {
-                    args = new Object[0];
-                    transition.invoke(_fsm, args);
-                }
-            } catch (IllegalAccessException accex) {
-            } catch (IllegalArgumentException argex) {
-            } catch (InvocationTargetException targetex) {
+            if (transition != null) {
+                _fsm.dispatch(transition);
             }
         }
 
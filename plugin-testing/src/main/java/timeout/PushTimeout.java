@@ -0,0 +1,20 @@
+package timeout;
+
+/**
+ * The owner of the {@code PushTimeout} state machine, which
+ * has no actions.
+ */
+public final class PushTimeout
+{
+    public PushTimeout()
+    {
+        _fsm = new PushTimeoutFSM(this);
+    }
+
+    public PushTimeoutFSM getFSM()
+    {
+        return (_fsm);
+    }
+
+    private final PushTimeoutFSM _fsm;
+} // end of class PushTimeout
@@ -0,0 +1,67 @@
+package example_6;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * A reset racing an expiry delivers only the new timeout.
+ */
+public class TestAsyncTimer
+{
+    @Test(timeout = 60000L)
+    public void testResetRacingExpiry()
+        throws InterruptedException
+    {
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        TimerListener listener =
+            new TimerListener()
+            {
+                @Override
+                public void handleTimeout(String name)
+                {
+                    count.incrementAndGet();
+                    delivered.countDown();
+                }
+            };
+
+        // Hold the timers while the first timeout expires, so its
+        // expiry waits and then runs after the reset.
+        synchronized (AsyncTimer.class)
+        {
+            assertTrue(AsyncTimer.startTimer("race", 1L, listener));
+            while (_expiryBlocked() == false)
+            {
+                Thread.sleep(1L);
+            }
+            assertTrue(AsyncTimer.resetTimer("race", 300L));
+        }
+
+        Thread.sleep(100L);
+        assertEquals("stale timeout delivered", 0, count.get());
+        assertTrue(delivered.await(30L, TimeUnit.SECONDS));
+        Thread.sleep(100L);
+        assertEquals(1, count.get());
+    }
+
+    // Returns true once the wheel thread waits for the timers.
+    private static boolean _expiryBlocked()
+    {
+        for (Thread thread: Thread.getAllStackTraces().keySet())
+        {
+            if (thread.getName().equals("AsyncTimer") == true &&
+                thread.getState() == Thread.State.BLOCKED)
+            {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+} // end of class TestAsyncTimer
@@ -0,0 +1,149 @@
+package timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * readFrom(ByteBuffer) rejects a bad record before changing
+ * the context, and readObject a bad serialized context.
+ */
+public class TestPushCodec
+{
+    @Test
+    public void testRoundTrip()
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+        PushTimeoutFSM copy = new PushTimeout().getFSM();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        fsm.Go();
+        fsm.writeTo(buffer);
+        buffer.flip();
+        copy.readFrom(buffer);
+        assertEquals("P.X", copy.getState().getName());
+
+        copy.Back();
+        assertEquals("M.A", copy.getState().getName());
+    }
+
+    @Test
+    public void testBadStackedState()
+    {
+        ByteBuffer buffer = _record();
+
+        // The stacked state follows the state id and depth.
+        buffer.putInt(8, 1000);
+        _assertRejected(buffer);
+    }
+
+    @Test
+    public void testBadDepth()
+    {
+        ByteBuffer buffer = _record();
+
+        buffer.putInt(4, -1);
+        _assertRejected(buffer);
+    }
+
+    @Test
+    public void testSerializedBadDepth()
+        throws Exception
+    {
+        // The stack holds one state.
+        _assertNotDeserialized(0, 2);
+    }
+
+    @Test
+    public void testSerializedBadStackedState()
+        throws Exception
+    {
+        _assertNotDeserialized(4, 1000);
+    }
+
+    @Test
+    public void testSerializedBadState()
+        throws Exception
+    {
+        _assertNotDeserialized(8, -1);
+    }
+
+    private static ByteBuffer _record()
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+        ByteBuffer retval = ByteBuffer.allocate(256);
+
+        fsm.Go();
+        fsm.writeTo(retval);
+        retval.flip();
+        return (retval);
+    }
+
+    private static void _assertRejected(ByteBuffer buffer)
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+
+        try
+        {
+            fsm.readFrom(buffer);
+            fail("bad record accepted");
+        }
+        catch (IllegalArgumentException argex)
+        {}
+
+        // Nothing was assigned, so the stack is still empty.
+        assertEquals("M.A", fsm.getState().getName());
+        fsm.Go();
+        fsm.Back();
+        assertEquals("M.A", fsm.getState().getName());
+    }
+
+    // Serializes a pushed context, replaces the int at offset
+    // in its depth, stacked state and state id, and checks that
+    // it does not deserialize.
+    private static void _assertNotDeserialized(int offset, int value)
+        throws Exception
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+        int stackedId = fsm.getState().getId();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream ostream = new ObjectOutputStream(bytes);
+        ByteBuffer stream;
+        int at = -1;
+        int i;
+
+        fsm.Go();
+        ostream.writeObject(fsm);
+        ostream.close();
+
+        // writeObject writes the ints last.
+        stream = ByteBuffer.wrap(bytes.toByteArray());
+        for (i = 0; i + 12 <= stream.limit(); ++i)
+        {
+            if (stream.getInt(i) == 1 &&
+                stream.getInt(i + 4) == stackedId &&
+                stream.getInt(i + 8) == fsm.getState().getId())
+            {
+                at = i;
+            }
+        }
+        stream.putInt(at + offset, value);
+
+        try
+        {
+            new ObjectInputStream(
+                new ByteArrayInputStream(stream.array())).readObject();
+            fail("bad serialized context accepted");
+        }
+        catch (InvalidObjectException objex)
+        {}
+    }
+} // end of class TestPushCodec
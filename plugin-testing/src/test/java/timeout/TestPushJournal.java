@@ -0,0 +1,89 @@
+package timeout;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import statemap.FSMContext;
+import statemap.TransitionJournal;
+
+/**
+ * Journal replay restores the state stack as well as the
+ * state.
+ */
+public class TestPushJournal
+{
+    @Test
+    public void testReplayPush()
+        throws IOException
+    {
+        File directory = _directory();
+
+        try
+        {
+            // One record per segment, so each append after the
+            // first rolls the journal.
+            TransitionJournal journal =
+                new TransitionJournal(directory, 40, 1, 0L);
+            PushTimeoutFSM fsm = new PushTimeout().getFSM();
+
+            fsm.setJournal(journal, 1L);
+            fsm.Go();
+            fsm.Back();
+            fsm.Go();
+            journal.close();
+            assertEquals(2L, journal.getSegment());
+
+            final PushTimeoutFSM recovered = new PushTimeout().getFSM();
+
+            assertEquals(3L,
+                         TransitionJournal.recover(
+                             directory,
+                             Collections.<FSMContext>emptyList(),
+                             new TransitionJournal.ContextLookup()
+                             {
+                                 @Override
+                                 public FSMContext lookup(long key)
+                                 {
+                                     return (key == 1L ? recovered : null);
+                                 }
+                             }));
+            assertEquals("P.X", recovered.getState().getName());
+
+            // The replayed stack pops back to the pushing state.
+            recovered.Back();
+            assertEquals("M.A", recovered.getState().getName());
+        }
+        finally
+        {
+            _delete(directory);
+        }
+    }
+
+    private static File _directory()
+        throws IOException
+    {
+        File retval = File.createTempFile("journal", "", new File("target"));
+
+        retval.delete();
+        return (retval);
+    }
+
+    private static void _delete(File directory)
+    {
+        File[] files = directory.listFiles();
+
+        if (files != null)
+        {
+            for (File file: files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+} // end of class TestPushJournal
@@ -0,0 +1,64 @@
+package timeout;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * A {@code %timeout} state covered by a push keeps its timer
+ * until it is popped.
+ */
+public class TestPushTimeout
+{
+    @Test
+    public void testPopResumesTimeout()
+        throws InterruptedException
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+
+        fsm.enterStartState();
+        fsm.Go();
+        fsm.Back();
+        assertEquals("M.A", _state(fsm));
+        _await(fsm, "M.B");
+    }
+
+    @Test
+    public void testPushSuspendsTimeout()
+        throws InterruptedException
+    {
+        PushTimeoutFSM fsm = new PushTimeout().getFSM();
+
+        fsm.enterStartState();
+        fsm.Go();
+        Thread.sleep(400L);
+        assertEquals("P.X", _state(fsm));
+
+        // The timer expired while covered, so it fires as soon as
+        // its state is popped.
+        fsm.Back();
+        _await(fsm, "M.B");
+    }
+
+    private static String _state(PushTimeoutFSM fsm)
+    {
+        synchronized (fsm)
+        {
+            return (fsm.getState().getName());
+        }
+    }
+
+    private static void _await(PushTimeoutFSM fsm, String state)
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000L;
+
+        while (state.equals(_state(fsm)) == false &&
+               System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+
+        assertEquals(state, _state(fsm));
+    }
+} // end of class TestPushTimeout
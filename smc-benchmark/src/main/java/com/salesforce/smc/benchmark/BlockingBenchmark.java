@@ -0,0 +1,125 @@
+package com.salesforce.smc.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import statemap.EventMailbox;
+import statemap.ThreadPerTaskExecutor;
+
+import com.salesforce.smc.benchmark.async.SessionContext;
+
+/**
+ * Runs many <code>Session</code> contexts whose actions block. Each
+ * context's mailbox is drained on its own thread by a
+ * {@link ThreadPerTaskExecutor}, first with virtual threads (when the Java
+ * runtime has them), then with platform threads, and finally on a fixed
+ * pool of platform threads for comparison. Every context is connected and
+ * then receives a number of <code>Data</code> events, each of which sleeps
+ * in the action. The elapsed time until every context has received every
+ * event is reported.
+ *
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.BlockingBenchmark [contexts [events-per-context [sleep-ms [pool-size]]]]
+ * </pre>
+ */
+public class BlockingBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int contexts = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+        int events = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        long sleep = (args.length > 2 ? Long.parseLong(args[2]) : 10L);
+        int poolSize = (args.length > 3 ? Integer.parseInt(args[3]) : 200);
+
+        if (ThreadPerTaskExecutor.isVirtualThreadSupported()) {
+            report("virtual thread per context",
+                   run(new ThreadPerTaskExecutor(), contexts, events, sleep),
+                   contexts, events);
+        } else {
+            System.out.println("virtual threads not supported by this runtime");
+        }
+
+        report("platform thread per context",
+               run(new ThreadPerTaskExecutor(Executors.defaultThreadFactory()),
+                   contexts, events, sleep),
+               contexts, events);
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        try {
+            report(poolSize + " platform thread pool",
+                   run(pool, contexts, events, sleep), contexts, events);
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    } // end of main(String[])
+
+    /**
+     * Posts {@code events} blocking <code>Data</code> events to each of
+     * {@code contexts} contexts drained on {@code executor} and returns the
+     * nanoseconds until all were received.
+     */
+    private static long run(Executor executor, int contexts, int events, long sleep)
+        throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(contexts * events);
+        SessionContext[] sessions = new SessionContext[contexts];
+
+        for (int i = 0; i < contexts; ++i) {
+            sessions[i] = new SessionContext(new BlockingSession(done, sleep));
+            sessions[i].setMailbox(new EventMailbox(executor, events + 2,
+                                                    EventMailbox.OverflowPolicy.FAIL));
+        }
+
+        long begin = System.nanoTime();
+        for (SessionContext session : sessions) {
+            session.postConnect();
+            session.postSynAck();
+            for (int j = 0; j < events; ++j) {
+                // Even lengths are accepted and received.
+                session.postData(j << 1);
+            }
+        }
+        done.await();
+        return (System.nanoTime() - begin);
+    } // end of run(Executor, int, int, long)
+
+    private static void report(String name, long nanos, int contexts, int events) {
+        System.out.printf("%-30s %d contexts x %d events: %6d ms%n", name, contexts,
+                          events, nanos / 1000000L);
+    } // end of report(String, long, int, int)
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    /**
+     * A session whose receive action blocks, as an action doing network
+     * I/O would.
+     */
+    private static final class BlockingSession extends Session {
+        public BlockingSession(CountDownLatch done, long sleep) {
+            _done = done;
+            _sleep = sleep;
+        }
+
+        @Override
+        public void received(int n) {
+            super.received(n);
+            try {
+                Thread.sleep(_sleep);
+            } catch (InterruptedException interrupt) {
+                Thread.currentThread().interrupt();
+            }
+            _done.countDown();
+        }
+
+        private final CountDownLatch _done;
+        private final long _sleep;
+    } // end of class BlockingSession
+} // end of class BlockingBenchmark
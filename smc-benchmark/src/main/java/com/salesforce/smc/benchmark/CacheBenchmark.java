@@ -0,0 +1,131 @@
+package com.salesforce.smc.benchmark;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import statemap.ContextCache;
+import statemap.EventLoopGroup;
+import statemap.FileContextStore;
+
+import com.salesforce.smc.benchmark.classstyle.SessionContext;
+
+/**
+ * Drives a large population of <code>Session</code> contexts through a
+ * {@link ContextCache} which keeps only a fraction of them in memory. Most
+ * events go to a small set of hot sessions and the rest to any session, so
+ * idle sessions are evicted to a {@link FileContextStore} and restored when
+ * an event arrives for them. The throughput and cache counters are
+ * reported, and every session's final state is checked against a copy of
+ * the population driven without the cache.
+ *
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.CacheBenchmark [directory [sessions [resident [events]]]]
+ * </pre>
+ */
+public class CacheBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(args.length > 0 ? args[0] : "target/cache");
+        int sessions = (args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+        int resident = (args.length > 2 ? Integer.parseInt(args[2]) : 10000);
+        int events = (args.length > 3 ? Integer.parseInt(args[3]) : 2000000);
+        int hot = Math.max(resident / 2, 1);
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        FileContextStore<Integer> store = new FileContextStore<Integer>(directory);
+        ContextCache<Integer, SessionContext> cache =
+            new ContextCache<Integer, SessionContext>(new SessionFactory(),
+                                                      new SessionDispatcher(), store,
+                                                      resident, 1000L);
+        SessionContext[] reference = new SessionContext[sessions];
+        for (int i = 0; i < sessions; ++i) {
+            reference[i] = new SessionContext(new Session());
+        }
+
+        Random random = new Random(1);
+        long begin = System.nanoTime();
+        for (int i = 0; i < events; ++i) {
+            // Nine events in ten go to the hot sessions.
+            int key = (random.nextInt(10) == 0 ? random.nextInt(sessions)
+                                               : random.nextInt(hot));
+            int transition = random.nextInt(SessionContext.TRANSITION_COUNT);
+            Integer argument =
+                (transition == SessionContext.Data_ID ? Integer.valueOf(i & 0xff) : null);
+
+            cache.dispatch(Integer.valueOf(key), transition, argument);
+            DISPATCHER.dispatch(reference[key], transition, argument);
+        }
+        long nanos = System.nanoTime() - begin;
+        System.out.printf("%d sessions, %d resident: %.2f us/event (with reference run)%n",
+                          sessions, resident, nanos / 1000.0 / events);
+        System.out.println(cache);
+
+        // Evict everything and compare the stored records with the
+        // reference contexts'.
+        cache.evictAll();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        int mismatches = 0;
+        for (int i = 0; i < sessions; ++i) {
+            byte[] stored = store.get(Integer.valueOf(i));
+            if (stored == null) {
+                // Never used: still in the start state.
+                buffer.clear();
+                new SessionContext(new Session()).writeTo(buffer);
+                buffer.flip();
+                stored = Arrays.copyOf(buffer.array(), buffer.limit());
+            }
+            buffer.clear();
+            reference[i].writeTo(buffer);
+            buffer.flip();
+            if (!Arrays.equals(stored, Arrays.copyOf(buffer.array(), buffer.limit()))) {
+                ++mismatches;
+            }
+        }
+        System.out.printf("%d mismatches%n", mismatches);
+        if (mismatches != 0) {
+            throw new IllegalStateException(mismatches + " sessions differ");
+        }
+    } // end of main(String[])
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    private static final class SessionFactory
+        implements ContextCache.Factory<Integer, SessionContext> {
+        @Override
+        public SessionContext create(Integer key) {
+            return new SessionContext(new Session());
+        }
+    } // end of class SessionFactory
+
+    private static final class SessionDispatcher
+        implements EventLoopGroup.Dispatcher<SessionContext> {
+        @Override
+        public void dispatch(SessionContext fsm, int transition, Object argument) {
+            if (argument == null) {
+                fsm.dispatch(transition);
+            } else {
+                fsm.dispatch(transition, argument);
+            }
+        }
+    } // end of class SessionDispatcher
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final SessionDispatcher DISPATCHER = new SessionDispatcher();
+} // end of class CacheBenchmark
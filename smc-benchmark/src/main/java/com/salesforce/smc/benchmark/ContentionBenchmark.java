@@ -0,0 +1,190 @@
+package com.salesforce.smc.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares <code>-sync</code> and <code>-combine</code> transition methods
+ * when several threads drive the same <code>Session</code> context. Each
+ * thread sends its own pseudo-random event script; the session's Default
+ * state accepts every event so the interleaving never reaches an undefined
+ * transition. Total throughput is reported for each thread count, along
+ * with the average number of requests applied per combiner pass.
+ * 
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.ContentionBenchmark [transitions-per-thread]
+ * </pre>
+ */
+public class ContentionBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int transitions = (args.length > 0 ? Integer.parseInt(args[0])
+                                          : 1000000);
+
+        // Warm up both variants before timing.
+        run(new Sync(), 2, transitions / 10);
+        run(new Combine(), 2, transitions / 10);
+
+        for (int threads : THREAD_COUNTS) {
+            Combine combine = new Combine();
+            long syncNanos = run(new Sync(), threads, transitions);
+            long combineNanos = run(combine, threads, transitions);
+            long total = (long) threads * transitions;
+
+            System.out.printf("%2d threads: sync %6.2f Mops/s, combine %6.2f Mops/s"
+                                      + " (%.1f requests/pass)%n",
+                              threads, total * 1000.0 / syncNanos,
+                              total * 1000.0 / combineNanos,
+                              (double) combine.requests() / combine.passes());
+        }
+    } // end of main(String[])
+
+    /**
+     * Runs {@code threads} threads, each issuing {@code transitions}
+     * transitions on the target's shared context, and returns the elapsed
+     * nanoseconds.
+     */
+    private static long run(final Target target, int threads,
+                            final int transitions) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; ++i) {
+            final int[] script = script(i);
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException interrupt) {
+                        return;
+                    }
+                    for (int j = 0; j < transitions; ++j) {
+                        target.send(script[j & (script.length - 1)], j);
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (System.nanoTime() - begin);
+    } // end of run(Target, int, int)
+
+    private static int[] script(int seed) {
+        Random random = new Random(seed);
+        int[] script = new int[1024];
+        for (int i = 0; i < script.length; ++i) {
+            script[i] = random.nextInt(9);
+        }
+        return (script);
+    } // end of script(int)
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    private static abstract class Target {
+        public abstract void send(int event, int n);
+    } // end of class Target
+
+    private static final class Sync extends Target {
+        @Override
+        public void send(int event, int n) {
+            com.salesforce.smc.benchmark.sync.SessionContext fsm = _fsm;
+            switch (event) {
+                case 0:
+                    fsm.Open();
+                    break;
+                case 1:
+                    fsm.Connect();
+                    break;
+                case 2:
+                    fsm.Syn();
+                    break;
+                case 3:
+                    fsm.SynAck();
+                    break;
+                case 4:
+                    fsm.Ack();
+                    break;
+                case 5:
+                    fsm.Data(n);
+                    break;
+                case 6:
+                    fsm.Close();
+                    break;
+                case 7:
+                    fsm.Fin();
+                    break;
+                default:
+                    fsm.Timeout();
+                    break;
+            }
+        }
+
+        private final com.salesforce.smc.benchmark.sync.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.sync.SessionContext(new Session());
+    } // end of class Sync
+
+    private static final class Combine extends Target {
+        @Override
+        public void send(int event, int n) {
+            com.salesforce.smc.benchmark.combine.SessionContext fsm = _fsm;
+            switch (event) {
+                case 0:
+                    fsm.Open();
+                    break;
+                case 1:
+                    fsm.Connect();
+                    break;
+                case 2:
+                    fsm.Syn();
+                    break;
+                case 3:
+                    fsm.SynAck();
+                    break;
+                case 4:
+                    fsm.Ack();
+                    break;
+                case 5:
+                    fsm.Data(n);
+                    break;
+                case 6:
+                    fsm.Close();
+                    break;
+                case 7:
+                    fsm.Fin();
+                    break;
+                default:
+                    fsm.Timeout();
+                    break;
+            }
+        }
+
+        public long passes() {
+            return (_fsm.getCombiner().getPassCount());
+        }
+
+        public long requests() {
+            return (_fsm.getCombiner().getRequestCount());
+        }
+
+        private final com.salesforce.smc.benchmark.combine.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.combine.SessionContext(new Session());
+    } // end of class Combine
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+} // end of class ContentionBenchmark
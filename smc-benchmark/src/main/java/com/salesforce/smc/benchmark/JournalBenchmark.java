@@ -0,0 +1,123 @@
+package com.salesforce.smc.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import statemap.FSMContext;
+import statemap.TransitionJournal;
+
+import com.salesforce.smc.benchmark.classstyle.SessionContext;
+
+/**
+ * Measures the cost of journaling transitions with a {@link TransitionJournal}
+ * and checks recovery. Pseudo-random events are sent to a population of
+ * <code>Session</code> contexts, first without a journal and then with one,
+ * and the nanoseconds per transition are reported. The journaled run is
+ * checkpointed half way; afterwards a fresh population is recovered from the
+ * checkpoint and the journal and compared with the original.
+ *
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.JournalBenchmark [directory [contexts [transitions]]]
+ * </pre>
+ */
+public class JournalBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(args.length > 0 ? args[0] : "target/journal");
+        int contexts = (args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+        int transitions = (args.length > 2 ? Integer.parseInt(args[2]) : 10000000);
+
+        _clear(directory);
+
+        // Warm up before timing.
+        run(create(contexts), transitions / 10, 1);
+
+        SessionContext[] plain = create(contexts);
+        long nanos = run(plain, transitions, 2);
+        System.out.printf("%-12s %8.2f ns/transition%n", "no journal",
+                          (double) nanos / transitions);
+
+        SessionContext[] journaled = create(contexts);
+        TransitionJournal journal = new TransitionJournal(directory);
+        for (int i = 0; i < contexts; ++i) {
+            journaled[i].setJournal(journal, i);
+        }
+
+        nanos = run(journaled, transitions / 2, 2);
+        long begin = System.nanoTime();
+        journal.checkpoint(Arrays.asList(journaled));
+        long checkpoint = System.nanoTime() - begin;
+        nanos += run(journaled, transitions - transitions / 2, 3);
+        journal.close();
+        System.out.printf("%-12s %8.2f ns/transition, %d commits, checkpoint %d ms%n",
+                          "journal", (double) nanos / transitions,
+                          journal.getCommitCount(), checkpoint / 1000000L);
+
+        final SessionContext[] recovered = create(contexts);
+        begin = System.nanoTime();
+        long replayed =
+            TransitionJournal.recover(directory, Arrays.asList(recovered),
+                                      new TransitionJournal.ContextLookup() {
+                                          @Override
+                                          public FSMContext lookup(long key) {
+                                              return recovered[(int) key];
+                                          }
+                                      });
+        long recovery = System.nanoTime() - begin;
+
+        int mismatches = 0;
+        for (int i = 0; i < contexts; ++i) {
+            if (recovered[i].getState() != journaled[i].getState()) {
+                ++mismatches;
+            }
+        }
+        System.out.printf("recovered %d contexts, replayed %d records in %d ms, %d mismatches%n",
+                          contexts, replayed, recovery / 1000000L, mismatches);
+        if (mismatches != 0) {
+            throw new IllegalStateException(mismatches + " contexts not recovered");
+        }
+    } // end of main(String[])
+
+    private static SessionContext[] create(int contexts) {
+        SessionContext[] retval = new SessionContext[contexts];
+        for (int i = 0; i < contexts; ++i) {
+            retval[i] = new SessionContext(new Session());
+        }
+        return retval;
+    } // end of create(int)
+
+    /**
+     * Sends {@code transitions} pseudo-random events to pseudo-randomly
+     * chosen sessions and returns the elapsed nanoseconds.
+     */
+    private static long run(SessionContext[] sessions, int transitions, long seed) {
+        Random random = new Random(seed);
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < transitions; ++i) {
+            SessionContext fsm = sessions[random.nextInt(sessions.length)];
+            int transition = random.nextInt(SessionContext.TRANSITION_COUNT);
+            if (transition == SessionContext.Data_ID) {
+                fsm.dispatch(transition, Integer.valueOf(i & 0xff));
+            } else {
+                fsm.dispatch(transition);
+            }
+        }
+        return (System.nanoTime() - begin);
+    } // end of run(SessionContext[], int, long)
+
+    // Removes the files left by an earlier run.
+    private static void _clear(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    } // end of _clear(File)
+} // end of class JournalBenchmark
@@ -0,0 +1,133 @@
+package com.salesforce.smc.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import statemap.EventLoopGroup;
+
+import com.salesforce.smc.benchmark.tablestyle.SessionContext;
+
+/**
+ * Drives a large population of <code>Session</code> contexts through an
+ * {@link EventLoopGroup}. Several producer threads post pseudo-random
+ * events to pseudo-randomly chosen sessions, keyed by session id, and the
+ * run ends when every partition has applied every posted event. The total
+ * throughput and each partition's counters are reported.
+ *
+ * <pre>
+ * java -Xmx2g -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.LoadBenchmark [contexts [producers [partitions [events-per-producer]]]]
+ * </pre>
+ */
+public class LoadBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int contexts = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int producers = (args.length > 1 ? Integer.parseInt(args[1]) : 4);
+        int partitions = (args.length > 2 ? Integer.parseInt(args[2])
+                                          : Runtime.getRuntime().availableProcessors());
+        int events = (args.length > 3 ? Integer.parseInt(args[3]) : 5000000);
+        final SessionContext[] sessions = new SessionContext[contexts];
+        final Integer[] ids = new Integer[contexts];
+        long begin = System.nanoTime();
+
+        for (int i = 0; i < contexts; ++i) {
+            sessions[i] = new SessionContext(new Session());
+            ids[i] = Integer.valueOf(i);
+        }
+        System.out.printf("created %d contexts in %d ms%n", contexts,
+                          (System.nanoTime() - begin) / 1000000L);
+
+        EventLoopGroup<SessionContext> group =
+            new EventLoopGroup<SessionContext>("session", partitions,
+                                               RING_SIZE, new SessionDispatcher());
+        group.start();
+        try {
+            // Warm up before timing.
+            run(group, sessions, ids, producers, events / 10);
+
+            long total = (long) producers * events;
+            long nanos = run(group, sessions, ids, producers, events);
+            System.out.printf("%d contexts, %d producers, %d partitions: %.2f Mevents/s%n",
+                              contexts, producers, partitions, total * 1000.0 / nanos);
+            System.out.println(group);
+        } finally {
+            group.shutdown();
+            group.awaitTermination(10000L);
+        }
+    } // end of main(String[])
+
+    /**
+     * Runs {@code producers} threads, each putting {@code events} events,
+     * waits until every partition has applied them and returns the elapsed
+     * nanoseconds.
+     */
+    private static long run(final EventLoopGroup<SessionContext> group,
+                            final SessionContext[] sessions, final Integer[] ids,
+                            int producers, final int events)
+        throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[producers];
+
+        for (int i = 0; i < producers; ++i) {
+            final Random random = new Random(i);
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException interrupt) {
+                        return;
+                    }
+                    for (int j = 0; j < events; ++j) {
+                        int session = random.nextInt(sessions.length);
+                        int transition =
+                            random.nextInt(SessionContext.TRANSITION_COUNT);
+                        group.put(ids[session], sessions[session], transition,
+                                  (transition == SessionContext.Data_ID ? ids[j & 0xff]
+                                                                        : null));
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int i = 0; i < group.getPartitionCount(); ++i) {
+            EventLoopGroup<SessionContext>.Partition partition = group.getPartition(i);
+            while (partition.getDepth() > 0) {
+                Thread.yield();
+            }
+        }
+        return (System.nanoTime() - begin);
+    } // end of run(EventLoopGroup, SessionContext[], Integer[], int, int)
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    private static final class SessionDispatcher
+        implements EventLoopGroup.Dispatcher<SessionContext> {
+        @Override
+        public void dispatch(SessionContext fsm, int transition, Object argument) {
+            if (argument == null) {
+                fsm.dispatch(transition);
+            } else {
+                fsm.dispatch(transition, argument);
+            }
+        }
+    } // end of class SessionDispatcher
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final int RING_SIZE = 8192;
+} // end of class LoadBenchmark
@@ -0,0 +1,149 @@
+package com.salesforce.smc.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import statemap.EventMailbox;
+
+import com.salesforce.smc.benchmark.async.SessionContext;
+
+/**
+ * Measures <code>-async</code> <code>postXxx</code> methods when several
+ * producer threads post to one <code>Session</code> context's mailbox. The
+ * mailbox is drained by a single executor thread. Each producer posts its own
+ * pseudo-random event script and the run ends when the mailbox has applied
+ * every event which was not dropped. The producer-side post rate, the
+ * end-to-end rate and the mailbox metrics are reported for each thread count.
+ *
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.MailboxBenchmark [events-per-thread [capacity [policy]]]
+ * </pre>
+ */
+public class MailboxBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int events = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int capacity = (args.length > 1 ? Integer.parseInt(args[1]) : 65536);
+        EventMailbox.OverflowPolicy policy =
+            (args.length > 2 ? EventMailbox.OverflowPolicy.valueOf(args[2])
+                             : EventMailbox.OverflowPolicy.DROP_NEWEST);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Warm up before timing.
+            run(executor, 2, events / 10, capacity, policy);
+
+            for (int threads : THREAD_COUNTS) {
+                run(executor, threads, events, capacity, policy);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    } // end of main(String[])
+
+    /**
+     * Runs {@code threads} producers, each posting {@code events} events to
+     * a fresh context, waits for the mailbox to drain and prints the results.
+     */
+    private static void run(ExecutorService executor, int threads,
+                            final int events, int capacity,
+                            EventMailbox.OverflowPolicy policy)
+        throws InterruptedException {
+        final SessionContext fsm = new SessionContext(new Session());
+        final EventMailbox mailbox =
+            new EventMailbox(executor, capacity, policy);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        fsm.setMailbox(mailbox);
+        for (int i = 0; i < threads; ++i) {
+            final int[] script = script(i);
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException interrupt) {
+                        return;
+                    }
+                    for (int j = 0; j < events; ++j) {
+                        post(fsm, script[j & (script.length - 1)], j);
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long posted = System.nanoTime() - begin;
+        while (mailbox.getAppliedCount() < mailbox.getPostedCount()) {
+            Thread.yield();
+        }
+        long drained = System.nanoTime() - begin;
+        long total = (long) threads * events;
+
+        System.out.printf("%2d threads: post %6.2f Mops/s, applied %6.2f Mops/s %s%n",
+                          threads, total * 1000.0 / posted,
+                          mailbox.getAppliedCount() * 1000.0 / drained,
+                          mailbox);
+    } // end of run(ExecutorService, int, int, int, OverflowPolicy)
+
+    private static void post(SessionContext fsm, int event, int n) {
+        switch (event) {
+            case 0:
+                fsm.postOpen();
+                break;
+            case 1:
+                fsm.postConnect();
+                break;
+            case 2:
+                fsm.postSyn();
+                break;
+            case 3:
+                fsm.postSynAck();
+                break;
+            case 4:
+                fsm.postAck();
+                break;
+            case 5:
+                fsm.postData(n);
+                break;
+            case 6:
+                fsm.postClose();
+                break;
+            case 7:
+                fsm.postFin();
+                break;
+            default:
+                fsm.postTimeout();
+                break;
+        }
+    } // end of post(SessionContext, int, int)
+
+    private static int[] script(int seed) {
+        Random random = new Random(seed);
+        int[] script = new int[1024];
+        for (int i = 0; i < script.length; ++i) {
+            script[i] = random.nextInt(9);
+        }
+        return (script);
+    } // end of script(int)
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+} // end of class MailboxBenchmark
@@ -0,0 +1,67 @@
+package com.salesforce.smc.benchmark;
+
+/**
+ * The owner class of the benchmark <code>Session</code> FSM. The actions do
+ * nothing more than bump counters, so the benchmark measures the generated
+ * dispatch code and not the application.
+ */
+public class Session {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public boolean accept(int n) {
+        return ((n & 1) == 0);
+    } // end of accept(int)
+
+    public void opened() {
+        ++_opened;
+    } // end of opened()
+
+    public void closed() {
+        ++_closed;
+    } // end of closed()
+
+    public void established() {
+        ++_established;
+    } // end of established()
+
+    public void released() {
+        ++_released;
+    } // end of released()
+
+    public void received(int n) {
+        _bytes += n;
+    } // end of received(int)
+
+    public void dropped(int n) {
+        ++_dropped;
+    } // end of dropped(int)
+
+    public void ignored() {
+        ++_ignored;
+    } // end of ignored()
+
+    /**
+     * Returns a checksum over all the counters so the JIT cannot eliminate
+     * the actions as dead code.
+     * 
+     * @return the checksum.
+     */
+    public long checksum() {
+        return (_opened + _closed + _established + _released + _bytes
+                + _dropped + _ignored);
+    } // end of checksum()
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private long _opened;
+    private long _closed;
+    private long _established;
+    private long _released;
+    private long _bytes;
+    private long _dropped;
+    private long _ignored;
+} // end of class Session
@@ -0,0 +1,473 @@
+package com.salesforce.smc.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Compares the <code>-style class</code>, <code>-style switch</code> and
+ * <code>-style table</code> Java code generated from the same
+ * <code>Session.sm</code> machine. Two numbers
+ * are reported per style:
+ * <ul>
+ * <li>transition throughput: nanoseconds per transition while repeatedly
+ * sending a session a fixed pseudo-random script of events, and</li>
+ * <li>class loading: the number of classes loaded, and the time taken, to
+ * construct the first context in a fresh class loader.</li>
+ * </ul>
+ * Run it after <code>mvn install</code> with:
+ * 
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.StyleBenchmark [rounds [style]]
+ * </pre>
+ * 
+ * When a style is given only that style's throughput is measured. The
+ * <code>metrics</code> style is the class style generated with
+ * <code>-metrics</code>, so comparing it with <code>class</code> shows the
+ * cost of the instrumentation. The <code>tracer</code> style is the class
+ * style generated with <code>-tracer</code>; run it with
+ * <code>-Dstatemap.trace=false</code> to measure it with the trace points
+ * compiled away.
+ * 
+ * This is a plain harness rather than a JMH benchmark since the build
+ * targets Java 6. The styles are measured in alternating trials after a
+ * warm up so that both are compiled by the JIT before timing starts.
+ */
+public class StyleBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+
+        // Load the shared runtime first so that only the generated classes
+        // are charged to each style.
+        Class.forName("statemap.FSMContext");
+        org.slf4j.LoggerFactory.getLogger(StyleBenchmark.class);
+
+        reportClassLoading("class",
+                           "com.salesforce.smc.benchmark.classstyle.SessionContext");
+        reportClassLoading("switch",
+                           "com.salesforce.smc.benchmark.switchstyle.SessionContext");
+        reportClassLoading("table",
+                           "com.salesforce.smc.benchmark.tablestyle.SessionContext");
+
+        Driver[] drivers = { new ClassStyle(), new SwitchStyle(),
+                new TableStyle(), new MetricsStyle(), new TracerStyle() };
+        if (args.length > 1) {
+            drivers = select(drivers, args[1]);
+        }
+        for (Driver driver : drivers) {
+            driver.run(rounds / 10);
+        }
+
+        long[] best = new long[drivers.length];
+        for (int trial = 0; trial < TRIALS; ++trial) {
+            for (int i = 0; i < drivers.length; ++i) {
+                long start = System.nanoTime();
+                drivers[i].run(rounds);
+                long elapsed = System.nanoTime() - start;
+                if (trial == 0 || elapsed < best[i]) {
+                    best[i] = elapsed;
+                }
+            }
+        }
+
+        for (int i = 0; i < drivers.length; ++i) {
+            System.out.printf("%-7s style: %6.2f ns/transition (checksum %d)%n",
+                              drivers[i].name(),
+                              (double) best[i]
+                                      / ((long) rounds * SCRIPT.length),
+                              drivers[i].checksum());
+        }
+    } // end of main(String[])
+
+    /**
+     * Returns the named style's driver only. Measuring one style per JVM
+     * keeps the other styles from polluting the shared runtime's profile.
+     */
+    private static Driver[] select(Driver[] drivers, String style) {
+        for (Driver driver : drivers) {
+            if (driver.name().equals(style)) {
+                return (new Driver[] { driver });
+            }
+        }
+        throw new IllegalArgumentException("unknown style " + style);
+    } // end of select(Driver[], String)
+
+    /**
+     * Loads the named context class in an isolated class loader, constructs
+     * and starts one instance and reports how many classes that pulled in.
+     */
+    private static void reportClassLoading(String style, String contextName)
+                                                                            throws Exception {
+        URL location = StyleBenchmark.class.getProtectionDomain()
+                                           .getCodeSource().getLocation();
+        String prefix = contextName.substring(0,
+                                              contextName.lastIndexOf('.') + 1);
+        CountingLoader loader = new CountingLoader(location, prefix);
+
+        long start = System.nanoTime();
+        Class<?> contextClass = loader.loadClass(contextName);
+        Constructor<?> ctor = contextClass.getConstructor(Session.class);
+        Object context = ctor.newInstance(new Session());
+        Method enter = contextClass.getMethod("enterStartState");
+        enter.invoke(context);
+        Method open = contextClass.getMethod("Open");
+        open.invoke(context);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-7s style: %d classes loaded in %.2f ms%n", style,
+                          loader.loaded(), elapsed / 1000000.0);
+    } // end of reportClassLoading(String, String)
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    /**
+     * Drives one generated style through the session lifecycle.
+     */
+    private static abstract class Driver {
+        public abstract String name();
+
+        public abstract void run(int rounds);
+
+        public abstract long checksum();
+    } // end of class Driver
+
+    private static final class ClassStyle extends Driver {
+        @Override
+        public String name() {
+            return ("class");
+        }
+
+        @Override
+        public void run(int rounds) {
+            com.salesforce.smc.benchmark.classstyle.SessionContext fsm = _fsm;
+            int[] script = SCRIPT;
+            for (int i = 0; i < rounds; ++i) {
+                for (int j = 0; j < script.length; ++j) {
+                    switch (script[j]) {
+                        case 0:
+                            fsm.Open();
+                            break;
+                        case 1:
+                            fsm.Connect();
+                            break;
+                        case 2:
+                            fsm.Syn();
+                            break;
+                        case 3:
+                            fsm.SynAck();
+                            break;
+                        case 4:
+                            fsm.Ack();
+                            break;
+                        case 5:
+                            fsm.Data(j);
+                            break;
+                        case 6:
+                            fsm.Close();
+                            break;
+                        case 7:
+                            fsm.Fin();
+                            break;
+                        default:
+                            fsm.Timeout();
+                            break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long checksum() {
+            return (_owner.checksum());
+        }
+
+        private final Session _owner = new Session();
+        private final com.salesforce.smc.benchmark.classstyle.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.classstyle.SessionContext(_owner);
+    } // end of class ClassStyle
+
+    private static final class MetricsStyle extends Driver {
+        @Override
+        public String name() {
+            return ("metrics");
+        }
+
+        @Override
+        public void run(int rounds) {
+            com.salesforce.smc.benchmark.metrics.SessionContext fsm = _fsm;
+            int[] script = SCRIPT;
+            for (int i = 0; i < rounds; ++i) {
+                for (int j = 0; j < script.length; ++j) {
+                    switch (script[j]) {
+                        case 0:
+                            fsm.Open();
+                            break;
+                        case 1:
+                            fsm.Connect();
+                            break;
+                        case 2:
+                            fsm.Syn();
+                            break;
+                        case 3:
+                            fsm.SynAck();
+                            break;
+                        case 4:
+                            fsm.Ack();
+                            break;
+                        case 5:
+                            fsm.Data(j);
+                            break;
+                        case 6:
+                            fsm.Close();
+                            break;
+                        case 7:
+                            fsm.Fin();
+                            break;
+                        default:
+                            fsm.Timeout();
+                            break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long checksum() {
+            return (_owner.checksum());
+        }
+
+        private final Session _owner = new Session();
+        private final com.salesforce.smc.benchmark.metrics.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.metrics.SessionContext(_owner);
+    } // end of class MetricsStyle
+
+    private static final class TracerStyle extends Driver {
+        @Override
+        public String name() {
+            return ("tracer");
+        }
+
+        @Override
+        public void run(int rounds) {
+            com.salesforce.smc.benchmark.tracer.SessionContext fsm = _fsm;
+            int[] script = SCRIPT;
+            for (int i = 0; i < rounds; ++i) {
+                for (int j = 0; j < script.length; ++j) {
+                    switch (script[j]) {
+                        case 0:
+                            fsm.Open();
+                            break;
+                        case 1:
+                            fsm.Connect();
+                            break;
+                        case 2:
+                            fsm.Syn();
+                            break;
+                        case 3:
+                            fsm.SynAck();
+                            break;
+                        case 4:
+                            fsm.Ack();
+                            break;
+                        case 5:
+                            fsm.Data(j);
+                            break;
+                        case 6:
+                            fsm.Close();
+                            break;
+                        case 7:
+                            fsm.Fin();
+                            break;
+                        default:
+                            fsm.Timeout();
+                            break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long checksum() {
+            return (_owner.checksum());
+        }
+
+        private final Session _owner = new Session();
+        private final com.salesforce.smc.benchmark.tracer.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.tracer.SessionContext(_owner);
+    } // end of class TracerStyle
+
+    private static final class SwitchStyle extends Driver {
+        @Override
+        public String name() {
+            return ("switch");
+        }
+
+        @Override
+        public void run(int rounds) {
+            com.salesforce.smc.benchmark.switchstyle.SessionContext fsm = _fsm;
+            int[] script = SCRIPT;
+            for (int i = 0; i < rounds; ++i) {
+                for (int j = 0; j < script.length; ++j) {
+                    switch (script[j]) {
+                        case 0:
+                            fsm.Open();
+                            break;
+                        case 1:
+                            fsm.Connect();
+                            break;
+                        case 2:
+                            fsm.Syn();
+                            break;
+                        case 3:
+                            fsm.SynAck();
+                            break;
+                        case 4:
+                            fsm.Ack();
+                            break;
+                        case 5:
+                            fsm.Data(j);
+                            break;
+                        case 6:
+                            fsm.Close();
+                            break;
+                        case 7:
+                            fsm.Fin();
+                            break;
+                        default:
+                            fsm.Timeout();
+                            break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long checksum() {
+            return (_owner.checksum());
+        }
+
+        private final Session _owner = new Session();
+        private final com.salesforce.smc.benchmark.switchstyle.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.switchstyle.SessionContext(_owner);
+    } // end of class SwitchStyle
+
+    private static final class TableStyle extends Driver {
+        @Override
+        public String name() {
+            return ("table");
+        }
+
+        @Override
+        public void run(int rounds) {
+            com.salesforce.smc.benchmark.tablestyle.SessionContext fsm = _fsm;
+            int[] script = SCRIPT;
+            for (int i = 0; i < rounds; ++i) {
+                for (int j = 0; j < script.length; ++j) {
+                    switch (script[j]) {
+                        case 0:
+                            fsm.Open();
+                            break;
+                        case 1:
+                            fsm.Connect();
+                            break;
+                        case 2:
+                            fsm.Syn();
+                            break;
+                        case 3:
+                            fsm.SynAck();
+                            break;
+                        case 4:
+                            fsm.Ack();
+                            break;
+                        case 5:
+                            fsm.Data(j);
+                            break;
+                        case 6:
+                            fsm.Close();
+                            break;
+                        case 7:
+                            fsm.Fin();
+                            break;
+                        default:
+                            fsm.Timeout();
+                            break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long checksum() {
+            return (_owner.checksum());
+        }
+
+        private final Session _owner = new Session();
+        private final com.salesforce.smc.benchmark.tablestyle.SessionContext _fsm =
+            new com.salesforce.smc.benchmark.tablestyle.SessionContext(_owner);
+    } // end of class TableStyle
+
+    /**
+     * Child-first class loader which defines the classes of one generated
+     * package itself and counts them.
+     */
+    private static final class CountingLoader extends URLClassLoader {
+        public CountingLoader(URL location, String prefix) {
+            super(new URL[] { location }, StyleBenchmark.class.getClassLoader());
+            _prefix = prefix;
+        }
+
+        public int loaded() {
+            return (_loaded);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                                                                               throws ClassNotFoundException {
+            if (name.startsWith(_prefix) == false) {
+                return (super.loadClass(name, resolve));
+            }
+
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                c = findClass(name);
+                ++_loaded;
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return (c);
+        }
+
+        private final String _prefix;
+        private int          _loaded;
+    } // end of class CountingLoader
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final int   TRIALS = 5;
+
+    /**
+     * The events sent in each round. The session's Default state accepts
+     * every event, so a pseudo-random script visits every state without
+     * undefined transitions and keeps the dispatch call sites polymorphic,
+     * as a fixed script would not.
+     */
+    private static final int[] SCRIPT = new int[1024];
+
+    static {
+        java.util.Random random = new java.util.Random(0x5eed);
+        for (int i = 0; i < SCRIPT.length; ++i) {
+            SCRIPT[i] = random.nextInt(9);
+        }
+    }
+} // end of class StyleBenchmark
@@ -0,0 +1,148 @@
+package com.salesforce.smc.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import statemap.TimerWheel;
+
+import com.salesforce.smc.benchmark.timeout.SessionContext;
+
+/**
+ * Measures the cost of scheduling and cancelling timeouts on a
+ * {@link TimerWheel}. A large number of timeouts with pseudo-random delays is
+ * scheduled, half of them are cancelled, and the rest are left to expire. The
+ * nanoseconds per schedule and cancel are reported along with the average and
+ * worst lateness of the timeouts that fired.
+ * <p>
+ * Then a population of <code>Session</code> contexts with <code>%timeout</code>
+ * clauses connect; half are answered, which cancels their timers on exit, and
+ * the rest time out and close.
+ * </p>
+ *
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.TimerBenchmark [timeouts [maxDelayMs [sessions]]]
+ * </pre>
+ */
+public class TimerBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) throws Exception {
+        int timeouts = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int maxDelay = (args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+        int sessions = (args.length > 2 ? Integer.parseInt(args[2]) : 100000);
+
+        TimerWheel wheel = new TimerWheel("TimerBenchmark");
+
+        // Warm up before timing.
+        run(wheel, timeouts / 10, maxDelay / 10, 1);
+        run(wheel, timeouts, maxDelay, 2);
+
+        wheel.shutdown();
+
+        connect(sessions);
+    } // end of main(String[])
+
+    /**
+     * Connects {@code sessions} sessions, answers every other one and waits for
+     * the rest to time out.
+     */
+    private static void connect(int sessions) throws InterruptedException {
+        SessionContext[] contexts = new SessionContext[sessions];
+        for (int i = 0; i < sessions; ++i) {
+            contexts[i] = new SessionContext(new Session());
+        }
+
+        TimerWheel wheel = TimerWheel.getShared();
+        long cancelled = wheel.getCancelledCount();
+        long begin = System.nanoTime();
+        for (int i = 0; i < sessions; ++i) {
+            SessionContext fsm = contexts[i];
+            synchronized (fsm) {
+                fsm.Connect();
+                if ((i & 1) == 1) {
+                    fsm.SynAck();
+                }
+            }
+        }
+        long connectNanos = System.nanoTime() - begin;
+
+        // The unanswered sessions time out after 50 ms.
+        int expected = sessions - sessions / 2;
+        int closed = 0;
+        long deadline = begin + TimeUnit.SECONDS.toNanos(10L);
+        while (closed < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+            closed = closed(contexts);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        System.out.printf("%d sessions: connect %.2f ns, %d timed out, %d timers cancelled, %d ms%n",
+                          sessions, (double) connectNanos / sessions, closed,
+                          wheel.getCancelledCount() - cancelled, elapsed / 1000000L);
+        if (closed != expected) {
+            throw new IllegalStateException(closed + " sessions closed");
+        }
+    } // end of connect(int)
+
+    private static int closed(SessionContext[] contexts) {
+        int retval = 0;
+        for (SessionContext fsm : contexts) {
+            synchronized (fsm) {
+                if (fsm.getState() == SessionContext.SessionMap.Closed) {
+                    ++retval;
+                }
+            }
+        }
+        return retval;
+    } // end of closed(SessionContext[])
+
+    private static void run(TimerWheel wheel, int timeouts, int maxDelay, long seed)
+        throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(timeouts - timeouts / 2);
+        final AtomicLong totalLate = new AtomicLong();
+        final AtomicLong maxLate = new AtomicLong();
+        TimerWheel.Timeout[] scheduled = new TimerWheel.Timeout[timeouts];
+        Random random = new Random(seed);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < timeouts; ++i) {
+            final long delay = 1 + random.nextInt(maxDelay);
+            final long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            scheduled[i] = wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    long late = System.nanoTime() - due;
+                    totalLate.addAndGet(late);
+                    for (long max = maxLate.get(); late > max; max = maxLate.get()) {
+                        if (maxLate.compareAndSet(max, late)) {
+                            break;
+                        }
+                    }
+                    fired.countDown();
+                }
+            }, delay);
+        }
+        long scheduleNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < timeouts; i += 2) {
+            scheduled[i].cancel();
+        }
+        long cancelNanos = System.nanoTime() - begin;
+
+        if (fired.await(maxDelay + 10000L, TimeUnit.MILLISECONDS) == false) {
+            throw new IllegalStateException(fired.getCount() + " timeouts did not fire");
+        }
+
+        long count = timeouts - timeouts / 2;
+        System.out.printf("%d timeouts: schedule %.2f ns, cancel %.2f ns, late avg %.2f ms, max %.2f ms%n",
+                          timeouts, (double) scheduleNanos / timeouts,
+                          (double) cancelNanos / (timeouts / 2 + timeouts % 2),
+                          totalLate.get() / 1e6 / count, maxLate.get() / 1e6);
+    } // end of run(TimerWheel, int, int, long)
+} // end of class TimerBenchmark
@@ -0,0 +1,100 @@
+package com.salesforce.smc.benchmark;
+
+import statemap.FSMContext;
+import statemap.TransitionUndefinedException;
+import statemap.UndefinedTransitionHandler;
+import statemap.UndefinedTransitionPolicy;
+
+import com.salesforce.smc.benchmark.undefined.SessionContext;
+
+/**
+ * Measures the cost of an undefined transition under each
+ * {@link UndefinedTransitionPolicy}. A closed session is repeatedly sent
+ * <code>Data</code>, which the <code>undefined</code> copy of
+ * <code>Session.sm</code> does not define in that state, and the
+ * nanoseconds per undefined transition are reported.
+ * 
+ * <pre>
+ * java -cp smc-benchmark/target/classes:smc-runtime/target/classes:slf4j-api.jar \
+ *     com.salesforce.smc.benchmark.UndefinedBenchmark [transitions]
+ * </pre>
+ */
+public class UndefinedBenchmark {
+    //---------------------------------------------------------------
+    // Member methods.
+    //
+
+    public static void main(String[] args) {
+        int transitions = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        UndefinedTransitionPolicy[] policies = UndefinedTransitionPolicy.values();
+
+        // Warm up every policy before timing.
+        for (UndefinedTransitionPolicy policy : policies) {
+            run(policy, transitions / 10);
+        }
+
+        for (UndefinedTransitionPolicy policy : policies) {
+            long best = Long.MAX_VALUE;
+            for (int trial = 0; trial < TRIALS; ++trial) {
+                best = Math.min(best, run(policy, transitions));
+            }
+            System.out.printf("%-10s %8.2f ns/undefined transition%n", policy,
+                              (double) best / transitions);
+        }
+    } // end of main(String[])
+
+    /**
+     * Sends {@code transitions} undefined transitions to a session with the
+     * given policy and returns the elapsed nanoseconds.
+     */
+    private static long run(UndefinedTransitionPolicy policy, int transitions) {
+        CountingSession owner = new CountingSession();
+        SessionContext fsm = new SessionContext(owner);
+        fsm.setUndefinedTransitionPolicy(policy);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < transitions; ++i) {
+            try {
+                fsm.Data(i);
+            } catch (TransitionUndefinedException e) {
+                // Expected under THROW and STACKLESS.
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        if (fsm.getUndefinedTransitionCount() != transitions) {
+            throw new IllegalStateException(policy + " counted "
+                                            + fsm.getUndefinedTransitionCount()
+                                            + " undefined transitions");
+        }
+        if (policy == UndefinedTransitionPolicy.CALLBACK && owner._calledBack != transitions) {
+            throw new IllegalStateException("owner called back " + owner._calledBack
+                                            + " times");
+        }
+        return elapsed;
+    } // end of run(UndefinedTransitionPolicy, int)
+
+    //---------------------------------------------------------------
+    // Inner classes.
+    //
+
+    /**
+     * A session which counts the undefined transitions it is called back
+     * for.
+     */
+    private static final class CountingSession extends Session implements
+            UndefinedTransitionHandler {
+        @Override
+        public void undefinedTransition(FSMContext context, int transitionId) {
+            ++_calledBack;
+        }
+
+        private long _calledBack;
+    } // end of class CountingSession
+
+    //---------------------------------------------------------------
+    // Member data.
+    //
+
+    private static final int TRIALS = 5;
+} // end of class UndefinedBenchmark
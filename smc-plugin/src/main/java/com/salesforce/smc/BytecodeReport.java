@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2011, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.smc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Goal which reports the bytecode size of every method of the compiled,
+ * SMC-generated classes. HotSpot only inlines a hot method if its bytecode
+ * is at most FreqInlineSize (325 bytes by default) and never compiles a
+ * method larger than 8000 bytes, so the report shows which transition
+ * methods stay inlinable. Methods other than static initializers which
+ * are over either limit are also logged as warnings.
+ * 
+ * @goal bytecode-report
+ * 
+ * @phase process-classes
+ */
+public class BytecodeReport extends AbstractMojo {
+
+    /**
+     * Compiled classes directory.
+     * 
+     * @parameter expression="${project.build.outputDirectory}"
+     * @required
+     */
+    private File         classesDirectory;
+
+    /**
+     * Fail the build if a generated method is larger than
+     * hugeMethodLimit.
+     * 
+     * @parameter
+     */
+    private boolean      failOnHugeMethod     = false;
+
+    /**
+     * Directory, relative to the project base directory, which is searched
+     * recursively for SMC-generated sources. The classes compiled from them
+     * are reported.
+     * 
+     * @parameter
+     */
+    private String       generatedDirectory   = "target/generated-sources";
+
+    /**
+     * HotSpot's limit on the bytecode size of a method it will compile
+     * (-XX:-DontCompileHugeMethods).
+     * 
+     * @parameter
+     */
+    private int          hugeMethodLimit      = 8000;
+
+    /**
+     * HotSpot's limit on the bytecode size of a hot method it will inline
+     * (-XX:FreqInlineSize).
+     * 
+     * @parameter
+     */
+    private int          inlineLimit          = 325;
+
+    /**
+     * Project instance.
+     * 
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * Report file, relative to the project base directory.
+     * 
+     * @parameter
+     */
+    private String       reportFile           = "target/smc-bytecode-report.txt";
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File sourceDir = new File(project.getBasedir(), generatedDirectory);
+        List<String> classNames = new ArrayList<String>();
+        File report = new File(project.getBasedir(), reportFile);
+        report.getParentFile().mkdirs();
+
+        int notInlinable = 0;
+        int huge = 0;
+        try {
+            findGeneratedClasses(sourceDir, classNames);
+            PrintWriter out = new PrintWriter(new FileWriter(report));
+            try {
+                out.printf("# bytecode bytes, limit exceeded, method (inline limit %d, huge method limit %d)%n",
+                           inlineLimit, hugeMethodLimit);
+                for (String className : classNames) {
+                    for (File classFile : classFiles(className)) {
+                        String name = classFile.getName();
+                        name = className.substring(0, className.lastIndexOf('/') + 1).replace('/', '.')
+                               + name.substring(0, name.length() - ".class".length());
+                        for (Map.Entry<String, Integer> method : MethodSizes.read(classFile).entrySet()) {
+                            int size = method.getValue();
+                            String limit = "";
+                            if (method.getKey().startsWith("<clinit>")) {
+                                // Static initializers run once.
+                            } else if (size > hugeMethodLimit) {
+                                limit = "huge";
+                                ++huge;
+                                getLog().warn(String.format("%s.%s is %d bytes: too large to compile",
+                                                            name, method.getKey(), size));
+                            } else if (size > inlineLimit) {
+                                limit = "inline";
+                                ++notInlinable;
+                                getLog().warn(String.format("%s.%s is %d bytes: too large to inline",
+                                                            name, method.getKey(), size));
+                            }
+                            out.printf("%6d %-6s %s.%s%n", size, limit, name, method.getKey());
+                        }
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + report, e);
+        }
+
+        getLog().info(String.format("%d generated classes: %d methods too large to inline, %d too large to compile; see %s",
+                                    classNames.size(), notInlinable, huge, report));
+        if (huge > 0 && failOnHugeMethod) {
+            throw new MojoFailureException(huge + " generated methods exceed " + hugeMethodLimit + " bytes");
+        }
+    }
+
+    /**
+     * Adds the binary name, with '/' separators, of each class generated in
+     * the directory tree.
+     */
+    private void findGeneratedClasses(File dir, List<String> classNames) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                findGeneratedClasses(file, classNames);
+            } else if (name.endsWith(".java")) {
+                String className = name.substring(0, name.length() - ".java".length());
+                String packageName = packageOf(file);
+                if (packageName.length() > 0) {
+                    className = packageName.replace('.', '/') + "/" + className;
+                }
+                classNames.add(className);
+            }
+        }
+    }
+
+    /**
+     * Returns the package declared by the source file, or the empty string
+     * for the default package.
+     */
+    private String packageOf(File source) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(source));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher matcher = PACKAGE.matcher(line);
+                if (matcher.matches()) {
+                    return matcher.group(1);
+                }
+            }
+            return "";
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the class file of the top level class and those of its nested
+     * classes.
+     */
+    private List<File> classFiles(String className) {
+        List<File> classFiles = new ArrayList<File>();
+        File topLevel = new File(classesDirectory, className + ".class");
+        File[] files = topLevel.getParentFile().listFiles();
+        if (files == null) {
+            return classFiles;
+        }
+        Arrays.sort(files);
+        String nestedPrefix = topLevel.getName().replace(".class", "$");
+        for (File file : files) {
+            if (file.equals(topLevel)
+                || (file.getName().startsWith(nestedPrefix) && file.getName().endsWith(".class"))) {
+                classFiles.add(file);
+            }
+        }
+        return classFiles;
+    }
+
+    /**
+     * @param classesDirectory
+     *            the classesDirectory to set
+     */
+    public void setClassesDirectory(File classesDirectory) {
+        this.classesDirectory = classesDirectory;
+    }
+
+    /**
+     * @param failOnHugeMethod
+     *            the failOnHugeMethod to set
+     */
+    public void setFailOnHugeMethod(boolean failOnHugeMethod) {
+        this.failOnHugeMethod = failOnHugeMethod;
+    }
+
+    /**
+     * @param generatedDirectory
+     *            the generatedDirectory to set
+     */
+    public void setGeneratedDirectory(String generatedDirectory) {
+        this.generatedDirectory = generatedDirectory;
+    }
+
+    /**
+     * @param hugeMethodLimit
+     *            the hugeMethodLimit to set
+     */
+    public void setHugeMethodLimit(int hugeMethodLimit) {
+        this.hugeMethodLimit = hugeMethodLimit;
+    }
+
+    /**
+     * @param inlineLimit
+     *            the inlineLimit to set
+     */
+    public void setInlineLimit(int inlineLimit) {
+        this.inlineLimit = inlineLimit;
+    }
+
+    /**
+     * @param project
+     *            the project to set
+     */
+    public void setProject(MavenProject project) {
+        this.project = project;
+    }
+
+    /**
+     * @param reportFile
+     *            the reportFile to set
+     */
+    public void setReportFile(String reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    private static final Pattern PACKAGE = Pattern.compile("\\s*package\\s+([\\w.]+)\\s*;.*");
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2011, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.smc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A content-addressed store of generated files, shared between builds and,
+ * through a mounted file system, between machines. An entry is keyed by
+ * everything the generated files depend on: the .sm file's name and contents,
+ * the SMC options and the generator. A hit restores the files without parsing
+ * the .sm file.
+ * <p>
+ * Generated files are stored relative to named root directories, such as the
+ * generated source and documentation directories, so an entry may be restored
+ * into a different checkout. Each entry is written to a temporary directory
+ * and renamed into place, so concurrent builds never see a partial entry.
+ * </p>
+ * 
+ * @author hhildebrand
+ * 
+ */
+public final class GenerationCache {
+    private final File   directory;
+    private final String generator;
+    private final String options;
+    private int          hits;
+    private int          misses;
+    private int          stored;
+
+    /**
+     * The options and generator must not name anything specific to this
+     * checkout, so that other checkouts share the entries.
+     * 
+     * @param directory
+     *            the cache directory
+     * @param options
+     *            the SMC options, without the output directories
+     * @param generator
+     *            the hash of the generator's classes and resources
+     */
+    public GenerationCache(File directory, String options, String generator) {
+        this.directory = directory;
+        this.options = options;
+        this.generator = generator;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int getStored() {
+        return stored;
+    }
+
+    /**
+     * Returns the key of a .sm file. Only the file's name is used, not its
+     * directory.
+     * 
+     * @param source
+     *            the .sm file
+     * @param hash
+     *            the hash of its contents
+     * @return the cache key
+     */
+    public String key(File source, String hash) {
+        return GenerationState.hash(options + '\n' + generator + '\n'
+                                    + source.getName() + '\n' + hash);
+    }
+
+    /**
+     * Restores the files cached under the key into the root directories.
+     * Files which already hold the cached contents are not rewritten.
+     * 
+     * @param key
+     *            the cache key
+     * @param roots
+     *            the directories the files are restored into, by name
+     * @return the files restored, or null on a miss
+     * @throws IOException
+     *             if the entry cannot be read or a file cannot be written
+     */
+    public List<String> restore(String key, Map<String, File> roots) throws IOException {
+        File entry = entry(key);
+        List<String> restored = new ArrayList<String>();
+        if (!entry.isDirectory()) {
+            misses++;
+            return null;
+        }
+        File[] rootEntries = entry.listFiles();
+        if (rootEntries == null) {
+            misses++;
+            return null;
+        }
+        for (File rootEntry : rootEntries) {
+            File root = roots.get(rootEntry.getName());
+            if (root == null) {
+                misses++;
+                return null;
+            }
+        }
+        for (File rootEntry : rootEntries) {
+            restore(rootEntry, roots.get(rootEntry.getName()), restored);
+        }
+        hits++;
+        return restored;
+    }
+
+    /**
+     * Stores the files generated from a .sm file under the key. Nothing is
+     * stored if a file lies outside the root directories or the key is
+     * already present.
+     * 
+     * @param key
+     *            the cache key
+     * @param outputs
+     *            the files generated
+     * @param roots
+     *            the directories the files are stored relative to, by name
+     * @throws IOException
+     *             if a file cannot be copied into the cache
+     */
+    public void store(String key, List<String> outputs, Map<String, File> roots) throws IOException {
+        File entry = entry(key);
+        if (entry.exists()) {
+            return;
+        }
+
+        List<String> relative = new ArrayList<String>();
+        for (String output : outputs) {
+            String path = relativize(new File(output), roots);
+            if (path == null) {
+                return;
+            }
+            relative.add(path);
+        }
+
+        entry.getParentFile().mkdirs();
+        File temp = File.createTempFile(key, ".tmp", entry.getParentFile());
+        temp.delete();
+        try {
+            for (int i = 0; i < outputs.size(); i++) {
+                File copy = new File(temp, relative.get(i));
+                copy.getParentFile().mkdirs();
+                write(copy, read(new File(outputs.get(i))));
+            }
+            // Another build may have stored the same entry meanwhile.
+            if (temp.renameTo(entry)) {
+                stored++;
+            }
+        } finally {
+            delete(temp);
+        }
+    }
+
+    private File entry(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    // Returns the file's path under the name of the innermost root containing
+    // it, or null if none does.
+    private static String relativize(File file, Map<String, File> roots) throws IOException {
+        String path = file.getCanonicalPath();
+        String retval = null;
+        int longest = -1;
+        for (Map.Entry<String, File> root : roots.entrySet()) {
+            String prefix = root.getValue().getCanonicalPath() + File.separator;
+            if (path.startsWith(prefix) && prefix.length() > longest) {
+                retval = root.getKey() + File.separator
+                         + path.substring(prefix.length());
+                longest = prefix.length();
+            }
+        }
+        return retval;
+    }
+
+    private static void restore(File from, File to, List<String> restored) throws IOException {
+        File[] files = from.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            File target = new File(to, file.getName());
+            if (file.isDirectory()) {
+                restore(file, target, restored);
+            } else {
+                byte[] contents = read(file);
+                if (!target.exists() || target.length() != contents.length
+                    || !Arrays.equals(read(target), contents)) {
+                    target.getParentFile().mkdirs();
+                    File temp = File.createTempFile(target.getName(), ".tmp",
+                                                    target.getParentFile());
+                    write(temp, contents);
+                    if (!temp.renameTo(target)
+                        && (!target.delete() || !temp.renameTo(target))) {
+                        temp.delete();
+                        throw new IOException("Unable to replace " + target);
+                    }
+                }
+                restored.add(target.getPath());
+            }
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, byte[] contents) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
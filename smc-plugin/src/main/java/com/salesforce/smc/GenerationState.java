@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2011, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.smc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The inputs and outputs of the last generation, kept in a properties file so
+ * that only the .sm files which changed since are compiled again. Each .sm
+ * file is recorded with the hash of its contents and the files generated from
+ * it. The configuration hash covers the SMC options and the generator; when it
+ * changes, every .sm file is out of date.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public final class GenerationState {
+    /**
+     * Returns the SHA-1 hash of the file's contents as a hex string.
+     * 
+     * @param file
+     *            the file
+     * @return the hash
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest = sha1();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Returns the SHA-1 hash of the UTF-8 encoded text as a hex string.
+     * 
+     * @param text
+     *            the text
+     * @return the hash
+     */
+    public static String hash(String text) {
+        try {
+            return hex(sha1().digest(text.getBytes("UTF-8")));
+        } catch (IOException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+
+    private final String              config;
+    private final File                file;
+    private final Properties          next     = new Properties();
+    private final Properties          previous = new Properties();
+
+    /**
+     * Reads the state left by the last generation, if any.
+     * 
+     * @param file
+     *            the state file
+     * @param config
+     *            the hash of the current configuration
+     * @throws IOException
+     *             if the state file exists but cannot be read
+     */
+    public GenerationState(File file, String config) throws IOException {
+        this.file = file;
+        this.config = config;
+        if (file.exists()) {
+            InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                previous.load(in);
+            } catch (IllegalArgumentException e) {
+                // A corrupt state file regenerates everything.
+                previous.clear();
+            } finally {
+                in.close();
+            }
+        }
+        next.setProperty(CONFIG, config);
+    }
+
+    /**
+     * Deletes the files generated last time which were not generated this
+     * time, such as the outputs of removed .sm files or of a target language
+     * no longer configured. The outputs of the given .sm files are kept.
+     * 
+     * @param failed
+     *            the .sm files which failed to compile
+     * @return the number of files deleted
+     */
+    public int deleteStaleOutputs(Collection<String> failed) {
+        Set<String> keep = new HashSet<String>();
+        for (String name : next.stringPropertyNames()) {
+            if (name.startsWith(OUTPUT)) {
+                keep.addAll(split(next.getProperty(name)));
+            }
+        }
+        for (String source : failed) {
+            for (String output : outputs(source)) {
+                keep.add(canonical(output));
+            }
+        }
+
+        int deleted = 0;
+        for (String name : previous.stringPropertyNames()) {
+            if (name.startsWith(OUTPUT)) {
+                for (String output : split(previous.getProperty(name))) {
+                    if (!keep.contains(canonical(output))
+                        && new File(output).delete()) {
+                        deleted++;
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Records that the .sm file was compiled.
+     * 
+     * @param source
+     *            the .sm file
+     * @param hash
+     *            the hash of its contents
+     * @param outputs
+     *            the files generated from it
+     */
+    public void generated(String source, String hash, List<String> outputs) {
+        List<String> paths = new ArrayList<String>(outputs.size());
+        for (String output : outputs) {
+            paths.add(canonical(output));
+        }
+        next.setProperty(SOURCE + source, hash);
+        next.setProperty(OUTPUT + source, join(paths));
+    }
+
+    /**
+     * Answers whether the .sm file is unchanged since the last generation,
+     * with the same configuration, and all of its outputs still exist. If so
+     * it is recorded as generated again.
+     * 
+     * @param source
+     *            the .sm file
+     * @param hash
+     *            the hash of its contents
+     * @return true if the .sm file need not be compiled
+     */
+    public boolean isUpToDate(String source, String hash) {
+        if (!config.equals(previous.getProperty(CONFIG))
+            || !hash.equals(previous.getProperty(SOURCE + source))) {
+            return false;
+        }
+        List<String> outputs = outputs(source);
+        for (String output : outputs) {
+            if (!new File(output).exists()) {
+                return false;
+            }
+        }
+        generated(source, hash, outputs);
+        return true;
+    }
+
+    /**
+     * Writes the state of this generation to the state file.
+     * 
+     * @throws IOException
+     *             if the state file cannot be written
+     */
+    public void save() throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            next.store(out, "SMC generation state");
+        } finally {
+            out.close();
+        }
+    }
+
+    // The same file may be named by different paths, such as one written by
+    // SMC and one restored from a GenerationCache.
+    private static String canonical(String path) {
+        try {
+            return new File(path).getCanonicalPath();
+        } catch (IOException e) {
+            return new File(path).getAbsolutePath();
+        }
+    }
+
+    private List<String> outputs(String source) {
+        return split(previous.getProperty(OUTPUT + source));
+    }
+
+    private static String join(List<String> outputs) {
+        StringBuilder joined = new StringBuilder();
+        for (String output : outputs) {
+            if (joined.length() > 0) {
+                joined.append(File.pathSeparatorChar);
+            }
+            joined.append(output);
+        }
+        return joined.toString();
+    }
+
+    private static List<String> split(String joined) {
+        List<String> outputs = new ArrayList<String>();
+        if (joined != null && joined.length() > 0) {
+            for (String output : joined.split(File.pathSeparator)) {
+                outputs.add(output);
+            }
+        }
+        return outputs;
+    }
+
+    private static final String CONFIG = "config";
+    private static final String OUTPUT = "output.";
+    private static final String SOURCE = "source.";
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2011, salesforce.com, inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided
+ * that the following conditions are met:
+ *
+ *    Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *    following disclaimer.
+ *
+ *    Redistributions in binary form must reproduce the above copyright notice, this list of conditions and
+ *    the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *    Neither the name of salesforce.com, inc. nor the names of its contributors may be used to endorse or
+ *    promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.smc;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the bytecode size of each method in a class file. Only the parts of
+ * the class file format needed to find each method's <code>Code</code>
+ * attribute are decoded, so this works for any class file version.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public final class MethodSizes {
+    /**
+     * Returns the code length, in bytes, of each method with a body in the
+     * class file, keyed by the method name followed by its descriptor, in the
+     * order the methods are declared.
+     * 
+     * @param classFile
+     *            the class file
+     * @return the method sizes
+     * @throws IOException
+     *             if the file cannot be read or is not a class file
+     */
+    public static Map<String, Integer> read(File classFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(classFile));
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the code length, in bytes, of each method with a body in the
+     * class file read from the stream.
+     * 
+     * @param classFile
+     *            the class file contents
+     * @return the method sizes, keyed by name and descriptor
+     * @throws IOException
+     *             if the stream cannot be read or is not a class file
+     */
+    public static Map<String, Integer> read(InputStream classFile) throws IOException {
+        DataInputStream in = new DataInputStream(classFile);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        String[] utf8 = readConstantPool(in);
+
+        in.readUnsignedShort(); // access flags
+        in.readUnsignedShort(); // this class
+        in.readUnsignedShort(); // super class
+        skipFully(in, 2 * in.readUnsignedShort()); // interfaces
+
+        int fields = in.readUnsignedShort();
+        for (int i = 0; i < fields; ++i) {
+            skipFully(in, 6);
+            skipAttributes(in);
+        }
+
+        Map<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+        int methods = in.readUnsignedShort();
+        for (int i = 0; i < methods; ++i) {
+            in.readUnsignedShort(); // access flags
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; ++j) {
+                String attribute = utf8[in.readUnsignedShort()];
+                int length = in.readInt();
+                if ("Code".equals(attribute)) {
+                    in.readUnsignedShort(); // max stack
+                    in.readUnsignedShort(); // max locals
+                    int codeLength = in.readInt();
+                    sizes.put(name + descriptor, codeLength);
+                    skipFully(in, length - 8);
+                } else {
+                    skipFully(in, length);
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Reads the constant pool, returning the UTF-8 entries by index. Other
+     * entries are skipped and left <code>null</code>.
+     */
+    private static String[] readConstantPool(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        for (int i = 1; i < count; ++i) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // Eight byte constants take two entries.
+                    skipFully(in, 8);
+                    ++i;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skipFully(in, 3);
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skipFully(in, 2);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELD_REF:
+                case CONSTANT_METHOD_REF:
+                case CONSTANT_INTERFACE_METHOD_REF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skipFully(in, 4);
+                    break;
+                default:
+                    throw new IOException("unknown constant pool tag " + tag);
+            }
+        }
+        return utf8;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; ++i) {
+            in.readUnsignedShort(); // name
+            skipFully(in, in.readInt());
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int n) throws IOException {
+        while (n > 0) {
+            int skipped = in.skipBytes(n);
+            if (skipped <= 0) {
+                throw new IOException("truncated class file");
+            }
+            n -= skipped;
+        }
+    }
+
+    private MethodSizes() {
+    }
+
+    private static final int MAGIC                         = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8                 = 1;
+    private static final int CONSTANT_INTEGER              = 3;
+    private static final int CONSTANT_FLOAT                = 4;
+    private static final int CONSTANT_LONG                 = 5;
+    private static final int CONSTANT_DOUBLE               = 6;
+    private static final int CONSTANT_CLASS                = 7;
+    private static final int CONSTANT_STRING               = 8;
+    private static final int CONSTANT_FIELD_REF            = 9;
+    private static final int CONSTANT_METHOD_REF           = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE        = 12;
+    private static final int CONSTANT_METHOD_HANDLE        = 15;
+    private static final int CONSTANT_METHOD_TYPE          = 16;
+    private static final int CONSTANT_DYNAMIC              = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC       = 18;
+    private static final int CONSTANT_MODULE               = 19;
+    private static final int CONSTANT_PACKAGE              = 20;
+}
@@ -27,7 +27,21 @@ package com.salesforce.smc;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import net.sf.smc.Smc;
 
@@ -43,9 +57,25 @@ import org.apache.maven.project.MavenProject;
  * @goal generate
  * 
  * @phase generate-sources
+ * 
+ * @threadSafe
  */
 public class Plugin extends AbstractMojo {
 
+    // The code generator's classes and resources.
+    private static final String GENERATOR_PATH = "net/sf/smc/";
+
+    /**
+     * Cache directory, shared between builds and, on a mounted file system,
+     * between machines. Generated sources and documentation are stored under
+     * the hash of the .sm file's name and contents, the options and the
+     * generator, and restored without running SMC. Relative to the project
+     * base directory. No cache is used by default.
+     * 
+     * @parameter expression="${smc.cacheDirectory}"
+     */
+    private String       cacheDirectory;
+
     /**
      * DebugLevel. 0, 1: Adds debug output messages to the generated code. 0
      * produces output messages which signal when the FSM has exited a state,
@@ -118,7 +148,8 @@ public class Plugin extends AbstractMojo {
 
     /**
      * Serialization. Generate unique integer IDs for each state. These IDs can
-     * be used when persisting an FSM.
+     * be used when persisting an FSM. Java contexts also get writeTo/readFrom
+     * ByteBuffer methods, used by statemap.SnapshotFile.
      * 
      * @parameter
      */
@@ -131,6 +162,28 @@ public class Plugin extends AbstractMojo {
      */
     private String       smDirectory     = "src/main/sm";
 
+    /**
+     * Java code generation style. May be used only with the java
+     * target language. Either "class", which generates a class
+     * per state and dispatches transitions through the current
+     * state object, or "switch", which generates integer state
+     * identifiers and dispatches each transition with a switch
+     * on the current state, or "table", which looks up the next
+     * state and action of flat transitions in generated tables.
+     * 
+     * @parameter
+     */
+    private String       style           = "class";
+
+    /**
+     * Package the Java code is generated into, replacing the %package of
+     * the .sm files. Lets several executions generate the same .sm file
+     * into different packages.
+     * 
+     * @parameter
+     */
+    private String       packageName;
+
     /**
      * May be used only with the java, groovy, scala, vb and csharp target
      * languages. Causes SMC to:
@@ -151,6 +204,53 @@ public class Plugin extends AbstractMojo {
      */
     private boolean      sync            = false;
 
+    /**
+     * Generate calls to the context's statemap.FSMTracer, guarded by the
+     * static final statemap.FSMContext.TRACE, instead of trace logging.
+     * 
+     * @parameter
+     */
+    private boolean      tracer          = false;
+
+    /**
+     * What the generated context initially does when a transition is not
+     * defined in the current state: "throw" a new
+     * statemap.TransitionUndefinedException, throw a preallocated
+     * "stackless" one, "callback" the owner if it implements
+     * statemap.UndefinedTransitionHandler, or count and "ignore" it. The
+     * policy may be changed at runtime. Java only.
+     * 
+     * @parameter
+     */
+    private String       undefinedPolicy = "throw";
+
+    /**
+     * Generate code feeding per-transition and per-state metrics to
+     * statemap.FSMMetrics, which exports them through JMX.
+     * 
+     * @parameter
+     */
+    private boolean      metrics         = false;
+
+    /**
+     * Generate a postXxx method for each transition which queues the
+     * transition on the context's statemap.EventMailbox and returns without
+     * waiting. Java only.
+     * 
+     * @parameter
+     */
+    private boolean      async           = false;
+
+    /**
+     * Apply transitions through a statemap.TransitionCombiner instead of
+     * synchronizing on the context. Threads publish transition requests and
+     * whichever thread holds the combiner role applies them in order. Java
+     * only, and not with sync.
+     * 
+     * @parameter
+     */
+    private boolean      combine         = false;
+
     /**
      * Produce HTML table output.
      * 
@@ -159,7 +259,9 @@ public class Plugin extends AbstractMojo {
     private boolean      table           = false;
 
     /**
-     * Target language
+     * Target language, or a comma separated list of target languages. Each
+     * .sm file is compiled once per target language. The graph and table are
+     * generated along with the first.
      * 
      * @parameter
      */
@@ -172,6 +274,26 @@ public class Plugin extends AbstractMojo {
      */
     private String       targetDirectory = "target/generated-sources/sm";
 
+    /**
+     * File recording the .sm files compiled and the files generated from
+     * them, relative to the project base directory. Only the .sm files which
+     * changed since the last build are compiled again, and files generated
+     * from removed .sm files are deleted. Changing any option regenerates
+     * everything. Defaults to a file under target/smc named after the
+     * smDirectory and targetDirectory.
+     * 
+     * @parameter
+     */
+    private String       stateFile;
+
+    /**
+     * Number of threads compiling the .sm files. Defaults to one per available
+     * processor.
+     * 
+     * @parameter
+     */
+    private int          threads         = 0;
+
     /**
      * Verbose output.
      * 
@@ -185,9 +307,6 @@ public class Plugin extends AbstractMojo {
             docDirectory = targetDirectory;
         }
 
-        ArrayList<String> commonArgs = new ArrayList<String>();
-
-        commonArgs.add("-return");
         File targetDir = new File(project.getBasedir(), targetDirectory);
         targetDir.mkdirs();
 
@@ -206,11 +325,13 @@ public class Plugin extends AbstractMojo {
         if (list == null) {
             list = new File[0];
         }
+        Arrays.sort(list);
         for (File source : list) {
             sources.add(source.getAbsolutePath());
         }
 
-        ArrayList<String> args = new ArrayList<String>(commonArgs);
+        ArrayList<String> args = new ArrayList<String>();
+        args.add("-return");
 
         switch (debugLevel) {
             case 0:
@@ -233,10 +354,41 @@ public class Plugin extends AbstractMojo {
             args.add("-sync");
         }
 
+        if (tracer) {
+            args.add("-tracer");
+        }
+
+        if (metrics) {
+            args.add("-metrics");
+        }
+
+        if (undefinedPolicy != null && !"throw".equals(undefinedPolicy)) {
+            args.add("-undefined");
+            args.add(undefinedPolicy);
+        }
+
+        if (async) {
+            args.add("-async");
+        }
+
+        if (combine) {
+            args.add("-combine");
+        }
+
         if (serial) {
             args.add("-serial");
         }
 
+        if (style != null && !"class".equals(style)) {
+            args.add("-style");
+            args.add(style);
+        }
+
+        if (packageName != null) {
+            args.add("-package");
+            args.add(packageName);
+        }
+
         if (reflection) {
             args.add("-reflection");
             if (generic) {
@@ -246,20 +398,268 @@ public class Plugin extends AbstractMojo {
 
         args.add("-d");
         args.add(targetDir.getAbsolutePath());
-        args.add("-" + target);
-        args.addAll(sources);
 
-        // generate FSM source
-        Smc.main(args.toArray(new String[0]));
+        List<List<String>> targetArgs = new ArrayList<List<String>>();
+        for (String language : target.split(",")) {
+            ArrayList<String> languageArgs = new ArrayList<String>(args);
+            languageArgs.add("-" + language.trim());
+
+            // The graph and table are generated from the same parsed
+            // model as the first target's source.
+            if (targetArgs.isEmpty()) {
+                addDocArgs(languageArgs);
+            }
+            targetArgs.add(languageArgs);
+        }
+
+        // Only the .sm files which changed since the last build with the
+        // same options and generator are compiled.
+        File state = new File(project.getBasedir(),
+                              stateFile != null ? stateFile
+                                               : defaultStateFile());
+        String generator = generatorVersion();
+        GenerationState generation;
+        Map<String, String> stale = new LinkedHashMap<String, String>();
+        try {
+            generation = new GenerationState(state,
+                                             GenerationState.hash(targetArgs
+                                                                  + generator));
+            for (String source : sources) {
+                String hash = GenerationState.hash(new File(source));
+                if (!generation.isUpToDate(source, hash)) {
+                    stale.put(source, hash);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to check " + srcDir
+                                             + " against " + state, e);
+        }
+        getLog().info(stale.size() + " of " + sources.size()
+                              + " state machines out of date in " + srcDir);
+
+        // Generated files are cached relative to these directories, so they
+        // may be restored into another checkout.
+        Map<String, File> roots = new LinkedHashMap<String, File>();
+        roots.put("sources", targetDir);
+        roots.put("docs", new File(project.getBasedir(), docDirectory));
+        GenerationCache cache = null;
+        if (cacheDirectory != null) {
+            File cacheDir = new File(cacheDirectory);
+            if (!cacheDir.isAbsolute()) {
+                cacheDir = new File(project.getBasedir(), cacheDirectory);
+            }
+            cache = new GenerationCache(cacheDir,
+                                        withoutDirectories(targetArgs),
+                                        generator);
+        }
+
+        List<String> failed = new ArrayList<String>(stale.keySet());
+        Map<String, String> misses = new LinkedHashMap<String, String>(stale);
+        if (cache != null) {
+            for (Map.Entry<String, String> entry : stale.entrySet()) {
+                String source = entry.getKey();
+                List<String> restored = null;
+                try {
+                    restored = cache.restore(cache.key(new File(source),
+                                                       entry.getValue()), roots);
+                } catch (IOException e) {
+                    getLog().warn("Unable to restore " + source + " from "
+                                          + cache.getDirectory() + ": " + e);
+                }
+                if (restored != null) {
+                    generation.generated(source, entry.getValue(), restored);
+                    failed.remove(source);
+                    misses.remove(source);
+                }
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<String, List<String>> outputs = new HashMap<String, List<String>>();
+            compile(targetArgs, misses.keySet(), srcDir, outputs);
+            for (Map.Entry<String, List<String>> entry : outputs.entrySet()) {
+                String source = entry.getKey();
+                generation.generated(source, misses.get(source),
+                                     entry.getValue());
+                failed.remove(source);
+                if (cache != null) {
+                    try {
+                        cache.store(cache.key(new File(source),
+                                              misses.get(source)),
+                                    entry.getValue(), roots);
+                    } catch (IOException e) {
+                        getLog().warn("Unable to store " + source + " in "
+                                              + cache.getDirectory() + ": "
+                                              + e);
+                    }
+                }
+            }
+        }
+        if (cache != null) {
+            getLog().info("SMC cache " + cache.getDirectory() + ": "
+                                  + cache.getHits() + " hits, "
+                                  + cache.getMisses() + " misses, "
+                                  + cache.getStored() + " stored");
+        }
+
+        int deleted = generation.deleteStaleOutputs(failed);
+        if (deleted > 0) {
+            getLog().info("Deleted " + deleted + " stale generated files");
+        }
+        try {
+            generation.save();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + state, e);
+        }
+
+        if (!failed.isEmpty()) {
+            throw new MojoExecutionException("SMC failed to compile "
+                                             + failed.size() + " of "
+                                             + stale.size()
+                                             + " state machines in " + srcDir
+                                             + "; see the errors above");
+        }
+    }
+
+    /**
+     * Compiles the sources for each target language in parallel, putting the
+     * files generated from each source which compiled into outputs.
+     */
+    private void compile(List<List<String>> targetArgs, Collection<String> sources,
+                         File srcDir, Map<String, List<String>> outputs) throws MojoExecutionException {
+        List<Smc> compilers = new ArrayList<Smc>();
+        for (List<String> languageArgs : targetArgs) {
+            ArrayList<String> smcArgs = new ArrayList<String>(languageArgs);
+            smcArgs.addAll(sources);
+            try {
+                compilers.add(new Smc(smcArgs.toArray(new String[0])));
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("Invalid SMC options "
+                                                 + languageArgs + ": "
+                                                 + e.getMessage());
+            }
+        }
+
+        // generate FSM source, graphs and tables
+        int files = compilers.size() * sources.size();
+        int nThreads = (threads > 0 ? threads
+                                   : Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nThreads,
+                                                                         files));
+        try {
+            Smc.compile(compilers, executor, System.out, System.err, outputs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted compiling " + srcDir,
+                                             e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // The arguments without the output directories, which differ between
+    // checkouts.
+    private static String withoutDirectories(List<List<String>> targetArgs) {
+        StringBuilder retval = new StringBuilder();
+        for (List<String> languageArgs : targetArgs) {
+            for (int i = 0; i < languageArgs.size(); i++) {
+                String arg = languageArgs.get(i);
+                retval.append(arg).append(' ');
+                if ("-d".equals(arg) || "-docd".equals(arg)) {
+                    i++;
+                }
+            }
+            retval.append('\n');
+        }
+        return retval.toString();
+    }
+
+    // Names the state file after the .sm and target directories, so
+    // executions compiling different directories, or the same directory
+    // into different targets, do not share it.
+    private String defaultStateFile() {
+        return "target/smc/"
+               + (smDirectory + "_" + targetDirectory).replaceAll("[^A-Za-z0-9]+", "_")
+               + ".properties";
+    }
+
+    // Identifies the code generator by the contents of its classes and
+    // resources, so that a changed generator regenerates everything but a
+    // rebuilt or repackaged one does not.
+    private static String generatorVersion() throws MojoExecutionException {
+        CodeSource source = Smc.class.getProtectionDomain().getCodeSource();
+        try {
+            if (source == null) {
+                throw new IOException("no code source for " + Smc.class);
+            }
+            return generatorVersion(new File(source.getLocation().toURI()));
+        } catch (Exception e) {
+            throw new MojoExecutionException("Unable to identify the code generator",
+                                             e);
+        }
+    }
+
+    /**
+     * Returns the hash of every class and resource under net/sf/smc/ in the
+     * jar or class directory. Jar entries are identified by the CRCs in the
+     * jar's directory, which are read without inflating the entries, and
+     * files by their SHA-1. Only the paths below the jar or directory are
+     * hashed, so copies at different locations have the same version.
+     */
+    static String generatorVersion(File location) throws IOException {
+        StringBuilder version = new StringBuilder();
+        if (location.isDirectory()) {
+            describeFiles(new File(location, GENERATOR_PATH), GENERATOR_PATH,
+                          version);
+        } else {
+            JarFile jar = new JarFile(location);
+            try {
+                List<String> lines = new ArrayList<String>();
+                for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()
+                        && entry.getName().startsWith(GENERATOR_PATH)) {
+                        lines.add(entry.getName() + ':' + entry.getCrc());
+                    }
+                }
+                Collections.sort(lines);
+                for (String line : lines) {
+                    version.append(line).append('\n');
+                }
+            } finally {
+                jar.close();
+            }
+        }
+        return GenerationState.hash(version.toString());
+    }
+
+    private static void describeFiles(File dir, String path,
+                                      StringBuilder version) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = path + file.getName();
+            if (file.isDirectory()) {
+                describeFiles(file, name + '/', version);
+            } else {
+                version.append(name).append(':');
+                version.append(GenerationState.hash(file)).append('\n');
+            }
+        }
+    }
 
-        File docDir = new File(project.getBasedir(), docDirectory);
-        docDir.mkdirs();
+    private void addDocArgs(List<String> args) {
+        if (graph || table) {
+            File docDir = new File(project.getBasedir(), docDirectory);
+            docDir.mkdirs();
 
-        commonArgs.add("-d");
-        commonArgs.add(docDir.getAbsolutePath());
+            args.add("-docd");
+            args.add(docDir.getAbsolutePath());
+        }
 
         if (graph) {
-            args = new ArrayList<String>(commonArgs);
             args.add("-graph");
             switch (graphLevel) {
                 case 0:
@@ -272,22 +672,21 @@ public class Plugin extends AbstractMojo {
                     break;
                 default:
             }
-            args.addAll(sources);
-
-            // Generate graphs
-            Smc.main(args.toArray(new String[0]));
         }
 
         if (table) {
-            args = new ArrayList<String>(commonArgs);
             args.add("-table");
-            args.addAll(sources);
-
-            // Generate graphs
-            Smc.main(args.toArray(new String[0]));
         }
     }
 
+    /**
+     * @param cacheDirectory
+     *            the cacheDirectory to set
+     */
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     /**
      * @param debugLevel
      *            the debugLevel to set
@@ -368,6 +767,22 @@ public class Plugin extends AbstractMojo {
         this.smDirectory = smDirectory;
     }
 
+    /**
+     * @param style
+     *            the style to set
+     */
+    public void setStyle(String style) {
+        this.style = style;
+    }
+
+    /**
+     * @param packageName
+     *            the packageName to set
+     */
+    public void setPackageName(String packageName) {
+        this.packageName = packageName;
+    }
+
     /**
      * @param sync
      *            the sync to set
@@ -376,6 +791,54 @@ public class Plugin extends AbstractMojo {
         this.sync = sync;
     }
 
+    /**
+     * @param tracer
+     *            the tracer to set
+     */
+    public void setTracer(boolean tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * @param undefinedPolicy
+     *            the undefinedPolicy to set
+     */
+    public void setUndefinedPolicy(String undefinedPolicy) {
+        this.undefinedPolicy = undefinedPolicy;
+    }
+
+    /**
+     * @param metrics
+     *            the metrics to set
+     */
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param async
+     *            the async to set
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * @param combine
+     *            the combine to set
+     */
+    public void setCombine(boolean combine) {
+        this.combine = combine;
+    }
+
+    /**
+     * @param stateFile
+     *            the stateFile to set
+     */
+    public void setStateFile(String stateFile) {
+        this.stateFile = stateFile;
+    }
+
     /**
      * @param table
      *            the table to set
@@ -400,6 +863,14 @@ public class Plugin extends AbstractMojo {
         this.targetDirectory = targetDirectory;
     }
 
+    /**
+     * @param threads
+     *            the threads to set
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     /**
      * @param verbose
      *            the verbose to set
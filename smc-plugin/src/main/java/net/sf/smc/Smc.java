@@ -47,20 +47,31 @@
 
 package net.sf.smc;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 
 import net.sf.smc.generator.SmcCGenerator;
@@ -77,6 +88,8 @@ import net.sf.smc.generator.SmcJavaGenerator;
 import net.sf.smc.generator.SmcLuaGenerator;
 import net.sf.smc.generator.SmcObjCGenerator;
 import net.sf.smc.generator.SmcOptions;
+import net.sf.smc.generator.SmcOptions.JavaStyle;
+import net.sf.smc.generator.SmcOptions.UndefinedPolicy;
 import net.sf.smc.generator.SmcPerlGenerator;
 import net.sf.smc.generator.SmcPhpGenerator;
 import net.sf.smc.generator.SmcPythonGenerator;
@@ -117,12 +130,211 @@ public final class Smc
      */
     public static void main(final String[] args)
     {
-        int retcode = 0;
+        Smc smc = new Smc();
+        int retcode = smc._run(args);
+
+        // Need to return the appropriate exit code in case SMC
+        // is called by make. Just doing a return always results
+        // in a zero return code.
+        // v. 4.0.0: But calling exit when SMC is an ANT task is
+        // problematic. ANT is a Java program and calls Smc.main
+        // directly and not as a forked process. So when Smc.main
+        // exits, it exits the JVM for everyone including ANT.
+        if (smc._return == false)
+        {
+            System.exit(retcode);
+        }
+        else
+        {
+            return;
+        }
+    } // end of main(String[])
+
+    /**
+     * Compiles the .sm files named on the command line and
+     * returns the exit code rather than exiting. This is the
+     * entry point for build tools running SMC in process.
+     * <p>
+     * {@code -graph} and {@code -table} may accompany the
+     * target language. Each .sm file is then parsed and checked
+     * once and the same model is passed to the target
+     * language, graph and table generators. The graph and table
+     * are placed in the {@code -docd} directory.
+     * </p>
+     * @param args command line arguments.
+     * @return 0 on success and 1 on failure.
+     */
+    public static int compile(final String[] args)
+    {
+        return (new Smc()._run(args));
+    } // end of compile(String[])
 
+    /**
+     * Compiles the .sm files of each compiler on the given
+     * executor. Each file's messages are buffered and written
+     * to {@code out} and {@code err} once the file is done, in
+     * compiler order and then in command line order, so the
+     * output does not depend on which thread compiled which
+     * file.
+     * @param compilers compile the .sm files given to these
+     * compilers.
+     * @param executor compile the files on this executor.
+     * @param out write progress messages here.
+     * @param err write warnings and errors here.
+     * @return the number of files which failed to compile.
+     * @throws InterruptedException
+     * if interrupted while waiting for a file to compile. The
+     * remaining files are cancelled.
+     */
+    public static int compile(final List<Smc> compilers,
+                              final ExecutorService executor,
+                              final PrintStream out,
+                              final PrintStream err)
+        throws InterruptedException
+    {
+        return (compile(compilers, executor, out, err, null));
+    } // end of compile(List<>, ExecutorService, ...)
+
+    /**
+     * Compiles the .sm files of each compiler on the given
+     * executor as {@link #compile(List, ExecutorService,
+     * PrintStream, PrintStream)} does and reports the files
+     * written. Each .sm file which compiled for every compiler
+     * is mapped to the files written for it. Files which failed
+     * are left out.
+     * @param compilers compile the .sm files given to these
+     * compilers.
+     * @param executor compile the files on this executor.
+     * @param out write progress messages here.
+     * @param err write warnings and errors here.
+     * @param outputs put the files written here. May be
+     * {@code null}.
+     * @return the number of files which failed to compile.
+     * @throws InterruptedException
+     * if interrupted while waiting for a file to compile. The
+     * remaining files are cancelled.
+     */
+    public static int compile(final List<Smc> compilers,
+                              final ExecutorService executor,
+                              final PrintStream out,
+                              final PrintStream err,
+                              final Map<String, List<String>> outputs)
+        throws InterruptedException
+    {
+        List<CompileTask> tasks = new ArrayList<CompileTask>();
+        List<Future<Integer>> futures =
+            new ArrayList<Future<Integer>>();
+        Set<String> failed = new HashSet<String>();
+        List<String> written;
+        CompileTask task;
+        int retcode;
+        int i;
+        int retval = 0;
+
+        for (Smc smc: compilers)
+        {
+            for (String sourceFileName: smc._sourceFileList)
+            {
+                task = new CompileTask(smc, sourceFileName);
+                tasks.add(task);
+                futures.add(executor.submit(task));
+            }
+        }
+
+        try
+        {
+            for (i = 0; i < tasks.size(); ++i)
+            {
+                task = tasks.get(i);
+
+                try
+                {
+                    retcode = futures.get(i).get();
+                }
+                // compile() reports exceptions itself, so this
+                // is an error.
+                catch (ExecutionException execex)
+                {
+                    retcode = 1;
+
+                    err.print(task.sourceFileName());
+                    err.print(": error - ");
+                    execex.getCause().printStackTrace(err);
+                }
+
+                task.flush(out, err);
+                if (retcode != 0)
+                {
+                    ++retval;
+                    failed.add(task.sourceFileName());
+                }
+                else if (outputs != null)
+                {
+                    written = outputs.get(task.sourceFileName());
+                    if (written == null)
+                    {
+                        written = new ArrayList<String>();
+                        outputs.put(task.sourceFileName(), written);
+                    }
+                    written.addAll(task.outputs());
+                }
+            }
+        }
+        catch (InterruptedException interrupt)
+        {
+            for (Future<Integer> future: futures)
+            {
+                future.cancel(true);
+            }
+
+            throw (interrupt);
+        }
+
+        if (outputs != null)
+        {
+            outputs.keySet().removeAll(failed);
+        }
+
+        return (retval);
+    } // end of compile(List<>, ExecutorService, ..., Map<>)
+
+    //
+    // end of Main method.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a compiler configured by the given command line
+     * arguments. The compiler does not change once created, so
+     * several threads may use it to compile different .sm files
+     * at the same time.
+     * @param args command line arguments.
+     * @exception IllegalArgumentException
+     * if {@code args} is invalid.
+     */
+    public Smc(final String[] args)
+        throws IllegalArgumentException
+    {
+        this();
+
+        if (parseArgs(args) == false)
+        {
+            throw (new IllegalArgumentException(_errorMsg));
+        }
+    } // end of Smc(String[])
+
+    // Sets the default options.
+    private Smc()
+    {
         _errorMsg = new String();
 
         // The default smc output level is 1.
         _targetLanguage = null;
+        _companions = new ArrayList<Language>();
+        _docDirectory = null;
         _version = VERSION;
         _debugLevel = SmcCodeGenerator.NO_DEBUG_OUTPUT;
         _nostreams = false;
@@ -142,6 +354,245 @@ public final class Smc
         _suffix = null;
         _hsuffix = null;
         _accessLevel = null;
+        _javaStyle = JavaStyle.CLASS;
+        _combine = false;
+        _async = false;
+        _metrics = false;
+        _tracer = false;
+        _packageName = null;
+        _undefinedPolicy = UndefinedPolicy.THROW;
+    } // end of Smc()
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the .sm files named on the command line.
+     * @return the .sm files named on the command line.
+     */
+    public List<String> getSourceFiles()
+    {
+        return (Collections.unmodifiableList(_sourceFileList));
+    } // end of getSourceFiles()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Parses, checks and generates code for the named .sm file.
+     * The compiler's options are not modified, so this method
+     * may be called by several threads at once for different
+     * files.
+     * @param sourceFileName the .sm file.
+     * @param out write progress messages here.
+     * @param err write warnings and errors here.
+     * @return 0 on success and 1 on failure.
+     */
+    public int compile(final String sourceFileName,
+                       final PrintStream out,
+                       final PrintStream err)
+    {
+        return (
+            compile(sourceFileName,
+                    out,
+                    err,
+                    new ArrayList<String>()));
+    } // end of compile(String, PrintStream, PrintStream)
+
+    /**
+     * Compiles the named .sm file as
+     * {@link #compile(String, PrintStream, PrintStream)} does
+     * and adds the name of each file written to {@code outputs}.
+     * @param sourceFileName the .sm file.
+     * @param out write progress messages here.
+     * @param err write warnings and errors here.
+     * @param outputs add the files written to this list.
+     * @return 0 on success and 1 on failure.
+     */
+    public int compile(final String sourceFileName,
+                       final PrintStream out,
+                       final PrintStream err,
+                       final List<String> outputs)
+    {
+        SmcParser parser;
+        SmcFSM fsm;
+        long startTime = 0;
+        long finishTime;
+        int retcode = 0;
+
+        try
+        {
+            if (_verbose == true)
+            {
+                out.print("[parsing started ");
+                out.print(sourceFileName);
+                out.println("]");
+
+                startTime = System.currentTimeMillis();
+            }
+
+            parser =
+                new SmcParser(
+                    _getFileName(sourceFileName),
+                    new FileInputStream(sourceFileName),
+                    _targetLanguage.language(),
+                    _fsmVerbose);
+
+            // First - do the parsing
+            fsm = parser.parse();
+
+            if (_verbose == true)
+            {
+                finishTime = System.currentTimeMillis();
+
+                out.print("[parsing completed ");
+                out.print(finishTime - startTime);
+                out.println("ms]");
+            }
+
+            if ( parser.getMessages().size() > 0 )
+            {
+                // Output the parser's messages.
+                _outputMessages(sourceFileName,
+                                err,
+                                parser.getMessages());
+            }
+            if (fsm == null)
+            {
+                retcode = 1;
+            }
+            else
+            {
+                SmcSyntaxChecker checker;
+
+                // -package replaces the %package, letting one
+                // .sm file be generated into several packages.
+                if (_packageName != null)
+                {
+                    fsm.setPackage(_packageName);
+                }
+
+                checker =
+                    new SmcSyntaxChecker(
+                        sourceFileName,
+                        _targetLanguage.language(),
+                        (_sync == true ||
+                         _combine == true ||
+                         _async == true));
+
+                if (_verbose == true)
+                {
+                    out.print("[checking ");
+                    out.print(sourceFileName);
+                    out.println("]");
+                }
+
+                // Second - do the semantic check.
+                fsm.accept(checker);
+                if ( checker.getMessages().size() > 0)
+                {
+                    _outputMessages(
+                        sourceFileName,
+                        err,
+                        checker.getMessages());
+                }
+                if (checker.isValid() == false)
+                {
+                    retcode = 1;
+                }
+                else
+                {
+                    // Third - do the code generation.
+                    // The graph and table come first
+                    // since the target generators sort
+                    // the model's transition lists.
+                    for (Language companion: _companions)
+                    {
+                        _generateCode(
+                            sourceFileName,
+                            fsm,
+                            companion,
+                            (_docDirectory != null ?
+                             _docDirectory :
+                             _outputDirectory),
+                            null,
+                            out,
+                            outputs);
+                    }
+                    _generateCode(
+                        sourceFileName,
+                        fsm,
+                        _targetLanguage,
+                        _outputDirectory,
+                        _suffix,
+                        out,
+                        outputs);
+                }
+            }
+        }
+        // Report an unknown file exception.
+        catch (FileNotFoundException filex)
+        {
+            err.print(sourceFileName);
+            err.print(": error - ");
+            err.println(filex.getMessage());
+        }
+        // A parse exception may be thrown by generateCode().
+        // This is not a problem.
+        catch (ParseException parsex)
+        {
+            err.print(sourceFileName);
+            err.print(":");
+            err.print(parsex.getErrorOffset());
+            err.print(": error - ");
+            err.println(parsex.getMessage());
+        }
+        catch (Exception e)
+        {
+            retcode = 1;
+
+            err.println(
+                "SMC has experienced a fatal error. Please e-mail the following error output to rapp@acm.org. Thank you.\n");
+            err.println(
+                "--------------------------------------------------------------------------------");
+            err.println("SMC version: " + _version);
+            err.println(
+                "JRE version: v. " +
+                System.getProperty("java.version"));
+            err.println(
+                "JRE vender: " +
+                System.getProperty("java.vendor") +
+                " (" +
+                System.getProperty("java.vendor.url") +
+                ")");
+            err.println(
+                "JVM: " +
+                System.getProperty("java.vm.name") +
+                ", v. " +
+                System.getProperty("java.vm.version"));
+            err.println(
+                "JVM vender: " +
+                System.getProperty("java.vm.vendor"));
+            err.println("Exception:\n");
+            e.printStackTrace(err);
+            err.println(
+                "--------------------------------------------------------------------------------");
+        }
+
+        return (retcode);
+    } // end of compile(String, PrintStream, PrintStream, List<>)
+
+    // Processes the command line and compiles the .sm files
+    // one after the other.
+    private int _run(final String[] args)
+    {
+        int retcode = 0;
 
         // Process the command line.
         if (parseArgs(args) == false)
@@ -152,11 +603,6 @@ public final class Smc
         // Arguments check out - start compiling..
         else
         {
-            SmcParser parser;
-            SmcFSM fsm;
-            Iterator<String> sit;
-            long startTime = 0;
-            long finishTime;
             long totalStartTime = 0;
             long totalFinishTime;
 
@@ -165,136 +611,15 @@ public final class Smc
                 totalStartTime = System.currentTimeMillis();
             }
 
-            try
+            for (String sourceFileName: _sourceFileList)
             {
-                for (sit = _sourceFileList.iterator();
-                     sit.hasNext() == true;
-                    )
+                if (compile(sourceFileName,
+                            System.out,
+                            System.err) != 0)
                 {
-                    _sourceFileName = sit.next();
-
-                    if (_verbose == true)
-                    {
-                        System.out.print("[parsing started ");
-                        System.out.print(_sourceFileName);
-                        System.out.println("]");
-
-                        startTime = System.currentTimeMillis();
-                    }
-
-                    parser =
-                        new SmcParser(
-                            _getFileName(_sourceFileName),
-                            new FileInputStream(_sourceFileName),
-                            _targetLanguage.language(),
-                            _fsmVerbose);
-
-                    // First - do the parsing
-                    fsm = parser.parse();
-
-                    if (_verbose == true)
-                    {
-                        finishTime = System.currentTimeMillis();
-
-                        System.out.print("[parsing completed ");
-                        System.out.print(finishTime - startTime);
-                        System.out.println("ms]");
-                    }
-
-					if ( parser.getMessages().size() > 0 )
-					{
-                        // Output the parser's messages.
-                        _outputMessages(_sourceFileName,
-                                        System.err,
-                                        parser.getMessages());
-					}
-                    if (fsm == null)
-                    {
-                        retcode = 1;
-                    }
-                    else
-                    {
-                        SmcSyntaxChecker checker =
-                            new SmcSyntaxChecker(
-                                _sourceFileName,
-                                _targetLanguage.language());
-
-                        if (_verbose == true)
-                        {
-                            System.out.print("[checking ");
-                            System.out.print(_sourceFileName);
-                            System.out.println("]");
-                        }
-
-                        // Second - do the semantic check.
-                        fsm.accept(checker);
-                        if ( checker.getMessages().size() > 0)
-                        {
-                            _outputMessages(
-                                _sourceFileName,
-                                System.err,
-                                checker.getMessages());
-                        }
-                        if (checker.isValid() == false)
-                        {
-                            retcode = 1;
-                        }
-                        else
-                        {
-                            // Third - do the code generation.
-                            _generateCode(fsm);
-                        }
-                    }
+                    retcode = 1;
                 }
             }
-            // Report an unknown file exception.
-            catch (FileNotFoundException filex)
-            {
-                System.err.print(_sourceFileName);
-                System.err.print(": error - ");
-                System.err.println(filex.getMessage());
-            }
-            // A parse exception may be thrown by generateCode().
-            // This is not a problem.
-            catch (ParseException parsex)
-            {
-                System.err.print(_sourceFileName);
-                System.err.print(":");
-                System.err.print(parsex.getErrorOffset());
-                System.err.print(": error - ");
-                System.err.println(parsex.getMessage());
-            }
-            catch (Exception e)
-            {
-                retcode = 1;
-
-                System.err.println(
-                    "SMC has experienced a fatal error. Please e-mail the following error output to rapp@acm.org. Thank you.\n");
-                System.err.println(
-                    "--------------------------------------------------------------------------------");
-                System.err.println("SMC version: " + _version);
-                System.err.println(
-                    "JRE version: v. " +
-                    System.getProperty("java.version"));
-                System.err.println(
-                    "JRE vender: " +
-                    System.getProperty("java.vendor") +
-                    " (" +
-                    System.getProperty("java.vendor.url") +
-                    ")");
-                System.err.println(
-                    "JVM: " +
-                    System.getProperty("java.vm.name") +
-                    ", v. " +
-                    System.getProperty("java.vm.version"));
-                System.err.println(
-                    "JVM vender: " +
-                    System.getProperty("java.vm.vendor"));
-                System.err.println("Exception:\n");
-                e.printStackTrace();
-                System.err.println(
-                    "--------------------------------------------------------------------------------");
-            }
 
             if (_verbose == true)
             {
@@ -307,42 +632,12 @@ public final class Smc
             }
         }
 
-        // Need to return the appropriate exit code in case SMC
-        // is called by make. Just doing a return always results
-        // in a zero return code.
-        // v. 4.0.0: But calling exit when SMC is an ANT task is
-        // problematic. ANT is a Java program and calls Smc.main
-        // directly and not as a forked process. So when Smc.main
-        // exits, it exits the JVM for everyone including ANT.
-        if (_return == false)
-        {
-            System.exit(retcode);
-        }
-        else
-        {
-            return;
-        }
-    } // end of main(String[])
-
-    //
-    // end of Main method.
-    //-----------------------------------------------------------
-
-    //-----------------------------------------------------------
-    // Constructors.
-    //
-
-    // Private to prevent instantiation.
-    private Smc()
-    {}
-
-    //
-    // end of Constructors.
-    //-----------------------------------------------------------
+        return (retcode);
+    } // end of _run(String[])
 
-    // Parse the command line arguments and fill in the static
+    // Parse the command line arguments and fill in the member
     // data accordingly.
-    private static boolean parseArgs(final String[] args)
+    private boolean parseArgs(final String[] args)
     {
         int i;
         int argsConsumed;
@@ -388,56 +683,216 @@ public final class Smc
             {
                 argsConsumed = 1;
             }
-            else if (args[i].startsWith("-ac") == true)
+            else if (args[i].startsWith("-ac") == true)
+            {
+                // -access should be followed by a string.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        ACCESS_FLAG +
+                        " not followed by an access keyword";
+                }
+                else if (_supportsOption(ACCESS_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        ACCESS_FLAG +
+                        ".";
+                }
+                else if (_isValidAccessLevel(args[i+1]) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support access level" +
+                        args[i+1] +
+                        ".";
+                }
+                else
+                {
+                    _accessLevel = args[i+1];
+                    argsConsumed = 2;
+                }
+            }
+            else if (args[i].startsWith("-sy") == true)
+            {
+                if (_supportsOption(SYNC_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        SYNC_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _sync = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-com") == true)
+            {
+                if (_supportsOption(COMBINE_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        COMBINE_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _combine = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-as") == true)
+            {
+                if (_supportsOption(ASYNC_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        ASYNC_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _async = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-me") == true)
+            {
+                if (_supportsOption(METRICS_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        METRICS_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _metrics = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-tr") == true)
+            {
+                if (_supportsOption(TRACER_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        TRACER_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _tracer = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-pa") == true)
+            {
+                // -package should be followed by a package name.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        PACKAGE_FLAG + " not followed by a value";
+                }
+                else if (_supportsOption(PACKAGE_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        PACKAGE_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _packageName = args[i+1];
+                    argsConsumed = 2;
+                }
+            }
+            else if (args[i].startsWith("-st") == true)
             {
-                // -access should be followed by a string.
+                // -style should be followed by a style name.
                 if ((i + 1) == args.length ||
                     args[i+1].startsWith("-") == true)
                 {
                     retcode = false;
                     _errorMsg =
-                        ACCESS_FLAG +
-                        " not followed by an access keyword";
+                        STYLE_FLAG + " not followed by a value";
                 }
-                else if (_supportsOption(ACCESS_FLAG) == false)
+                else if (_supportsOption(STYLE_FLAG) == false)
                 {
                     retcode = false;
                     _errorMsg =
                         _targetLanguage.name() +
                         " does not support " +
-                        ACCESS_FLAG +
+                        STYLE_FLAG +
                         ".";
                 }
-                else if (_isValidAccessLevel(args[i+1]) == false)
+                else if ((_javaStyle = _findJavaStyle(args[i+1])) == null)
                 {
                     retcode = false;
                     _errorMsg =
-                        _targetLanguage.name() +
-                        " does not support access level" +
+                        "\"" +
                         args[i+1] +
-                        ".";
+                        "\" is an invalid " +
+                        _targetLanguage.name() +
+                        " style.";
                 }
                 else
                 {
-                    _accessLevel = args[i+1];
                     argsConsumed = 2;
                 }
             }
-            else if (args[i].startsWith("-sy") == true)
+            else if (args[i].startsWith("-un") == true)
             {
-                if (_supportsOption(SYNC_FLAG) == false)
+                // -undefined should be followed by a policy.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        UNDEFINED_FLAG + " not followed by a value";
+                }
+                else if (_supportsOption(UNDEFINED_FLAG) == false)
                 {
                     retcode = false;
                     _errorMsg =
                         _targetLanguage.name() +
                         " does not support " +
-                        SYNC_FLAG +
+                        UNDEFINED_FLAG +
                         ".";
                 }
+                else if ((_undefinedPolicy =
+                              _findUndefinedPolicy(args[i+1])) == null)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        "\"" +
+                        args[i+1] +
+                        "\" is an invalid undefined transition policy.";
+                }
                 else
                 {
-                    _sync = true;
-                    argsConsumed = 1;
+                    argsConsumed = 2;
                 }
             }
             else if (args[i].startsWith("-su") == true)
@@ -526,6 +981,35 @@ public final class Smc
                     argsConsumed = 2;
                 }
             }
+            else if (args[i].equals(DOC_DIRECTORY_FLAG) == true)
+            {
+                // -docd should be followed by a directory.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        DOC_DIRECTORY_FLAG +
+                        " not followed by directory";
+                }
+                else
+                {
+                    _docDirectory = args[i+1];
+                    argsConsumed = 2;
+
+                    // If the output directory does not end with
+                    // file path separator, then add one.
+                    if (_docDirectory.endsWith(
+                            File.separator) == false)
+                    {
+                        _docDirectory =
+                            _docDirectory + File.separator;
+                    }
+
+                    retcode =
+                        _isValidDirectory(_docDirectory);
+                }
+            }
             else if (args[i].equals("-d") == true)
             {
                 // -d should be followed by a directory.
@@ -842,6 +1326,18 @@ public final class Smc
             }
         }
 
+        // -combine applies transitions without the monitor
+        // -sync would take, so they may not be used together.
+        if (helpFlag == false &&
+            retcode == true &&
+            _combine == true &&
+            _sync == true)
+        {
+            retcode = false;
+            _errorMsg =
+                COMBINE_FLAG + " may not be used with " + SYNC_FLAG + ".";
+        }
+
         // Was a state map source file given? It must be the
         // last argument in the list.
         if (helpFlag == false && retcode == true)
@@ -915,7 +1411,7 @@ public final class Smc
     } // end of parseArgs(String[])
 
     // Process the -help and -version flags separately.
-    private static boolean _needHelp(final String[] args)
+    private boolean _needHelp(final String[] args)
     {
         int i;
         boolean retval = false;
@@ -938,10 +1434,11 @@ public final class Smc
     } // end of _needHelp(String[])
 
     // Returns the target language found in the command line
-    // arguments. Throws an IllegalArgumentException if more than
-    // one target language is specified.
-    // As a side effect sets the default suffix.
-    private static Language _findTargetLanguage(
+    // arguments. -graph and -table may accompany the target
+    // language; they are added to the companion list. Throws an
+    // IllegalArgumentException if more than one other target
+    // language is specified.
+    private Language _findTargetLanguage(
         final String[] args)
     {
         int i;
@@ -951,26 +1448,50 @@ public final class Smc
         for (i = 0; i < args.length; ++i)
         {
             // Is this argument a language name?
-            if ((lang = _findLanguage(args[i])) != null)
+            if ((lang = _findLanguage(args[i])) == null ||
+                lang == retval ||
+                _companions.contains(lang) == true)
             {
-                // Only one target langugage can be specified.
-                if (retval != null && retval != lang)
-                {
-                    throw (
-                        new IllegalArgumentException(
-                            "Only one target language " +
-                            "may be specified"));
-                }
-                else
-                {
-                    retval = lang;
-                }
+                // No, or it was seen already.
+            }
+            else if (retval == null)
+            {
+                retval = lang;
+            }
+            // A graph or table may accompany the target.
+            else if (_isCompanion(lang) == true)
+            {
+                _companions.add(lang);
+            }
+            // Or the target may follow a graph or table.
+            else if (_isCompanion(retval) == true)
+            {
+                _companions.add(retval);
+                retval = lang;
+            }
+            // Only one target langugage can be specified.
+            else
+            {
+                throw (
+                    new IllegalArgumentException(
+                        "Only one target language " +
+                        "may be specified"));
             }
         }
 
         return (retval);
     } // end of _findTargetLanguage(String[])
 
+    // Returns true if the language may accompany another target
+    // language.
+    private static boolean _isCompanion(final Language language)
+    {
+        TargetLanguage target = language.language();
+
+        return (target == TargetLanguage.GRAPH ||
+                target == TargetLanguage.TABLE);
+    } // end of _isCompanion(Language)
+
     // Returns the langugage record associated with the given
     // command line option.
     private static Language _findLanguage(final String option)
@@ -994,18 +1515,30 @@ public final class Smc
 
     // Returns true if the target language supports the specified
     // option.
-    private static boolean _supportsOption(final String option)
+    private boolean _supportsOption(final String option)
     {
         List<Language> languages = _optionMap.get(option);
+        boolean retval =
+            (languages != null &&
+             languages.contains(_targetLanguage));
+        Iterator<Language> lit;
+
+        // -glevel applies to an accompanying graph.
+        for (lit = _companions.iterator();
+             lit.hasNext() == true && retval == false;
+            )
+        {
+            retval =
+                (languages != null &&
+                 languages.contains(lit.next()));
+        }
 
-        return (
-            languages != null &&
-            languages.contains(_targetLanguage));
+        return (retval);
     } // end of _supportsOption(String)
 
     // Returns true if the string is a valid access level for
     // the target language.
-    private static boolean _isValidAccessLevel(final String s)
+    private boolean _isValidAccessLevel(final String s)
     {
         boolean retcode =
             _accessMap.containsKey(_targetLanguage);
@@ -1021,6 +1554,42 @@ public final class Smc
         return (retcode);
     } // end of _isValidAccessLevel(String)
 
+    // Returns the Java style named by the string or null if
+    // there is no such style. The match ignores case.
+    private static JavaStyle _findJavaStyle(final String s)
+    {
+        JavaStyle retval = null;
+
+        for (JavaStyle style: JavaStyle.values())
+        {
+            if (style.name().equalsIgnoreCase(s) == true)
+            {
+                retval = style;
+            }
+        }
+
+        return (retval);
+    } // end of _findJavaStyle(String)
+
+    // Returns the undefined transition policy named by the
+    // string or null if there is no such policy. The match
+    // ignores case.
+    private static UndefinedPolicy _findUndefinedPolicy(
+        final String s)
+    {
+        UndefinedPolicy retval = null;
+
+        for (UndefinedPolicy policy: UndefinedPolicy.values())
+        {
+            if (policy.name().equalsIgnoreCase(s) == true)
+            {
+                retval = policy;
+            }
+        }
+
+        return (retval);
+    } // end of _findUndefinedPolicy(String)
+
     // Returns true if the string is a valid C++ cast.
     private static boolean _isValidCast(final String castType)
     {
@@ -1030,7 +1599,7 @@ public final class Smc
     } // end of _isValidCast(String)
 
     // Returns true if the path is a valid destination directory.
-    private static boolean _isValidDirectory(final String path)
+    private boolean _isValidDirectory(final String path)
     {
         boolean retcode = false;
 
@@ -1067,12 +1636,19 @@ public final class Smc
         stream.print(APP_NAME);
         stream.print(" [-access level]");
         stream.print(" [-suffix suffix]");
+        stream.print(" [-style style]");
+        stream.print(" [-package name]");
+        stream.print(" [-undefined policy]");
         stream.print(" [-g | -g0 | -g1]");
         stream.print(" [-nostreams]");
         stream.print(" [-version]");
         stream.print(" [-verbose]");
         stream.print(" [-help]");
         stream.print(" [-sync]");
+        stream.print(" [-tracer]");
+        stream.print(" [-metrics]");
+        stream.print(" [-async]");
+        stream.print(" [-combine]");
         stream.print(" [-noex]");
         stream.print(" [-nocatch]");
         stream.print(" [-serial]");
@@ -1081,6 +1657,7 @@ public final class Smc
         stream.print(" [-generic]");
         stream.print(" [-cast cast_type]");
         stream.print(" [-d directory]");
+        stream.print(" [-docd directory]");
         stream.print(" [-headerd directory]");
         stream.print(" [-hsuffix suffix]");
         stream.print(" [-glevel int]");
@@ -1096,6 +1673,16 @@ public final class Smc
         stream.println("\t          (use with -java only)");
         stream.println(
             "\t-suffix   Add this suffix to output file");
+        stream.println(
+            "\t-style    Generate code in this style: class (default),");
+        stream.println("\t          switch or table (use with -java only)");
+        stream.println(
+            "\t-package  Generate into this package instead of the");
+        stream.println("\t          %package (use with -java only)");
+        stream.println(
+            "\t-undefined On undefined transitions: throw (default),");
+        stream.println(
+            "\t          stackless, callback or ignore (use with -java only)");
         stream.println(
             "\t-g, -g0   Add level 0 debugging output to generated code");
         stream.println(
@@ -1117,6 +1704,19 @@ public final class Smc
             "\t-sync     Synchronize access to transition methods");
         stream.print("\t          ");
         stream.println("(use with -csharp, -java, -groovy, -scala and -vb only)");
+        stream.println(
+            "\t-tracer   Call the context's statemap.FSMTracer instead of");
+        stream.println("\t          logging trace messages (use with -java only)");
+        stream.println(
+            "\t-metrics  Feed per-transition and per-state metrics to a");
+        stream.println("\t          JMX MBean (use with -java only)");
+        stream.println(
+            "\t-async    Generate a postXxx method queuing each transition");
+        stream.println("\t          on the context's event mailbox (use with -java only)");
+        stream.println(
+            "\t-combine  Apply transitions through a flat-combining");
+        stream.println("\t          executor instead of locking (use with -java only,");
+        stream.println("\t          not with -sync)");
         stream.println(
             "\t-noex     Do not generate C++ exception throws ");
         stream.print("\t          ");
@@ -1143,6 +1743,11 @@ public final class Smc
         stream.println("(use with -c++ only)");
         stream.println(
             "\t-d        Place generated files in directory");
+        stream.print(
+            "\t-docd     Place the graph and table files in ");
+        stream.println("directory");
+        stream.print("\t          ");
+        stream.println("(use with -graph or -table and another target)");
         stream.print(
             "\t-headerd  Place generated header files in ");
         stream.println("directory");
@@ -1182,6 +1787,9 @@ public final class Smc
         stream.print("-graph, -groovy, -java, -lua, -objc, -perl, ");
         stream.println(
             "-php, -python, -ruby, -scala, -table, -tcl or -vb.");
+        stream.print(
+            "    Note: -graph and -table may also accompany ");
+        stream.println("another target language.");
 
         return;
     } // end of _usage(PrintStream)
@@ -1199,49 +1807,54 @@ public final class Smc
                 0, fileName.toLowerCase().indexOf(".sm")));
     } // end of _getFileName(String)
 
-    // Generates the State pattern in the target language.
-    private static void _generateCode(final SmcFSM fsm)
+    // Generates the FSM in the given language, placing the file
+    // in the output directory or, if that is null, next to the
+    // .sm file.
+    private void _generateCode(final String sourceFileName,
+                               final SmcFSM fsm,
+                               final Language language,
+                               final String outputDirectory,
+                               final String suffix,
+                               final PrintStream out,
+                               final List<String> outputs)
         throws FileNotFoundException,
                IOException,
                ParseException
     {
         int endIndex =
-            _sourceFileName.length() - 3;
+            sourceFileName.length() - 3;
         String srcFilePath =
             "." + System.getProperty("file.separator");
-        String srcFileBase = fsm.getTargetFileName();
+        String srcFileBase =
+            _targetFileBase(sourceFileName, fsm, language);
+        String accessLevel = _accessLevel;
         String headerPath;
         String headerFileName = "";
-        FileOutputStream headerFileStream = null;
+        ByteArrayOutputStream headerFileStream = null;
         PrintStream headerStream = null;
         SmcCodeGenerator headerGenerator = null;
         String srcFileName = "";
-        FileOutputStream sourceFileStream = null;
+        ByteArrayOutputStream sourceFileStream = null;
         PrintStream sourceStream = null;
         SmcOptions options = null;
         SmcCodeGenerator generator = null;
-
-        // For some strange reason I get the wrong
-        // line separator character when I use Java
-        // on Windows. Set the line separator to "\n"
-        // and all is well.
-        System.setProperty("line.separator", "\n");
+        boolean written;
 
         // Strip away any preceding directories from
         // the source file name.
-        endIndex = _sourceFileName.lastIndexOf(File.separatorChar);
+        endIndex = sourceFileName.lastIndexOf(File.separatorChar);
         if (endIndex >= 0)
         {
             srcFilePath =
-                _sourceFileName.substring(
+                sourceFileName.substring(
                     0, (endIndex + 1));
         }
 
         // If -d was specified, then use place generated file
         // there.
-        if (_outputDirectory != null)
+        if (outputDirectory != null)
         {
-            srcFilePath = _outputDirectory;
+            srcFilePath = outputDirectory;
         }
 
         // If -headerd was specified, then place the file
@@ -1255,18 +1868,18 @@ public final class Smc
             headerPath = srcFilePath;
         }
 
-        if (_accessLevel == null)
+        if (accessLevel == null)
         {
-            _accessLevel = "public";
+            accessLevel = "public";
         }
-        else if (_accessLevel.equals(PACKAGE_LEVEL) == true)
+        else if (accessLevel.equals(PACKAGE_LEVEL) == true)
         {
-            _accessLevel = "/* package */";
+            accessLevel = "/* package */";
         }
 
         options = new SmcOptions(fsm.getSourceFileName(),
                                  srcFileBase,
-                                 _outputDirectory,
+                                 outputDirectory,
                                  _headerDirectory,
                                  _castType,
                                  _graphLevel,
@@ -1278,49 +1891,58 @@ public final class Smc
                                  _reflection,
                                  _sync,
                                  _generic,
-                                 _accessLevel);
+                                 accessLevel,
+                                 _javaStyle,
+                                 _combine,
+                                 _async,
+                                 _metrics,
+                                 _tracer,
+                                 _undefinedPolicy);
 
         // Create the header file name and generator -
         // if the language uses a header file.
-        if (_targetLanguage.hasHeaderFile() == true)
+        if (language.hasHeaderFile() == true)
         {
             headerGenerator =
-                _targetLanguage.headerGenerator(options);
+                language.headerGenerator(options);
             headerFileName =
                 headerGenerator.sourceFile(
                     headerPath, null, srcFileBase, null);
-            headerFileStream =
-                new FileOutputStream(headerFileName);
+            headerFileStream = new ByteArrayOutputStream();
             headerStream =
-                new PrintStream(headerFileStream);
+                new NewlinePrintStream(headerFileStream);
             headerGenerator.setSource(headerStream);
         }
 
         // Create the language-specific source code generator.
-        generator = _targetLanguage.generator(options);
+        generator = language.generator(options);
         srcFileName =
             generator.sourceFile(
-                srcFilePath, fsm.getPackage(), srcFileBase, _suffix);
+                srcFilePath, fsm.getPackage(), srcFileBase, suffix);
         File srcFile = new File(srcFileName);
         srcFile.getParentFile().mkdirs();
-        sourceFileStream =
-            new FileOutputStream(srcFileName);
+        sourceFileStream = new ByteArrayOutputStream();
         sourceStream =
-            new PrintStream(sourceFileStream);
+            new NewlinePrintStream(sourceFileStream);
         generator.setSource(sourceStream);
 
         // Generate the header file first.
         if (headerGenerator != null)
         {
             fsm.accept(headerGenerator);
-            headerFileStream.flush();
-            headerFileStream.close();
+            headerStream.flush();
+            written =
+                _writeIfChanged(
+                    headerFileName, headerFileStream.toByteArray());
+            outputs.add(headerFileName);
 
             if (_verbose == true)
             {
-                System.out.print("[wrote ");
-                System.out.print(headerFileName);
-                System.out.println("]");
+                out.print(written == true ?
+                          "[wrote " :
+                          "[unchanged ");
+                out.print(headerFileName);
+                out.println("]");
             }
         }
 
@@ -1328,19 +1950,130 @@ public final class Smc
         if (generator != null)
         {
             fsm.accept(generator);
-            sourceFileStream.flush();
-            sourceFileStream.close();
+            sourceStream.flush();
+            written =
+                _writeIfChanged(
+                    srcFileName, sourceFileStream.toByteArray());
+            outputs.add(srcFileName);
 
             if (_verbose == true)
             {
-                System.out.print("[wrote ");
-                System.out.print(srcFileName);
-                System.out.println("]");
+                out.print(written == true ?
+                          "[wrote " :
+                          "[unchanged ");
+                out.print(srcFileName);
+                out.println("]");
             }
         }
 
         return;
-    } // end of _generateCode(SmcFSM)
+    } // end of _generateCode(String, SmcFSM, Language, ...)
+
+    // Replaces the named file with the given contents unless
+    // the file already holds exactly those bytes. Leaving an
+    // unchanged file alone keeps its timestamp, so that
+    // incremental compilers do not rebuild it. The contents are
+    // written to a temporary file in the same directory which
+    // is then renamed over the file, so readers see either the
+    // old or the new file. Returns true if the file was
+    // written.
+    private static boolean _writeIfChanged(final String fileName,
+                                           final byte[] contents)
+        throws IOException
+    {
+        File file = new File(fileName);
+        File tempFile;
+        FileOutputStream stream;
+        boolean retcode = true;
+
+        if (file.exists() == true &&
+            file.length() == contents.length &&
+            Arrays.equals(_readFile(file), contents) == true)
+        {
+            retcode = false;
+        }
+        else
+        {
+            tempFile =
+                File.createTempFile(
+                    file.getName(), ".tmp", file.getParentFile());
+            stream = new FileOutputStream(tempFile);
+            try
+            {
+                stream.write(contents);
+            }
+            finally
+            {
+                stream.close();
+            }
+
+            // Windows will not rename over an existing file.
+            if (tempFile.renameTo(file) == false &&
+                (file.delete() == false ||
+                 tempFile.renameTo(file) == false))
+            {
+                tempFile.delete();
+                throw (
+                    new IOException(
+                        "unable to replace " + fileName));
+            }
+        }
+
+        return (retcode);
+    } // end of _writeIfChanged(String, byte[])
+
+    // Returns the file's contents or null if it cannot be read.
+    private static byte[] _readFile(final File file)
+    {
+        byte[] retval = new byte[(int) file.length()];
+        DataInputStream stream = null;
+
+        try
+        {
+            stream =
+                new DataInputStream(new FileInputStream(file));
+            stream.readFully(retval);
+        }
+        catch (IOException ioex)
+        {
+            retval = null;
+        }
+        finally
+        {
+            if (stream != null)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException ioex)
+                {}
+            }
+        }
+
+        return (retval);
+    } // end of _readFile(File)
+
+    // Returns the generated file's base name in the given
+    // language. The model holds the name for the target
+    // language, which %fsmclass may have replaced.
+    private String _targetFileBase(final String sourceFileName,
+                                   final SmcFSM fsm,
+                                   final Language language)
+    {
+        String name = _getFileName(sourceFileName);
+        String retval = fsm.getTargetFileName();
+
+        if (language != _targetLanguage &&
+            retval.equals(
+                _targetLanguage.language().targetFileName(
+                    name)) == true)
+        {
+            retval = language.language().targetFileName(name);
+        }
+
+        return (retval);
+    } // end of _targetFileBase(String, SmcFSM, Language)
 
     // Outputs parser warning and error messages concerning the
     // named .sm file to the provided stream.
@@ -1546,84 +2279,285 @@ public final class Smc
         private final Constructor _headerGenerator;
     } // end of class Language
 
-//---------------------------------------------------------------
-// Member Data
-//
+    // Compiles one .sm file into memory so the messages can be
+    // written out in order once the file is done.
 
+    private static final class CompileTask
+        implements Callable<Integer>
+    {
     //-----------------------------------------------------------
-    // Statics.
+    // Member methods.
+    //
+
+        //-------------------------------------------------------
+        // Constructors.
+        //
+
+        public CompileTask(final Smc smc,
+                           final String sourceFileName)
+        {
+            _smc = smc;
+            _sourceFileName = sourceFileName;
+            _out = new ByteArrayOutputStream();
+            _err = new ByteArrayOutputStream();
+            _outputs = new ArrayList<String>();
+        } // end of CompileTask(Smc, String)
+
+        //
+        // end of Constructors.
+        //-------------------------------------------------------
+
+        public String sourceFileName()
+        {
+            return (_sourceFileName);
+        } // end of sourceFileName()
+
+        public List<String> outputs()
+        {
+            return (_outputs);
+        } // end of outputs()
+
+        public Integer call()
+        {
+            return (
+                _smc.compile(
+                    _sourceFileName,
+                    new PrintStream(_out, true),
+                    new PrintStream(_err, true),
+                    _outputs));
+        } // end of call()
+
+        // Writes the buffered messages to the given streams.
+        public void flush(final PrintStream out,
+                          final PrintStream err)
+        {
+            byte[] bytes;
+
+            bytes = _out.toByteArray();
+            out.write(bytes, 0, bytes.length);
+            out.flush();
+
+            bytes = _err.toByteArray();
+            err.write(bytes, 0, bytes.length);
+            err.flush();
+
+            return;
+        } // end of flush(PrintStream, PrintStream)
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        private final Smc _smc;
+        private final String _sourceFileName;
+        private final ByteArrayOutputStream _out;
+        private final ByteArrayOutputStream _err;
+        private final List<String> _outputs;
+    } // end of class CompileTask
+
+    // Ends every line with "\n" whatever the platform's line
+    // separator is. Java on Windows would otherwise write
+    // "\r\n" into the generated files.
+
+    private static final class NewlinePrintStream
+        extends PrintStream
+    {
+    //-----------------------------------------------------------
+    // Member methods.
     //
 
-    // The source file currently being compiled.
-    private static String _sourceFileName;
+        //-------------------------------------------------------
+        // Constructors.
+        //
+
+        public NewlinePrintStream(final OutputStream out)
+        {
+            super (out);
+        } // end of NewlinePrintStream(OutputStream)
+
+        //
+        // end of Constructors.
+        //-------------------------------------------------------
+
+        @Override
+        public void println()
+        {
+            print('\n');
+        } // end of println()
+
+        @Override
+        public synchronized void println(final boolean x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(boolean)
+
+        @Override
+        public synchronized void println(final char x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(char)
+
+        @Override
+        public synchronized void println(final int x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(int)
+
+        @Override
+        public synchronized void println(final long x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(long)
+
+        @Override
+        public synchronized void println(final float x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(float)
+
+        @Override
+        public synchronized void println(final double x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(double)
+
+        @Override
+        public synchronized void println(final char[] x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(char[])
+
+        @Override
+        public synchronized void println(final String x)
+        {
+            print(x);
+            print('\n');
+        } // end of println(String)
+
+        @Override
+        public synchronized void println(final Object x)
+        {
+            print(String.valueOf(x));
+            print('\n');
+        } // end of println(Object)
+    } // end of class NewlinePrintStream
+
+//---------------------------------------------------------------
+// Member Data
+//
 
     // The state map source code to be compiled.
-    private static List<String> _sourceFileList;
+    private final List<String> _sourceFileList;
 
     // Append this suffix to the end of the output file.
-    private static String _suffix;
+    private String _suffix;
 
     // Append this suffix to the end of the output header file.
     @SuppressWarnings("unused")
-    private static String _hsuffix;
+    private String _hsuffix;
 
     // Place the output files in this directory. May be null.
-    private static String _outputDirectory;
+    private String _outputDirectory;
+
+    // Place graph and table files accompanying the target
+    // language in this directory.
+    private String _docDirectory;
 
     // Place header files in this directory. May be null.
-    private static String _headerDirectory;
+    private String _headerDirectory;
 
     // The debug level.
-    private static int _debugLevel;
+    private int _debugLevel;
 
     // If true, then do not use C++ iostreams for debugging.
     // Application code must provide a TRACE macro to output
     // the debug messages.
-    private static boolean _nostreams;
+    private boolean _nostreams;
 
     // If true, then generate thread-safe Java code.
-    private static boolean _sync;
+    private boolean _sync;
 
     // If true, then do *not* generate C++ exception throws.
-    private static boolean _noex;
+    private boolean _noex;
 
     // If true, then do *not* generate try/catch/rethrow code.
-    private static boolean _nocatch;
+    private boolean _nocatch;
 
     // If true, then generate unique integer IDs for each state.
-    private static boolean _serial;
+    private boolean _serial;
 
     // If true, then generate getTransitions() method for each
     // state.
-    private static boolean _reflection;
+    private boolean _reflection;
 
     // If true, then use a Map<String, Integer> for the
     // reflection map.
-    private static boolean _generic;
+    private boolean _generic;
 
     // If true, then generate compiler verbose messages.
-    private static boolean _verbose;
+    private boolean _verbose;
 
     // If true, then generate FSM messages.
-    private static boolean _fsmVerbose;
+    private boolean _fsmVerbose;
 
     // The details placed into the GraphViz DOT file.
-    private static int _graphLevel;
+    private int _graphLevel;
 
     // When generating C++ code, use this cast type.
-    private static String _castType;
+    private String _castType;
 
     // Have Smc.main() return rather than exit.
-    private static boolean _return;
+    private boolean _return;
 
     // Use this access identifier for the generated classes.
-    private static String _accessLevel;
+    private String _accessLevel;
+
+    // Generate Java code in this style.
+    private JavaStyle _javaStyle;
+
+    // If true, then generate flat-combining Java transitions.
+    private boolean _combine;
+
+    // If true, then generate asynchronous postXxx transitions.
+    private boolean _async;
+
+    // If true, then generate code feeding statemap.FSMMetrics.
+    private boolean _metrics;
+
+    // If true, then generate statemap.FSMTracer calls instead
+    // of trace logging.
+    private boolean _tracer;
+
+    // Generate into this package instead of the %package.
+    private String _packageName;
+
+    // The generated context's initial undefined transition
+    // policy.
+    private UndefinedPolicy _undefinedPolicy;
 
     // Store command line error messages here.
-    private static String _errorMsg;
+    private String _errorMsg;
 
     // The app's version ID.
-    private static String _version;
+    private String _version;
+
+    // Specifies target programming language.
+    private Language _targetLanguage;
+
+    // The graph and table outputs generated from the same model
+    // as the target language.
+    private final List<Language> _companions;
+
+    //-----------------------------------------------------------
+    // Statics.
+    //
 
     // The list of all supported languages.
     private static Language[] _languages;
@@ -1641,16 +2575,16 @@ public final class Smc
     // Constants.
     //
 
-    // Specifies target programming language.
-    /* package */ static Language _targetLanguage;
-
     private static final String APP_NAME = "smc";
     private static final String VERSION = "v. 6.1.0";
 
     // Command line option flags.
     private static final String ACCESS_FLAG = "-access";
+    private static final String ASYNC_FLAG = "-async";
     private static final String CAST_FLAG = "-cast";
+    private static final String COMBINE_FLAG = "-combine";
     private static final String DIRECTORY_FLAG = "-d";
+    private static final String DOC_DIRECTORY_FLAG = "-docd";
     private static final String DEBUG_FLAG = "-g";
     private static final String DEBUG_LEVEL0_FLAG = "-g0";
     private static final String DEBUG_LEVEL1_FLAG = "-g1";
@@ -1659,14 +2593,19 @@ public final class Smc
     private static final String HEADER_FLAG = "-headerd";
     private static final String HEADER_SUFFIX_FLAG = "-hsuffix";
     private static final String HELP_FLAG = "-help";
+    private static final String METRICS_FLAG = "-metrics";
     private static final String NO_CATCH_FLAG = "-nocatch";
     private static final String NO_EXCEPTIONS_FLAG = "-noex";
     private static final String NO_STREAMS_FLAG = "-nostreams";
+    private static final String PACKAGE_FLAG = "-package";
     private static final String REFLECT_FLAG = "-reflect";
     private static final String RETURN_FLAG = "-return";
     private static final String SERIAL_FLAG = "-serial";
+    private static final String STYLE_FLAG = "-style";
     private static final String SUFFIX_FLAG = "-suffix";
     private static final String SYNC_FLAG = "-sync";
+    private static final String TRACER_FLAG = "-tracer";
+    private static final String UNDEFINED_FLAG = "-undefined";
     private static final String VERBOSE_FLAG = "-verbose";
     private static final String VERSION_FLAG = "-version";
     private static final String VVERBOSE_FLAG = "-vverbose";
@@ -1825,6 +2764,12 @@ public final class Smc
         //                Python, Ruby, Groovy, Scala
         // +    -return:  all
         // +    -serial:  C#, C++, Java, Tcl, VB, Groovy, Scala
+        // +     -style:  Java
+        // +    -tracer:  Java
+        // + -undefined:  Java
+        // +   -metrics:  Java
+        // +     -async:  Java
+        // +   -combine:  Java
         // +    -suffix:  all
         // +      -sync:  C#, Java, VB, Groovy, Scala
         // +   -verbose:  all
@@ -1862,6 +2807,17 @@ public final class Smc
         languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
         _optionMap.put(ACCESS_FLAG, languages);
 
+        // The -style option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
+        _optionMap.put(STYLE_FLAG, languages);
+        _optionMap.put(PACKAGE_FLAG, languages);
+        _optionMap.put(TRACER_FLAG, languages);
+        _optionMap.put(UNDEFINED_FLAG, languages);
+        _optionMap.put(METRICS_FLAG, languages);
+        _optionMap.put(ASYNC_FLAG, languages);
+        _optionMap.put(COMBINE_FLAG, languages);
+
         // Languages using a header file.
         languages = new ArrayList<Language>();
         languages.add(_languages[TargetLanguage.C_PLUS_PLUS.ordinal()]);
@@ -97,20 +97,39 @@ public final class SmcSyntaxChecker
 
     /**
      * Creates a syntax checker for the named FSM and target
-     * programming language.
+     * programming language. The FSM's transitions are taken to
+     * be unserialized, so {@code %timeout} is rejected.
      * @param fsm the finite state machine's name.
      * @param targetLanguage the target programming language.
      */
     public SmcSyntaxChecker(String fsm,
                             TargetLanguage targetLanguage)
+    {
+        this (fsm, targetLanguage, false);
+    } // end of SmcSyntaxCheck(String, TargetLanguage)
+
+    /**
+     * Creates a syntax checker for the named FSM and target
+     * programming language.
+     * @param fsm the finite state machine's name.
+     * @param targetLanguage the target programming language.
+     * @param serialized {@code true} if the FSM is generated
+     * with {@code -sync}, {@code -combine} or {@code -async},
+     * which serialize the transitions a {@code %timeout}
+     * timer issues from the wheel thread.
+     */
+    public SmcSyntaxChecker(String fsm,
+                            TargetLanguage targetLanguage,
+                            boolean serialized)
     {
         super ();
 
         _fsmName = fsm;
         _targetLanguage = targetLanguage;
+        _serialized = serialized;
         _messages = new ArrayList<SmcMessage>();
         _checkFlag = true;
-    } // end of SmcSyntaxCheck(String, TargetLanguage)
+    } // end of SmcSyntaxCheck(String, TargetLanguage, boolean)
 
     /**
      * Returns <code>true</code> if no errors were found and
@@ -241,6 +260,11 @@ public final class SmcSyntaxChecker
             transition.accept(this);
         }
 
+        if (state.hasTimeout() == true)
+        {
+            _checkTimeout(state);
+        }
+
         return;
     } // end of visit(SmcState)
 
@@ -425,6 +449,68 @@ public final class SmcSyntaxChecker
     // end of SmcVisitor Methods.
     //-----------------------------------------------------------
 
+    // Check that the state's %timeout clause is supported for
+    // the target language and generation mode and issues a
+    // transition which the generated timer can raise: one
+    // without parameters.
+    private void _checkTimeout(SmcState state)
+    {
+        String transName = state.getTimeoutTransition();
+        String error = null;
+        boolean found = false;
+
+        if (_targetLanguage != TargetLanguage.JAVA)
+        {
+            error = "%timeout is supported only for Java.";
+        }
+        else if (_serialized == false)
+        {
+            error =
+                "%timeout requires -sync, -combine or -async.";
+        }
+        else if (state == state.getMap().getDefaultState())
+        {
+            error = "%timeout is not allowed in the Default state.";
+        }
+        else if (transName.equals("Default") == true)
+        {
+            error = "%timeout may not issue the Default transition.";
+        }
+        else
+        {
+            for (SmcTransition transition:
+                     state.getMap().getFSM().getTransitions())
+            {
+                if (transition.getName().equals(transName) == true &&
+                    transition.getParameters().isEmpty() == true)
+                {
+                    found = true;
+                }
+            }
+
+            if (found == false)
+            {
+                error =
+                    "%timeout transition \"" +
+                    transName +
+                    "\" is not defined without parameters.";
+            }
+        }
+
+        if (error != null)
+        {
+            _messages.add(
+                new SmcMessage(_fsmName,
+                               state.getTimeoutLineNumber(),
+                               SmcMessage.ERROR,
+                               error));
+
+            _checkFlag = false;
+        }
+
+        return;
+    } // end of _checkTimeout(SmcState)
+
     // Find if this named state appears in the FSM.
     private boolean _findState(String endState, SmcGuard guard)
     {
@@ -490,6 +576,10 @@ public final class SmcSyntaxChecker
     // The target programming language.
     private TargetLanguage _targetLanguage;
 
+    // Set if the transitions are serialized by -sync, -combine
+    // or -async.
+    private boolean _serialized;
+
     // Store warning and error messages in this list. Do not
     // output them. Let the application do that.
     private List<SmcMessage> _messages;
@@ -94,6 +94,12 @@ public abstract class SmcCodeGenerator
         _syncFlag = options.syncFlag();
         _genericFlag = options.genericFlag();
         _accessLevel = options.accessLevel();
+        _javaStyle = options.javaStyle();
+        _combineFlag = options.combineFlag();
+        _asyncFlag = options.asyncFlag();
+        _metricsFlag = options.metricsFlag();
+        _tracerFlag = options.tracerFlag();
+        _undefinedPolicy = options.undefinedPolicy();
         _suffix = suffix;
         _source = null;
         _indent = "";
@@ -390,12 +396,45 @@ public abstract class SmcCodeGenerator
      */
     protected final String _accessLevel;
 
-    //-----------------------------------------------------------
-    // Statics.
-    //
+    /**
+     * Generate Java code in this style (-java only).
+     */
+    protected final SmcOptions.JavaStyle _javaStyle;
+
+    /**
+     * If {@code true} then generate transitions applied by a
+     * flat-combining executor (Java only).
+     */
+    protected final boolean _combineFlag;
+
+    /**
+     * If {@code true} then generate asynchronous post methods queuing
+     * each transition on the context's event mailbox (Java only).
+     */
+    protected final boolean _asyncFlag;
+
+    /**
+     * If {@code true} then generate code feeding transition and
+     * state metrics to {@code statemap.FSMMetrics} (Java only).
+     */
+    protected final boolean _metricsFlag;
+
+    /**
+     * If {@code true} then generate calls to
+     * {@code statemap.FSMTracer} guarded by
+     * {@code statemap.FSMContext.TRACE} instead of trace logging
+     * (Java only).
+     */
+    protected final boolean _tracerFlag;
+
+    /**
+     * The generated context's initial undefined transition
+     * policy (Java only).
+     */
+    protected final SmcOptions.UndefinedPolicy _undefinedPolicy;
 
     // Append this suffix to the end of the output file.
-    private static String _suffix;
+    private final String _suffix;
 
     //-----------------------------------------------------------
     // Constants.
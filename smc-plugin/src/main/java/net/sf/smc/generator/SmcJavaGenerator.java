@@ -39,8 +39,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.sf.smc.generator.SmcOptions.JavaStyle;
 
 import net.sf.smc.model.SmcAction;
 import net.sf.smc.model.SmcElement;
@@ -113,6 +121,18 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         int index;
         List<SmcParameter> params;
 
+        _indexStates(maps);
+        if (_javaStyle == JavaStyle.TABLE)
+        {
+            _buildTables(transitions);
+        }
+
+        // The state stack is sized from the maximum push depth,
+        // so find out up front whether it is needed.
+        requiresPush = _hasPushTransition(maps);
+        _pushDepth = fsm.getMaxPushDepth();
+        _indexTransitions(transitions);
+
         _source.println("/*");
         _source.println(" * ex: set ro:");
         _source.println(" * DO NOT EDIT.");
@@ -152,7 +172,8 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
         if (_reflectFlag == true)
         {
-            _source.println("import java.util.HashMap;");
+            _source.println("import java.util.Arrays;");
+            _source.println("import java.util.Collections;");
             _source.println("import java.util.Map;");
             _source.println("import java.util.Set;");
             _source.println("import java.util.TreeSet;");
@@ -187,6 +208,23 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    public Logger getLog() {return log;}");
         _source.println();
 
+        // The generated trace logging guards use this constant
+        // rather than FSMContext.TRACE. With -tracer it is false
+        // and javac drops the trace logging.
+        _source.println("    /**");
+        _source.println(
+            "     * {@code true} if trace logging was generated and");
+        _source.println(
+            "     * {@link statemap.FSMContext#TRACE} is set.");
+        _source.println("     */");
+        _source.print(
+            "    private static final boolean TRACE = ");
+        _source.println(
+            (_tracerFlag == false ?
+             "statemap.FSMContext.TRACE;" :
+             "false;"));
+        _source.println();
+
         // The state name "map::state" must be changed to
         // "map.state".
         if ((index = startState.indexOf("::")) >= 0)
@@ -215,12 +253,12 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println(");");
         _source.println();
         _source.println("        _owner = owner;");
-
-        // If reflection code is added, then instantiate the
-        // state and transition sets and fill them in.
-        if (_reflectFlag == true)
+        _undefinedPolicySetup();
+        if (_metricsFlag == true)
         {
-            reflectionSets(maps, transitions);
+            _source.println("        _residentState = _state;");
+            _source.println(
+                "        _residentSince = System.nanoTime();");
         }
 
         _source.println("    }");
@@ -242,12 +280,12 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("        super (initState);");
         _source.println();
         _source.println("        _owner = owner;");
-
-        // If reflection code is added, then instantiate the
-        // state and transition sets and fill them in.
-        if (_reflectFlag == true)
+        _undefinedPolicySetup();
+        if (_metricsFlag == true)
         {
-            reflectionSets(maps, transitions);
+            _source.println("        _residentState = _state;");
+            _source.println(
+                "        _residentSince = System.nanoTime();");
         }
 
         _source.println("    }");
@@ -255,14 +293,31 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
         // Generate the start abstract method which requires
         // executes the initial state's entry actions.
-        _source.print("    public ");
-        if (_syncFlag == true)
+        if (_combineFlag == true)
+        {
+            _combinedMethod(
+                "enterStartState", "", "_applyEnterStartState", "");
+            _source.println("    private void _applyEnterStartState()");
+        }
+        else
         {
-            _source.print("synchronized ");
+            _source.print("    public ");
+            if (_syncFlag == true)
+            {
+                _source.print("synchronized ");
+            }
+            _source.println("void enterStartState()");
         }
-        _source.println("void enterStartState()");
         _source.println("    {");
-        _source.println("        getState().Entry(this);");
+        if (_javaStyle != JavaStyle.CLASS)
+        {
+            _source.println(
+                "        _entry(this, getState().getId());");
+        }
+        else
+        {
+            _source.println("        getState().Entry(this);");
+        }
         _source.println("        return;");
         _source.println("    }");
         _source.println();
@@ -272,20 +327,56 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         {
             if (trans.getName().equals("Default") == false)
             {
-                _source.print("    public ");
+                StringBuilder decls = new StringBuilder();
+                StringBuilder args = new StringBuilder();
+
+                params = trans.getParameters();
+
+                // The -combine and -async methods pass their
+                // final parameters on to the transition method
+                // from an anonymous class.
+                for (pit = params.iterator(), separator = "";
+                     pit.hasNext() == true;
+                     separator = ", ")
+                {
+                    SmcParameter param = pit.next();
+
+                    decls.append(separator);
+                    decls.append("final ");
+                    decls.append(param.getType());
+                    decls.append(' ');
+                    decls.append(param.getName());
+                    args.append(separator);
+                    args.append(param.getName());
+                }
 
-                // If the -sync flag was specified, then output
-                // the "synchronized" keyword.
-                if (_syncFlag == true)
+                // With -combine the public method publishes a
+                // request which calls the private method
+                // holding the transition body.
+                if (_combineFlag == true)
                 {
-                    _source.print("synchronized ");
+                    _combinedMethod(trans.getName(),
+                                    decls.toString(),
+                                    "_apply" + trans.getName(),
+                                    args.toString());
+                    _source.print("    private void _apply");
                 }
+                else
+                {
+                    _source.print("    public ");
+
+                    // If the -sync flag was specified, then
+                    // output the "synchronized" keyword.
+                    if (_syncFlag == true)
+                    {
+                        _source.print("synchronized ");
+                    }
 
-                _source.print("void ");
+                    _source.print("void ");
+                }
                 _source.print(trans.getName());
                 _source.print("(");
 
-                params = trans.getParameters();
                 for (pit = params.iterator(), separator = "";
                      pit.hasNext() == true;
                      separator = ", ")
@@ -298,30 +389,89 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
                 // Save away the transition name in case it is
                 // need in an UndefinedTransitionException.
-                _source.print("        _transition = \"");
+                _source.print("        setTransitionId(");
                 _source.print(trans.getName());
-                _source.println("\";");
+                _source.println("_ID);");
+                if (_metricsFlag == true)
+                {
+                    _source.print("        _Metrics.transition(");
+                    _source.print(trans.getName());
+                    _source.println("_ID);");
+                }
 
-                _source.print("        getState().");
-                _source.print(trans.getName());
-                _source.print("(this");
+                if (_javaStyle == JavaStyle.TABLE)
+                {
+                    _tableDispatch(trans);
+                }
+                else if (_javaStyle == JavaStyle.SWITCH)
+                {
+                    _switchDispatch(maps, trans);
+                }
+                else
+                {
+                    _source.print("        getState().");
+                    _source.print(trans.getName());
+                    _source.print("(this");
+
+                    for (pit = params.iterator();
+                         pit.hasNext() == true;
+                        )
+                    {
+                        _source.print(", ");
+                        _source.print((pit.next()).getName());
+                    }
+                    _source.println(");");
+                }
 
-                for (pit = params.iterator();
-                     pit.hasNext() == true;
-                    )
+                // With serialization support, a completed
+                // transition is appended to the context's
+                // journal, if it has one, along with the state
+                // stack's depth and top.
+                if (_serialFlag == true)
                 {
-                    _source.print(", ");
-                    _source.print((pit.next()).getName());
+                    _source.println("        if (_journal != null)");
+                    _source.println("        {");
+                    _source.print("            journalTransition(");
+                    _source.print(trans.getName());
+                    if (requiresPush == true)
+                    {
+                        _source.println("_ID,");
+                        _source.println(
+                            "                              _stateStackDepth,");
+                        _source.println(
+                            "                              (_stateStackDepth == 0 ?");
+                        _source.println(
+                            "                               0 :");
+                        _source.println(
+                            "                               _stateStack[_stateStackDepth - 1]));");
+                    }
+                    else
+                    {
+                        _source.println("_ID);");
+                    }
+                    _source.println("        }");
                 }
-                _source.println(");");
-                _source.println("        _transition = \"\";");
+                _source.println(
+                    "        setTransitionId(NO_TRANSITION);");
 
                 _source.println("        return;");
                 _source.println("    }");
                 _source.println();
+
+                // With -async the postXxx twin queues the
+                // transition on the context's mailbox.
+                if (_asyncFlag == true)
+                {
+                    _postMethod(trans.getName(),
+                                decls.toString(),
+                                args.toString());
+                }
             }
         }
 
+        // Generate the transition identifier dispatch methods.
+        _dispatchMethods(transitions);
+
         // If serialization is turned on, then generate a
         // setOwner method which allows the application class
         // to restore its ownership of the FSM.
@@ -348,7 +498,11 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println(
             "        throws statemap.StateUndefinedException");
         _source.println("    {");
-        _source.println("        if (_state == null)");
+        // Read the state once: another thread may be changing
+        // it.
+        _source.println("        statemap.State state = _state;");
+        _source.println();
+        _source.println("        if (state == null)");
         _source.println("        {");
         _source.println(
             "            throw(");
@@ -358,10 +512,48 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println();
         _source.print("        return ((");
         _source.print(context);
-        _source.println("State) _state);");
+        _source.println("State) state);");
+        _source.println("    }");
+        _source.println();
+
+        // getTransitionName() method. The name is looked up only
+        // when asked for.
+        _source.println("    @Override");
+        _source.println(
+            "    public String getTransitionName(int transitionId)");
+        _source.println("    {");
+        _source.println("        return (");
+        _source.println("            transitionId == NO_TRANSITION ?");
+        _source.println("            \"\" :");
+        _source.println("            _TransitionNames[transitionId]);");
         _source.println("    }");
         _source.println();
 
+        // With -metrics, setState() records how long the state
+        // being left was resident.
+        if (_metricsFlag == true)
+        {
+            _metricsSetState();
+        }
+
+        // State timers issue their transitions through
+        // serializeTransition().
+        if (_syncFlag == true || _combineFlag == true)
+        {
+            _serializeTransition();
+        }
+
+        // getCombiner() method.
+        if (_combineFlag == true)
+        {
+            _source.println(
+                "    public statemap.TransitionCombiner getCombiner()");
+            _source.println("    {");
+            _source.println("        return (_combiner);");
+            _source.println("    }");
+            _source.println();
+        }
+
         // getOwner() method.
         _source.print("    protected ");
         _source.print(context);
@@ -410,7 +602,28 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
             }
             _source.println(" getTransitions()");
             _source.println("    {");
-            _source.println("        return (_transitions);");
+            _source.print("        Set");
+            if (_genericFlag == true)
+            {
+                _source.print("<String>");
+            }
+            _source.println(" retval = _transitionSet;");
+            _source.println();
+            _source.println("        if (retval == null)");
+            _source.println("        {");
+            _source.println("            retval =");
+            _source.println("                Collections.unmodifiableSet(");
+            _source.print("                    new TreeSet");
+            if (_genericFlag == true)
+            {
+                _source.print("<String>");
+            }
+            _source.println(
+                "(Arrays.asList(_TransitionNames)));");
+            _source.println("            _transitionSet = retval;");
+            _source.println("        }");
+            _source.println();
+            _source.println("        return (retval);");
             _source.println("    }");
             _source.println();
         }
@@ -425,20 +638,43 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.print(context);
         _source.println(" _owner;");
 
-        // If reflection is turned on then declare the transition set.
+        if (_metricsFlag == true)
+        {
+            _source.println(
+                "    transient private statemap.State _residentState;");
+            _source.println(
+                "    transient private long _residentSince;");
+        }
+
+        if (_combineFlag == true)
+        {
+            _source.println(
+                "    transient private statemap.TransitionCombiner _combiner =");
+            _source.println(
+                "        new statemap.TransitionCombiner();");
+        }
+
+        // If reflection is turned on then declare the transition
+        // set. It is built on first use and shared by all
+        // contexts.
         if (_reflectFlag == true)
         {
-            _source.print("    final Set");
+            _source.print("    private static Set");
             if (_genericFlag == true)
             {
                 _source.print("<String>");
             }
-            _source.println(" _transitions;");
+            _source.println(" _transitionSet;");
         }
 
         // If serialization support is on, then create the state
-        // array.
-        if (_serialFlag == true || _reflectFlag == true)
+        // array. The table style also uses it to map the next
+        // state identifier back to its state, and popState()
+        // to map the stacked identifier back to its state.
+        if (_serialFlag == true ||
+            _reflectFlag == true ||
+            requiresPush == true ||
+            _javaStyle == JavaStyle.TABLE)
         {
             String mapName;
 
@@ -468,6 +704,116 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
             _source.println("    };");
         }
 
+        if (_javaStyle == JavaStyle.TABLE)
+        {
+            _tableArrays();
+        }
+
+        _transitionConstants(fsmClassName);
+
+        // The switch style uses a single, concrete state class
+        // and static handler methods in place of the state class
+        // hierarchy.
+        if (_javaStyle != JavaStyle.CLASS)
+        {
+            _switchStateClass(context);
+
+            for (SmcMap map: maps)
+            {
+                map.accept(this);
+            }
+
+            _switchHelpers(fsm);
+        }
+        else
+        {
+            _classStates(fsm);
+        }
+
+        // If serialization is turned on, then output the
+        // writeObject and readObject methods.
+        if (_serialFlag == true) {
+            _source.print("    private void writeObject(");
+            _source.println("java.io.ObjectOutputStream ostream)");
+            _source.println("        throws java.io.IOException");
+            _source.println("    {");
+            if (requiresPush) {
+                generateWritePushSupport(context);
+            }
+            _source.println();
+            _source.println("        ostream.writeInt(_state.getId());");
+            _source.println();
+            _source.println("        return;");
+            _source.println("    }");
+            _source.println();
+            _source.print("    private void readObject(");
+            _source.println("java.io.ObjectInputStream istream)");
+            _source.println("        throws java.io.IOException");
+            _source.println("    {");
+            _source.println("        int stateId;");
+            if (requiresPush) {
+                generateReadPushSupport();
+            }
+            _source.println();
+
+            // Check the stream as readFrom checks a record, and
+            // assign nothing until all of it is read.
+            _source.println("        stateId = istream.readInt();");
+            _source.println(
+                "        if (stateId < 0 || stateId >= _States.length)");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new java.io.InvalidObjectException(");
+            _source.println(
+                "                    \"invalid state id \" + stateId));");
+            _source.println("        }");
+            _source.println();
+            if (requiresPush) {
+                _source.println("        _stateStackDepth = depth;");
+                _source.println("        _stateStack = stack;");
+            }
+            _source.println("        _state = _States[stateId];");
+            if (_combineFlag == true)
+            {
+                _source.println(
+                    "        _combiner = new statemap.TransitionCombiner();");
+            }
+            _source.println();
+            _source.println("        return;");
+            _source.println("    }");
+            _source.println();
+
+            _binaryCodec(requiresPush);
+        }
+
+        if (requiresPush) {
+            generatePushSupport();
+        }
+
+        // End of context class.
+        _source.println("}");
+
+        _source.println();
+        _source.println("/*");
+        _source.println(" * Local variables:");
+        _source.println(" *  buffer-read-only: t");
+        _source.println(" * End:");
+        _source.println(" */");
+
+        return;
+    } // end of visit(SmcFSM)
+
+    // Emits the class style state classes: the abstract
+    // context state class, followed by each map's default state
+    // class and state classes.
+    private void _classStates(final SmcFSM fsm)
+    {
+        String context = fsm.getContext();
+        String fsmClassName = fsm.getFsmClassName();
+        List<SmcTransition> transitions = fsm.getTransitions();
+        String transName;
+
         // Declare the abstract state class.
         _source.println();
         _source.println("    @SuppressWarnings(\"serial\")");
@@ -484,17 +830,20 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    //");
         _source.println();
 
-        // Abstract method to obtain the a state's supported
-        // transitions.
+        // Method to obtain the a state's supported transitions.
         if (_reflectFlag == true)
         {
             _source.print("        ");
-            _source.print("public abstract Map");
+            _source.print("public Map");
             if (_genericFlag == true)
             {
                 _source.print("<String, Integer>");
             }
-            _source.println(" getTransitions();");
+            _source.println(" getTransitions()");
+            _source.println("        {");
+            _source.println(
+                "            return (transitionMap(_TransitionNames));");
+            _source.println("        }");
             _source.println();
         }
 
@@ -553,24 +902,18 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.print(fsmClassName);
         _source.println(" context)");
         _source.println("        {");
-        _source.println("            if (log.isTraceEnabled())");
-        _source.println("            {");
-        _source.print(_indent);
-        _source.println("                log.trace(");
-        _source.println("                    \"TRANSITION   : Default [\" + context.getName() + \"]\");");
-        _source.println("            }");
+        _printTrace("            ",
+                    "context",
+                    "traceUndefined()",
+                    "TRANSITION   : Default");
         _source.println(); 
-        _source.println("            throw (");
-        _source.println(
-            "                new statemap.TransitionUndefinedException(");
-        _source.println(
-            "                    \"State: \" +");
-        _source.println(
-            "                    context.getState().getName() +");
-        _source.println(
-            "                    \", Transition: \" +");
-        _source.println(
-            "                    context.getTransition()));");
+        if (_metricsFlag == true)
+        {
+            _source.println(
+                "            _Metrics.undefined(context.getTransitionId());");
+            _source.println();
+        }
+        _source.println("            context.undefinedTransition();");
         _source.println("        }");
 
         // End of state class.
@@ -582,100 +925,499 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    }");
 
         // Have each map print out its source code now.
-        for (SmcMap map: maps)
+        for (SmcMap map: fsm.getMaps())
         {
             map.accept(this);
         }
 
-        // If serialization is turned on, then output the
-        // writeObject and readObject methods.
-        if (_serialFlag == true) {
-            _source.print("    private void writeObject(");
-            _source.println("java.io.ObjectOutputStream ostream)");
-            _source.println("        throws java.io.IOException");
-            _source.println("    {");
-            if (requiresPush) {
-                generateWritePushSupport(context);
-            }
-            _source.println();
-            _source.println("        ostream.writeInt(_state.getId());");
-            _source.println();
-            _source.println("        return;");
-            _source.println("    }");
-            _source.println();
-            _source.print("    private void readObject(");
-            _source.println("java.io.ObjectInputStream istream)");
-            _source.println("        throws java.io.IOException");
-            _source.println("    {");
-            if (requiresPush) {
-                generateReadPushSupport();
+        return;
+    } // end of _classStates(SmcFSM)
+
+    // Assigns each transition, other than Default, a dense,
+    // FSM-wide identifier in transition name order.
+    private void _indexTransitions(
+        final List<SmcTransition> transitions)
+    {
+        _transitionIds = new LinkedHashMap<String, Integer>();
+
+        for (SmcTransition trans: transitions)
+        {
+            if (trans.getName().equals("Default") == false &&
+                _transitionIds.containsKey(trans.getName()) ==
+                    false)
+            {
+                _transitionIds.put(
+                    trans.getName(), _transitionIds.size());
             }
-            _source.println();
-            _source.println("        _state = _States[istream.readInt()];");
-            _source.println();
-            _source.println("        return;");
-            _source.println("    }");
-            _source.println();
         }
 
-        if (requiresPush) {
-            generatePushSupport();
-        }
+        return;
+    } // end of _indexTransitions(List<SmcTransition>)
 
-        // End of context class.
-        _source.println("}");
+    // Emits the transition identifier constants and the
+    // identifier to name table.
+    private void _transitionConstants(final String fsmClassName)
+    {
+        String separator;
 
         _source.println();
-        _source.println("/*");
-        _source.println(" * Local variables:");
-        _source.println(" *  buffer-read-only: t");
-        _source.println(" * End:");
-        _source.println(" */");
+        for (Map.Entry<String, Integer> entry:
+                 _transitionIds.entrySet())
+        {
+            _source.print("    public static final int ");
+            _source.print(entry.getKey());
+            _source.print("_ID = ");
+            _source.print(entry.getValue());
+            _source.println(";");
+        }
+        _source.print(
+            "    public static final int TRANSITION_COUNT = ");
+        _source.print(_transitionIds.size());
+        _source.println(";");
+        _source.println();
 
-        return;
-    } // end of visit(SmcFSM)
+        _source.println(
+            "    private static final String[] _TransitionNames =");
+        _source.println("    {");
+        separator = "";
+        for (String name: _transitionIds.keySet())
+        {
+            _source.print(separator);
+            _source.print("        \"");
+            _source.print(name);
+            _source.print("\"");
 
-    private void generateWritePushSupport(String context) {
-        _source.println("        int size =");
+            separator = ",\n";
+        }
+        _source.println();
+        _source.println("    };");
+
+        if (_metricsFlag == true)
+        {
+            _metricsConstants(fsmClassName);
+        }
+
+        return;
+    } // end of _transitionConstants(String)
+
+    // Emits the state name table and the context class'
+    // metrics. The metrics follow _TransitionNames since they
+    // are initialized from it.
+    private void _metricsConstants(final String fsmClassName)
+    {
+        String separator;
+
+        _source.println();
+        _source.println(
+            "    private static final String[] _StateNames =");
+        _source.println("    {");
+        separator = "";
+        for (String name: _stateIndex.keySet())
+        {
+            _source.print(separator);
+            _source.print("        \"");
+            _source.print(name);
+            _source.print("\"");
+
+            separator = ",\n";
+        }
+        _source.println();
+        _source.println("    };");
+        _source.println();
+        _source.println(
+            "    private static final statemap.FSMMetrics _Metrics =");
+        _source.println("        statemap.FSMMetrics.register(");
         _source.print("            ");
-        _source.println("(_stateStack == null ? 0 : _stateStack.size());");
+        _source.print(fsmClassName);
+        _source.println(".class, _StateNames, _TransitionNames);");
+
+        return;
+    } // end of _metricsConstants(String)
+
+    // Emits the isTransitionSerialized() and
+    // serializeTransition(Runnable) overrides, which run a task
+    // holding the context's monitor with -sync or through the
+    // combiner with -combine.
+    private void _serializeTransition()
+    {
+        _source.println("    @Override");
+        _source.println(
+            "    protected boolean isTransitionSerialized()");
+        _source.println("    {");
+        _source.println("        return (true);");
+        _source.println("    }");
+        _source.println();
+        _source.println("    @Override");
+        _source.println(
+            "    protected void serializeTransition(final Runnable task)");
+        _source.println("    {");
+        if (_combineFlag == true)
+        {
+            _source.println("        _combiner.combine(");
+            _source.println(
+                "            new statemap.TransitionCombiner.Request()");
+            _source.println("            {");
+            _source.println("                @Override");
+            _source.println("                protected void apply()");
+            _source.println("                {");
+            _source.println("                    task.run();");
+            _source.println("                }");
+            _source.println("            });");
+        }
+        else
+        {
+            _source.println("        synchronized (this)");
+            _source.println("        {");
+            _source.println("            task.run();");
+            _source.println("        }");
+        }
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _serializeTransition()
+
+    // Emits the setState() override recording the residency
+    // time of the state being left.
+    private void _metricsSetState()
+    {
+        _source.println("    @Override");
+        _source.println("    public void setState(statemap.State state)");
+        _source.println("    {");
+        _source.println("        long now = System.nanoTime();");
+        _source.println(
+            "        statemap.State resident = _residentState;");
+        _source.println();
+        _source.println("        if (resident != null)");
+        _source.println("        {");
+        _source.println("            _Metrics.stateExited(");
+        _source.println(
+            "                resident.getId(), now - _residentSince);");
+        _source.println("        }");
+        _source.println("        _residentState = state;");
+        _source.println("        _residentSince = now;");
+        _source.println();
+        _source.println("        super.setState(state);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _metricsSetState()
+
+    private void generateWritePushSupport(String context) {
         _source.println("        int i;");
         _source.println();
-        _source.println("        ostream.writeInt(size);");
+        _source.println("        ostream.writeInt(_stateStackDepth);");
         _source.println();
-        _source.println("        for (i = 0; i < size; ++i)");
+        _source.println("        for (i = 0; i < _stateStackDepth; ++i)");
         _source.println("        {");
-        _source.println("            ostream.writeInt(");
-        _source.print("                ((");
-        _source.print(context);
-        _source.println("State) _stateStack.get(i)).getId());");
+        _source.println("            ostream.writeInt(_stateStack[i]);");
         _source.println("        }");
     }
 
+    // Reads the state stack into the depth and stack locals.
+    // An unbounded stack grows as its identifiers are read, so
+    // a bad depth cannot allocate more than the stream holds.
     private void generateReadPushSupport() {
-        _source.println("        int size;");
-        _source.println();
-        _source.println("        size = istream.readInt();");
+        _source.println("        int depth;");
+        _source.println("        int[] stack;");
+        _source.println("        int i;");
         _source.println();
-        _source.println("        if (size == 0)");
+        _source.println("        depth = istream.readInt();");
+        _source.print("        if (depth < 0");
+        if (_pushDepth != SmcFSM.UNBOUNDED_PUSH_DEPTH)
+        {
+            _source.print(" || depth > STATE_STACK_CAPACITY");
+        }
+        _source.println(")");
         _source.println("        {");
-        _source.println("            _stateStack = null;");
+        _source.println("            throw (");
+        _source.println(
+            "                new java.io.InvalidObjectException(");
+        _source.println(
+            "                    \"invalid state stack depth \" + depth));");
         _source.println("        }");
-        _source.println("        else");
-        _source.println("        {");
-        _source.println("            int i;");
-        _source.println();
-        _source.println("            _stateStack =");
-        _source.println("                new java.util.Stack<statemap.State>();");
         _source.println();
-        _source.println("            for (i = 0; i < size; ++i)");
+        _source.println("        stack = new int[STATE_STACK_CAPACITY];");
+        _source.println("        for (i = 0; i < depth; ++i)");
+        _source.println("        {");
+        if (_pushDepth == SmcFSM.UNBOUNDED_PUSH_DEPTH)
+        {
+            _source.println("            if (i == stack.length)");
+            _source.println("            {");
+            _source.println(
+                "                stack = java.util.Arrays.copyOf(stack, i << 1);");
+            _source.println("            }");
+            _source.println();
+        }
+        _source.println("            stack[i] = istream.readInt();");
+        _source.println(
+            "            if (stack[i] < 0 || stack[i] >= _States.length)");
         _source.println("            {");
-        _source.print("                _stateStack.add(i, _States[");
-        _source.println("istream.readInt()]);");
+        _source.println("                throw (");
+        _source.println(
+            "                    new java.io.InvalidObjectException(");
+        _source.println(
+            "                        \"invalid state id \" + stack[i]));");
         _source.println("            }");
         _source.println("        }");
     }
 
+    // Emits writeTo(ByteBuffer) and readFrom(ByteBuffer), and
+    // replayState(int, int, int) for journal recovery. A record is the
+    // current state identifier, the state stack depth and
+    // identifiers, and the context name.
+    private void _binaryCodec(final boolean requiresPush)
+    {
+        _source.println("    @Override");
+        _source.println(
+            "    public void writeTo(java.nio.ByteBuffer buffer)");
+        _source.println("    {");
+        _source.println("        if (_state == null)");
+        _source.println("        {");
+        _source.println("            throw (");
+        _source.println(
+            "                new statemap.StateUndefinedException(");
+        _source.println(
+            "                    \"cannot write a context in transition\"));");
+        _source.println("        }");
+        _source.println();
+        _source.println("        buffer.putInt(_state.getId());");
+        if (requiresPush == true)
+        {
+            _source.println(
+                "        buffer.putInt(_stateStackDepth);");
+            _source.println(
+                "        for (int i = 0; i < _stateStackDepth; ++i)");
+            _source.println("        {");
+            _source.println(
+                "            buffer.putInt(_stateStack[i]);");
+            _source.println("        }");
+        }
+        else
+        {
+            _source.println("        buffer.putInt(0);");
+        }
+        _source.println("        writeName(buffer);");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    @Override");
+        _source.println(
+            "    public void readFrom(java.nio.ByteBuffer buffer)");
+        _source.println("    {");
+        _source.println("        int stateId = buffer.getInt();");
+        _source.println("        int depth = buffer.getInt();");
+        if (requiresPush == true)
+        {
+            _source.println("        int[] stack;");
+            _source.println("        int base;");
+            _source.println("        int id;");
+            _source.println("        int i;");
+        }
+        _source.println("        String name;");
+        _source.println();
+        _source.println(
+            "        if (stateId < 0 || stateId >= _States.length)");
+        _source.println("        {");
+        _source.println("            throw (");
+        _source.println(
+            "                new IllegalArgumentException(");
+        _source.println(
+            "                    \"invalid state id \" + stateId));");
+        _source.println("        }");
+        _source.println();
+        if (requiresPush == true)
+        {
+            // A bounded stack never holds more than its
+            // capacity.
+            _source.print("        if (depth < 0 ||");
+            if (_pushDepth != SmcFSM.UNBOUNDED_PUSH_DEPTH)
+            {
+                _source.print(
+                    "\n            depth > STATE_STACK_CAPACITY ||");
+            }
+            _source.println(
+                "\n            depth > (buffer.remaining() >> 2))");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new IllegalArgumentException(");
+            _source.println(
+                "                    \"invalid state stack depth \" + depth));");
+            _source.println("        }");
+            _source.println();
+
+            // Check the stacked states and read the name before
+            // assigning anything so that a bad record leaves
+            // the context unchanged.
+            _source.println(
+                "        base = buffer.position();");
+            _source.println(
+                "        for (i = 0; i < depth; ++i)");
+            _source.println("        {");
+            _source.println(
+                "            id = buffer.getInt(base + (i << 2));");
+            _source.println(
+                "            if (id < 0 || id >= _States.length)");
+            _source.println("            {");
+            _source.println("                throw (");
+            _source.println(
+                "                    new IllegalArgumentException(");
+            _source.println(
+                "                        \"invalid state id \" + id));");
+            _source.println("            }");
+            _source.println("        }");
+            _source.println(
+                "        buffer.position(base + (depth << 2));");
+            _source.println("        name = readName(buffer);");
+            _source.println();
+            _source.println("        stack =");
+            _source.println(
+                "            (depth <= _stateStack.length ?");
+            _source.println("             _stateStack :");
+            _source.println("             new int[depth]);");
+            _source.println(
+                "        for (i = 0; i < depth; ++i)");
+            _source.println("        {");
+            _source.println(
+                "            stack[i] = buffer.getInt(base + (i << 2));");
+            _source.println("        }");
+            _source.println("        _stateStack = stack;");
+            _source.println("        _stateStackDepth = depth;");
+        }
+        else
+        {
+            _source.println("        if (depth != 0)");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new IllegalArgumentException(");
+            _source.println(
+                "                    \"FSM has no state stack\"));");
+            _source.println("        }");
+            _source.println();
+            _source.println("        name = readName(buffer);");
+        }
+        _source.println(
+            "        restoreState(_States[stateId], name);");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    @Override");
+        _source.println("    public void replayState(int stateId,");
+        _source.println("                            int stackDepth,");
+        _source.println("                            int stackTopId)");
+        _source.println("    {");
+        _source.println(
+            "        if (stateId < 0 || stateId >= _States.length)");
+        _source.println("        {");
+        _source.println("            throw (");
+        _source.println(
+            "                new IllegalArgumentException(");
+        _source.println(
+            "                    \"invalid state id \" + stateId));");
+        _source.println("        }");
+        if (requiresPush == true)
+        {
+            // A bounded stack never holds more than its
+            // capacity.
+            _source.print("        else if (stackDepth < 0");
+            if (_pushDepth != SmcFSM.UNBOUNDED_PUSH_DEPTH)
+            {
+                _source.print(
+                    " ||\n                 stackDepth > STATE_STACK_CAPACITY");
+            }
+            _source.println(")");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new IllegalArgumentException(");
+            _source.println(
+                "                    \"invalid state stack depth \" + stackDepth));");
+            _source.println("        }");
+            _source.println(
+                "        else if (stackDepth > 0 &&");
+            _source.println(
+                "                 (stackTopId < 0 || stackTopId >= _States.length))");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new IllegalArgumentException(");
+            _source.println(
+                "                    \"invalid state id \" + stackTopId));");
+            _source.println("        }");
+            _source.println();
+            if (_pushDepth == SmcFSM.UNBOUNDED_PUSH_DEPTH)
+            {
+                _source.println(
+                    "        if (stackDepth > _stateStack.length)");
+                _source.println("        {");
+                _source.println("            _stateStack =");
+                _source.println(
+                    "                java.util.Arrays.copyOf(_stateStack, stackDepth);");
+                _source.println("        }");
+            }
+            _source.println("        if (stackDepth > 0)");
+            _source.println("        {");
+            _source.println(
+                "            _stateStack[stackDepth - 1] = stackTopId;");
+            _source.println("        }");
+            _source.println("        _stateStackDepth = stackDepth;");
+        }
+        else
+        {
+            _source.println("        else if (stackDepth != 0)");
+            _source.println("        {");
+            _source.println("            throw (");
+            _source.println(
+                "                new IllegalArgumentException(");
+            _source.println(
+                "                    \"FSM has no state stack\"));");
+            _source.println("        }");
+        }
+        _source.println();
+        _source.println(
+            "        restoreState(_States[stateId], _name);");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _binaryCodec(boolean)
+
+    // Returns true if any state in the maps has a push
+    // transition.
+    private static boolean _hasPushTransition(final List<SmcMap> maps)
+    {
+        for (SmcMap map: maps)
+        {
+            for (SmcState state: map.getAllStates())
+            {
+                for (SmcTransition trans: state.getTransitions())
+                {
+                    for (SmcGuard guard: trans.getGuards())
+                    {
+                        if (guard.getTransType() ==
+                                TransType.TRANS_PUSH)
+                        {
+                            return (true);
+                        }
+                    }
+                }
+            }
+        }
+
+        return (false);
+    } // end of _hasPushTransition(List<SmcMap>)
+
     /**
      * Emits Java code for the FSM map.
      * @param map emit Java code for this map.
@@ -683,6 +1425,12 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
     @Override
     public void visit(SmcMap map) 
     {
+        if (_javaStyle != JavaStyle.CLASS)
+        {
+            _switchMap(map);
+            return;
+        }
+
         List<SmcTransition> definedDefaultTransitions;
         SmcState defaultState = map.getDefaultState();
         String context = map.getFSM().getContext();
@@ -749,7 +1497,11 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("\", ");
-            _source.print(map.getNextStateId());
+
+            // Use the FSM-wide identifier so that getId() indexes
+            // _States, which serialization and popState() rely on.
+            _source.print(
+                _stateIds.get(mapName + "." + state.getClassName()));
             _source.println(");");
         }
 
@@ -784,30 +1536,30 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    //");
         _source.println();
 
-        // If -reflect was specified, then output the
-        // getTransitions() abstract method.
-        if (_reflectFlag == true)
-        {
-            _source.print("        ");
-            _source.print("public Map");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println(" getTransitions()");
-            _source.println("        {");
-            _source.println(
-                "            return (_transitions);");
-            _source.println("        }");
-            _source.println();
-        }
-
         // Generate the constructor.
         _source.print("        protected ");
         _source.print(mapName);
         _source.println("_Default(String name, int id)");
         _source.println("        {");
         _source.println("            super (name, id);");
+
+        // The map's Default state defines only the default
+        // transitions. Each state's constructor replaces these.
+        if (_reflectFlag == true)
+        {
+            _source.println();
+            _source.println("            setTransitionMasks(");
+            _source.print("                ");
+            _source.print(
+                _transitionMask(
+                    new ArrayList<SmcTransition>(), null));
+            _source.println(",");
+            _source.print("                ");
+            _source.print(
+                _transitionMask(
+                    definedDefaultTransitions, null));
+            _source.println(");");
+        }
         _source.println("        }");
 
         // Declare the user-defined default transitions first.
@@ -831,72 +1583,6 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    // Member data.");
         _source.println("    //");
 
-        // If -reflect was specified, then generate the
-        // _transitions map.
-        if (_reflectFlag == true)
-        {
-            List<SmcTransition> allTransitions =
-                map.getFSM().getTransitions();
-            String transName;
-            String transDefinition;
-
-            _source.println();
-            _source.println(
-                "        //---------------------------------------------------");
-            _source.println("        // Statics.");
-            _source.println("        //");
-            _source.print("        ");
-            _source.print("private static Map");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println(" _transitions;");
-            _source.println();
-
-            // Now output the transition collection's
-            // initialization.
-            _source.println("        static");
-            _source.println("        {");
-            _source.print("            ");
-            _source.print("_transitions = new HashMap");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println("();");
-
-            // Now place all transition names and states into the
-            // map.
-            for (SmcTransition transition: allTransitions)
-            {
-                transName = transition.getName();
-
-                // If the transition is defined in this map's
-                // default state, then the value is 2.
-                if (definedDefaultTransitions.contains(
-                        transition) == true)
-                {
-                    transDefinition =
-                        "statemap.State.TRANSITION_DEFINED_DEFAULT";
-                }
-                // Otherwise the value is 0 - undefined.
-                else
-                {
-                    transDefinition =
-                        "statemap.State.TRANSITION_UNDEFINED";
-                }
-
-                _source.print("            ");
-                _source.print("_transitions.put(\"");
-                _source.print(transName);
-                _source.print("\", ");
-                _source.print(transDefinition);
-                _source.println(");");
-            }
-            _source.println("        }");
-        }
-
         // The map class has been defined.
         _source.println("    }");
         /* qiulang --- generate the actual state classes here
@@ -926,6 +1612,12 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         List<SmcAction> actions;
         String indent2;
 
+        if (_javaStyle != JavaStyle.CLASS)
+        {
+            _switchState(state);
+            return;
+        }
+
         // Declare the inner state class.
         _source.println();
         _source.println("    @SuppressWarnings(\"serial\")");
@@ -943,24 +1635,6 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    //");
         _source.println();
 
-        // If -reflect was specified, then generate the
-        // getTransitions() methods.
-        if (_reflectFlag == true)
-        {
-            _source.print("        ");
-            _source.print("public Map");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println(" getTransitions()");
-            _source.println("        {");
-            _source.print("            ");
-            _source.println("return (_transitions);");
-            _source.println("        }");
-            _source.println();
-        }
-
         // Add the constructor.
         _source.print("        private ");
         _source.print(mapName);
@@ -969,12 +1643,27 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("(String name, int id)");
         _source.println("        {");
         _source.println("            super (name, id);");
+        if (_reflectFlag == true)
+        {
+            _source.println();
+            _source.println("            setTransitionMasks(");
+            _source.print("                ");
+            _source.print(
+                _transitionMask(state.getTransitions(), null));
+            _source.println(",");
+            _source.print("                ");
+            _source.print(
+                _transitionMask(
+                    _defaultTransitions(map),
+                    state.getTransitions()));
+            _source.println(");");
+        }
         _source.println("        }");
 
         // Add the Entry() and Exit() member functions if this
         // state defines them.
         actions = state.getEntryActions();
-        if (actions != null && actions.size() > 0)
+        if (_hasEntry(state) == true)
         {
             _source.println();
             _source.print("        protected void Entry(");
@@ -991,12 +1680,16 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
             // Generate the actions associated with this code.
             indent2 = _indent;
             _indent = "            ";
-            for (SmcAction action: actions)
+            if (actions != null)
             {
-                action.accept(this);
+                for (SmcAction action: actions)
+                {
+                    action.accept(this);
+                }
             }
 
             _indent = indent2;
+            _printTimeout("            ", state);
 
             // End the Entry() member function with a return.
             _source.println("            return;");
@@ -1044,97 +1737,6 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         _source.println("    // Member data.");
         _source.println("    //");
 
-        // If -reflect was specified, then generate the
-        // _transitions map.
-        if (_reflectFlag == true)
-        {
-            List<SmcTransition> allTransitions =
-                map.getFSM().getTransitions();
-            List<SmcTransition> stateTransitions =
-                state.getTransitions();
-            SmcState defaultState = map.getDefaultState();
-            List<SmcTransition> defaultTransitions;
-            String transName;
-            String transDefinition;
-
-            // Initialize the default transition list to all the
-            // default state's transitions.
-            if (defaultState != null)
-            {
-                defaultTransitions =
-                    defaultState.getTransitions();
-            }
-            else
-            {
-                defaultTransitions =
-                    new ArrayList<SmcTransition>();
-            }
-
-            _source.println();
-            _source.println(
-                "        //---------------------------------------------------");
-            _source.println("        // Statics.");
-            _source.println("        //");
-            _source.print("        ");
-            _source.print("private static Map");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println(" _transitions;");
-            _source.println();
-
-            // Now output the transition collection's
-            // initialization.
-            _source.println("        static");
-            _source.println("        {");
-            _source.print("            ");
-            _source.print("_transitions = new HashMap");
-            if (_genericFlag == true)
-            {
-                _source.print("<String, Integer>");
-            }
-            _source.println("();");
-
-            // Now place all transition names and states into the
-            // map.
-            for (SmcTransition transition: allTransitions)
-            {
-                transName = transition.getName();
-
-                // If the transition is in this state, then its
-                // value is 1.
-                if (stateTransitions.contains(
-                        transition) == true)
-                {
-                    transDefinition =
-                        "statemap.State.TRANSITION_DEFINED_LOCALLY";
-                }
-                // If the transition is defined in this map's
-                // default state, then the value is 2.
-                else if (defaultTransitions.contains(
-                             transition) == true)
-                {
-                    transDefinition =
-                        "statemap.State.TRANSITION_DEFINED_DEFAULT";
-                }
-                // Otherwise the value is 0 - undefined.
-                else
-                {
-                    transDefinition =
-                        "statemap.State.TRANSITION_UNDEFINED";
-                }
-
-                _source.print("            ");
-                _source.print("_transitions.put(\"");
-                _source.print(transName);
-                _source.print("\", ");
-                _source.print(transDefinition);
-                _source.println(");");
-            }
-            _source.println("        }");
-        }
-
         // End of this state class declaration.
         _source.println("    }");
 
@@ -1164,8 +1766,16 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
         _source.println();
         _source.print(_indent);
-        _source.print("protected void ");
-        _source.print(transName);
+        if (_javaStyle != JavaStyle.CLASS)
+        {
+            _source.print("private static void ");
+            _source.print(_handlerName(state, transName));
+        }
+        else
+        {
+            _source.print("protected void ");
+            _source.print(transName);
+        }
         _source.print("(");
         _source.print(fsmClassName);
         _source.print(" context");
@@ -1195,30 +1805,20 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
         _source.println();
         
-        _source.print(_indent);
-        _source.println("    if (log.isTraceEnabled())");
-        _source.print(_indent);
-        _source.println("    {");
-        _source.print(_indent);
-        _source.print("        log.trace(\"TRANSITION   : ");
-        _source.print(transition.signature());
-        _source.println(" [\" + context.getName() + \"]\");");
-        _source.print(_indent);
-        _source.println("    }");
-
-        // Output state exit.
-        _source.print(_indent);
-        _source.println("    if (log.isTraceEnabled())");
-        _source.print(_indent);
-        _source.println("    {");
-        _source.print(_indent);
-        _source.print("        log.trace(\"LEAVING STATE   : ");
-        _source.print(mapName);
-        _source.print('.');
-        _source.print(stateName);
-        _source.println(" [\" + context.getName() + \"]\");");
-        _source.print(_indent);
-        _source.println("    }");
+        _printTrace(_indent + "    ",
+                    "context",
+                    "traceTransition(" +
+                    _traceTransitionId(transition.getName(),
+                                       "context") +
+                    ")",
+                    "TRANSITION   : " + transition.signature());
+
+        // Output state exit. The tracer finds the state being
+        // left in the context.
+        _printTrace(_indent + "    ",
+                    "context",
+                    null,
+                    "LEAVING STATE   : " + mapName + "." + stateName);
 
         // Loop through the guards and print each one.
         for (git = guards.iterator(),
@@ -1257,18 +1857,28 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 
             // Call the super class' transition method using
             // the "super" keyword and not the class name.
+            // The switch style calls the handler the super
+            // class method would have reached instead.
             _source.print(_indent);
-            _source.print("        super.");
-            _source.print(transName);
-            _source.print("(context");
-
-            for (SmcParameter param: parameters)
+            if (_javaStyle != JavaStyle.CLASS)
             {
-                _source.print(", ");
-                _source.print(param.getName());
+                _source.print("        ");
+                _source.println(_fallbackCall(transition));
             }
+            else
+            {
+                _source.print("        super.");
+                _source.print(transName);
+                _source.print("(context");
 
-            _source.println(");");
+                for (SmcParameter param: parameters)
+                {
+                    _source.print(", ");
+                    _source.print(param.getName());
+                }
+
+                _source.println(");");
+            }
             _source.print(_indent);
             _source.println("    }");
             _source.println();
@@ -1432,82 +2042,40 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         // executed only if 1) this is a standard, non-loopback
         // transition or a pop transition.
         if (transType == TransType.TRANS_POP || loopbackFlag == false) { 
-            _source.print(_indent);
-            _source.println("    if (log.isTraceEnabled())");
-            _source.print(_indent);
-            _source.println("{");
-            _source.print(_indent);
-            _source.print("        log.trace(\"BEFORE EXIT     : ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.println(".Exit(context) [\" + context.getName() + \"]\");");
-            _source.print(indent2);
-            _source.println("}");
+            _printTrace(indent2,
+                        "context",
+                        "traceBeforeExit()",
+                        "BEFORE EXIT     : " +
+                        mapName +
+                        "." +
+                        stateName +
+                        ".Exit(context)");
             _source.println();
 
-            _source.print(indent2);
-            _source.println(
-                "(context.getState()).Exit(context);");
- 
-            _source.print(_indent);
-            _source.println("    if (log.isTraceEnabled())");
-            _source.print(_indent);
-            _source.println("{");
-            _source.print(_indent);
-            _source.print("        log.trace(\"AFTER EXIT      : ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.println(".Exit(context) [\" + context.getName() + \"]\");");
-            _source.print(indent2);
-            _source.println("    }");
-            _source.println();
+            _printExit(indent2, state);
 
+            _printTrace(indent2,
+                        "context",
+                        "traceAfterExit()",
+                        "AFTER EXIT      : " +
+                        mapName +
+                        "." +
+                        stateName +
+                        ".Exit(context)");
+            _source.println();
         }
 
         // Output transition to debug stream.
         if (_debugLevel >= DEBUG_LEVEL_0)
         {
-            List<SmcParameter> parameters =
-                transition.getParameters();
-            Iterator<SmcParameter> pit;
-            String sep;
-
-            indent4 = _indent;
-            if (_noCatchFlag == false)
-            {
-                _indent = indent2;
-            }
-
-            _source.print(_indent);
-            _source.println("if (log.isTraceEnabled())");
-            _source.print(_indent);
-            _source.println("{");
-            _source.print(_indent);
-            _source.print("    log.trace(\"ENTER TRANSITION: ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.print('.');
-            _source.print(transName);
-
-            _source.print('(');
-            for (pit = parameters.iterator(), sep = "";
-                 pit.hasNext() == true;
-                 sep = ", ")
-            {
-                _source.print(sep);
-                (pit.next()).accept(this);
-            }
-            _source.print(')');
-
-            _source.println(" [\" + context.getName() + \"]\");");
-            _source.print(_indent);
-            _source.println("}");
+            _printTrace((_noCatchFlag == false ? indent2 : _indent),
+                        "context",
+                        "traceBeforeActions(" +
+                        _traceTransitionId(transName, "context") +
+                        ")",
+                        "ENTER TRANSITION: " +
+                        _traceSignature(transition));
             _source.println();
-
-            _indent = indent4;
         }
 
         // Dump out this transition's actions.
@@ -1573,42 +2141,14 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
         // Output transition to debug stream.
         if (_debugLevel >= DEBUG_LEVEL_0)
         {
-            List<SmcParameter> parameters =
-                transition.getParameters();
-            Iterator<SmcParameter> pit;
-            String sep;
-
-            indent4 = _indent;
-            _indent = indent3;
-
-            _source.print(_indent);
-            _source.println("if (log.isTraceEnabled())");
-            _source.print(_indent);
-            _source.println("{");
-            _source.print(_indent);
-            _source.print("    log.trace(\"EXIT TRANSITION : ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.print('.');
-            _source.print(transName);
-
-            _source.print('(');
-            for (pit = parameters.iterator(), sep = "";
-                 pit.hasNext() == true;
-                 sep = ", ")
-            {
-                _source.print(sep);
-                (pit.next()).accept(this);
-            }
-            _source.print(')');
-
-            _source.println(" [\" + context.getName() + \"]\");");
-            _source.print(_indent);
-            _source.println("}");
+            _printTrace(indent3,
+                        "context",
+                        "traceAfterActions(" +
+                        _traceTransitionId(transName, "context") +
+                        ")",
+                        "EXIT TRANSITION : " +
+                        _traceSignature(transition));
             _source.println();
-
-            _indent = indent4;
         }
 
         // Print the setState() call, if necessary. Do NOT
@@ -1641,9 +2181,7 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
             // entry actions (if any) if this is not a loopback.
             if (loopbackFlag == false)
             {
-                _source.print(indent3);
-                _source.println(
-                    "(context.getState()).Entry(context);");
+                _printEntry(indent3, fqEndStateName);
             }
 
             _source.print(indent3);
@@ -1665,39 +2203,38 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
              loopbackFlag == false) ||
              transType == TransType.TRANS_PUSH)
         {
-
-            _source.println();
-            _source.print(indent3);
-            _source.println("if (log.isTraceEnabled())");
-            _source.print(indent3);
-            _source.println("{");
-            _source.print(indent3);
-            _source.print("    log.trace(\"BEFORE ENTRY    : ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.println(".Entry(context) [\" + context.getName() + \"]\");");
-            _source.print(indent3);
-            _source.println("}");
             _source.println();
-
-            _source.print(indent3);
-            _source.println(
-                "(context.getState()).Entry(context);");
+            _printTrace(indent3,
+                        "context",
+                        "traceBeforeEntry()",
+                        "BEFORE ENTRY    : " +
+                        mapName +
+                        "." +
+                        stateName +
+                        ".Entry(context)");
+
+            // The switch and table styles have no call to make
+            // if the state has no entry actions.
+            if (_hasEntryCall(transType == TransType.TRANS_PUSH ?
+                              pushStateName :
+                              fqEndStateName) == true)
+            {
+                _source.println();
+                _printEntry(indent3,
+                            (transType == TransType.TRANS_PUSH ?
+                             pushStateName :
+                             fqEndStateName));
+            }
 
             _source.println();
-            _source.print(indent3);
-            _source.println("if (log.isTraceEnabled())");
-            _source.print(indent3);
-            _source.println("{");
-            _source.print(indent3);
-            _source.print("    log.trace(\"AFTER ENTRY     : ");
-            _source.print(mapName);
-            _source.print('.');
-            _source.print(stateName);
-            _source.println(".Entry(context) [\" + context.getName() + \"]\");");
-            _source.print(indent3);
-            _source.println("}");
+            _printTrace(indent3,
+                        "context",
+                        "traceAfterEntry()",
+                        "AFTER ENTRY     : " +
+                        mapName +
+                        "." +
+                        stateName +
+                        ".Entry(context)");
         }
 
         // If there was a try/finally, then put the closing
@@ -1809,51 +2346,1474 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
     // end of SmcVisitor Abstract Method Impelementation.
     //-----------------------------------------------------------
 
-    // Generates the code for instantiating and initializing the
-    // reflection state and transition sets.
-    private void reflectionSets(
-        final List<SmcMap> maps,
-        final List<SmcTransition> transitions)
+    // Emits the public method which calls the private method
+    // through the transition combiner. The caller emits the
+    // private method holding the method's body.
+    private void _combinedMethod(final String name,
+                                 final String decls,
+                                 final String privateName,
+                                 final String args)
+    {
+        _source.print("    public void ");
+        _source.print(name);
+        _source.print("(");
+        _source.print(decls);
+        _source.println(")");
+        _source.println("    {");
+        _source.println("        _combiner.combine(");
+        _source.println(
+            "            new statemap.TransitionCombiner.Request()");
+        _source.println("            {");
+        _source.println("                @Override");
+        _source.println("                protected void apply()");
+        _source.println("                {");
+        _source.print("                    ");
+        _source.print(privateName);
+        _source.print("(");
+        _source.print(args);
+        _source.println(");");
+        _source.println("                }");
+        _source.println("            });");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _combinedMethod(String, String, String, String)
+
+    // Emits dispatch(int, Object...) and a dispatch method for
+    // each transition parameter count in use. Each
+    // fixed arity method switches on the transition identifier
+    // and calls the public transition method, so event driven
+    // callers need neither reflection nor a varargs array.
+    private void _dispatchMethods(final List<SmcTransition> transitions)
     {
+        Set<Integer> arities = new TreeSet<Integer>();
+        int i;
 
-        _source.print("        _transitions = new TreeSet");
-        if (_genericFlag == true)
+        for (SmcTransition trans: transitions)
         {
-            _source.print("<String>");
+            if (trans.getName().equals("Default") == false)
+            {
+                arities.add(trans.getParameters().size());
+            }
         }
-        _source.println("();");
-        _source.println();
 
-        // Initialize the transition set.
-        for (SmcTransition trans: transitions)
+        // Without transitions there is nothing to dispatch.
+        if (arities.isEmpty() == true)
         {
-            _source.print("        _transitions.add(\"");
-            _source.print(trans.getName());
-            _source.println("\");");
+            return;
         }
 
-        return;
-    } // end of reflectionSets(List<String>, List<SmcMap>)
+        for (int arity: arities)
+        {
+            _dispatchMethod(transitions, arity);
+        }
 
-    private void generatePushSupport() {
-        InputStream is = (getClass().getResourceAsStream("pushSupport.txt"));
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buffer = new byte[4096];
-        try {
-            for (int read = is.read(buffer); read != -1; read = is.read(buffer)) {
-                baos.write(buffer, 0, read);
+        _source.println(
+            "    public void dispatch(int transitionId, Object... args)");
+        _source.println("    {");
+        _source.println("        switch (args.length)");
+        _source.println("        {");
+        for (int arity: arities)
+        {
+            _source.print("            case ");
+            _source.print(arity);
+            _source.println(":");
+            _source.print("                dispatch(transitionId");
+            for (i = 0; i < arity; ++i)
+            {
+                _source.print(", args[");
+                _source.print(i);
+                _source.print("]");
             }
-        } catch (IOException e) {
-            throw new IllegalStateException("Cannot write push support");
+            _source.println(");");
+            _source.println("                break;");
+            _source.println();
         }
-        _source.println(baos.toString());
-    }
-
-    /* (non-Javadoc)
-     * @see net.sf.smc.generator.SmcCodeGenerator#appendPackageName(java.lang.String, java.lang.String)
-     */
-    @Override
-    protected Object appendPackageName(String path, String packageName) {
+        _source.println("            default:");
+        _source.println("                throw (");
+        _source.println(
+            "                    new IllegalArgumentException(");
+        _source.println(
+            "                        \"no transition takes \" +");
+        _source.println("                        args.length +");
+        _source.println("                        \" arguments\"));");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _dispatchMethods(List<SmcTransition>)
+
+    // Emits the dispatch method for transitions taking arity
+    // parameters.
+    private void _dispatchMethod(final List<SmcTransition> transitions,
+                                 final int arity)
+    {
+        Set<String> dispatched = new HashSet<String>();
+        List<SmcParameter> params;
+        String separator;
+        int i;
+
+        if (arity > 0)
+        {
+            _source.println("    @SuppressWarnings(\"unchecked\")");
+        }
+        _source.print("    public void dispatch(int transitionId");
+        for (i = 0; i < arity; ++i)
+        {
+            _source.print(", Object a");
+            _source.print(i);
+        }
+        _source.println(")");
+        _source.println("    {");
+        _source.println("        switch (transitionId)");
+        _source.println("        {");
+
+        for (SmcTransition trans: transitions)
+        {
+            params = trans.getParameters();
+
+            // An overloaded transition is dispatched by its
+            // first definition with this many parameters.
+            if (trans.getName().equals("Default") == true ||
+                params.size() != arity ||
+                dispatched.add(trans.getName()) == false)
+            {
+                continue;
+            }
+
+            _source.print("            case ");
+            _source.print(trans.getName());
+            _source.println("_ID:");
+            _source.print("                ");
+            _source.print(trans.getName());
+            _source.print("(");
+            for (i = 0, separator = "";
+                 i < arity;
+                 ++i, separator = ", ")
+            {
+                _source.print(separator);
+                _source.print("(");
+                _source.print(_boxedType(params.get(i).getType()));
+                _source.print(") a");
+                _source.print(i);
+            }
+            _source.println(");");
+            _source.println("                break;");
+            _source.println();
+        }
+
+        _source.println("            default:");
+        _source.println("                throw (");
+        _source.println(
+            "                    new IllegalArgumentException(");
+        _source.println(
+            "                        \"transition id \" +");
+        _source.println("                        transitionId +");
+        _source.print("                        \" does not take ");
+        _source.print(arity);
+        _source.println(" arguments\"));");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _dispatchMethod(List<SmcTransition>, int)
+
+    // Returns the wrapper class name for a primitive type and
+    // the type itself otherwise.
+    private static String _boxedType(final String type)
+    {
+        String retval = _BoxedTypes.get(type.trim());
+
+        return (retval == null ? type : retval);
+    } // end of _boxedType(String)
+
+    // Emits the postXxx method which posts an event calling the
+    // named transition method to the context's mailbox.
+    private void _postMethod(final String name,
+                             final String decls,
+                             final String args)
+    {
+        _source.print("    public boolean post");
+        _source.print(name.substring(0, 1).toUpperCase());
+        _source.print(name.substring(1));
+        _source.print("(");
+        _source.print(decls);
+        _source.println(")");
+        _source.println("    {");
+        _source.println("        return (");
+        _source.println("            post(");
+        _source.println(
+            "                new statemap.EventMailbox.Event()");
+        _source.println("                {");
+        _source.println("                    @Override");
+        _source.println(
+            "                    protected void apply()");
+        _source.println("                    {");
+        _source.print("                        ");
+        _source.print(name);
+        _source.print("(");
+        _source.print(args);
+        _source.println(");");
+        _source.println("                    }");
+        _source.println("                }));");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _postMethod(String, String, String)
+
+    // Returns a long[] initializer with the bit set for each
+    // transition in defined and not in excluded, indexed by
+    // transition identifier. The Default transition has no
+    // identifier and is skipped.
+    private String _transitionMask(
+        final List<SmcTransition> defined,
+        final List<SmcTransition> excluded)
+    {
+        long[] mask = new long[(_transitionIds.size() + 63) >>> 6];
+        Set<String> excludedNames = new TreeSet<String>();
+        StringBuilder retval = new StringBuilder("new long[] {");
+        String separator = "";
+        Integer id;
+
+        if (excluded != null)
+        {
+            for (SmcTransition trans: excluded)
+            {
+                excludedNames.add(trans.getName());
+            }
+        }
+
+        for (SmcTransition trans: defined)
+        {
+            id = _transitionIds.get(trans.getName());
+            if (id != null &&
+                excludedNames.contains(trans.getName()) == false)
+            {
+                mask[id >>> 6] |= (1L << id);
+            }
+        }
+
+        for (long word: mask)
+        {
+            retval.append(separator)
+                  .append("0x")
+                  .append(Long.toHexString(word))
+                  .append('L');
+            separator = ", ";
+        }
+
+        return (retval.append('}').toString());
+    } // end of _transitionMask(List<SmcTransition>, ...)
+
+    // Returns the transitions defined in the map's default
+    // state.
+    private static List<SmcTransition> _defaultTransitions(
+        final SmcMap map)
+    {
+        SmcState defaultState = map.getDefaultState();
+
+        return (defaultState == null ?
+                new ArrayList<SmcTransition>() :
+                defaultState.getTransitions());
+    } // end of _defaultTransitions(SmcMap)
+
+    //-----------------------------------------------------------
+    // Switch style code generation.
+    //
+
+    // Assigns each state a dense, FSM-wide identifier in map
+    // and state order. This is the order used by the _States
+    // array.
+    private void _indexStates(final List<SmcMap> maps)
+    {
+        _stateIndex = new LinkedHashMap<String, SmcState>();
+        _stateIds = new HashMap<String, Integer>();
+
+        for (SmcMap map: maps)
+        {
+            for (SmcState state: map.getStates())
+            {
+                String name =
+                    map.getName() + "." + state.getClassName();
+
+                _stateIds.put(name, _stateIndex.size());
+                _stateIndex.put(name, state);
+            }
+        }
+
+        return;
+    } // end of _indexStates(List<SmcMap>)
+
+    // Emits the single concrete state class used by the switch
+    // style.
+    private void _switchStateClass(final String context)
+    {
+        _source.println();
+        _source.println("    @SuppressWarnings(\"serial\")");
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" static final class ");
+        _source.print(context);
+        _source.println("State");
+        _source.println("        extends statemap.State");
+        _source.println("    {");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Member methods.");
+        _source.println("    //");
+        _source.println();
+
+        if (_reflectFlag == true)
+        {
+            _source.print("        public Map");
+            if (_genericFlag == true)
+            {
+                _source.print("<String, Integer>");
+            }
+            _source.println(" getTransitions()");
+            _source.println("        {");
+            _source.println(
+                "            return (transitionMap(_TransitionNames));");
+            _source.println("        }");
+            _source.println();
+        }
+
+        _source.print("        ");
+        _source.print(context);
+        _source.print("State(String name, int id");
+        if (_reflectFlag == true)
+        {
+            _source.print(
+                ", long[] definedLocally, long[] definedDefault");
+        }
+        _source.println(")");
+        _source.println("        {");
+        _source.println("            super (name, id);");
+        if (_reflectFlag == true)
+        {
+            _source.println(
+                "            setTransitionMasks(definedLocally, definedDefault);");
+        }
+        _source.println("        }");
+        _source.println();
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Member data.");
+        _source.println("    //");
+
+        _source.println("    }");
+
+        return;
+    } // end of _switchStateClass(String)
+
+    // Emits the map class holding the map's state instances
+    // followed by the map's static handler methods.
+    private void _switchMap(final SmcMap map)
+    {
+        SmcFSM fsm = map.getFSM();
+        String context = fsm.getContext();
+        String mapName = map.getName();
+        SmcState defaultState = map.getDefaultState();
+        String name;
+
+        _source.println();
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" static abstract class ");
+        _source.println(mapName);
+        _source.println("    {");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Member data.");
+        _source.println("    //");
+        _source.println();
+        _source.println(
+            "        //-------------------------------------------------------");
+        _source.println("        // Constants.");
+        _source.println("        //");
+
+        for (SmcState state: map.getStates())
+        {
+            name = mapName + "." + state.getClassName();
+
+            _source.print("        public static final ");
+            _source.print(context);
+            _source.print("State ");
+            _source.print(state.getInstanceName());
+            _source.println(" =");
+            _source.print("            new ");
+            _source.print(context);
+            _source.print("State(\"");
+            _source.print(name);
+            _source.print("\", ");
+            _source.print(_stateIds.get(name));
+            if (_reflectFlag == true)
+            {
+                _source.println(",");
+                _source.print("                ");
+                _source.print(
+                    _transitionMask(state.getTransitions(), null));
+                _source.println(",");
+                _source.print("                ");
+                _source.print(
+                    _transitionMask(
+                        _defaultTransitions(map),
+                        state.getTransitions()));
+            }
+            _source.println(");");
+        }
+
+        _source.println("    }");
+
+        // The default state's transitions come first, followed
+        // by each state's entry, exit and transition handlers.
+        _indent = "    ";
+        if (defaultState != null)
+        {
+            for (SmcTransition transition:
+                     defaultState.getTransitions())
+            {
+                transition.accept(this);
+            }
+        }
+
+        for (SmcState state: map.getStates())
+        {
+            state.accept(this);
+        }
+
+        return;
+    } // end of _switchMap(SmcMap)
+
+    // Emits a state's entry and exit action methods and its
+    // transition handlers.
+    private void _switchState(final SmcState state)
+    {
+        _switchActions(
+            state, "Entry", state.getEntryActions(), state.hasTimeout());
+        _switchActions(state, "Exit", state.getExitActions(), false);
+
+        _indent = "    ";
+        for (SmcTransition transition: state.getTransitions())
+        {
+            // The tables apply flat transitions themselves.
+            if (_isTabulated(transition) == false)
+            {
+                transition.accept(this);
+            }
+        }
+
+        return;
+    } // end of _switchState(SmcState)
+
+    // Emits a state's entry or exit action method if the state
+    // has those actions or, for entry, a timeout.
+    private void _switchActions(final SmcState state,
+                                final String method,
+                                final List<SmcAction> actions,
+                                final boolean timeoutFlag)
+    {
+        if ((actions != null && actions.isEmpty() == false) ||
+            timeoutFlag == true)
+        {
+            SmcFSM fsm = state.getMap().getFSM();
+            String indent2 = _indent;
+
+            _source.println();
+            _source.print("    private static void ");
+            _source.print(_handlerName(state, method));
+            _source.print("(");
+            _source.print(fsm.getFsmClassName());
+            _source.println(" context)");
+            _source.println("    {");
+            _source.print("        ");
+            _source.print(fsm.getContext());
+            _source.println(" ctxt = context.getOwner();");
+            _source.println();
+
+            _indent = "        ";
+            if (actions != null)
+            {
+                for (SmcAction action: actions)
+                {
+                    action.accept(this);
+                }
+            }
+            _indent = indent2;
+            if (timeoutFlag == true)
+            {
+                _printTimeout("        ", state);
+            }
+
+            _source.println("        return;");
+            _source.println("    }");
+        }
+
+        return;
+    } // end of _switchActions(SmcState, String, List<>, boolean)
+
+    // Emits the switch statement which routes a transition to
+    // the handler for the current state.
+    private void _switchDispatch(final List<SmcMap> maps,
+                                 final SmcTransition trans)
+    {
+        Map<String, List<Integer>> cases =
+            new LinkedHashMap<String, List<Integer>>();
+        StringBuilder args = new StringBuilder();
+        String call;
+
+        for (SmcParameter param: trans.getParameters())
+        {
+            args.append(", ");
+            args.append(param.getName());
+        }
+
+        for (SmcMap map: maps)
+        {
+            for (SmcState state: map.getStates())
+            {
+                call = _resolve(state, trans, args.toString());
+                if (cases.containsKey(call) == false)
+                {
+                    cases.put(call, new ArrayList<Integer>());
+                }
+                cases.get(call).add(
+                    _stateIds.get(
+                        map.getName() +
+                        "." +
+                        state.getClassName()));
+            }
+        }
+
+        _source.println("        switch (getState().getId())");
+        _source.println("        {");
+        _printCases(cases, "this");
+        _source.println("        }");
+
+        return;
+    } // end of _switchDispatch(List<SmcMap>, SmcTransition)
+
+    // Emits the grouped case labels. The handler calls use
+    // "context" as the context argument; this is replaced with
+    // the given context expression.
+    private void _printCases(final Map<String, List<Integer>> cases,
+                             final String contextArg)
+    {
+        for (Map.Entry<String, List<Integer>> entry:
+                 cases.entrySet())
+        {
+            for (Integer id: entry.getValue())
+            {
+                _source.print("            case ");
+                _source.print(id);
+                _source.println(":");
+            }
+            _source.print("                ");
+            _source.println(
+                entry.getKey().replaceFirst(
+                    "\\(context", "(" + contextArg));
+            _source.println("                break;");
+        }
+
+        return;
+    } // end of _printCases(Map<>, String)
+
+    // Returns the handler call for the transition when the FSM
+    // is in the given state.
+    private String _resolve(final SmcState state,
+                            final SmcTransition trans,
+                            final String args)
+    {
+        SmcTransition handler = _resolveTransition(state, trans);
+        String retval;
+
+        if (handler == null)
+        {
+            retval = "_undefined(context);";
+        }
+        else if (handler.getName().equals("Default") == true)
+        {
+            retval =
+                _handlerName(handler.getState(), "Default") +
+                "(context);";
+        }
+        else
+        {
+            retval =
+                _handlerName(handler.getState(), trans.getName()) +
+                "(context" +
+                args +
+                ");";
+        }
+
+        return (retval);
+    } // end of _resolve(SmcState, SmcTransition, String)
+
+    // Returns the transition definition taken when the FSM is
+    // in the given state or null if the transition is
+    // undefined. The class style reaches the same definition
+    // through the state class hierarchy: the state's own
+    // definition, then the map's default state and finally the
+    // Default transition.
+    private SmcTransition _resolveTransition(final SmcState state,
+                                             final SmcTransition trans)
+    {
+        SmcState defaultState = state.getMap().getDefaultState();
+        List<SmcParameter> noParams = new ArrayList<SmcParameter>();
+        SmcTransition retval;
+
+        if (_defines(state, trans) == true)
+        {
+            retval =
+                state.findTransition(
+                    trans.getName(), trans.getParameters());
+        }
+        else if (_defines(defaultState, trans) == true)
+        {
+            retval =
+                defaultState.findTransition(
+                    trans.getName(), trans.getParameters());
+        }
+        else if (_definesDefault(state) == true)
+        {
+            retval = state.findTransition("Default", noParams);
+        }
+        else if (_definesDefault(defaultState) == true)
+        {
+            retval =
+                defaultState.findTransition("Default", noParams);
+        }
+        else
+        {
+            retval = null;
+        }
+
+        return (retval);
+    } // end of _resolveTransition(SmcState, SmcTransition)
+
+    // Returns the Default transition call for the given state.
+    private String _defaultCall(final SmcState state)
+    {
+        SmcState defaultState = state.getMap().getDefaultState();
+        String retval;
+
+        if (_definesDefault(state) == true)
+        {
+            retval =
+                _handlerName(state, "Default") + "(context);";
+        }
+        else if (_definesDefault(defaultState) == true)
+        {
+            retval =
+                _handlerName(defaultState, "Default") +
+                "(context);";
+        }
+        else
+        {
+            retval = "_undefined(context);";
+        }
+
+        return (retval);
+    } // end of _defaultCall(SmcState)
+
+    // Returns the call made when none of the transition's
+    // guards are satisfied. This is the handler the class
+    // style's super class method would reach.
+    private String _fallbackCall(final SmcTransition transition)
+    {
+        SmcState state = transition.getState();
+        SmcState defaultState = state.getMap().getDefaultState();
+        boolean isDefault = (state == defaultState);
+        String retval;
+
+        if (transition.getName().equals("Default") == true)
+        {
+            if (isDefault == false &&
+                _definesDefault(defaultState) == true)
+            {
+                retval =
+                    _handlerName(defaultState, "Default") +
+                    "(context);";
+            }
+            else
+            {
+                retval = "_undefined(context);";
+            }
+        }
+        else if (isDefault == true)
+        {
+            // The default state is shared by all of the map's
+            // states so the Default transition depends on the
+            // current state.
+            retval = "_Default(context);";
+        }
+        else if (_defines(defaultState, transition) == true)
+        {
+            StringBuilder call = new StringBuilder();
+
+            call.append(
+                _handlerName(defaultState, transition.getName()));
+            call.append("(context");
+            for (SmcParameter param: transition.getParameters())
+            {
+                call.append(", ");
+                call.append(param.getName());
+            }
+            call.append(");");
+            retval = call.toString();
+        }
+        else
+        {
+            retval = _defaultCall(state);
+        }
+
+        return (retval);
+    } // end of _fallbackCall(SmcTransition)
+
+    // Emits the static entry, exit, Default and undefined
+    // transition helpers.
+    private void _switchHelpers(final SmcFSM fsm)
+    {
+        String fsmClassName = fsm.getFsmClassName();
+        Map<String, List<Integer>> entries =
+            new LinkedHashMap<String, List<Integer>>();
+        Map<String, List<Integer>> exits =
+            new LinkedHashMap<String, List<Integer>>();
+        Map<String, List<Integer>> defaults =
+            new LinkedHashMap<String, List<Integer>>();
+        String name;
+        SmcState state;
+        List<SmcAction> actions;
+        String call;
+
+        for (Map.Entry<String, SmcState> entry:
+                 _stateIndex.entrySet())
+        {
+            name = entry.getKey();
+            state = entry.getValue();
+
+            if (_hasEntry(state) == true)
+            {
+                entries.put(
+                    _handlerName(state, "Entry") + "(context);",
+                    _singleton(_stateIds.get(name)));
+            }
+
+            actions = state.getExitActions();
+            if (actions != null && actions.isEmpty() == false)
+            {
+                exits.put(
+                    _handlerName(state, "Exit") + "(context);",
+                    _singleton(_stateIds.get(name)));
+            }
+
+            call = _defaultCall(state);
+            if (call.startsWith("_undefined") == false)
+            {
+                if (defaults.containsKey(call) == false)
+                {
+                    defaults.put(call, new ArrayList<Integer>());
+                }
+                defaults.get(call).add(_stateIds.get(name));
+            }
+        }
+
+        _switchHelper(fsmClassName, "_entry", entries);
+        _switchHelper(fsmClassName, "_exit", exits);
+
+        // The Default transition for the current state.
+        _source.println();
+        _source.print("    private static void _Default(");
+        _source.print(fsmClassName);
+        _source.println(" context)");
+        _source.println("    {");
+        _source.println(
+            "        switch (context.getState().getId())");
+        _source.println("        {");
+        _printCases(defaults, "context");
+        _source.println("            default:");
+        _source.println("                _undefined(context);");
+        _source.println("                break;");
+        _source.println("        }");
+        _source.println("        return;");
+        _source.println("    }");
+
+        // The undefined transition.
+        _source.println();
+        _source.print("    private static void _undefined(");
+        _source.print(fsmClassName);
+        _source.println(" context)");
+        _source.println("    {");
+        _printTrace("        ",
+                    "context",
+                    "traceUndefined()",
+                    "TRANSITION   : Default");
+        _source.println();
+        if (_metricsFlag == true)
+        {
+            _source.println(
+                "        _Metrics.undefined(context.getTransitionId());");
+            _source.println();
+        }
+        _source.println("        context.undefinedTransition();");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of _switchHelpers(SmcFSM)
+
+    // Emits an entry or exit helper switching on the given
+    // state identifier.
+    private void _switchHelper(final String fsmClassName,
+                               final String method,
+                               final Map<String, List<Integer>> cases)
+    {
+        _source.println();
+        _source.print("    private static void ");
+        _source.print(method);
+        _source.print("(");
+        _source.print(fsmClassName);
+        _source.println(" context, int stateId)");
+        _source.println("    {");
+        if (cases.isEmpty() == false)
+        {
+            _source.println("        switch (stateId)");
+            _source.println("        {");
+            _printCases(cases, "context");
+            _source.println("        }");
+        }
+        _source.println("        return;");
+        _source.println("    }");
+
+        return;
+    } // end of _switchHelper(String, String, Map<>)
+
+    // Emits the constructor code setting the undefined
+    // transition policy and registering the owner as the
+    // undefined transition handler if it is one. The owner is
+    // cast to Object since the instanceof does not compile if
+    // the owner class is final.
+    private void _undefinedPolicySetup()
+    {
+        if (_undefinedPolicy != SmcOptions.UndefinedPolicy.THROW)
+        {
+            _source.print(
+                "        setUndefinedTransitionPolicy(statemap.UndefinedTransitionPolicy.");
+            _source.print(_undefinedPolicy.name());
+            _source.println(");");
+        }
+
+        _source.println(
+            "        if (((Object) owner) instanceof statemap.UndefinedTransitionHandler)");
+        _source.println("        {");
+        _source.println("            setUndefinedTransitionHandler(");
+        _source.println(
+            "                (statemap.UndefinedTransitionHandler) ((Object) owner));");
+        _source.println("        }");
+
+        return;
+    } // end of _undefinedPolicySetup()
+
+    // Emits a call to one of the FSMContext trace helpers:
+    // the FSMTracer helper given by tracerCall with -tracer and
+    // otherwise trace(message). Keeping the bookkeeping in the
+    // helpers keeps the transition methods small enough for the
+    // JIT to inline. If tracerCall is null, nothing is emitted
+    // with -tracer.
+    private void _printTrace(final String indent,
+                             final String context,
+                             final String tracerCall,
+                             final String message)
+    {
+        if (_tracerFlag == false || tracerCall != null)
+        {
+            _source.print(indent);
+            _source.print(context);
+            _source.print('.');
+
+            if (_tracerFlag == true)
+            {
+                _source.print(tracerCall);
+            }
+            else
+            {
+                _source.print("trace(\"");
+                _source.print(message);
+                _source.print("\")");
+            }
+
+            _source.println(";");
+        }
+
+        return;
+    } // end of _printTrace(String, String, String, String)
+
+    // Returns "map.state.transition(parameters)" for the trace
+    // messages.
+    private String _traceSignature(final SmcTransition transition)
+    {
+        SmcState state = transition.getState();
+        StringBuilder retval = new StringBuilder();
+        String sep = "";
+
+        retval.append(state.getMap().getName())
+              .append('.')
+              .append(state.getClassName())
+              .append('.')
+              .append(transition.getName())
+              .append('(');
+        for (SmcParameter parameter: transition.getParameters())
+        {
+            retval.append(sep)
+                  .append(parameter.getType())
+                  .append(' ')
+                  .append(parameter.getName());
+            sep = ", ";
+        }
+        retval.append(')');
+
+        return (retval.toString());
+    } // end of _traceSignature(SmcTransition)
+
+    // Returns the expression for the named transition's
+    // identifier. Default transitions have no identifier of
+    // their own, so the context's current one is used.
+    private String _traceTransitionId(final String transName,
+                                      final String context)
+    {
+        return (_transitionIds.containsKey(transName) == true ?
+                transName + "_ID" :
+                context + ".getTransitionId()");
+    } // end of _traceTransitionId(String, String)
+
+    // Emits the exit actions call for the given state, followed
+    // by cancelling the state's timers.
+    private void _printExit(final String indent,
+                            final SmcState state)
+    {
+        if (_javaStyle == JavaStyle.CLASS)
+        {
+            _source.print(indent);
+            _source.println("(context.getState()).Exit(context);");
+        }
+        // The default state's transitions may be taken from any
+        // state in the map.
+        else if (state == state.getMap().getDefaultState())
+        {
+            _source.print(indent);
+            _source.println(
+                "_exit(context, context.getState().getId());");
+        }
+        else if (state.getExitActions() != null &&
+                 state.getExitActions().isEmpty() == false)
+        {
+            _source.print(indent);
+            _source.print(_handlerName(state, "Exit"));
+            _source.println("(context);");
+        }
+
+        // Timers started in the state end with it.
+        _source.print(indent);
+        _source.println("context.cancelStateTimers();");
+
+        return;
+    } // end of _printExit(String, SmcState)
+
+    // Returns true if _printEntry emits a call for the named
+    // state.
+    private boolean _hasEntryCall(final String stateName)
+    {
+        SmcState state =
+            (_javaStyle != JavaStyle.CLASS ?
+             _stateIndex.get(stateName) :
+             null);
+
+        return (_javaStyle == JavaStyle.CLASS ||
+                state == null ||
+                _hasEntry(state) == true);
+    } // end of _hasEntryCall(String)
+
+    // Emits the entry actions call for the named state.
+    private void _printEntry(final String indent,
+                             final String stateName)
+    {
+        SmcState state =
+            (_javaStyle != JavaStyle.CLASS ?
+             _stateIndex.get(stateName) :
+             null);
+
+        if (_javaStyle == JavaStyle.CLASS)
+        {
+            _source.print(indent);
+            _source.println(
+                "(context.getState()).Entry(context);");
+        }
+        else if (state == null)
+        {
+            _source.print(indent);
+            _source.println(
+                "_entry(context, context.getState().getId());");
+        }
+        else if (_hasEntry(state) == true)
+        {
+            _source.print(indent);
+            _source.print(_handlerName(state, "Entry"));
+            _source.println("(context);");
+        }
+
+        return;
+    } // end of _printEntry(String, String)
+
+    // Returns true if the state has entry actions or a
+    // timeout, which is started on entry.
+    private static boolean _hasEntry(final SmcState state)
+    {
+        List<SmcAction> actions = state.getEntryActions();
+
+        return ((actions != null && actions.isEmpty() == false) ||
+                state.hasTimeout() == true);
+    } // end of _hasEntry(SmcState)
+
+    // Emits the start of the state's %timeout timer. The exit
+    // code cancels it. A pop does not run the entry actions
+    // again; the generated popState resumes the timer instead.
+    private void _printTimeout(final String indent,
+                               final SmcState state)
+    {
+        if (state.hasTimeout() == true)
+        {
+            _source.print(indent);
+            _source.println("// %timeout");
+            _source.print(indent);
+            _source.print("context.startStateTimer(");
+            _source.print(state.getTimeoutDelay());
+            _source.print(", ");
+            _source.print(state.getTimeoutTransition());
+            _source.println("_ID);");
+        }
+
+        return;
+    } // end of _printTimeout(String, SmcState)
+
+    // Returns the static handler method name for the state's
+    // transition or action method.
+    private static String _handlerName(final SmcState state,
+                                       final String name)
+    {
+        return ("_" +
+                state.getMap().getName() +
+                "_" +
+                state.getClassName() +
+                "_" +
+                name);
+    } // end of _handlerName(SmcState, String)
+
+    // Returns true if the state defines the transition.
+    private static boolean _defines(final SmcState state,
+                                    final SmcTransition trans)
+    {
+        return (state != null &&
+                state.getTransitions().contains(trans) == true);
+    } // end of _defines(SmcState, SmcTransition)
+
+    // Returns true if the state defines a Default transition.
+    private static boolean _definesDefault(final SmcState state)
+    {
+        return (state != null &&
+                state.findTransition(
+                    "Default",
+                    new ArrayList<SmcParameter>()) != null);
+    } // end of _definesDefault(SmcState)
+
+    private static List<Integer> _singleton(final Integer id)
+    {
+        List<Integer> retval = new ArrayList<Integer>();
+
+        retval.add(id);
+        return (retval);
+    } // end of _singleton(Integer)
+
+    //
+    // end of Switch style code generation.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Table style code generation.
+    //
+
+    // Fills in the next state and action tables. A table
+    // entry is tabulated when the transition taken has a
+    // single, unguarded plain transition without actions. All
+    // other entries call the switch style handler.
+    private void _buildTables(final List<SmcTransition> transitions)
+    {
+        int stateCount = _stateIndex.size();
+        int column;
+        int row;
+        SmcState state;
+        SmcTransition handler;
+        SmcGuard guard;
+        StringBuilder args;
+        String call;
+
+        _tableColumns = new ArrayList<SmcTransition>();
+        for (SmcTransition trans: transitions)
+        {
+            if (trans.getName().equals("Default") == false)
+            {
+                _tableColumns.add(trans);
+            }
+        }
+
+        _nextState = new int[stateCount][_tableColumns.size()];
+        _actionIndex = new int[stateCount][_tableColumns.size()];
+        _tableHandlers = new LinkedHashMap<String, Integer>();
+
+        for (column = 0; column < _tableColumns.size(); ++column)
+        {
+            SmcTransition trans = _tableColumns.get(column);
+
+            args = new StringBuilder();
+            for (SmcParameter param: trans.getParameters())
+            {
+                args.append(", ");
+                args.append(param.getName());
+            }
+
+            row = 0;
+            for (Map.Entry<String, SmcState> entry:
+                     _stateIndex.entrySet())
+            {
+                state = entry.getValue();
+                handler = _resolveTransition(state, trans);
+                guard = _tableGuard(handler);
+
+                if (guard == null)
+                {
+                    call = _resolve(state, trans, args.toString());
+                    if (_tableHandlers.containsKey(call) == false)
+                    {
+                        _tableHandlers.put(
+                            call,
+                            TABLE_FIRST_HANDLER +
+                            _tableHandlers.size());
+                    }
+
+                    _nextState[row][column] = -1;
+                    _actionIndex[row][column] =
+                        _tableHandlers.get(call);
+                }
+                else if (guard.getEndState().equals(
+                             SmcElement.NIL_STATE) == true)
+                {
+                    _nextState[row][column] = row;
+                    _actionIndex[row][column] = TABLE_NIL;
+                }
+                else
+                {
+                    _nextState[row][column] =
+                        _stateIds.get(
+                            scopeStateName(
+                                guard.getEndState(),
+                                handler.getState().getMap().getName()));
+                    _actionIndex[row][column] = TABLE_SET;
+                }
+
+                ++row;
+            }
+        }
+
+        return;
+    } // end of _buildTables(List<SmcTransition>)
+
+    // Returns the transition's guard if the transition can be
+    // tabulated and null otherwise.
+    private static SmcGuard _tableGuard(final SmcTransition transition)
+    {
+        SmcGuard retval = null;
+
+        if (transition != null &&
+            transition.getGuards().size() == 1)
+        {
+            SmcGuard guard = transition.getGuards().get(0);
+
+            if (guard.getCondition().length() == 0 &&
+                guard.getTransType() == TransType.TRANS_SET &&
+                guard.getActions().isEmpty() == true)
+            {
+                retval = guard;
+            }
+        }
+
+        return (retval);
+    } // end of _tableGuard(SmcTransition)
+
+    // Returns true if the table style applies the transition
+    // through the tables only, so its handler is not generated.
+    // The helpers call the Default transitions, and guarded
+    // transitions fall back to the default state's transition
+    // of the same name.
+    private boolean _isTabulated(final SmcTransition transition)
+    {
+        SmcState state = transition.getState();
+        SmcMap map = state.getMap();
+        boolean retval =
+            (_javaStyle == JavaStyle.TABLE &&
+             transition.getName().equals("Default") == false &&
+             _tableGuard(transition) != null);
+
+        if (retval == true && state == map.getDefaultState())
+        {
+            for (SmcState other: map.getStates())
+            {
+                for (SmcTransition trans: other.getTransitions())
+                {
+                    if (trans.equals(transition) == true &&
+                        _tableGuard(trans) == null)
+                    {
+                        retval = false;
+                    }
+                }
+            }
+        }
+
+        return (retval);
+    } // end of _isTabulated(SmcTransition)
+
+    // Emits the next state and action index tables. Both are
+    // indexed by state identifier and then by transition.
+    private void _tableArrays()
+    {
+        _source.println();
+        _source.println(
+            "    // Transitions by column: action 0 sets the next state,");
+        _source.println(
+            "    // action 1 is a nil transition and the others call");
+        _source.println("    // the transition's handler.");
+        _source.print("    //");
+        for (SmcTransition trans: _tableColumns)
+        {
+            _source.print(" ");
+            _source.print(trans.getName());
+        }
+        _source.println();
+
+        _tableArray("NEXT_STATE", _nextState);
+        _tableArray("ACTION", _actionIndex);
+
+        return;
+    } // end of _tableArrays()
+
+    private void _tableArray(final String name, final int[][] table)
+    {
+        Iterator<String> nit = _stateIndex.keySet().iterator();
+        String separator;
+        int row;
+        int column;
+
+        _source.print("    private static final int[][] ");
+        _source.print(name);
+        _source.println(" =");
+        _source.println("    {");
+        for (row = 0; row < table.length; ++row)
+        {
+            _source.print("        // ");
+            _source.println(nit.next());
+            _source.print("        {");
+            for (column = 0, separator = "";
+                 column < table[row].length;
+                 ++column, separator = ", ")
+            {
+                _source.print(separator);
+                _source.print(table[row][column]);
+            }
+            _source.println("},");
+        }
+        _source.println("    };");
+
+        return;
+    } // end of _tableArray(String, int[][])
+
+    // Emits the table lookup and action switch for the
+    // transition.
+    private void _tableDispatch(final SmcTransition trans)
+    {
+        int column = _tableColumns.indexOf(trans);
+        Map<String, List<Integer>> cases =
+            new LinkedHashMap<String, List<Integer>>();
+        boolean setFlag = false;
+        boolean nilFlag = false;
+        int row;
+        int action;
+
+        for (row = 0; row < _actionIndex.length; ++row)
+        {
+            action = _actionIndex[row][column];
+            if (action == TABLE_SET)
+            {
+                setFlag = true;
+            }
+            else if (action == TABLE_NIL)
+            {
+                nilFlag = true;
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry:
+                 _tableHandlers.entrySet())
+        {
+            for (row = 0; row < _actionIndex.length; ++row)
+            {
+                if (_actionIndex[row][column] == entry.getValue())
+                {
+                    cases.put(
+                        entry.getKey(),
+                        _singleton(entry.getValue()));
+                    break;
+                }
+            }
+        }
+
+        _source.println(
+            "        final int stateId = getState().getId();");
+        _source.println();
+        _source.print("        switch (ACTION[stateId][");
+        _source.print(column);
+        _source.println("])");
+        _source.println("        {");
+
+        if (setFlag == true)
+        {
+            _source.print("            case ");
+            _source.print(TABLE_SET);
+            _source.println(":");
+            _source.println("            {");
+            _source.print(
+                "                final int nextId = NEXT_STATE[stateId][");
+            _source.print(column);
+            _source.println("];");
+            _source.println();
+            _tableTrace("                ", trans, "_States[nextId]");
+            _source.println("                _exit(this, stateId);");
+            _source.println("                cancelStateTimers();");
+            _source.println(
+                "                setState(_States[nextId]);");
+            _source.println("                _entry(this, nextId);");
+            _source.println("                break;");
+            _source.println("            }");
+        }
+
+        if (nilFlag == true)
+        {
+            _source.print("            case ");
+            _source.print(TABLE_NIL);
+            _source.println(":");
+            _tableTrace("                ", trans, "getState()");
+            _source.println("                break;");
+        }
+
+        _printCases(cases, "this");
+        _source.println("        }");
+
+        return;
+    } // end of _tableDispatch(SmcTransition)
+
+    private void _tableTrace(final String indent,
+                             final SmcTransition trans,
+                             final String endState)
+    {
+        _source.print(indent);
+        if (_tracerFlag == true)
+        {
+            _source.print("traceTransition(");
+            _source.print(
+                _traceTransitionId(trans.getName(), "this"));
+            _source.println(");");
+        }
+        else
+        {
+            _source.print("trace(\"TRANSITION   : ");
+            _source.print(trans.getName());
+            _source.print("\", ");
+            _source.print(endState);
+            _source.println(");");
+        }
+
+        return;
+    } // end of _tableTrace(String, SmcTransition, String)
+
+    //
+    // end of Table style code generation.
+    //-----------------------------------------------------------
+
+    private void generatePushSupport() {
+        String stackFull;
+
+        // When the push depth is bounded the stack never fills
+        // up and so never grows.
+        _source.println("    /**");
+        if (_pushDepth == SmcFSM.UNBOUNDED_PUSH_DEPTH)
+        {
+            _source.println(
+                "     * The initial state stack size. The push depth is");
+            _source.println(
+                "     * not bounded, so the stack grows as needed.");
+            _source.println("     */");
+            _source.print(
+                "    private static final int STATE_STACK_CAPACITY = ");
+            _source.print(DEFAULT_STATE_STACK_CAPACITY);
+            _source.println(";");
+
+            stackFull =
+                "            _stateStack =\n" +
+                "                java.util.Arrays.copyOf(\n" +
+                "                    _stateStack, _stateStack.length << 1);";
+        }
+        else
+        {
+            _source.println(
+                "     * The state stack size: the maximum push depth.");
+            _source.println("     */");
+            _source.print(
+                "    private static final int STATE_STACK_CAPACITY = ");
+            _source.print(Math.max(_pushDepth, 1));
+            _source.println(";");
+
+            stackFull =
+                "            throw (\n" +
+                "                new IllegalStateException(\n" +
+                "                    \"state stack overflow\"));";
+        }
+        _source.println();
+
+        InputStream is = (getClass().getResourceAsStream("pushSupport.txt"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try {
+            for (int read = is.read(buffer); read != -1; read = is.read(buffer)) {
+                baos.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write push support");
+        }
+        _source.println(
+            baos.toString().replace("%STACK_FULL%", stackFull));
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.smc.generator.SmcCodeGenerator#appendPackageName(java.lang.String, java.lang.String)
+     */
+    @Override
+    protected Object appendPackageName(String path, String packageName) {
         return (path.endsWith(File.separator) ? path : path + File.separator)
                + packageName.replace('.', File.separatorChar) + File.separator;
     }
@@ -1861,6 +3821,58 @@ public final class SmcJavaGenerator extends SmcCodeGenerator {
 //---------------------------------------------------------------
 // Member data
 //
+
+    // Maps the transition name to its FSM-wide identifier.
+    private Map<String, Integer> _transitionIds;
+
+    // The FSM's maximum push depth or
+    // SmcFSM.UNBOUNDED_PUSH_DEPTH.
+    private int _pushDepth;
+
+    // Maps the "map.state" name to its state. Used by the
+    // switch style.
+    private Map<String, SmcState> _stateIndex;
+
+    // Maps the "map.state" name to its FSM-wide identifier.
+    private Map<String, Integer> _stateIds;
+
+    // The table style's transition columns, next state and
+    // action index tables and the handler call for each action
+    // index.
+    private List<SmcTransition> _tableColumns;
+    private int[][] _nextState;
+    private int[][] _actionIndex;
+    private Map<String, Integer> _tableHandlers;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // Table style actions. Handler action indices start at
+    // TABLE_FIRST_HANDLER.
+    private static final int TABLE_SET = 0;
+    private static final int TABLE_NIL = 1;
+    private static final int TABLE_FIRST_HANDLER = 2;
+
+    // The initial state stack size when the push depth is not
+    // bounded.
+    private static final int DEFAULT_STATE_STACK_CAPACITY = 8;
+
+    // Maps the primitive types to their wrapper classes.
+    private static final Map<String, String> _BoxedTypes =
+        new HashMap<String, String>();
+
+    static
+    {
+        _BoxedTypes.put("boolean", "Boolean");
+        _BoxedTypes.put("byte", "Byte");
+        _BoxedTypes.put("char", "Character");
+        _BoxedTypes.put("short", "Short");
+        _BoxedTypes.put("int", "Integer");
+        _BoxedTypes.put("long", "Long");
+        _BoxedTypes.put("float", "Float");
+        _BoxedTypes.put("double", "Double");
+    }
 } // end of class SmcJavaGenerator
 
 //
@@ -83,6 +83,22 @@ public final class SmcOptions
      * collections.
      * @param accessLevel use this access keyword for the
      * generated classes.
+     * @param javaStyle generate Java code in this style (Java
+     * only).
+     * @param combineFlag if {@code true} then generate
+     * transitions applied by a flat-combining executor (Java
+     * only).
+     * @param asyncFlag if {@code true} then generate asynchronous post
+     * methods queuing each transition on the context's event mailbox
+     * (Java only).
+     * @param metricsFlag if {@code true} then generate code feeding
+     * per-transition and per-state metrics to
+     * {@code statemap.FSMMetrics} (Java only).
+     * @param tracerFlag if {@code true} then generate calls to
+     * {@code statemap.FSMTracer} instead of trace logging (Java
+     * only).
+     * @param undefinedPolicy the generated context's initial
+     * undefined transition policy (Java only).
      */
     public SmcOptions(final String srcfileBase,
                       final String targetfileBase,
@@ -98,7 +114,13 @@ public final class SmcOptions
                       final boolean reflectFlag,
                       final boolean syncFlag,
                       final boolean genericFlag,
-                      final String accessLevel)
+                      final String accessLevel,
+                      final JavaStyle javaStyle,
+                      final boolean combineFlag,
+                      final boolean asyncFlag,
+                      final boolean metricsFlag,
+                      final boolean tracerFlag,
+                      final UndefinedPolicy undefinedPolicy)
     {
         _srcfileBase = srcfileBase;
         _targetfileBase = targetfileBase;
@@ -115,6 +137,12 @@ public final class SmcOptions
         _syncFlag = syncFlag;
         _genericFlag = genericFlag;
         _accessLevel = accessLevel;
+        _javaStyle = javaStyle;
+        _combineFlag = combineFlag;
+        _asyncFlag = asyncFlag;
+        _metricsFlag = metricsFlag;
+        _tracerFlag = tracerFlag;
+        _undefinedPolicy = undefinedPolicy;
     } // end f SmcOptions(...)
 
     //
@@ -260,6 +288,61 @@ public final class SmcOptions
         return (_accessLevel);
     } // end of accessLevel()
 
+    /**
+     * Returns the generated Java code style.
+     * @return the generated Java code style.
+     */
+    public JavaStyle javaStyle()
+    {
+        return (_javaStyle);
+    } // end of javaStyle()
+
+    /**
+     * Returns the combine flag.
+     * @return the combine flag.
+     */
+    public boolean combineFlag()
+    {
+        return (_combineFlag);
+    } // end of combineFlag()
+
+    /**
+     * Returns the async flag.
+     * @return the async flag.
+     */
+    public boolean asyncFlag()
+    {
+        return (_asyncFlag);
+    } // end of asyncFlag()
+
+    /**
+     * Returns the metrics flag.
+     * @return the metrics flag.
+     */
+    public boolean metricsFlag()
+    {
+        return (_metricsFlag);
+    } // end of metricsFlag()
+
+    /**
+     * Returns the tracer flag.
+     * @return the tracer flag.
+     */
+    public boolean tracerFlag()
+    {
+        return (_tracerFlag);
+    } // end of tracerFlag()
+
+    /**
+     * Returns the generated context's initial undefined
+     * transition policy.
+     * @return the undefined transition policy.
+     */
+    public UndefinedPolicy undefinedPolicy()
+    {
+        return (_undefinedPolicy);
+    } // end of undefinedPolicy()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -314,6 +397,95 @@ public final class SmcOptions
 
     // Used this access keyword for the generated classes.
     private final String _accessLevel;
+
+    // Generate Java code in this style.
+    private final JavaStyle _javaStyle;
+
+    // If true, then generate flat-combining Java transitions.
+    private final boolean _combineFlag;
+
+    // If true, then generate asynchronous postXxx transitions.
+    private final boolean _asyncFlag;
+
+    // If true, then generate code feeding statemap.FSMMetrics.
+    private final boolean _metricsFlag;
+
+    // If true, then generate statemap.FSMTracer calls instead
+    // of trace logging.
+    private final boolean _tracerFlag;
+
+    // The generated context's initial undefined transition
+    // policy.
+    private final UndefinedPolicy _undefinedPolicy;
+
+//---------------------------------------------------------------
+// Enums.
+//
+
+    /**
+     * The Java code generation styles. The styles produce
+     * context classes with the same public interface and
+     * behavior but differ in how a transition reaches the
+     * current state's code.
+     */
+    public enum JavaStyle
+    {
+        /**
+         * Each state is a class extending its map's default
+         * state class and transitions are virtual calls on the
+         * current state. This is the default style.
+         */
+        CLASS,
+
+        /**
+         * States are instances of a single state class with
+         * dense integer identifiers. Each transition method
+         * switches on the current state identifier and calls
+         * static handler methods, with the default state and
+         * Default transition fallbacks resolved when the code
+         * is generated.
+         */
+        SWITCH,
+
+        /**
+         * Like {@link #SWITCH} but each transition method looks
+         * up the next state and an action index in tables
+         * indexed by state identifier. Table entries whose
+         * transition has guards, push or pop transitions or
+         * actions fall back to the {@code SWITCH} style static
+         * handler.
+         */
+        TABLE
+    } // end of enum JavaStyle
+
+    /**
+     * What a generated Java context does when a transition is
+     * not defined in the current state. The names match
+     * {@code statemap.UndefinedTransitionPolicy}.
+     */
+    public enum UndefinedPolicy
+    {
+        /**
+         * Throw a new {@code TransitionUndefinedException}.
+         * This is the default.
+         */
+        THROW,
+
+        /**
+         * Throw a preallocated exception without a stack trace.
+         */
+        STACKLESS,
+
+        /**
+         * Call back the context's owner.
+         */
+        CALLBACK,
+
+        /**
+         * Count the transition and stay in the current state.
+         */
+        IGNORE
+    } // end of enum UndefinedPolicy
 } // end of class SmcOptions
 
 //
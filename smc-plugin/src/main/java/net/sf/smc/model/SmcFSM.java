@@ -37,8 +37,10 @@ package net.sf.smc.model;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The top-level element for a finite state machine model.
@@ -374,6 +376,79 @@ public final class SmcFSM
         return false;
     } // end of hasExitActions()
 
+    /**
+     * Returns the greatest number of states which may be on the
+     * state stack at once, or {@link #UNBOUNDED_PUSH_DEPTH} if
+     * a push may be repeated without an intervening pop (for
+     * example, a state pushing its own map). Returns zero if
+     * there are no push transitions.
+     * <p>
+     * The depth is the longest path from the start map over the
+     * map graph, where a push transition is an edge of weight
+     * one to the pushed map and every other transition to
+     * another map is an edge of weight zero.
+     * </p>
+     * @return the maximum push depth.
+     */
+    public int getMaxPushDepth()
+    {
+        Map<String, Integer> depths =
+            new HashMap<String, Integer>();
+        String startMap = _mapName(_startState, "");
+        boolean changed = true;
+        int round;
+        int retval = 0;
+
+        depths.put(startMap, 0);
+
+        // Relax every edge until no depth changes. With |maps|
+        // nodes, a change after |maps| rounds means a cycle
+        // containing a push is reachable.
+        for (round = 0;
+             changed == true && round <= _maps.size();
+             ++round)
+        {
+            changed = false;
+
+            for (SmcMap map: _maps)
+            {
+                Integer depth = depths.get(map.getName());
+
+                if (depth == null)
+                {
+                    continue;
+                }
+
+                for (SmcState state: map.getAllStates())
+                {
+                    for (SmcTransition trans:
+                             state.getTransitions())
+                    {
+                        for (SmcGuard guard: trans.getGuards())
+                        {
+                            changed |=
+                                _relax(depths, map, guard, depth);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (changed == true)
+        {
+            retval = UNBOUNDED_PUSH_DEPTH;
+        }
+        else
+        {
+            for (Integer depth: depths.values())
+            {
+                retval = Math.max(retval, depth);
+            }
+        }
+
+        return (retval);
+    } // end of getMaxPushDepth()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -579,6 +654,79 @@ public final class SmcFSM
         return;
     } // end of dump(PrintStream)
 
+    // Raises the depths of the maps the guard leads to and
+    // returns true if any depth changed.
+    private static boolean _relax(final Map<String, Integer> depths,
+                                  final SmcMap map,
+                                  final SmcGuard guard,
+                                  final int depth)
+    {
+        TransType transType = guard.getTransType();
+        String endState = guard.getEndState();
+        boolean retcode = false;
+
+        // A pop's "end state" is a transition name and the
+        // state it returns to was reached at a lower depth.
+        if (transType != TransType.TRANS_POP &&
+            endState != null &&
+            endState.length() > 0 &&
+            endState.equals(NIL_STATE) == false)
+        {
+            retcode |=
+                _raise(depths,
+                       _mapName(endState, map.getName()),
+                       depth);
+        }
+
+        if (transType == TransType.TRANS_PUSH)
+        {
+            retcode |=
+                _raise(depths,
+                       _mapName(guard.getPushState(),
+                                map.getName()),
+                       depth + 1);
+        }
+
+        return (retcode);
+    } // end of _relax(Map, SmcMap, SmcGuard, int)
+
+    private static boolean _raise(final Map<String, Integer> depths,
+                                  final String mapName,
+                                  final int depth)
+    {
+        Integer current = depths.get(mapName);
+        boolean retcode = false;
+
+        if (current == null || current < depth)
+        {
+            depths.put(mapName, depth);
+            retcode = true;
+        }
+
+        return (retcode);
+    } // end of _raise(Map, String, int)
+
+    // Returns the map part of a "map::state" or "map.state"
+    // name, or mapName if the state is not qualified.
+    private static String _mapName(final String stateName,
+                                   final String mapName)
+    {
+        int index = stateName.indexOf("::");
+        String retval = mapName;
+
+        if (index < 0)
+        {
+            index = stateName.indexOf('.');
+        }
+
+        if (index >= 0)
+        {
+            retval = stateName.substring(0, index);
+        }
+
+        return (retval);
+    } // end of _mapName(String, String)
+
 //---------------------------------------------------------------
 // Member data
 //
@@ -628,6 +776,16 @@ public final class SmcFSM
 
     // The state maps.
     private List<SmcMap> _maps;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * {@link #getMaxPushDepth()} returns this value when the
+     * push depth has no static bound.
+     */
+    public static final int UNBOUNDED_PUSH_DEPTH = -1;
 } // end of class SmcFSM
 
 //
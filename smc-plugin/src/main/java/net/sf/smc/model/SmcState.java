@@ -93,6 +93,9 @@ public final class SmcState
         _entryActions = null;
         _exitActions = null;
         _transitions = new ArrayList<SmcTransition>();
+        _timeoutDelay = null;
+        _timeoutTransition = null;
+        _timeoutLineNumber = -1;
     } // end of SmcState(String, int, SmcMap)
 
     //
@@ -187,6 +190,47 @@ public final class SmcState
         return(_transitions);
     } // end of getTransitions()
 
+    /**
+     * Returns {@code true} if this state has a
+     * {@code %timeout} clause and {@code false} otherwise.
+     * @return {@code true} if this state has a
+     * {@code %timeout} clause.
+     */
+    public boolean hasTimeout()
+    {
+        return (_timeoutTransition != null);
+    } // end of hasTimeout()
+
+    /**
+     * Returns the {@code %timeout} delay in milliseconds. This
+     * is target language source code. May return {@code null}.
+     * @return the timeout delay.
+     */
+    public String getTimeoutDelay()
+    {
+        return (_timeoutDelay);
+    } // end of getTimeoutDelay()
+
+    /**
+     * Returns the transition issued when the
+     * {@code %timeout} expires. May return {@code null}.
+     * @return the timeout transition name.
+     */
+    public String getTimeoutTransition()
+    {
+        return (_timeoutTransition);
+    } // end of getTimeoutTransition()
+
+    /**
+     * Returns the line number of the {@code %timeout} clause.
+     * Returns -1 if this state has no timeout.
+     * @return the timeout line number.
+     */
+    public int getTimeoutLineNumber()
+    {
+        return (_timeoutLineNumber);
+    } // end of getTimeoutLineNumber()
+
     /**
      * Returns the transition with the specified name and
      * parameters. May return {@code null}.
@@ -305,6 +349,27 @@ public final class SmcState
         return;
     } // end of setExitActions(List<SmcAction>)
 
+    /**
+     * Sets the state's {@code %timeout} clause: on entry, a
+     * timer is started which issues {@code transition} after
+     * {@code delay} milliseconds unless the state exits first.
+     * @param delay the delay in milliseconds as target language
+     * source code.
+     * @param transition the transition name.
+     * @param lineNumber where the clause appears in the .sm
+     * file.
+     */
+    public void setTimeout(String delay,
+                           String transition,
+                           int lineNumber)
+    {
+        _timeoutDelay = delay;
+        _timeoutTransition = transition;
+        _timeoutLineNumber = lineNumber;
+
+        return;
+    } // end of setTimeout(String, String, int)
+
     /**
      * Adds a transition to the list.
      * @param transition add this transition.
@@ -358,6 +423,15 @@ public final class SmcState
             retval.append("}");
         }
 
+        if (_timeoutTransition != null)
+        {
+            retval.append("\n\t%timeout ");
+            retval.append(_timeoutDelay);
+            retval.append(' ');
+            retval.append(_timeoutTransition);
+            retval.append(';');
+        }
+
         for (SmcTransition transition: _transitions)
         {
             retval.append("\n");
@@ -377,6 +451,9 @@ public final class SmcState
     private List<SmcAction> _entryActions;
     private List<SmcAction> _exitActions;
     private List<SmcTransition> _transitions;
+    private String _timeoutDelay;
+    private String _timeoutTransition;
+    private int _timeoutLineNumber;
 } // end of class SmcState
 
 //
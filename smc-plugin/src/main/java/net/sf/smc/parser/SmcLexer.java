@@ -893,13 +893,14 @@ import java.util.Map;
     /* package */ static final int DOLLAR        = 29;
     /* package */ static final int JUMP          = 30;
     /* package */ static final int FSM_CLASS_NAME  = 31;
-    /* package */ static final int TOKEN_COUNT   = FSM_CLASS_NAME + 1;
+    /* package */ static final int TIMEOUT       = 32;
+    /* package */ static final int TOKEN_COUNT   = TIMEOUT + 1;
 
     // There are four SMC keywords: entry, exit, push and pop.
     private static final int KEYWORD_COUNT = 4;
 
-    // There are eight percent keywords.
-    private static final int PERCENT_KEYWORD_COUNT = 9;
+    // There are eleven percent keywords.
+    private static final int PERCENT_KEYWORD_COUNT = 11;
 
     // The ASCII characters all have explicit transitions.
     // Unicode characters are simply given the unicode
@@ -952,6 +953,7 @@ import java.util.Map;
         _TypeName[SmcLexer.ACCESS]        = "ACCESS";
         _TypeName[SmcLexer.DOLLAR]        = "DOLLAR";
         _TypeName[SmcLexer.JUMP]          = "JUMP";
+        _TypeName[SmcLexer.TIMEOUT]       = "TIMEOUT";
 
         // Set up the keyword |-> token value map.
         _KeywordMap =
@@ -978,6 +980,7 @@ import java.util.Map;
         _PercentKeywordMap.put("%import", SmcLexer.IMPORT);
         _PercentKeywordMap.put("%declare", SmcLexer.DECLARE);
         _PercentKeywordMap.put("%access", SmcLexer.ACCESS);
+        _PercentKeywordMap.put("%timeout", SmcLexer.TIMEOUT);
 
         // Set up the transition map.
         _TransMethod = new Method[SmcLexer.MAX_ASCII_CHAR];
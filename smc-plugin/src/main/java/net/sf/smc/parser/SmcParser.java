@@ -181,6 +181,12 @@ public final class SmcParser
             {
                 _quitFlag = true;
             }
+            // The parser FSM does not know the %timeout clause,
+            // so it is read here.
+            else if (tokenType == SmcLexer.TIMEOUT)
+            {
+                _parseTimeout(token.getLineNumber());
+            }
             else
             {
                 // Issue a transition for this token.
@@ -1297,6 +1303,89 @@ public final class SmcParser
     // end of State Machine Actions
     //-----------------------------------------------------------
 
+    // Reads a "%timeout <delay> <transition>;" clause and sets
+    // it on the state in progress. The clause may appear where
+    // a transition may. The delay is target language source and
+    // extends to the last word, which is the transition name.
+    private void _parseTimeout(int lineNumber)
+        throws IOException,
+               IllegalAccessException,
+               InvocationTargetException
+    {
+        SmcLexer.Token token;
+        String clause;
+        String delay;
+        String transition;
+        int index;
+
+        // Collect everything up to the semicolon.
+        _lexer.setRawMode(";");
+        token = _lexer.nextToken();
+        _lexer.setCookedMode();
+
+        clause = token.getValue().trim();
+        for (index = clause.length() - 1;
+             index >= 0 &&
+                 Character.isWhitespace(
+                     clause.charAt(index)) == false;
+             --index)
+        {
+            // Find the space before the transition name.
+        }
+        delay = clause.substring(0, Math.max(index, 0)).trim();
+        transition = clause.substring(index + 1);
+
+        if (_stateInProgress == null ||
+            _transitionInProgress != null ||
+            TIMEOUT_STATE.equals(
+                _parserFSM.getState().getName()) == false)
+        {
+            error("%timeout must appear among a state's transitions.",
+                  lineNumber);
+        }
+        else if (_stateInProgress.hasTimeout() == true)
+        {
+            error("State " +
+                  _mapInProgress.getName() +
+                  "::" +
+                  _stateInProgress.getClassName() +
+                  " has more than one %timeout.",
+                  lineNumber);
+        }
+        else if (delay.length() == 0 ||
+                 _isIdentifier(transition) == false)
+        {
+            error("Expected \"%timeout <delay> <transition>;\", found \"%timeout " +
+                  clause +
+                  "\".",
+                  lineNumber);
+        }
+        else
+        {
+            _stateInProgress.setTimeout(
+                delay, transition, lineNumber);
+        }
+
+        return;
+    } // end of _parseTimeout(int)
+
+    // Returns true if name is a valid transition name.
+    private static boolean _isIdentifier(String name)
+    {
+        int length = name.length();
+        int index;
+        boolean retval =
+            (length > 0 &&
+             Character.isJavaIdentifierStart(name.charAt(0)));
+
+        for (index = 1; index < length && retval == true; ++index)
+        {
+            retval = Character.isJavaIdentifierPart(name.charAt(index));
+        }
+
+        return (retval);
+    } // end of _isIdentifier(String)
+
 //---------------------------------------------------------------
 // Enums.
 //
@@ -1499,6 +1588,11 @@ public final class SmcParser
     // invoke that method.
     private static Method[] _TransMethod;
 
+    // The parser FSM is in this state between a state's
+    // transitions, where a %timeout clause may appear.
+    private static final String TIMEOUT_STATE =
+        "ParserMap.Transitions";
+
     static
     {
         String transName = "<not set>";
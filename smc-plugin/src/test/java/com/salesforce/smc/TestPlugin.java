@@ -25,11 +25,29 @@
  */
 package com.salesforce.smc;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import net.sf.smc.Smc;
 
 import org.apache.maven.project.MavenProject;
 import org.junit.Test;
@@ -105,4 +123,460 @@ public class TestPlugin {
             deleteDirectory(tempDir);
         }
     }
+
+    @Test
+    public void testCache() throws Exception {
+        File tempDir = File.createTempFile("smc", "cache", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            File cacheDir = new File(tempDir, "cache");
+
+            File first = new File(tempDir, "first");
+            generate(first, cacheDir);
+            File task = new File(first,
+                                 "target/generated-sources/sm/smc_ex5/TaskFSM.java");
+            assertTrue("TaskFSM.java not generated", task.exists());
+
+            // Mark the cached copy, so a restored file can be told apart from
+            // a generated one.
+            File cached = find(cacheDir, "TaskFSM.java");
+            assertTrue("TaskFSM.java not cached", cached != null);
+            write(cached, read(cached) + "// cached\n");
+
+            File second = new File(tempDir, "second");
+            generate(second, cacheDir);
+            assertEquals("TaskFSM.java not restored from the cache",
+                         read(cached),
+                         read(new File(second,
+                                       "target/generated-sources/sm/smc_ex5/TaskFSM.java")));
+            assertTrue("TaskManagerFSM.java not restored",
+                       new File(second,
+                                "target/generated-sources/sm/smc_ex5/TaskManagerFSM.java").exists());
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testCacheKey() throws Exception {
+        File tempDir = File.createTempFile("smc", "key", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+
+            // The same generator in two checkouts.
+            String[] versions = new String[2];
+            for (int i = 0; i < versions.length; i++) {
+                File classes = new File(tempDir, "checkout" + i + "/classes");
+                File resource = new File(classes,
+                                         "net/sf/smc/generator/pushSupport.txt");
+                resource.getParentFile().mkdirs();
+                write(resource, "push");
+                resource.setLastModified(1000L * (i + 1));
+                versions[i] = Plugin.generatorVersion(classes);
+            }
+            assertEquals("generator version depends on its location",
+                         versions[0], versions[1]);
+
+            File cacheDir = new File(tempDir, "cache");
+            GenerationCache first = new GenerationCache(cacheDir, "-java", versions[0]);
+            GenerationCache second = new GenerationCache(cacheDir, "-java", versions[1]);
+            GenerationCache other = new GenerationCache(cacheDir, "-java", "other");
+            String key = first.key(new File("checkout0/sm/Task.sm"), "hash");
+            assertEquals("cache key depends on the checkout", key,
+                         second.key(new File("checkout1/sm/Task.sm"), "hash"));
+            assertFalse("cache key ignores the generator",
+                        key.equals(other.key(new File("checkout0/sm/Task.sm"),
+                                             "hash")));
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        File tempDir = File.createTempFile("smc", "incremental", new File("."));
+        try {
+            MavenProject project = mock(MavenProject.class);
+            when(project.getBasedir()).thenReturn(tempDir);
+            tempDir.delete();
+            tempDir.deleteOnExit();
+
+            File smDir = new File(tempDir, "src/main/sm");
+            smDir.mkdirs();
+            File taskSm = new File(smDir, "Task.sm");
+            write(taskSm, read(new File("src/test/resources/sm/Task.sm")));
+            write(new File(smDir, "TaskManager.sm"),
+                  read(new File("src/test/resources/sm/TaskManager.sm")));
+
+            Plugin plugin = new Plugin();
+            plugin.setProject(project);
+            plugin.setSync(true);
+
+            File packageDir = new File(tempDir,
+                                       "target/generated-sources/sm/smc_ex5");
+            File task = new File(packageDir, "TaskFSM.java");
+            File taskManager = new File(packageDir, "TaskManagerFSM.java");
+
+            plugin.execute();
+            assertTrue("TaskFSM.java not generated", task.exists());
+            assertTrue("TaskManagerFSM.java not generated",
+                       taskManager.exists());
+
+            // Nothing changed, so nothing is generated.
+            task.setLastModified(1000L);
+            taskManager.setLastModified(1000L);
+            plugin.execute();
+            assertEquals("TaskFSM.java regenerated", 1000L,
+                         task.lastModified());
+            assertEquals("TaskManagerFSM.java regenerated", 1000L,
+                         taskManager.lastModified());
+
+            // Only the changed .sm file is compiled, and an unchanged
+            // output is not rewritten.
+            write(taskSm, read(taskSm) + "// changed\n");
+            plugin.execute();
+            assertEquals("TaskFSM.java rewritten", 1000L, task.lastModified());
+            write(taskSm, read(taskSm).replaceFirst("%\\{", "%{\n// changed"));
+            plugin.execute();
+            assertTrue("TaskFSM.java not regenerated",
+                       task.lastModified() != 1000L);
+            assertEquals("TaskManagerFSM.java regenerated", 1000L,
+                         taskManager.lastModified());
+
+            // A different option compiles everything.
+            plugin.setSync(false);
+            plugin.execute();
+            assertTrue("TaskManagerFSM.java not regenerated",
+                       taskManager.lastModified() != 1000L);
+
+            // The outputs of a removed .sm file are deleted.
+            new File(smDir, "TaskManager.sm").delete();
+            plugin.execute();
+            assertTrue("TaskFSM.java deleted", task.exists());
+            assertFalse("TaskManagerFSM.java not deleted",
+                        taskManager.exists());
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testParallelCompile() throws Exception {
+        File tempDir = File.createTempFile("smc", "parallel", new File("."));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            File smDir = new File(tempDir, "sm");
+            smDir.mkdirs();
+            String task = read(new File("src/test/resources/sm/Task.sm"));
+            int count = 16;
+            List<String> files = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                File sm = new File(smDir, "Task" + i + ".sm");
+                write(sm, task.replace("%fsmclass TaskFSM", "%fsmclass Task" + i + "FSM"));
+                files.add(sm.getPath());
+            }
+
+            // The same files compiled one after the other are the reference.
+            File serialDir = new File(tempDir, "serial");
+            File parallelDir = new File(tempDir, "parallel");
+            assertEquals("serial compile failed", 0,
+                         Smc.compile(compileArgs(serialDir, files)));
+            List<Smc> compilers = new ArrayList<Smc>();
+            compilers.add(new Smc(compileArgs(parallelDir, files)));
+            PrintStream out = new PrintStream(new ByteArrayOutputStream());
+            assertEquals("parallel compile failed", 0,
+                         Smc.compile(compilers, executor, out, out));
+
+            for (int i = 0; i < count; i++) {
+                String name = "Task" + i;
+                String java = "src/smc_ex5/" + name + "FSM.java";
+                String dot = "doc/" + name + "FSM.dot";
+                String html = "doc/" + name + "FSM.html";
+
+                assertTrue(java + " is not " + name,
+                           read(new File(parallelDir, java)).contains("class " + name + "FSM"));
+                assertTrue(dot + " is not " + name,
+                           read(new File(parallelDir, dot)).startsWith("digraph " + name + " {"));
+                assertTrue(html + " is not " + name,
+                           read(new File(parallelDir, html)).contains("<title>" + name + "</title>"));
+                for (String path : new String[] { java, dot, html }) {
+                    assertEquals(path + " differs", read(new File(serialDir, path)),
+                                 read(new File(parallelDir, path)));
+                }
+            }
+            assertEquals("unexpected java files", count,
+                         new File(parallelDir, "src/smc_ex5").list().length);
+            assertEquals("unexpected doc files", 2 * count,
+                         new File(parallelDir, "doc").list().length);
+        } finally {
+            executor.shutdownNow();
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testCombineWithSync() throws Exception {
+        String[] args = { "-java", "-sync", "-combine",
+                "src/test/resources/sm/Task.sm" };
+        try {
+            new Smc(args);
+            assertTrue("-combine accepted with -sync", false);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("-combine"));
+        }
+    }
+
+    @Test
+    public void testTraceLogging() throws Exception {
+        File tempDir = File.createTempFile("smc", "trace", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            File logDir = new File(tempDir, "log");
+            File tracerDir = new File(tempDir, "tracer");
+            logDir.mkdirs();
+            tracerDir.mkdirs();
+            String sm = "src/test/resources/sm/Task.sm";
+
+            // Without options trace logging is generated as before.
+            assertEquals(0, Smc.compile(new String[] { "-return", "-java",
+                    "-d", logDir.getPath(), sm }));
+            String java = read(new File(logDir, "smc_ex5/TaskFSM.java"));
+            assertTrue("no trace logging", java.contains("context.trace(\""));
+            assertTrue(java.contains("boolean TRACE = statemap.FSMContext.TRACE;"));
+
+            // -tracer replaces it with tracer calls.
+            assertEquals(0, Smc.compile(new String[] { "-return", "-java",
+                    "-tracer", "-d", tracerDir.getPath(), sm }));
+            java = read(new File(tracerDir, "smc_ex5/TaskFSM.java"));
+            assertFalse("trace logging with -tracer", java.contains("context.trace(\""));
+            assertTrue("no tracer calls", java.contains("traceTransition("));
+            assertTrue(java.contains("boolean TRACE = false;"));
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testPackageOverride() throws Exception {
+        File tempDir = File.createTempFile("smc", "package", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            tempDir.mkdirs();
+
+            assertEquals(0, Smc.compile(new String[] { "-return", "-java",
+                    "-package", "smc_ex5.copy", "-d", tempDir.getPath(),
+                    "src/test/resources/sm/Task.sm" }));
+            assertFalse("generated into the %package",
+                        new File(tempDir, "smc_ex5/TaskFSM.java").exists());
+            String java = read(new File(tempDir, "smc_ex5/copy/TaskFSM.java"));
+            assertTrue("package not replaced", java.contains("package smc_ex5.copy;"));
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testTableHandlers() throws Exception {
+        File tempDir = File.createTempFile("smc", "table", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            tempDir.mkdirs();
+            File sm = new File(tempDir, "Flat.sm");
+            write(sm, "%package flat\n%start M::A\n%class Flat\n%map M\n%%\n"
+                      + "A\n{\n    Go B {}\n    Stop A { stop(); }\n}\n"
+                      + "B\n{\n    Go A {}\n}\n%%\n");
+
+            assertEquals(0, Smc.compile(new String[] { "-return", "-java",
+                    "-style", "table", "-d", tempDir.getPath(), sm.getPath() }));
+            String java = read(new File(tempDir, "flat/FlatContext.java"));
+
+            // Only the transition with an action needs a handler.
+            assertTrue("no handler for A.Stop", java.contains("void _M_A_Stop("));
+            assertFalse("handler for tabulated A.Go", java.contains("void _M_A_Go("));
+            assertFalse("handler for tabulated B.Go", java.contains("void _M_B_Go("));
+            assertFalse("blank line run", java.contains("\n\n\n"));
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testTimeoutNeedsSerializedTransitions() throws Exception {
+        File tempDir = File.createTempFile("smc", "timeout", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            tempDir.mkdirs();
+            File sm = new File(tempDir, "Timer.sm");
+            write(sm, "%package timer\n%start M::A\n%class Timer\n%map M\n%%\n"
+                      + "A\n{\n    %timeout 100 Tick;\n    Tick B {}\n}\n"
+                      + "B {}\n%%\n");
+            String[] args = { "-return", "-java", "-d", tempDir.getPath(), sm.getPath() };
+            PrintStream err = System.err;
+            ByteArrayOutputStream messages = new ByteArrayOutputStream();
+            int retcode;
+
+            // The timer thread's transition would race the owner's.
+            System.setErr(new PrintStream(messages, true));
+            try {
+                retcode = Smc.compile(args);
+            } finally {
+                System.setErr(err);
+            }
+            assertEquals("%timeout accepted without -sync", 1, retcode);
+            assertTrue(messages.toString(),
+                       messages.toString().contains("%timeout requires -sync"));
+
+            for (String mode : new String[] { "-sync", "-combine", "-async" }) {
+                assertEquals("%timeout rejected with " + mode, 0,
+                             Smc.compile(new String[] { "-return", "-java", mode,
+                                     "-d", tempDir.getPath(), sm.getPath() }));
+            }
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testGeneratorVersion() throws Exception {
+        File tempDir = File.createTempFile("smc", "version", new File("."));
+        try {
+            tempDir.delete();
+            tempDir.deleteOnExit();
+            File classes = new File(tempDir, "classes");
+            File resource = new File(classes, "net/sf/smc/generator/pushSupport.txt");
+            resource.getParentFile().mkdirs();
+            write(new File(classes, "net/sf/smc/Smc.class"), "class");
+            write(resource, "push");
+            write(new File(classes, "other.txt"), "other");
+            String version = Plugin.generatorVersion(classes);
+
+            // Only the contents count, not the size or modification time.
+            long modified = resource.lastModified();
+            write(resource, "pop!");
+            resource.setLastModified(modified);
+            String changed = Plugin.generatorVersion(classes);
+            assertFalse("changed resource not detected", version.equals(changed));
+            write(new File(classes, "other.txt"), "changed");
+            assertEquals("file outside net/sf/smc detected", changed,
+                         Plugin.generatorVersion(classes));
+
+            File jar = new File(tempDir, "smc.jar");
+            writeJar(jar, "push");
+            version = Plugin.generatorVersion(jar);
+            writeJar(jar, "pop!");
+            assertFalse("changed jar resource not detected",
+                        version.equals(Plugin.generatorVersion(jar)));
+        } finally {
+            deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testMethodSizes() throws Exception {
+        InputStream in = Plugin.class.getResourceAsStream("Plugin.class");
+        Map<String, Integer> sizes;
+        try {
+            sizes = MethodSizes.read(in);
+        } finally {
+            in.close();
+        }
+        assertTrue("execute() not found", sizes.containsKey("execute()V"));
+        assertTrue("execute() has no code", sizes.get("execute()V") > 0);
+        assertTrue("setSync(boolean) not found",
+                   sizes.containsKey("setSync(Z)V"));
+    }
+
+    private static String[] compileArgs(File outDir, List<String> files) {
+        File srcDir = new File(outDir, "src");
+        File docDir = new File(outDir, "doc");
+        srcDir.mkdirs();
+        docDir.mkdirs();
+        List<String> args = new ArrayList<String>();
+        args.add("-return");
+        args.add("-d");
+        args.add(srcDir.getPath());
+        args.add("-java");
+        args.add("-docd");
+        args.add(docDir.getPath());
+        args.add("-graph");
+        args.add("-table");
+        args.addAll(files);
+        return args.toArray(new String[args.size()]);
+    }
+
+    private static File find(File dir, String name) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                File found = (file.isDirectory() ? find(file, name)
+                                                : (file.getName().equals(name) ? file
+                                                                              : null));
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void generate(File baseDir, File cacheDir) throws Exception {
+        File smDir = new File(baseDir, "src/main/sm");
+        smDir.mkdirs();
+        write(new File(smDir, "Task.sm"),
+              read(new File("src/test/resources/sm/Task.sm")));
+        write(new File(smDir, "TaskManager.sm"),
+              read(new File("src/test/resources/sm/TaskManager.sm")));
+
+        MavenProject project = mock(MavenProject.class);
+        when(project.getBasedir()).thenReturn(baseDir);
+        Plugin plugin = new Plugin();
+        plugin.setProject(project);
+        plugin.setCacheDirectory(cacheDir.getAbsolutePath());
+        plugin.setGraph(true);
+        plugin.execute();
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeJar(File file, String pushSupport) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+        try {
+            out.putNextEntry(new JarEntry("net/sf/smc/Smc.class"));
+            out.write("class".getBytes("UTF-8"));
+            out.putNextEntry(new JarEntry("net/sf/smc/generator/pushSupport.txt"));
+            out.write(pushSupport.getBytes("UTF-8"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
 }
@@ -0,0 +1,664 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  Holds finite state machine contexts by key, evicting idle
+//  ones to a ContextStore and restoring them on demand.
+//
+
+package statemap;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds FSM contexts by key and keeps only the recently used
+ * ones in memory. When more than the maximum number of contexts
+ * are resident, or when {@link #evictIdle()} finds contexts
+ * idle for longer than the idle timeout, the least recently
+ * used contexts are written to a {@link ContextStore} as
+ * compact {@link FSMContext#writeTo(ByteBuffer)} records (state
+ * identifier, state stack and name) and dropped, together with
+ * their owners. The next transition for an evicted key creates
+ * a new context through the {@link Factory} and restores it
+ * from its record. The store is used without holding the
+ * cache's monitor: a transition for a key being loaded or
+ * evicted waits for that to finish.
+ * <p>
+ * Transitions are issued with
+ * {@link #dispatch(Object, int, Object)}, which holds the
+ * context's monitor for the transition. A context is never
+ * evicted during a transition. Only the FSM state survives
+ * eviction: owner data the application needs back must be
+ * kept by the factory. Contexts must be generated with
+ * serialization support.
+ * </p>
+ *
+ * @param <K> the context key type.
+ * @param <C> the FSM context type.
+ */
+
+public final class ContextCache<K, C extends FSMContext>
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a context cache.
+     * @param factory creates a context, with its owner, for a
+     * key.
+     * @param dispatcher issues transitions on contexts.
+     * @param store holds evicted contexts.
+     * @param maximumSize the most contexts kept in memory.
+     * @param idleTimeout {@link #evictIdle()} evicts contexts
+     * unused for this many milliseconds.
+     * @exception IllegalArgumentException
+     * if an argument is {@code null}, {@code maximumSize} is
+     * less than one or {@code idleTimeout} is negative.
+     */
+    public ContextCache(Factory<K, C> factory,
+                        EventLoopGroup.Dispatcher<C> dispatcher,
+                        ContextStore<K> store,
+                        int maximumSize,
+                        long idleTimeout)
+    {
+        if (factory == null)
+        {
+            throw (new IllegalArgumentException("null factory"));
+        }
+        else if (dispatcher == null)
+        {
+            throw (new IllegalArgumentException("null dispatcher"));
+        }
+        else if (store == null)
+        {
+            throw (new IllegalArgumentException("null store"));
+        }
+        else if (maximumSize < 1)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "maximum size " + maximumSize + " < 1"));
+        }
+        else if (idleTimeout < 0L)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "idle timeout " + idleTimeout + " < 0"));
+        }
+
+        _factory = factory;
+        _dispatcher = dispatcher;
+        _store = store;
+        _maximumSize = maximumSize;
+        _idleTimeout = idleTimeout * 1000000L;
+
+        // Access order: the eldest entry is the least recently
+        // used.
+        _entries = new LinkedHashMap<K, Entry<C>>(16, 0.75f, true);
+        _record = ByteBuffer.allocate(INITIAL_RECORD_SIZE);
+    } // end of ContextCache(...)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the number of contexts in memory.
+     * @return the resident context count.
+     */
+    public synchronized int size()
+    {
+        return (_entries.size());
+    } // end of size()
+
+    /**
+     * Returns {@code true} if the context for {@code key} is in
+     * memory.
+     * @param key the context key.
+     * @return {@code true} if the context is resident.
+     */
+    public synchronized boolean isResident(K key)
+    {
+        return (_entries.containsKey(key));
+    } // end of isResident(K)
+
+    /**
+     * Returns the number of transitions whose context was in
+     * memory.
+     * @return the hit count.
+     */
+    public synchronized long getHitCount()
+    {
+        return (_hitCount);
+    } // end of getHitCount()
+
+    /**
+     * Returns the number of transitions whose context was not
+     * in memory: the sum of the load and create counts.
+     * @return the miss count.
+     */
+    public synchronized long getMissCount()
+    {
+        return (_loadCount + _createCount);
+    } // end of getMissCount()
+
+    /**
+     * Returns the number of contexts restored from the store.
+     * @return the load count.
+     */
+    public synchronized long getLoadCount()
+    {
+        return (_loadCount);
+    } // end of getLoadCount()
+
+    /**
+     * Returns the number of contexts created for keys with no
+     * stored record.
+     * @return the create count.
+     */
+    public synchronized long getCreateCount()
+    {
+        return (_createCount);
+    } // end of getCreateCount()
+
+    /**
+     * Returns the number of contexts written to the store.
+     * @return the eviction count.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return (_evictionCount);
+    } // end of getEvictionCount()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Issues a transition on the context for {@code key},
+     * restoring or creating the context first if it is not in
+     * memory. The transition runs holding the context's
+     * monitor but not the cache's, so transitions for different
+     * keys run in parallel. The store is read and written
+     * without holding the cache's monitor either.
+     * <p>
+     * Contexts over the maximum are evicted after a transition
+     * completes normally. If the transition throws, eviction
+     * waits for the next transition, so the transition's
+     * exception is the one thrown.
+     * </p>
+     * @param key the context key.
+     * @param transition the transition identifier.
+     * @param argument the transition argument. May be
+     * {@code null}.
+     * @exception IOException
+     * if the context cannot be restored or another context
+     * cannot be evicted.
+     */
+    public void dispatch(K key, int transition, Object argument)
+        throws IOException
+    {
+        Entry<C> entry = _acquire(key);
+
+        try
+        {
+            synchronized (entry.context)
+            {
+                _dispatcher.dispatch(
+                    entry.context, transition, argument);
+            }
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                --entry.pins;
+                entry.lastAccess = System.nanoTime();
+            }
+        }
+
+        _evictOverflow();
+
+        return;
+    } // end of dispatch(K, int, Object)
+
+    /**
+     * Evicts every context unused for longer than the idle
+     * timeout. Call periodically, for example from a scheduled
+     * executor.
+     * @return the number of contexts evicted.
+     * @exception IOException
+     * if a context cannot be stored.
+     */
+    public int evictIdle()
+        throws IOException
+    {
+        long now = System.nanoTime();
+        List<Eviction<K, C>> evictions =
+            new ArrayList<Eviction<K, C>>();
+
+        synchronized (this)
+        {
+            // Entries are in access order, so stop at the first
+            // entry used within the timeout.
+            for (Map.Entry<K, Entry<C>> mapEntry:
+                     _entries.entrySet())
+            {
+                if (now - mapEntry.getValue().lastAccess <=
+                        _idleTimeout)
+                {
+                    break;
+                }
+
+                _select(mapEntry, evictions);
+            }
+        }
+
+        return (_write(evictions));
+    } // end of evictIdle()
+
+    /**
+     * Evicts every context not in a transition, for example
+     * before shutting down.
+     * @return the number of contexts evicted.
+     * @exception IOException
+     * if a context cannot be stored.
+     */
+    public int evictAll()
+        throws IOException
+    {
+        List<Eviction<K, C>> evictions =
+            new ArrayList<Eviction<K, C>>();
+
+        synchronized (this)
+        {
+            for (Map.Entry<K, Entry<C>> mapEntry:
+                     _entries.entrySet())
+            {
+                _select(mapEntry, evictions);
+            }
+        }
+
+        return (_write(evictions));
+    } // end of evictAll()
+
+    /**
+     * Returns the cache counters as text.
+     * @return the cache counters.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return (
+            String.format(
+                "ContextCache[resident=%d, hits=%d, loads=%d, creates=%d, evictions=%d]",
+                _entries.size(),
+                _hitCount,
+                _loadCount,
+                _createCount,
+                _evictionCount));
+    } // end of toString()
+
+    // Returns the pinned entry for key, restoring or creating
+    // its context if needed. The entry is added marked as
+    // loading, so the store is read without holding the cache's
+    // monitor while other threads wanting the same key wait.
+    private Entry<C> _acquire(K key)
+        throws IOException
+    {
+        Entry<C> retval;
+        boolean load = false;
+
+        synchronized (this)
+        {
+            while ((retval = _entries.get(key)) != null &&
+                   retval.status != Status.RESIDENT)
+            {
+                _await();
+            }
+
+            if (retval != null)
+            {
+                ++_hitCount;
+            }
+            else
+            {
+                retval = new Entry<C>();
+                _entries.put(key, retval);
+                load = true;
+            }
+
+            ++retval.pins;
+        }
+
+        if (load == true)
+        {
+            _load(key, retval);
+        }
+
+        return (retval);
+    } // end of _acquire(K)
+
+    // Creates the loading entry's context and restores it from
+    // its record, if any. The entry is dropped if this fails.
+    private void _load(K key, Entry<C> entry)
+        throws IOException
+    {
+        C context;
+        byte[] record;
+        boolean loaded = false;
+
+        try
+        {
+            context = _factory.create(key);
+            record = _store.get(key);
+
+            if (record != null)
+            {
+                try
+                {
+                    context.readFrom(ByteBuffer.wrap(record));
+                }
+                catch (RuntimeException jex)
+                {
+                    throw (
+                        new IOException(
+                            "invalid record for " + key, jex));
+                }
+
+                _store.remove(key);
+                loaded = true;
+            }
+
+            entry.context = context;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (entry.context == null)
+                {
+                    _entries.remove(key);
+                }
+                else
+                {
+                    entry.status = Status.RESIDENT;
+                    entry.lastAccess = System.nanoTime();
+                    if (loaded == true)
+                    {
+                        ++_loadCount;
+                    }
+                    else
+                    {
+                        ++_createCount;
+                    }
+                }
+
+                notifyAll();
+            }
+        }
+
+        return;
+    } // end of _load(K, Entry)
+
+    // Evicts least recently used contexts until no more than
+    // the maximum are resident or only pinned ones are left.
+    private void _evictOverflow()
+        throws IOException
+    {
+        List<Eviction<K, C>> evictions =
+            new ArrayList<Eviction<K, C>>();
+
+        synchronized (this)
+        {
+            Iterator<Map.Entry<K, Entry<C>>> it =
+                _entries.entrySet().iterator();
+
+            while (_entries.size() - _evicting > _maximumSize &&
+                   it.hasNext() == true)
+            {
+                _select(it.next(), evictions);
+            }
+        }
+
+        _write(evictions);
+
+        return;
+    } // end of _evictOverflow()
+
+    // Marks the entry's context for eviction and writes its
+    // record unless it is in a transition, loading or already
+    // being evicted. The caller holds the cache's monitor.
+    private void _select(Map.Entry<K, Entry<C>> mapEntry,
+                         List<Eviction<K, C>> evictions)
+    {
+        Entry<C> entry = mapEntry.getValue();
+
+        if (entry.pins == 0 && entry.status == Status.RESIDENT)
+        {
+            _record.clear();
+            while (true)
+            {
+                try
+                {
+                    entry.context.writeTo(_record);
+                    break;
+                }
+                catch (BufferOverflowException overflow)
+                {
+                    _record =
+                        ByteBuffer.allocate(2 * _record.capacity());
+                }
+            }
+
+            _record.flip();
+
+            byte[] record = new byte[_record.remaining()];
+
+            _record.get(record);
+            entry.status = Status.EVICTING;
+            ++_evicting;
+            evictions.add(
+                new Eviction<K, C>(mapEntry.getKey(), entry, record));
+        }
+
+        return;
+    } // end of _select(Map.Entry, List)
+
+    // Writes the selected records to the store without holding
+    // the cache's monitor and drops their entries. If a write
+    // fails, the entries not yet stored stay resident.
+    private int _write(List<Eviction<K, C>> evictions)
+        throws IOException
+    {
+        int size = evictions.size();
+        int i = 0;
+
+        try
+        {
+            for (Eviction<K, C> eviction: evictions)
+            {
+                _store.put(eviction.key, eviction.record);
+
+                synchronized (this)
+                {
+                    _entries.remove(eviction.key);
+                    --_evicting;
+                    ++_evictionCount;
+                    notifyAll();
+                }
+
+                ++i;
+            }
+        }
+        finally
+        {
+            if (i < size)
+            {
+                synchronized (this)
+                {
+                    for (Eviction<K, C> eviction:
+                             evictions.subList(i, size))
+                    {
+                        eviction.entry.status = Status.RESIDENT;
+                    }
+
+                    _evicting -= (size - i);
+                    notifyAll();
+                }
+            }
+        }
+
+        return (size);
+    } // end of _write(List)
+
+    // Waits for a loading or evicting entry to settle. The
+    // caller holds the cache's monitor.
+    private void _await()
+        throws InterruptedIOException
+    {
+        try
+        {
+            wait();
+        }
+        catch (InterruptedException interrupt)
+        {
+            Thread.currentThread().interrupt();
+            throw (
+                new InterruptedIOException(
+                    "interrupted waiting for a context"));
+        }
+
+        return;
+    } // end of _await()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * Creates the context, and its owner, for a key. The cache
+     * restores the FSM state of an evicted context after
+     * creating it.
+     *
+     * @param <K> the context key type.
+     * @param <C> the FSM context type.
+     */
+    public interface Factory<K, C extends FSMContext>
+    {
+        /**
+         * Returns a new context for {@code key} in its start
+         * state.
+         * @param key the context key.
+         * @return a new context.
+         */
+        C create(K key);
+    } // end of interface Factory
+
+    // Whether an entry's context is being read from the store,
+    // in memory or being written to the store.
+    private enum Status
+    {
+        LOADING,
+        RESIDENT,
+        EVICTING
+    } // end of enum Status
+
+    // A context, the number of transitions running on it and
+    // when it was last used. The context is null while
+    // loading.
+    private static final class Entry<C>
+    {
+        private Entry()
+        {
+            this.status = Status.LOADING;
+        }
+
+        private C context;
+        private Status status;
+        private int pins;
+        private long lastAccess;
+    } // end of class Entry
+
+    // A context selected for eviction and its record.
+    private static final class Eviction<K, C>
+    {
+        private Eviction(K key, Entry<C> entry, byte[] record)
+        {
+            this.key = key;
+            this.entry = entry;
+            this.record = record;
+        }
+
+        private final K key;
+        private final Entry<C> entry;
+        private final byte[] record;
+    } // end of class Eviction
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final Factory<K, C> _factory;
+    private final EventLoopGroup.Dispatcher<C> _dispatcher;
+    private final ContextStore<K> _store;
+    private final int _maximumSize;
+
+    // In nanoseconds.
+    private final long _idleTimeout;
+
+    private final LinkedHashMap<K, Entry<C>> _entries;
+
+    // The number of entries being written to the store.
+    private int _evicting;
+
+    // Holds a record while it is written. Grown as needed.
+    private ByteBuffer _record;
+
+    private long _hitCount;
+    private long _loadCount;
+    private long _createCount;
+    private long _evictionCount;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    private static final int INITIAL_RECORD_SIZE = 256;
+} // end of class ContextCache
@@ -0,0 +1,72 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  Holds the records of contexts evicted from a ContextCache.
+//
+
+package statemap;
+
+import java.io.IOException;
+
+/**
+ * Holds the {@link FSMContext#writeTo(java.nio.ByteBuffer)}
+ * records of contexts evicted from a {@link ContextCache}, by
+ * key, until they are needed again.
+ *
+ * @param <K> the context key type.
+ * @see FileContextStore
+ */
+
+public interface ContextStore<K>
+{
+    /**
+     * Stores the record for {@code key}, replacing any earlier
+     * one.
+     * @param key the context key.
+     * @param record the context record.
+     * @exception IOException
+     * if the record cannot be stored.
+     */
+    void put(K key, byte[] record)
+        throws IOException;
+
+    /**
+     * Returns the record stored for {@code key} or {@code null}
+     * if there is none.
+     * @param key the context key.
+     * @return the context record.
+     * @exception IOException
+     * if the record cannot be read.
+     */
+    byte[] get(K key)
+        throws IOException;
+
+    /**
+     * Removes the record stored for {@code key}, if any.
+     * @param key the context key.
+     * @exception IOException
+     * if the record cannot be removed.
+     */
+    void remove(K key)
+        throws IOException;
+} // end of interface ContextStore
@@ -0,0 +1,690 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  Shards finite state machine contexts across a fixed set of
+//  single-writer event loop threads.
+//
+
+package statemap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies transitions to a large number of finite state machine
+ * contexts using a fixed number of event loop threads. Each
+ * context belongs to the partition selected by its key's hash
+ * code, and every partition has one thread which is the only
+ * thread to issue transitions on that partition's contexts. A
+ * context is therefore never accessed concurrently as long as
+ * it is always posted with the same key, and no locks are
+ * needed.
+ * <p>
+ * Each partition holds a preallocated ring buffer of transition
+ * events. An event is the context, an integer transition
+ * identifier and an optional argument; the group's
+ * {@link Dispatcher} maps the identifier to the generated
+ * transition method, so no event objects are allocated and no
+ * reflection is used.
+ * </p>
+ * <p>
+ * Every partition keeps throughput, queue depth and latency
+ * counters, available from {@link #getPartition(int)}.
+ * </p>
+ *
+ * @param <C> the FSM context type.
+ */
+
+public final class EventLoopGroup<C extends FSMContext>
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an event loop group with {@code partitionCount}
+     * partitions, each with a ring buffer of {@code ringSize}
+     * events. The event loop threads are started by
+     * {@link #start()}.
+     * @param name the event loop thread name prefix.
+     * @param partitionCount the number of partitions and
+     * threads.
+     * @param ringSize the number of events each partition
+     * holds. Must be a power of two.
+     * @param dispatcher issues the transitions.
+     * @exception IllegalArgumentException
+     * if {@code partitionCount} is &le; zero, {@code ringSize}
+     * is not a positive power of two or {@code dispatcher} is
+     * {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public EventLoopGroup(String name,
+                          int partitionCount,
+                          int ringSize,
+                          Dispatcher<? super C> dispatcher)
+    {
+        int index;
+
+        if (partitionCount <= 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "partition count must be > zero"));
+        }
+        else if (ringSize <= 0 || (ringSize & (ringSize - 1)) != 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "ring size must be a power of two"));
+        }
+        else if (dispatcher == null)
+        {
+            throw (
+                new IllegalArgumentException("null dispatcher"));
+        }
+
+        _name = name;
+        _dispatcher = dispatcher;
+        _partitions = new EventLoopGroup.Partition[partitionCount];
+        for (index = 0; index < partitionCount; ++index)
+        {
+            _partitions[index] = new Partition(index, ringSize);
+        }
+        _running = false;
+    } // end of EventLoopGroup(String, int, int, Dispatcher)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Starts the event loop threads.
+     * @exception IllegalStateException
+     * if the group was already started.
+     */
+    public synchronized void start()
+    {
+        if (_started == true)
+        {
+            throw (new IllegalStateException("already started"));
+        }
+
+        _started = true;
+        _running = true;
+        for (Partition partition: _partitions)
+        {
+            partition._thread.start();
+        }
+
+        return;
+    } // end of start()
+
+    /**
+     * Stops accepting events. Each event loop thread exits after
+     * applying the events already posted to its partition.
+     * Events posted while the group is shutting down may be
+     * discarded.
+     */
+    public void shutdown()
+    {
+        _running = false;
+        for (Partition partition: _partitions)
+        {
+            LockSupport.unpark(partition._thread);
+        }
+
+        return;
+    } // end of shutdown()
+
+    /**
+     * Waits up to {@code millis} milliseconds for the event loop
+     * threads to exit after {@link #shutdown()}.
+     * @param millis the maximum wait for each thread.
+     * @return {@code true} if all the threads exited.
+     * @exception InterruptedException
+     * if the calling thread is interrupted.
+     */
+    public boolean awaitTermination(long millis)
+        throws InterruptedException
+    {
+        boolean retcode = true;
+
+        for (Partition partition: _partitions)
+        {
+            partition._thread.join(millis);
+            retcode &= (partition._thread.isAlive() == false);
+        }
+
+        return (retcode);
+    } // end of awaitTermination(long)
+
+    /**
+     * Posts a transition to the context's partition if the
+     * partition's ring buffer has room.
+     * @param key selects the partition. Always use the same key
+     * for a given context.
+     * @param context the FSM context.
+     * @param transition the dispatcher's transition identifier.
+     * @param argument the transition argument. May be
+     * {@code null}.
+     * @return {@code true} if the event was posted and
+     * {@code false} if the ring buffer is full.
+     * @exception IllegalStateException
+     * if the group is not running.
+     */
+    public boolean offer(Object key,
+                         C context,
+                         int transition,
+                         Object argument)
+    {
+        return (_partitions[partitionOf(key)].offer(
+                    context, transition, argument));
+    } // end of offer(Object, C, int, Object)
+
+    /**
+     * Posts a transition to the context's partition, waiting
+     * while the partition's ring buffer is full.
+     * @param key selects the partition. Always use the same key
+     * for a given context.
+     * @param context the FSM context.
+     * @param transition the dispatcher's transition identifier.
+     * @param argument the transition argument. May be
+     * {@code null}.
+     * @exception IllegalStateException
+     * if the group is not running.
+     */
+    public void put(Object key,
+                    C context,
+                    int transition,
+                    Object argument)
+    {
+        Partition partition = _partitions[partitionOf(key)];
+
+        while (partition.offer(
+                   context, transition, argument) == false)
+        {
+            Thread.yield();
+        }
+
+        return;
+    } // end of put(Object, C, int, Object)
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the index of the partition to which {@code key}
+     * belongs.
+     * @param key the context key.
+     * @return the partition index.
+     */
+    public int partitionOf(Object key)
+    {
+        int hash = key.hashCode();
+
+        // Spread the high bits so that keys differing only
+        // there do not all land on one partition.
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+
+        return ((hash & 0x7fffffff) % _partitions.length);
+    } // end of partitionOf(Object)
+
+    /**
+     * Returns the number of partitions.
+     * @return the partition count.
+     */
+    public int getPartitionCount()
+    {
+        return (_partitions.length);
+    } // end of getPartitionCount()
+
+    /**
+     * Returns the partition with the given index.
+     * @param index the partition index.
+     * @return the partition.
+     * @exception ArrayIndexOutOfBoundsException
+     * if {@code index} is out of range.
+     */
+    public Partition getPartition(int index)
+    {
+        return (_partitions[index]);
+    } // end of getPartition(int)
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        StringBuilder retval = new StringBuilder();
+
+        retval.append(_name);
+        for (Partition partition: _partitions)
+        {
+            retval.append("\n  ");
+            retval.append(partition);
+        }
+
+        return (retval.toString());
+    } // end of toString()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * Maps a transition identifier to the generated transition
+     * method. Called only from the context's event loop thread.
+     *
+     * @param <C> the FSM context type.
+     */
+    public interface Dispatcher<C extends FSMContext>
+    {
+        /**
+         * Issues the identified transition on the context.
+         * @param context the FSM context.
+         * @param transition the transition identifier.
+         * @param argument the transition argument. May be
+         * {@code null}.
+         */
+        void dispatch(C context, int transition, Object argument);
+    } // end of interface Dispatcher
+
+    /**
+     * One event loop thread, its ring buffer and its counters.
+     * Any number of threads may post to the ring buffer; only
+     * the partition's thread takes events from it.
+     */
+    public final class Partition
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        private Partition(final int index, final int ringSize)
+        {
+            int i;
+
+            _index = index;
+            _mask = ringSize - 1;
+            _contexts = new Object[ringSize];
+            _transitions = new int[ringSize];
+            _arguments = new Object[ringSize];
+            _postTimes = new long[ringSize];
+            _published = new AtomicLongArray(ringSize);
+            for (i = 0; i < ringSize; ++i)
+            {
+                _published.set(i, -1L);
+            }
+            _claimed = new AtomicLong(0L);
+            _consumed = new AtomicLong(0L);
+            _rejectedCount = new AtomicLong(0L);
+            _thread =
+                new Thread(_name + "-" + index)
+                {
+                    @Override
+                    public void run()
+                    {
+                        _loop();
+                    }
+                };
+        } // end of Partition(int, int)
+
+        //-------------------------------------------------------
+        // Get methods.
+        //
+
+        /**
+         * Returns this partition's index.
+         * @return the partition index.
+         */
+        public int getIndex()
+        {
+            return (_index);
+        } // end of getIndex()
+
+        /**
+         * Returns the number of events this partition's ring
+         * buffer holds.
+         * @return the ring buffer size.
+         */
+        public int getCapacity()
+        {
+            return (_mask + 1);
+        } // end of getCapacity()
+
+        /**
+         * Returns the number of events posted and not yet
+         * applied.
+         * @return the current queue depth.
+         */
+        public int getDepth()
+        {
+            return ((int) (_claimed.get() - _consumed.get()));
+        } // end of getDepth()
+
+        /**
+         * Returns the highest queue depth seen by the event
+         * loop thread.
+         * @return the maximum queue depth.
+         */
+        public int getMaxDepth()
+        {
+            return (_maxDepth);
+        } // end of getMaxDepth()
+
+        /**
+         * Returns the number of events posted.
+         * @return the posted event count.
+         */
+        public long getPostedCount()
+        {
+            return (_claimed.get());
+        } // end of getPostedCount()
+
+        /**
+         * Returns the number of events applied, including those
+         * whose transition failed.
+         * @return the applied event count.
+         */
+        public long getAppliedCount()
+        {
+            return (_consumed.get());
+        } // end of getAppliedCount()
+
+        /**
+         * Returns the number of events refused because the ring
+         * buffer was full.
+         * @return the rejected event count.
+         */
+        public long getRejectedCount()
+        {
+            return (_rejectedCount.get());
+        } // end of getRejectedCount()
+
+        /**
+         * Returns the number of applied events whose transition
+         * threw an exception.
+         * @return the failed event count.
+         */
+        public long getFailedCount()
+        {
+            return (_failedCount);
+        } // end of getFailedCount()
+
+        /**
+         * Returns the mean nanoseconds from posting an event to
+         * the end of its transition.
+         * @return the mean event latency.
+         */
+        public long getMeanLatency()
+        {
+            long applied = _consumed.get();
+
+            return (applied == 0L ? 0L : _totalLatency / applied);
+        } // end of getMeanLatency()
+
+        /**
+         * Returns the maximum nanoseconds from posting an event
+         * to the end of its transition.
+         * @return the maximum event latency.
+         */
+        public long getMaxLatency()
+        {
+            return (_maxLatency);
+        } // end of getMaxLatency()
+
+        //
+        // end of Get methods.
+        //-------------------------------------------------------
+
+        @Override
+        public String toString()
+        {
+            return (
+                String.format(
+                    "[partition=%d, depth=%d, max depth=%d, posted=%d, applied=%d, rejected=%d, failed=%d, mean latency=%d ns, max latency=%d ns]",
+                    _index,
+                    getDepth(),
+                    _maxDepth,
+                    getPostedCount(),
+                    getAppliedCount(),
+                    getRejectedCount(),
+                    _failedCount,
+                    getMeanLatency(),
+                    _maxLatency));
+        } // end of toString()
+
+        // Claims the next ring buffer slot, fills it in and
+        // publishes it. Returns false if the ring is full.
+        private boolean offer(final C context,
+                              final int transition,
+                              final Object argument)
+        {
+            int slot;
+            long sequence;
+
+            if (_running == false)
+            {
+                throw (
+                    new IllegalStateException(
+                        "event loop group not running"));
+            }
+
+            do
+            {
+                sequence = _claimed.get();
+                if (sequence - _consumed.get() > _mask)
+                {
+                    _rejectedCount.incrementAndGet();
+                    return (false);
+                }
+            } while (_claimed.compareAndSet(
+                         sequence, sequence + 1) == false);
+
+            slot = (int) (sequence & _mask);
+            _contexts[slot] = context;
+            _transitions[slot] = transition;
+            _arguments[slot] = argument;
+            _postTimes[slot] = System.nanoTime();
+
+            // The volatile write publishes the slot and orders
+            // it before the read of _sleeping.
+            _published.set(slot, sequence);
+
+            if (_sleeping == true)
+            {
+                LockSupport.unpark(_thread);
+            }
+
+            return (true);
+        } // end of offer(C, int, Object)
+
+        // Applies published events until the group is shut
+        // down and the ring is empty.
+        private void _loop()
+        {
+            int idle = 0;
+
+            while (true)
+            {
+                if (_drain() > 0)
+                {
+                    idle = 0;
+                }
+                else if (_running == false &&
+                         _claimed.get() == _consumed.get())
+                {
+                    break;
+                }
+                else if (++idle < SPIN_LIMIT)
+                {
+                    // Spin.
+                }
+                else if (idle < YIELD_LIMIT)
+                {
+                    Thread.yield();
+                }
+                else
+                {
+                    _sleeping = true;
+
+                    // Check again after announcing the sleep so
+                    // a post made in between is not missed.
+                    if (_isPublished(_consumed.get()) == false &&
+                        _running == true)
+                    {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    _sleeping = false;
+                }
+            }
+
+            return;
+        } // end of _loop()
+
+        // Applies up to one ring's worth of published events and
+        // returns the number applied.
+        @SuppressWarnings("unchecked")
+        private int _drain()
+        {
+            long next = _consumed.get();
+            long depth = _claimed.get() - next;
+            long end = next + _mask + 1;
+            long latency;
+            int slot;
+            int count = 0;
+
+            if (depth > _maxDepth)
+            {
+                _maxDepth = (int) depth;
+            }
+
+            while (next < end && _isPublished(next) == true)
+            {
+                slot = (int) (next & _mask);
+
+                try
+                {
+                    _dispatcher.dispatch(
+                        (C) _contexts[slot],
+                        _transitions[slot],
+                        _arguments[slot]);
+                }
+                catch (RuntimeException jex)
+                {
+                    ++_failedCount;
+                    _log.warn("transition failed", jex);
+                }
+
+                latency = System.nanoTime() - _postTimes[slot];
+                _totalLatency += latency;
+                if (latency > _maxLatency)
+                {
+                    _maxLatency = latency;
+                }
+
+                // Release the references before handing the
+                // slot back to the producers.
+                _contexts[slot] = null;
+                _arguments[slot] = null;
+                ++next;
+                _consumed.lazySet(next);
+                ++count;
+            }
+
+            return (count);
+        } // end of _drain()
+
+        private boolean _isPublished(final long sequence)
+        {
+            return (
+                _published.get((int) (sequence & _mask)) ==
+                    sequence);
+        } // end of _isPublished(long)
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        private final int _index;
+        private final int _mask;
+        private final Thread _thread;
+
+        // The ring buffer, one array per event field. A slot
+        // may be read once _published holds its sequence.
+        private final Object[] _contexts;
+        private final int[] _transitions;
+        private final Object[] _arguments;
+        private final long[] _postTimes;
+        private final AtomicLongArray _published;
+
+        // The next sequence to claim and to apply.
+        private final AtomicLong _claimed;
+        private final AtomicLong _consumed;
+
+        private final AtomicLong _rejectedCount;
+
+        // Set while the event loop thread is parked.
+        private volatile boolean _sleeping;
+
+        // Updated by the event loop thread only.
+        private volatile int _maxDepth;
+        private volatile long _failedCount;
+        private volatile long _totalLatency;
+        private volatile long _maxLatency;
+    } // end of class Partition
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final String _name;
+    private final Dispatcher<? super C> _dispatcher;
+    private final Partition[] _partitions;
+    private boolean _started;
+    private volatile boolean _running;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // An idle event loop spins, then yields, then parks.
+    private static final int SPIN_LIMIT = 100;
+    private static final int YIELD_LIMIT = 200;
+    private static final long PARK_NANOS = 1000000L;
+
+    private static final Logger _log =
+        LoggerFactory.getLogger(EventLoopGroup.class);
+} // end of class EventLoopGroup
@@ -0,0 +1,446 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+// 
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+// 
+// The Original Code is  State Machine Compiler(SMC).
+// 
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+// 
+// Contributor(s): 
+//
+// statemap.java --
+//
+//  Bounded, multiple producer, single consumer event queue
+//  which applies one finite state machine's transitions on an
+//  executor.
+//
+
+package statemap;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded mailbox of transition events for one finite state
+ * machine context. Any number of threads may post events; the
+ * events are applied in order, one at a time, by a drain task
+ * run on the mailbox's {@link Executor}. At most one drain task
+ * is scheduled at a time, so the context is only ever accessed
+ * by one thread at a time without any locking, and posting
+ * threads never block.
+ * <p>
+ * When the mailbox is full a posted event is handled according
+ * to the mailbox's {@link OverflowPolicy}. An exception thrown
+ * by a transition applied from the mailbox cannot reach the
+ * thread which posted it, so it is logged and counted instead.
+ * </p>
+ * <p>
+ * The {@code postXxx} methods generated by SMC's {@code -async}
+ * option post to the mailbox set by
+ * {@link FSMContext#setMailbox(EventMailbox)}.
+ * </p>
+ */
+
+public final class EventMailbox
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a mailbox holding at most {@code capacity} events
+     * which are applied on {@code executor}.
+     * @param executor runs the drain tasks.
+     * @param capacity the maximum number of queued events.
+     * @param policy handles events posted to a full mailbox.
+     * @exception IllegalArgumentException
+     * if {@code executor} or {@code policy} is {@code null} or
+     * {@code capacity} is &le; zero.
+     */
+    public EventMailbox(Executor executor,
+                        int capacity,
+                        OverflowPolicy policy)
+    {
+        if (executor == null)
+        {
+            throw (
+                new IllegalArgumentException("null executor"));
+        }
+        else if (capacity <= 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "capacity must be > zero"));
+        }
+        else if (policy == null)
+        {
+            throw (new IllegalArgumentException("null policy"));
+        }
+
+        _executor = executor;
+        _capacity = capacity;
+        _policy = policy;
+        _queue = new ConcurrentLinkedQueue<Event>();
+        _depth = new AtomicInteger(0);
+        _maxDepth = new AtomicInteger(0);
+        _scheduled = new AtomicBoolean(false);
+        _postedCount = new AtomicLong(0L);
+        _droppedCount = new AtomicLong(0L);
+        _drainTask =
+            new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    _drain();
+                }
+            };
+    } // end of EventMailbox(Executor, int, OverflowPolicy)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Queues the event and schedules the drain task if it is
+     * not already scheduled.
+     * @param event the transition event.
+     * @return {@code true} if the event was queued and
+     * {@code false} if it was dropped.
+     * @exception RejectedExecutionException
+     * if the mailbox is full and the overflow policy is
+     * {@link OverflowPolicy#FAIL} or if the executor rejected
+     * the drain task.
+     */
+    public boolean post(Event event)
+    {
+        boolean retcode = true;
+        int depth;
+
+        while ((depth = _depth.incrementAndGet()) > _capacity)
+        {
+            _depth.decrementAndGet();
+
+            if (_policy == OverflowPolicy.FAIL)
+            {
+                _droppedCount.incrementAndGet();
+                throw (
+                    new RejectedExecutionException(
+                        "mailbox full (capacity " +
+                        _capacity +
+                        ")"));
+            }
+            else if (_policy == OverflowPolicy.DROP_NEWEST)
+            {
+                _droppedCount.incrementAndGet();
+                retcode = false;
+                break;
+            }
+            // DROP_OLDEST: discard the head and retry. The
+            // drain task may empty the queue first, in which
+            // case the retry succeeds without a drop.
+            else if (_queue.poll() != null)
+            {
+                _depth.decrementAndGet();
+                _droppedCount.incrementAndGet();
+            }
+        }
+
+        if (retcode == true)
+        {
+            _queue.offer(event);
+            _postedCount.incrementAndGet();
+            _updateMaxDepth(depth);
+
+            if (_scheduled.compareAndSet(false, true) == true)
+            {
+                _schedule();
+            }
+        }
+
+        return (retcode);
+    } // end of post(Event)
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the maximum number of queued events.
+     * @return the mailbox capacity.
+     */
+    public int getCapacity()
+    {
+        return (_capacity);
+    } // end of getCapacity()
+
+    /**
+     * Returns the overflow policy.
+     * @return the overflow policy.
+     */
+    public OverflowPolicy getPolicy()
+    {
+        return (_policy);
+    } // end of getPolicy()
+
+    /**
+     * Returns the number of queued events.
+     * @return the current queue depth.
+     */
+    public int getDepth()
+    {
+        return (_depth.get());
+    } // end of getDepth()
+
+    /**
+     * Returns the highest queue depth reached.
+     * @return the maximum queue depth.
+     */
+    public int getMaxDepth()
+    {
+        return (_maxDepth.get());
+    } // end of getMaxDepth()
+
+    /**
+     * Returns the number of events queued.
+     * @return the posted event count.
+     */
+    public long getPostedCount()
+    {
+        return (_postedCount.get());
+    } // end of getPostedCount()
+
+    /**
+     * Returns the number of events applied, including those
+     * whose transition failed.
+     * @return the applied event count.
+     */
+    public long getAppliedCount()
+    {
+        return (_appliedCount);
+    } // end of getAppliedCount()
+
+    /**
+     * Returns the number of events dropped or rejected due to
+     * overflow.
+     * @return the dropped event count.
+     */
+    public long getDroppedCount()
+    {
+        return (_droppedCount.get());
+    } // end of getDroppedCount()
+
+    /**
+     * Returns the number of applied events whose transition
+     * threw an exception.
+     * @return the failed event count.
+     */
+    public long getFailedCount()
+    {
+        return (_failedCount);
+    } // end of getFailedCount()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return (
+            String.format(
+                "[depth=%d, max depth=%d, capacity=%d, posted=%d, applied=%d, dropped=%d, failed=%d]",
+                getDepth(),
+                getMaxDepth(),
+                _capacity,
+                getPostedCount(),
+                _appliedCount,
+                getDroppedCount(),
+                _failedCount));
+    } // end of toString()
+
+    // Submits the drain task to the executor. The caller has
+    // set _scheduled.
+    private void _schedule()
+    {
+        try
+        {
+            _executor.execute(_drainTask);
+        }
+        catch (RejectedExecutionException jex)
+        {
+            _scheduled.set(false);
+            throw (jex);
+        }
+
+        return;
+    } // end of _schedule()
+
+    // Applies up to DRAIN_BATCH_SIZE queued events and then
+    // gives up the executor thread, rescheduling itself if
+    // events remain.
+    private void _drain()
+    {
+        Event event;
+        int count;
+
+        try
+        {
+            for (count = 0;
+                 count < DRAIN_BATCH_SIZE &&
+                     (event = _queue.poll()) != null;
+                 ++count)
+            {
+                _depth.decrementAndGet();
+
+                try
+                {
+                    event.apply();
+                }
+                catch (RuntimeException jex)
+                {
+                    ++_failedCount;
+                    _log.warn("transition failed", jex);
+                }
+
+                ++_appliedCount;
+            }
+        }
+        finally
+        {
+            _scheduled.set(false);
+        }
+
+        if (_queue.isEmpty() == false &&
+            _scheduled.compareAndSet(false, true) == true)
+        {
+            _schedule();
+        }
+
+        return;
+    } // end of _drain()
+
+    private void _updateMaxDepth(final int depth)
+    {
+        int max;
+
+        while (depth > (max = _maxDepth.get()) &&
+               _maxDepth.compareAndSet(max, depth) == false)
+        {
+            // Retry.
+        }
+
+        return;
+    } // end of _updateMaxDepth(int)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * A queued transition. The generated {@code postXxx}
+     * method implements {@link #apply()} to issue the
+     * transition.
+     */
+    public static abstract class Event
+    {
+        /**
+         * Default constructor.
+         */
+        protected Event()
+        {}
+
+        /**
+         * Issues the transition on the context.
+         */
+        protected abstract void apply();
+    } // end of class Event
+
+//---------------------------------------------------------------
+// Enums.
+//
+
+    /**
+     * How an event posted to a full mailbox is handled.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * {@link EventMailbox#post(Event)} throws a
+         * {@link RejectedExecutionException}.
+         */
+        FAIL,
+
+        /**
+         * The posted event is dropped and
+         * {@link EventMailbox#post(Event)} returns
+         * {@code false}.
+         */
+        DROP_NEWEST,
+
+        /**
+         * The oldest queued event is dropped to make room for
+         * the posted event.
+         */
+        DROP_OLDEST
+    } // end of enum OverflowPolicy
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final Executor _executor;
+    private final int _capacity;
+    private final OverflowPolicy _policy;
+    private final ConcurrentLinkedQueue<Event> _queue;
+    private final Runnable _drainTask;
+
+    // The queued event count, reserved before an event is
+    // queued so the capacity is never exceeded.
+    private final AtomicInteger _depth;
+    private final AtomicInteger _maxDepth;
+
+    // Set while a drain task is scheduled or running.
+    private final AtomicBoolean _scheduled;
+
+    private final AtomicLong _postedCount;
+    private final AtomicLong _droppedCount;
+
+    // Updated by the drain task only.
+    private volatile long _appliedCount;
+    private volatile long _failedCount;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The drain task applies at most this many events before
+     * giving the executor thread to other tasks.
+     */
+    public static final int DRAIN_BATCH_SIZE = 256;
+
+    private static final Logger _log =
+        LoggerFactory.getLogger(EventMailbox.class);
+} // end of class EventMailbox
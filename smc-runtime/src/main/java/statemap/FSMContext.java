@@ -36,6 +36,10 @@ package statemap;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 
@@ -67,8 +71,9 @@ public abstract class FSMContext
     protected FSMContext(State initState)
     {
         _state = initState;
-        _transition = "";
+        _transitionId = NO_TRANSITION;
         _previousState = null;
+        _undefinedPolicy = UndefinedTransitionPolicy.THROW;
     } // end of FSMContext(State)
 
     //
@@ -98,6 +103,13 @@ public abstract class FSMContext
                ClassNotFoundException
     {
         istream.defaultReadObject();
+        _transitionId = NO_TRANSITION;
+
+        // Streams written before the policy was added have none.
+        if (_undefinedPolicy == null)
+        {
+            _undefinedPolicy = UndefinedTransitionPolicy.THROW;
+        }
 
         return;
     } // end of readObject(ObjectInputStream)
@@ -106,6 +118,153 @@ public abstract class FSMContext
     // end of Serializable Interface Implementation.
     //-----------------------------------------------------------
 
+    //-----------------------------------------------------------
+    // Binary codec.
+    //
+
+    /**
+     * Writes this FSM's current state identifier, state stack
+     * and name to {@code buffer}. Generated contexts implement
+     * this when serialization support is on; a record is much
+     * smaller and faster to write than a serialized context.
+     * The owner, listeners and policies are not written.
+     * @param buffer write the record at this buffer's position.
+     * @exception UnsupportedOperationException
+     * if serialization support was not generated.
+     * @exception StateUndefinedException
+     * if this FSM is in a transition.
+     * @exception java.nio.BufferOverflowException
+     * if {@code buffer} is too small for the record.
+     * @see #readFrom(ByteBuffer)
+     */
+    public void writeTo(ByteBuffer buffer)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "Serialization support has not been generated for this FSM Context"));
+    } // end of writeTo(ByteBuffer)
+
+    /**
+     * Restores this FSM's current state, state stack and name
+     * from a record written by {@link #writeTo(ByteBuffer)} by
+     * the same generated context class. The previous state and
+     * transition are cleared and no entry actions are run.
+     * @param buffer read the record at this buffer's position.
+     * @exception UnsupportedOperationException
+     * if serialization support was not generated.
+     * @exception IllegalArgumentException
+     * if the record does not fit this FSM.
+     * @exception java.nio.BufferUnderflowException
+     * if {@code buffer} holds less than a record.
+     */
+    public void readFrom(ByteBuffer buffer)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "Serialization support has not been generated for this FSM Context"));
+    } // end of readFrom(ByteBuffer)
+
+    /**
+     * Writes this FSM's name as a length and UTF-8 bytes, with
+     * a length of -1 for no name.
+     * @param buffer write to this buffer.
+     */
+    protected final void writeName(ByteBuffer buffer)
+    {
+        if (_name == null)
+        {
+            buffer.putInt(-1);
+        }
+        else
+        {
+            byte[] bytes = _name.getBytes(UTF8);
+
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        return;
+    } // end of writeName(ByteBuffer)
+
+    /**
+     * Reads a name written by {@link #writeName(ByteBuffer)}.
+     * @param buffer read from this buffer.
+     * @return the name, which may be {@code null}.
+     * @exception IllegalArgumentException
+     * if the length is invalid.
+     */
+    protected static String readName(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        String retval = null;
+
+        if (length < -1 || length > buffer.remaining())
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid name length " + length));
+        }
+        else if (length >= 0)
+        {
+            byte[] bytes = new byte[length];
+
+            buffer.get(bytes);
+            retval = new String(bytes, UTF8);
+        }
+
+        return (retval);
+    } // end of readName(ByteBuffer)
+
+    /**
+     * Sets the current state and name restored by a generated
+     * {@link #readFrom(ByteBuffer)}, clearing the previous state
+     * and transition.
+     * @param state the restored current state.
+     * @param name the restored name.
+     */
+    protected final void restoreState(State state, String name)
+    {
+        beginStateChange();
+        _state = state;
+        _previousState = null;
+        _transitionId = NO_TRANSITION;
+        endStateChange();
+        _name = name;
+
+        return;
+    } // end of restoreState(State, String)
+
+    /**
+     * Sets the current state to the state with the given
+     * identifier while replaying a {@link TransitionJournal}.
+     * The state stack is cut or grown to {@code stackDepth} and
+     * its top set to {@code stackTopId}; the states below the
+     * top were set by earlier records or the snapshot. No
+     * actions are run.
+     * @param stateId the journaled state identifier.
+     * @param stackDepth the journaled state stack depth.
+     * @param stackTopId the journaled identifier of the state
+     * on top of the stack. Ignored if {@code stackDepth} is
+     * zero.
+     * @exception UnsupportedOperationException
+     * if serialization support was not generated.
+     * @exception IllegalArgumentException
+     * if {@code stateId} or {@code stackTopId} is not a state
+     * of this FSM or {@code stackDepth} is invalid.
+     */
+    public void replayState(int stateId,
+                            int stackDepth,
+                            int stackTopId)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "Serialization support has not been generated for this FSM Context"));
+    } // end of replayState(int, int, int)
+
+    //
+    // end of Binary codec.
+    //-----------------------------------------------------------
+
     //-----------------------------------------------------------
     // Get methods.
     //
@@ -149,9 +308,152 @@ public abstract class FSMContext
      */
     public String getTransition()
     {
-        return(_transition);
+        return(getTransitionName(_transitionId));
     } // end of getTransition()
 
+    /**
+     * If this FSM is in transition, then returns the transition
+     * identifier. If not in transition, then returns
+     * {@link #NO_TRANSITION}. The SMC-generated subclass
+     * declares an {@code Xxx_ID} constant for each transition.
+     * @return the current transition identifier.
+     */
+    public int getTransitionId()
+    {
+        return(_transitionId);
+    } // end of getTransitionId()
+
+    /**
+     * Returns the name of the identified transition or an empty
+     * string for {@link #NO_TRANSITION}. Overridden by the
+     * SMC-generated subclass to look the name up in its
+     * transition name table.
+     * @param transitionId a transition identifier.
+     * @return the transition name.
+     */
+    public String getTransitionName(int transitionId)
+    {
+        return(transitionId == NO_TRANSITION ?
+               "" :
+               Integer.toString(transitionId));
+    } // end of getTransitionName(int)
+
+    /**
+     * Returns the current state, previous state and transition
+     * name as they were at one instant. This method does not
+     * synchronize on the context, so monitoring threads may call
+     * it while the FSM is in a transition without contending for
+     * the transition lock.
+     * @return a consistent snapshot of this FSM.
+     */
+    public StateSnapshot getSnapshot()
+    {
+        State state;
+        State previousState;
+        int transitionId;
+        int version;
+
+        // Retry while a state change is in progress or if one
+        // completed while the fields were read.
+        do
+        {
+            version = _version;
+            state = _state;
+            previousState = _previousState;
+            transitionId = _transitionId;
+        } while ((version & 1) != 0 || version != _version);
+
+        return (
+            new StateSnapshot(
+                state,
+                previousState,
+                getTransitionName(transitionId)));
+    } // end of getSnapshot()
+
+    /**
+     * Returns the mailbox to which the generated
+     * {@code postXxx} methods post events. May return
+     * {@code null}.
+     * @return the event mailbox.
+     */
+    public EventMailbox getMailbox()
+    {
+        return (_mailbox);
+    } // end of getMailbox()
+
+    /**
+     * Returns what {@link #undefinedTransition()} does.
+     * @return the undefined transition policy.
+     */
+    public UndefinedTransitionPolicy getUndefinedTransitionPolicy()
+    {
+        return (_undefinedPolicy);
+    } // end of getUndefinedTransitionPolicy()
+
+    /**
+     * Returns the handler called back under the
+     * {@link UndefinedTransitionPolicy#CALLBACK} policy. May
+     * return {@code null}.
+     * @return the undefined transition handler.
+     */
+    public UndefinedTransitionHandler getUndefinedTransitionHandler()
+    {
+        return (_undefinedHandler);
+    } // end of getUndefinedTransitionHandler()
+
+    /**
+     * Returns the number of undefined transitions this FSM has
+     * received, under any policy.
+     * @return the undefined transition count.
+     */
+    public long getUndefinedTransitionCount()
+    {
+        return (_undefinedCount);
+    } // end of getUndefinedTransitionCount()
+
+    /**
+     * Returns the tracer called by code generated with
+     * {@code -tracer}. May return {@code null}.
+     * @return the tracer.
+     */
+    public FSMTracer getTracer()
+    {
+        return (_tracer);
+    } // end of getTracer()
+
+    /**
+     * Returns the journal to which transitions are appended.
+     * May return {@code null}.
+     * @return the transition journal.
+     */
+    public TransitionJournal getJournal()
+    {
+        return (_journal);
+    } // end of getJournal()
+
+    /**
+     * Returns the key identifying this FSM in its journal.
+     * @return the journal key.
+     */
+    public long getJournalKey()
+    {
+        return (_journalKey);
+    } // end of getJournalKey()
+
+    /**
+     * Returns the timing wheel on which the generated
+     * {@code %timeout} timers run: the wheel set by
+     * {@link #setTimerWheel(TimerWheel)} or, if none,
+     * {@link TimerWheel#getShared()}.
+     * @return the timing wheel.
+     */
+    public TimerWheel getTimerWheel()
+    {
+        TimerWheel wheel = _timerWheel;
+
+        return (wheel != null ? wheel : TimerWheel.getShared());
+    } // end of getTimerWheel()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -166,23 +468,39 @@ public abstract class FSMContext
      */
     public void setState(State state)
     {
-        if (getLog().isDebugEnabled())
+        // With a tracer the state change is not logged, so
+        // contexts generated with -tracer make no getLog() call
+        // once their tracer is set.
+        if (TRACE == true)
         {
-            getLog().debug(String.format("ENTER STATE     : %s [%s]",
-                                     state.getName(), _name));
+            if (_tracer != null)
+            {
+                _tracer.stateChanged(this, state);
+            }
+            else if (getLog().isDebugEnabled())
+            {
+                getLog().debug(String.format("ENTER STATE     : %s [%s]",
+                                         state.getName(), _name));
+            }
         }
 
+        State current = _state;
+
+        beginStateChange();
+
         // clearState() is not called when a transition has
         // no actions, so set _previousState to _state in
         // that situation. We know clearState() was not
         // called when _state is not null.
-        if (_state != null)
+        if (current != null)
         {
-            _previousState = _state;
+            _previousState = current;
         }
 
         _state = state;
 
+        endStateChange();
+
         return;
     } // end of setState(State)
 
@@ -192,12 +510,275 @@ public abstract class FSMContext
      */
     public void clearState()
     {
+        beginStateChange();
         _previousState = _state;
         _state = null;
+        endStateChange();
 
         return;
     } // end of clearState()
 
+    /**
+     * Sets the current transition identifier. Generated
+     * transition methods call this on entry and again with
+     * {@link #NO_TRANSITION} on return.
+     * <p>
+     * The identifier is a single field written by the thread in
+     * transition outside the state change brackets, so it is
+     * not bracketed itself: a value {@link #getSnapshot()} reads
+     * while the version is unchanged was current together with
+     * the states read. The version is then bumped only by the
+     * state changes, instead of twice more per transition, and
+     * the transition pays one volatile write on entry and one
+     * on return.
+     * @param transitionId the transition identifier.
+     */
+    protected final void setTransitionId(int transitionId)
+    {
+        _transitionId = transitionId;
+
+        return;
+    } // end of setTransitionId(int)
+
+    /**
+     * Marks the start of a change to the current or previous
+     * state. {@link #getSnapshot()} retries until the matching
+     * {@link #endStateChange()}. State changes are made by one
+     * thread at a time.
+     */
+    protected final void beginStateChange()
+    {
+        ++_version;
+
+        return;
+    } // end of beginStateChange()
+
+    /**
+     * Marks the end of a change to the current or previous
+     * state.
+     */
+    protected final void endStateChange()
+    {
+        ++_version;
+
+        return;
+    } // end of endStateChange()
+
+    /**
+     * Sets the mailbox to which the generated {@code postXxx}
+     * methods post events. The mailbox should not be shared
+     * with another FSM, since events applied by one drain task
+     * are serialized only with each other.
+     * @param mailbox the event mailbox. May be {@code null}.
+     */
+    public void setMailbox(EventMailbox mailbox)
+    {
+        _mailbox = mailbox;
+
+        return;
+    } // end of setMailbox(EventMailbox)
+
+    /**
+     * Sets what {@link #undefinedTransition()} does.
+     * @param policy the undefined transition policy.
+     * @exception IllegalArgumentException
+     * if {@code policy} is {@code null}.
+     */
+    public void setUndefinedTransitionPolicy(
+        UndefinedTransitionPolicy policy)
+    {
+        if (policy == null)
+        {
+            throw (new IllegalArgumentException("null policy"));
+        }
+
+        _undefinedPolicy = policy;
+
+        return;
+    } // end of setUndefinedTransitionPolicy(UndefinedTransitionPolicy)
+
+    /**
+     * Sets the handler called back under the
+     * {@link UndefinedTransitionPolicy#CALLBACK} policy.
+     * @param handler the undefined transition handler. May be
+     * {@code null}.
+     */
+    public void setUndefinedTransitionHandler(
+        UndefinedTransitionHandler handler)
+    {
+        _undefinedHandler = handler;
+
+        return;
+    } // end of setUndefinedTransitionHandler(UndefinedTransitionHandler)
+
+    /**
+     * Called by the generated code when the current transition
+     * is not defined in the current state and there is no
+     * Default transition. Counts the transition and then
+     * applies the undefined transition policy.
+     * @exception TransitionUndefinedException
+     * under the {@link UndefinedTransitionPolicy#THROW} and
+     * {@link UndefinedTransitionPolicy#STACKLESS} policies, and
+     * under {@link UndefinedTransitionPolicy#CALLBACK} when
+     * there is no handler.
+     */
+    public final void undefinedTransition()
+    {
+        UndefinedTransitionPolicy policy = _undefinedPolicy;
+
+        ++_undefinedCount;
+
+        if (policy == UndefinedTransitionPolicy.IGNORE)
+        {
+            // Stay in the current state.
+        }
+        else if (policy == UndefinedTransitionPolicy.STACKLESS)
+        {
+            throw (TransitionUndefinedException.PREALLOCATED);
+        }
+        else if (policy == UndefinedTransitionPolicy.CALLBACK &&
+                 _undefinedHandler != null)
+        {
+            _undefinedHandler.undefinedTransition(
+                this, _transitionId);
+        }
+        else
+        {
+            throw (
+                new TransitionUndefinedException(
+                    "State: " +
+                    (_state == null ? null : _state.getName()) +
+                    ", Transition: " +
+                    getTransition()));
+        }
+
+        return;
+    } // end of undefinedTransition()
+
+    /**
+     * Sets the tracer called by code generated with
+     * {@code -tracer} and by {@link #setState(State)}. Has no
+     * effect when {@link #TRACE} is {@code false}.
+     * @param tracer the tracer. May be {@code null}.
+     */
+    public void setTracer(FSMTracer tracer)
+    {
+        _tracer = tracer;
+
+        return;
+    } // end of setTracer(FSMTracer)
+
+    /**
+     * Appends each completed transition, with {@code key} and
+     * the resulting state, to {@code journal}. Pass
+     * {@code null} to stop journaling. Journaling requires a
+     * context generated with serialization support.
+     * @param journal the transition journal. May be
+     * {@code null}.
+     * @param key identifies this FSM when the journal is
+     * replayed.
+     * @see TransitionJournal#recover
+     */
+    public void setJournal(TransitionJournal journal, long key)
+    {
+        _journalKey = key;
+        _journal = journal;
+
+        return;
+    } // end of setJournal(TransitionJournal, long)
+
+    /**
+     * Runs this FSM's {@code %timeout} timers on {@code wheel}.
+     * Pass {@code null} to use the shared wheel. Timers already
+     * started stay on their wheel.
+     * @param wheel the timing wheel. May be {@code null}.
+     */
+    public void setTimerWheel(TimerWheel wheel)
+    {
+        _timerWheel = wheel;
+
+        return;
+    } // end of setTimerWheel(TimerWheel)
+
+    /**
+     * Appends the completed transition and the current state
+     * to the journal. Called by the generated transition
+     * methods of an FSM without a state stack when a journal is
+     * set.
+     * @param transitionId the completed transition.
+     */
+    protected final void journalTransition(int transitionId)
+    {
+        journalTransition(transitionId, 0, 0);
+
+        return;
+    } // end of journalTransition(int)
+
+    /**
+     * Appends the completed transition, the current state and
+     * the state stack's depth and top to the journal. Called by
+     * the generated transition methods of an FSM with a state
+     * stack when a journal is set.
+     * @param transitionId the completed transition.
+     * @param stackDepth the state stack depth.
+     * @param stackTopId the identifier of the state on top of
+     * the stack. Ignored if {@code stackDepth} is zero.
+     */
+    protected final void journalTransition(int transitionId,
+                                           int stackDepth,
+                                           int stackTopId)
+    {
+        TransitionJournal journal = _journal;
+        State state = _state;
+
+        if (journal != null && state != null)
+        {
+            journal.append(_journalKey,
+                           transitionId,
+                           state.getId(),
+                           stackDepth,
+                           (stackDepth == 0 ? 0 : stackTopId));
+        }
+
+        return;
+    } // end of journalTransition(int, int, int)
+
+    /**
+     * Posts the event to this FSM's mailbox. Called by the
+     * generated {@code postXxx} methods.
+     * @param event the transition event.
+     * @return {@code true} if the event was queued and
+     * {@code false} if the mailbox dropped it.
+     * @exception IllegalStateException
+     * if no mailbox is set.
+     * @see EventMailbox#post(EventMailbox.Event)
+     */
+    protected boolean post(EventMailbox.Event event)
+    {
+        EventMailbox mailbox = _mailbox;
+
+        if (mailbox == null)
+        {
+            throw (new IllegalStateException("no mailbox set"));
+        }
+
+        return (mailbox.post(event));
+    } // end of post(EventMailbox.Event)
+
+    /**
+     * Issues the identified transition. Generated contexts
+     * implement this by calling the transition method.
+     * @param transitionId the transition identifier.
+     * @exception UnsupportedOperationException
+     * if the context does not implement it.
+     */
+    public void dispatch(int transitionId)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "dispatch(int) has not been generated for this FSM Context"));
+    } // end of dispatch(int)
+
     public void pushState(State state) {
         throw new UnsupportedOperationException("Push support has not been generated for this FSM Context");
         }
@@ -213,6 +794,406 @@ public abstract class FSMContext
     // end of Set methods.
     //-----------------------------------------------------------
 
+    //-----------------------------------------------------------
+    // State timers.
+    //
+
+    /**
+     * Returns {@code true} if this FSM's transition methods are
+     * serialized with each other, so that
+     * {@link #serializeTransition(Runnable)} may be called. The
+     * generated context returns {@code true} when generated
+     * with {@code -sync} or {@code -combine}.
+     * @return {@code true} if transitions are serialized.
+     */
+    protected boolean isTransitionSerialized()
+    {
+        return (false);
+    } // end of isTransitionSerialized()
+
+    /**
+     * Runs {@code task} serialized with this FSM's transition
+     * methods: holding this FSM's monitor with {@code -sync} or
+     * through its combiner with {@code -combine}. State timers
+     * issue their transition this way.
+     * @param task the task to run.
+     * @exception UnsupportedOperationException
+     * if transitions are not serialized.
+     * @see #isTransitionSerialized()
+     */
+    protected void serializeTransition(Runnable task)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "transitions are not serialized: generate with -sync or -combine"));
+    } // end of serializeTransition(Runnable)
+
+    /**
+     * Issues {@code transitionId} on this FSM after
+     * {@code delay} milliseconds unless the current state exits
+     * first. Call from a transition or entry action of the
+     * state the timer belongs to. The generated code cancels
+     * the state's timers when its exit actions run. A push
+     * transition does not exit the state: its timers are
+     * suspended while it is on the state stack and resume with
+     * their remaining delay when it is popped.
+     * <p>
+     * When the timer expires the transition is posted to this
+     * FSM's mailbox, if it has one, and otherwise issued on the
+     * wheel thread through
+     * {@link #serializeTransition(Runnable)}: holding this FSM's
+     * monitor with {@code -sync} or through its combiner with
+     * {@code -combine}. The timer checks that its state has not
+     * exited inside the serialized transition, so a timer which
+     * expires as its state exits is discarded.
+     * </p>
+     * @param wheel the timing wheel.
+     * @param delay the delay in milliseconds.
+     * @param transitionId the transition to issue.
+     * @return the timeout, which may be cancelled.
+     * @exception IllegalStateException
+     * if this FSM has no mailbox and was generated without
+     * {@code -sync} or {@code -combine}, so the transition
+     * could not be serialized with the others.
+     */
+    public final TimerWheel.Timeout startStateTimer(
+        TimerWheel wheel, long delay, int transitionId)
+    {
+        StateTimer timer;
+        StateTimer previous = null;
+        StateTimer current;
+
+        if (_mailbox == null && isTransitionSerialized() == false)
+        {
+            throw (
+                new IllegalStateException(
+                    "state timers need a mailbox, -sync or -combine"));
+        }
+
+        timer = new StateTimer(this, transitionId, _stateEpoch);
+
+        // Drop the timers which have fired.
+        for (current = _stateTimers;
+             current != null;
+             current = current.next)
+        {
+            if (current.done == true)
+            {
+                if (previous == null)
+                {
+                    _stateTimers = current.next;
+                }
+                else
+                {
+                    previous.next = current.next;
+                }
+            }
+            else
+            {
+                previous = current;
+            }
+        }
+
+        timer.wheel = wheel;
+        timer.deadline =
+            System.nanoTime() + (delay * NANOS_PER_MILLI);
+        timer.timeout = wheel.schedule(timer, delay);
+        timer.next = _stateTimers;
+        _stateTimers = timer;
+
+        return (timer.timeout);
+    } // end of startStateTimer(TimerWheel, long, int)
+
+    /**
+     * Issues {@code transitionId} on this FSM after
+     * {@code delay} milliseconds unless the current state exits
+     * first. The timer runs on {@link #getTimerWheel()}. The
+     * generated entry code calls this for a state's
+     * {@code %timeout} clause.
+     * @param delay the delay in milliseconds.
+     * @param transitionId the transition to issue.
+     * @return the timeout, which may be cancelled.
+     * @see #startStateTimer(TimerWheel, long, int)
+     */
+    public final TimerWheel.Timeout startStateTimer(
+        long delay, int transitionId)
+    {
+        return (
+            startStateTimer(getTimerWheel(), delay, transitionId));
+    } // end of startStateTimer(long, int)
+
+    /**
+     * Cancels the timers started by
+     * {@link #startStateTimer(TimerWheel, long, int)} in the
+     * current state. Called by the generated code after a
+     * state's exit actions.
+     */
+    public final void cancelStateTimers()
+    {
+        StateTimer timer = _stateTimers;
+
+        if (timer != null)
+        {
+            // Timers which already expired and are waiting in
+            // the mailbox see the new epoch and do nothing.
+            _stateTimers = null;
+            ++_stateEpoch;
+            for (; timer != null; timer = timer.next)
+            {
+                timer.timeout.cancel();
+            }
+        }
+
+        return;
+    } // end of cancelStateTimers()
+
+    /**
+     * Suspends the timers of the state just pushed on the state
+     * stack, so they do not fire in the state pushed to. Each
+     * keeps its remaining delay for
+     * {@link #resumeStateTimers(int)}. Called by the generated
+     * {@code pushState}.
+     * @param depth the state stack depth after the push.
+     */
+    protected final void suspendStateTimers(int depth)
+    {
+        StateTimer timer = _stateTimers;
+
+        if (timer != null)
+        {
+            SuspendedTimers suspended =
+                new SuspendedTimers(depth, _suspendedTimers);
+            long now = System.nanoTime();
+            long remaining;
+
+            // Timers which already expired and are waiting in
+            // the mailbox see the new epoch and do nothing. They
+            // are resumed with no delay.
+            _stateTimers = null;
+            ++_stateEpoch;
+            for (; timer != null; timer = timer.next)
+            {
+                timer.timeout.cancel();
+                if (timer.done == false)
+                {
+                    remaining =
+                        (timer.deadline - now + NANOS_PER_MILLI - 1L) /
+                        NANOS_PER_MILLI;
+                    suspended.timers.add(timer);
+                    suspended.delays.add(
+                        (remaining < 0L ? 0L : remaining));
+                }
+            }
+
+            _suspendedTimers = suspended;
+        }
+
+        return;
+    } // end of suspendStateTimers(int)
+
+    /**
+     * Restarts the timers suspended when the popped state was
+     * pushed, with their remaining delays. The state popped
+     * from cancelled its own timers when it exited. Called by
+     * the generated {@code popState}.
+     * @param depth the state stack depth before the pop.
+     */
+    protected final void resumeStateTimers(int depth)
+    {
+        SuspendedTimers suspended = _suspendedTimers;
+        StateTimer timer;
+        int i;
+
+        if (suspended != null && suspended.depth == depth)
+        {
+            _suspendedTimers = suspended.next;
+            for (i = suspended.timers.size() - 1; i >= 0; --i)
+            {
+                timer = suspended.timers.get(i);
+                startStateTimer(timer.wheel,
+                                suspended.delays.get(i),
+                                timer.transitionId);
+            }
+        }
+
+        return;
+    } // end of resumeStateTimers(int)
+
+    /**
+     * Drops the suspended timers of every state on the state
+     * stack. Called by the generated {@code emptyStateStack}.
+     */
+    protected final void discardSuspendedStateTimers()
+    {
+        _suspendedTimers = null;
+        return;
+    } // end of discardSuspendedStateTimers()
+
+    //
+    // end of State timers.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Trace methods.
+    //
+    // The generated transition methods call these rather than
+    // logging or calling the tracer in line, which keeps the
+    // transition methods small enough for the JIT to inline.
+    // Each is guarded by TRACE, so when that is false the JIT
+    // removes the calls altogether.
+    //
+
+    /**
+     * Logs the trace message, followed by this FSM's name, if
+     * trace logging is enabled.
+     * @param message the trace message.
+     */
+    public final void trace(String message)
+    {
+        if (TRACE == true && getLog().isTraceEnabled())
+        {
+            getLog().trace(message + " [" + _name + "]");
+        }
+
+        return;
+    } // end of trace(String)
+
+    /**
+     * Logs a transition from the current state to
+     * {@code endState}, if trace logging is enabled.
+     * @param message the trace message.
+     * @param endState the transition's end state.
+     */
+    public final void trace(String message, State endState)
+    {
+        if (TRACE == true && getLog().isTraceEnabled())
+        {
+            getLog().trace(
+                message +
+                " " +
+                _state.getName() +
+                " -> " +
+                endState.getName() +
+                " [" +
+                _name +
+                "]");
+        }
+
+        return;
+    } // end of trace(String, State)
+
+    /**
+     * Calls {@link FSMTracer#transition(FSMContext, int)}.
+     * @param transitionId the transition identifier.
+     */
+    public final void traceTransition(int transitionId)
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.transition(this, transitionId);
+        }
+
+        return;
+    } // end of traceTransition(int)
+
+    /**
+     * Calls {@link FSMTracer#beforeExit(FSMContext, State)}.
+     */
+    public final void traceBeforeExit()
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.beforeExit(this, _state);
+        }
+
+        return;
+    } // end of traceBeforeExit()
+
+    /**
+     * Calls {@link FSMTracer#afterExit(FSMContext, State)}.
+     */
+    public final void traceAfterExit()
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.afterExit(this, _state);
+        }
+
+        return;
+    } // end of traceAfterExit()
+
+    /**
+     * Calls {@link FSMTracer#beforeActions(FSMContext, int)}.
+     * @param transitionId the transition identifier.
+     */
+    public final void traceBeforeActions(int transitionId)
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.beforeActions(this, transitionId);
+        }
+
+        return;
+    } // end of traceBeforeActions(int)
+
+    /**
+     * Calls {@link FSMTracer#afterActions(FSMContext, int)}.
+     * @param transitionId the transition identifier.
+     */
+    public final void traceAfterActions(int transitionId)
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.afterActions(this, transitionId);
+        }
+
+        return;
+    } // end of traceAfterActions(int)
+
+    /**
+     * Calls {@link FSMTracer#beforeEntry(FSMContext, State)}.
+     */
+    public final void traceBeforeEntry()
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.beforeEntry(this, _state);
+        }
+
+        return;
+    } // end of traceBeforeEntry()
+
+    /**
+     * Calls {@link FSMTracer#afterEntry(FSMContext, State)}.
+     */
+    public final void traceAfterEntry()
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.afterEntry(this, _state);
+        }
+
+        return;
+    } // end of traceAfterEntry()
+
+    /**
+     * Calls {@link FSMTracer#undefined(FSMContext, int)} with
+     * the current transition.
+     */
+    public final void traceUndefined()
+    {
+        if (TRACE == true && _tracer != null)
+        {
+            _tracer.undefined(this, _transitionId);
+        }
+
+        return;
+    } // end of traceUndefined()
+
+    //
+    // end of Trace methods.
+    //-----------------------------------------------------------
+
     // The following methods allow listeners to watch this
     // finite state machine for state changes.
     // Note: if a transition does not cause a state change,
@@ -220,7 +1201,7 @@ public abstract class FSMContext
 
     @Override
     public String toString() {
-        return String.format("%s[name=%s, current=%s, previous=%s, transition=%s]", getClass().getName(), _name, _state, _previousState, _transition);
+        return String.format("%s[name=%s, current=%s, previous=%s, transition=%s]", getClass().getName(), _name, _state, _previousState, getTransition());
     }
     
     public String getName() {
@@ -231,6 +1212,141 @@ public abstract class FSMContext
         _name = name;
     }
 
+    /**
+     * Returns the value of the {@code statemap.trace} system
+     * property, {@code true} if not set or not readable.
+     */
+    private static boolean _traceProperty()
+    {
+        boolean retcode = true;
+
+        try
+        {
+            retcode =
+                Boolean.parseBoolean(
+                    System.getProperty("statemap.trace", "true"));
+        }
+        catch (SecurityException jex)
+        {
+            // Keep tracing on.
+        }
+
+        return (retcode);
+    } // end of _traceProperty()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // A timer started in a state. Issues its transition if the
+    // state has not exited by the time the transition runs.
+    private static final class StateTimer
+        implements Runnable
+    {
+        private StateTimer(FSMContext context,
+                           int transitionId,
+                           int epoch)
+        {
+            _context = context;
+            this.transitionId = transitionId;
+            _epoch = epoch;
+        }
+
+        // Runs on the wheel thread.
+        @Override
+        public void run()
+        {
+            boolean posted = false;
+
+            try
+            {
+                if (_context.getMailbox() != null)
+                {
+                    posted =
+                        _context.post(
+                            new EventMailbox.Event()
+                            {
+                                @Override
+                                protected void apply()
+                                {
+                                    _fire();
+                                }
+                            });
+                }
+                else
+                {
+                    _context.serializeTransition(
+                        new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                _fire();
+                            }
+                        });
+                }
+            }
+            finally
+            {
+                // A dropped post is not retried.
+                if (posted == false)
+                {
+                    done = true;
+                }
+            }
+        }
+
+        // Issues the transition unless the state exited. Called
+        // inside the serialized transition, so the state cannot
+        // exit between the check and the transition.
+        private void _fire()
+        {
+            try
+            {
+                if (_epoch == _context._stateEpoch)
+                {
+                    _context.dispatch(transitionId);
+                }
+            }
+            finally
+            {
+                done = true;
+            }
+        }
+
+        private final FSMContext _context;
+        private final int transitionId;
+        private final int _epoch;
+        private TimerWheel wheel;
+        private TimerWheel.Timeout timeout;
+
+        // System.nanoTime() when the timer expires.
+        private long deadline;
+        private StateTimer next;
+
+        // Set once the transition was issued or discarded.
+        private volatile boolean done;
+    } // end of class StateTimer
+
+    // The timers of a state on the state stack and their
+    // remaining delays, most recent first.
+    private static final class SuspendedTimers
+    {
+        private SuspendedTimers(int depth, SuspendedTimers next)
+        {
+            this.depth = depth;
+            this.next = next;
+            timers = new ArrayList<StateTimer>();
+            delays = new ArrayList<Long>();
+        }
+
+        // The state stack depth after the state was pushed.
+        private final int depth;
+        private final SuspendedTimers next;
+        private final List<StateTimer> timers;
+        private final List<Long> delays;
+    } // end of class SuspendedTimers
+
 //---------------------------------------------------------------
 // Member data
 //
@@ -242,26 +1358,121 @@ public abstract class FSMContext
 
     /**
      * The current state. Will be {@code null} while in
-     * transition.
+     * transition. Volatile so that threads other than the one
+     * in transition see the latest state.
      */
-    transient protected State _state;
+    transient protected volatile State _state;
 
     /**
-     * The current transition name. Used for debugging
-     * purposes. Will be en empty string when not in
-     * transition.
+     * The current transition identifier. Will be
+     * {@link #NO_TRANSITION} when not in transition. The name
+     * is only looked up when asked for. Set through
+     * {@link #setTransitionId(int)}.
      */
-    transient protected String _transition;
+    transient protected volatile int _transitionId;
 
     /**
      * Stores which state a transition left. May be {@code null}.
      */
-    transient protected State _previousState;
+    transient protected volatile State _previousState;
+
+    /**
+     * Incremented before and after each state change, so it is
+     * odd while a change is in progress. Used by
+     * {@link #getSnapshot()}.
+     */
+    transient private volatile int _version;
+
+    /**
+     * The generated {@code postXxx} methods post events here.
+     */
+    transient private volatile EventMailbox _mailbox;
+
+    /**
+     * What {@link #undefinedTransition()} does. Serialized so
+     * that a restored FSM keeps its policy.
+     */
+    private UndefinedTransitionPolicy _undefinedPolicy;
+
+    /**
+     * Called back under the
+     * {@link UndefinedTransitionPolicy#CALLBACK} policy.
+     */
+    transient private UndefinedTransitionHandler _undefinedHandler;
+
+    /**
+     * The number of undefined transitions. Only the thread in
+     * transition writes it; volatile so monitoring threads see
+     * the latest count.
+     */
+    transient private volatile long _undefinedCount;
+
+    /**
+     * Receives the trace points when {@link #TRACE} is set.
+     */
+    transient private FSMTracer _tracer;
+
+    /**
+     * Completed transitions are appended to this journal when
+     * set.
+     */
+    transient protected TransitionJournal _journal;
+
+    /**
+     * Identifies this FSM in {@link #_journal}.
+     */
+    transient private long _journalKey;
+
+    /**
+     * The current state's timers, most recent first.
+     */
+    transient private StateTimer _stateTimers;
+
+    /**
+     * Incremented when a state with timers exits.
+     */
+    transient private int _stateEpoch;
+
+    /**
+     * The suspended timers of the states on the state stack,
+     * top first. Only states which had timers are here.
+     */
+    transient private SuspendedTimers _suspendedTimers;
+
+    /**
+     * The {@code %timeout} timers run on this wheel. If
+     * {@code null}, they run on the shared wheel.
+     */
+    transient private TimerWheel _timerWheel;
 
     //-----------------------------------------------------------
     // Constants.
     //
     private static final long serialVersionUID = 0x060000L;
+
+    // The name encoding used by writeName() and readName().
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Converts a timer delay to System.nanoTime() units.
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * The transition identifier when not in transition.
+     */
+    public static final int NO_TRANSITION = -1;
+
+    /**
+     * {@code false} if the {@code statemap.trace} system
+     * property is {@code "false"}. All trace logging and
+     * {@link FSMTracer} calls, including the trace methods
+     * called by generated code, are guarded by this constant,
+     * so the JIT removes them when it is {@code false}.
+     * Defaults to {@code true}. Contexts generated with
+     * {@code -tracer} call the {@link FSMTracer} instead of
+     * logging and hide this constant with a {@code false} one
+     * in their trace logging guards.
+     */
+    public static final boolean TRACE = _traceProperty();
 } // end of class FSMContext
 
 //
@@ -0,0 +1,361 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  Per-transition and per-state metrics shared by all contexts
+//  of one generated finite state machine class.
+//
+
+package statemap;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts transitions, undefined transitions and state residency
+ * times for all contexts of one generated FSM class. Code
+ * generated with SMC's {@code -metrics} option creates one
+ * instance per context class with
+ * {@link #register(Class, String[], String[])} and feeds it from
+ * the transition methods, {@code setState} and the undefined
+ * transition handler. Without {@code -metrics} no metrics code
+ * is generated at all.
+ * <p>
+ * Counters are {@link StripedCounter striped} so that contexts
+ * updated on different threads do not contend. The instance is
+ * registered with the platform MBean server as
+ * {@code statemap:type=FSMMetrics,name=<context class>}.
+ * </p>
+ */
+
+public final class FSMMetrics
+    implements FSMMetricsMXBean
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    private FSMMetrics(final String contextClassName,
+                       final String[] stateNames,
+                       final String[] transitionNames)
+    {
+        _contextClassName = contextClassName;
+        _stateNames = stateNames.clone();
+        _transitionNames = transitionNames.clone();
+
+        _transitionCounts =
+            new StripedCounter(_transitionNames.length);
+
+        // The last undefined count is for transitions issued
+        // outside of a transition method.
+        _undefinedCounts =
+            new StripedCounter(_transitionNames.length + 1);
+        _exitCounts = new StripedCounter(_stateNames.length);
+        _residencyNanos = new StripedCounter(_stateNames.length);
+        _histograms =
+            new StripedCounter(_stateNames.length * BUCKET_COUNT);
+    } // end of FSMMetrics(String, String[], String[])
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Returns the metrics for the given context class, creating
+     * and registering them with the platform MBean server on
+     * first use.
+     * @param contextClass the generated context class.
+     * @param stateNames the "map.state" names indexed by state
+     * identifier.
+     * @param transitionNames the transition names indexed by
+     * transition identifier.
+     * @return the context class' metrics.
+     */
+    public static FSMMetrics register(Class<?> contextClass,
+                                      String[] stateNames,
+                                      String[] transitionNames)
+    {
+        String name = contextClass.getName();
+        FSMMetrics retval = _instances.get(name);
+
+        if (retval == null)
+        {
+            FSMMetrics metrics =
+                new FSMMetrics(name, stateNames, transitionNames);
+
+            retval = _instances.putIfAbsent(name, metrics);
+            if (retval == null)
+            {
+                retval = metrics;
+                retval._registerMBean();
+            }
+        }
+
+        return (retval);
+    } // end of register(Class, String[], String[])
+
+    /**
+     * Counts an issued transition.
+     * @param transitionId the transition identifier.
+     */
+    public void transition(int transitionId)
+    {
+        _transitionCounts.increment(transitionId);
+
+        return;
+    } // end of transition(int)
+
+    /**
+     * Counts a transition undefined in the current state.
+     * @param transitionId the transition identifier or
+     * {@link FSMContext#NO_TRANSITION}.
+     */
+    public void undefined(int transitionId)
+    {
+        _undefinedCounts.increment(
+            transitionId == FSMContext.NO_TRANSITION ?
+            _transitionNames.length :
+            transitionId);
+
+        return;
+    } // end of undefined(int)
+
+    /**
+     * Records a visit to a state when the state is left.
+     * @param stateId the state identifier.
+     * @param nanos the time spent in the state.
+     */
+    public void stateExited(int stateId, long nanos)
+    {
+        int bucket =
+            (nanos <= 0L ?
+             0 :
+             Math.min(63 - Long.numberOfLeadingZeros(nanos),
+                      BUCKET_COUNT - 1));
+
+        _exitCounts.increment(stateId);
+        _residencyNanos.add(stateId, nanos);
+        _histograms.increment((stateId * BUCKET_COUNT) + bucket);
+
+        return;
+    } // end of stateExited(int, long)
+
+    //-----------------------------------------------------------
+    // FSMMetricsMXBean Interface Implementation.
+    //
+
+    @Override
+    public String getContextClassName()
+    {
+        return (_contextClassName);
+    } // end of getContextClassName()
+
+    @Override
+    public Map<String, Long> getTransitionCounts()
+    {
+        return (_toMap(_transitionNames, _transitionCounts));
+    } // end of getTransitionCounts()
+
+    @Override
+    public Map<String, Long> getUndefinedTransitionCounts()
+    {
+        Map<String, Long> retval =
+            _toMap(_transitionNames, _undefinedCounts);
+        long count = _undefinedCounts.get(_transitionNames.length);
+
+        if (count > 0L)
+        {
+            retval.put("", count);
+        }
+
+        return (retval);
+    } // end of getUndefinedTransitionCounts()
+
+    @Override
+    public long getUndefinedTransitionCount()
+    {
+        int i;
+        long retval = 0L;
+
+        for (i = 0; i < _undefinedCounts.size(); ++i)
+        {
+            retval += _undefinedCounts.get(i);
+        }
+
+        return (retval);
+    } // end of getUndefinedTransitionCount()
+
+    @Override
+    public Map<String, Long> getStateExitCounts()
+    {
+        return (_toMap(_stateNames, _exitCounts));
+    } // end of getStateExitCounts()
+
+    @Override
+    public Map<String, Long> getStateResidencyNanos()
+    {
+        return (_toMap(_stateNames, _residencyNanos));
+    } // end of getStateResidencyNanos()
+
+    @Override
+    public Map<String, long[]> getStateResidencyHistograms()
+    {
+        Map<String, long[]> retval =
+            new LinkedHashMap<String, long[]>();
+        long[] histogram;
+        int stateId;
+        int bucket;
+
+        for (stateId = 0; stateId < _stateNames.length; ++stateId)
+        {
+            histogram = new long[BUCKET_COUNT];
+            for (bucket = 0; bucket < BUCKET_COUNT; ++bucket)
+            {
+                histogram[bucket] =
+                    _histograms.get(
+                        (stateId * BUCKET_COUNT) + bucket);
+            }
+
+            retval.put(_stateNames[stateId], histogram);
+        }
+
+        return (retval);
+    } // end of getStateResidencyHistograms()
+
+    @Override
+    public void reset()
+    {
+        _transitionCounts.reset();
+        _undefinedCounts.reset();
+        _exitCounts.reset();
+        _residencyNanos.reset();
+        _histograms.reset();
+
+        return;
+    } // end of reset()
+
+    //
+    // end of FSMMetricsMXBean Interface Implementation.
+    //-----------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return (
+            String.format(
+                "%s[transitions=%s, undefined=%s, residency ns=%s]",
+                _contextClassName,
+                getTransitionCounts(),
+                getUndefinedTransitionCounts(),
+                getStateResidencyNanos()));
+    } // end of toString()
+
+    // Registers this instance with the platform MBean server.
+    // Metrics are still collected if registration fails.
+    private void _registerMBean()
+    {
+        try
+        {
+            MBeanServer server =
+                ManagementFactory.getPlatformMBeanServer();
+            ObjectName name =
+                new ObjectName(
+                    "statemap:type=FSMMetrics,name=" +
+                    ObjectName.quote(_contextClassName));
+
+            if (server.isRegistered(name) == false)
+            {
+                server.registerMBean(this, name);
+            }
+        }
+        catch (JMException jex)
+        {
+            _log.warn(
+                "failed to register FSM metrics MBean for " +
+                    _contextClassName,
+                jex);
+        }
+
+        return;
+    } // end of _registerMBean()
+
+    private static Map<String, Long> _toMap(final String[] names,
+                                            final StripedCounter counts)
+    {
+        Map<String, Long> retval =
+            new LinkedHashMap<String, Long>();
+        int i;
+
+        for (i = 0; i < names.length; ++i)
+        {
+            retval.put(names[i], counts.get(i));
+        }
+
+        return (retval);
+    } // end of _toMap(String[], StripedCounter)
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final String _contextClassName;
+    private final String[] _stateNames;
+    private final String[] _transitionNames;
+    private final StripedCounter _transitionCounts;
+    private final StripedCounter _undefinedCounts;
+    private final StripedCounter _exitCounts;
+    private final StripedCounter _residencyNanos;
+
+    // BUCKET_COUNT log2 buckets per state.
+    private final StripedCounter _histograms;
+
+    // The metrics for each context class, keyed by class name.
+    private static final ConcurrentMap<String, FSMMetrics>
+        _instances = new ConcurrentHashMap<String, FSMMetrics>();
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The number of residency histogram buckets. The last
+     * bucket starts at 2<sup>39</sup> nanoseconds, a little
+     * over nine minutes.
+     */
+    public static final int BUCKET_COUNT = 40;
+
+    private static final Logger _log =
+        LoggerFactory.getLogger(FSMMetrics.class);
+} // end of class FSMMetrics
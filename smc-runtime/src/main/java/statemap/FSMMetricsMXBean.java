@@ -0,0 +1,97 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  The JMX management interface for finite state machine
+//  metrics.
+//
+
+package statemap;
+
+import java.util.Map;
+
+/**
+ * The JMX view of an {@link FSMMetrics} instance. Each generated
+ * FSM class built with SMC's {@code -metrics} option registers
+ * one MBean named
+ * {@code statemap:type=FSMMetrics,name=<context class>}.
+ * Counts cover all contexts of that class.
+ */
+
+public interface FSMMetricsMXBean
+{
+    /**
+     * Returns the generated FSM context class name.
+     * @return the context class name.
+     */
+    String getContextClassName();
+
+    /**
+     * Returns the number of times each transition was issued,
+     * keyed by transition name.
+     * @return the transition counts.
+     */
+    Map<String, Long> getTransitionCounts();
+
+    /**
+     * Returns the number of times each transition was issued in
+     * a state which does not define it, keyed by transition
+     * name.
+     * @return the undefined transition counts.
+     */
+    Map<String, Long> getUndefinedTransitionCounts();
+
+    /**
+     * Returns the total number of undefined transitions.
+     * @return the undefined transition count.
+     */
+    long getUndefinedTransitionCount();
+
+    /**
+     * Returns the number of times each state was left, keyed by
+     * "map.state" name.
+     * @return the state exit counts.
+     */
+    Map<String, Long> getStateExitCounts();
+
+    /**
+     * Returns the total nanoseconds spent in each state, keyed
+     * by "map.state" name.
+     * @return the state residency times.
+     */
+    Map<String, Long> getStateResidencyNanos();
+
+    /**
+     * Returns each state's residency time histogram, keyed by
+     * "map.state" name. Element {@code i} counts the visits
+     * lasting at least 2<sup>i</sup> and less than
+     * 2<sup>i+1</sup> nanoseconds; element zero also counts
+     * visits shorter than one nanosecond and the last element
+     * counts all longer visits.
+     * @return the state residency histograms.
+     */
+    Map<String, long[]> getStateResidencyHistograms();
+
+    /**
+     * Sets all counts to zero.
+     */
+    void reset();
+} // end of interface FSMMetricsMXBean
@@ -0,0 +1,149 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+// statemap.java --
+//
+//  Receives the trace points of code generated with -tracer.
+//
+
+package statemap;
+
+/**
+ * Receives the trace points of an SMC-generated finite state
+ * machine. Code generated with SMC's {@code -tracer} option
+ * calls the context's tracer instead of logging trace messages,
+ * and only when {@link FSMContext#TRACE} is {@code true}. Since
+ * that is a {@code static final} constant, the JIT removes the
+ * trace points altogether when tracing is switched off with
+ * {@code -Dstatemap.trace=false}.
+ * <p>
+ * Every callback is passed the context and either the
+ * transition identifier (one of the generated {@code Xxx_ID}
+ * constants) or a state, so nothing is allocated to make a
+ * call. Each callback does nothing by default; subclasses
+ * override the ones they need. Callbacks are made on the thread
+ * in transition and must not throw.
+ * </p>
+ *
+ * @see FSMContext#setTracer(FSMTracer)
+ */
+
+public abstract class FSMTracer
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    /**
+     * A transition is taken, before any exit actions.
+     * @param context the finite state machine.
+     * @param transitionId the transition identifier.
+     */
+    public void transition(FSMContext context, int transitionId)
+    {
+        return;
+    } // end of transition(FSMContext, int)
+
+    /**
+     * The current state's exit actions are about to run.
+     * @param context the finite state machine.
+     * @param state the state being left.
+     */
+    public void beforeExit(FSMContext context, State state)
+    {
+        return;
+    } // end of beforeExit(FSMContext, State)
+
+    /**
+     * The current state's exit actions have run.
+     * @param context the finite state machine.
+     * @param state the state being left.
+     */
+    public void afterExit(FSMContext context, State state)
+    {
+        return;
+    } // end of afterExit(FSMContext, State)
+
+    /**
+     * The transition actions are about to run. Only called by
+     * code generated with a debug level.
+     * @param context the finite state machine.
+     * @param transitionId the transition identifier.
+     */
+    public void beforeActions(FSMContext context,
+                              int transitionId)
+    {
+        return;
+    } // end of beforeActions(FSMContext, int)
+
+    /**
+     * The transition actions have run. Only called by code
+     * generated with a debug level.
+     * @param context the finite state machine.
+     * @param transitionId the transition identifier.
+     */
+    public void afterActions(FSMContext context,
+                             int transitionId)
+    {
+        return;
+    } // end of afterActions(FSMContext, int)
+
+    /**
+     * The context's current state is set.
+     * @param context the finite state machine.
+     * @param state the new current state.
+     */
+    public void stateChanged(FSMContext context, State state)
+    {
+        return;
+    } // end of stateChanged(FSMContext, State)
+
+    /**
+     * The new state's entry actions are about to run.
+     * @param context the finite state machine.
+     * @param state the state entered.
+     */
+    public void beforeEntry(FSMContext context, State state)
+    {
+        return;
+    } // end of beforeEntry(FSMContext, State)
+
+    /**
+     * The new state's entry actions have run.
+     * @param context the finite state machine.
+     * @param state the state entered.
+     */
+    public void afterEntry(FSMContext context, State state)
+    {
+        return;
+    } // end of afterEntry(FSMContext, State)
+
+    /**
+     * The transition is not defined in the current state and
+     * there is no default transition.
+     * @param context the finite state machine.
+     * @param transitionId the transition identifier.
+     */
+    public void undefined(FSMContext context, int transitionId)
+    {
+        return;
+    } // end of undefined(FSMContext, int)
+} // end of class FSMTracer
@@ -0,0 +1,207 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  A ContextStore keeping one file per context in a directory.
+//
+
+package statemap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+
+/**
+ * A {@link ContextStore} keeping each context's record in its
+ * own file in a local directory. The file name is the key's
+ * {@code toString()} value, URL encoded, so keys must have
+ * distinct string forms. A record is written to a temporary
+ * file and renamed into place, so a reader never sees a partly
+ * written record.
+ *
+ * @param <K> the context key type.
+ */
+
+public final class FileContextStore<K>
+    implements ContextStore<K>
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a store in {@code directory}.
+     * @param directory the store directory. Created if it does
+     * not exist.
+     * @exception IOException
+     * if the directory cannot be created.
+     */
+    public FileContextStore(File directory)
+        throws IOException
+    {
+        if (directory.isDirectory() == false &&
+            directory.mkdirs() == false)
+        {
+            throw (
+                new IOException("cannot create " + directory));
+        }
+
+        _directory = directory;
+    } // end of FileContextStore(File)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // ContextStore Interface Implementation.
+    //
+
+    @Override
+    public void put(K key, byte[] record)
+        throws IOException
+    {
+        File file = _file(key);
+        File temporary =
+            new File(_directory, file.getName() + TEMPORARY_SUFFIX);
+        FileOutputStream out = new FileOutputStream(temporary);
+
+        try
+        {
+            out.write(record);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // renameTo() does not replace an existing file on every
+        // platform.
+        if (temporary.renameTo(file) == false &&
+            (file.delete() == false ||
+             temporary.renameTo(file) == false))
+        {
+            throw (
+                new IOException(
+                    "cannot rename " + temporary + " to " + file));
+        }
+
+        return;
+    } // end of put(K, byte[])
+
+    @Override
+    public byte[] get(K key)
+        throws IOException
+    {
+        File file = _file(key);
+        byte[] retval = null;
+
+        if (file.isFile() == true)
+        {
+            FileInputStream in = new FileInputStream(file);
+            int offset = 0;
+            int count;
+
+            try
+            {
+                retval = new byte[(int) file.length()];
+                while (offset < retval.length &&
+                       (count =
+                            in.read(
+                                retval,
+                                offset,
+                                retval.length - offset)) > 0)
+                {
+                    offset += count;
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+
+            if (offset < retval.length)
+            {
+                throw (new IOException(file + " is truncated"));
+            }
+        }
+
+        return (retval);
+    } // end of get(K)
+
+    @Override
+    public void remove(K key)
+        throws IOException
+    {
+        File file = _file(key);
+
+        if (file.exists() == true && file.delete() == false)
+        {
+            throw (new IOException("cannot delete " + file));
+        }
+
+        return;
+    } // end of remove(K)
+
+    //
+    // end of ContextStore Interface Implementation.
+    //-----------------------------------------------------------
+
+    /**
+     * Returns the store directory.
+     * @return the store directory.
+     */
+    public File getDirectory()
+    {
+        return (_directory);
+    } // end of getDirectory()
+
+    // Returns the record file for key.
+    private File _file(K key)
+        throws IOException
+    {
+        return (
+            new File(
+                _directory,
+                URLEncoder.encode(String.valueOf(key), "UTF-8") +
+                RECORD_SUFFIX));
+    } // end of _file(K)
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final File _directory;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    private static final String RECORD_SUFFIX = ".fsm";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+} // end of class FileContextStore
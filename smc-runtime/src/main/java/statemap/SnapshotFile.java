@@ -0,0 +1,426 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  Writes and restores the state of many finite state machine
+//  contexts through a memory-mapped file.
+//
+
+package statemap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+
+/**
+ * Writes the state of a collection of {@link FSMContext}s to a
+ * file and restores it, using each context's
+ * {@link FSMContext#writeTo(ByteBuffer) writeTo} and
+ * {@link FSMContext#readFrom(ByteBuffer) readFrom} records.
+ * The file is written and read through memory-mapped windows,
+ * so checkpointing millions of contexts costs neither a stream
+ * copy nor an object per context.
+ * <p>
+ * The file holds a header (magic number, version and record
+ * count) followed by each context's record preceded by its
+ * length. Contexts are restored in the order they were written,
+ * so the caller must recreate them, with their owners, in the
+ * same order before calling {@link #read(File, Collection)}.
+ * </p>
+ */
+
+public final class SnapshotFile
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    // Static methods only.
+    private SnapshotFile()
+    {}
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Writes each context's record to {@code file}, replacing
+     * its contents, and forces the file to storage.
+     * @param file the snapshot file.
+     * @param contexts the contexts to write.
+     * @return the number of records written.
+     * @exception IOException
+     * if the file cannot be written.
+     * @see #write(File, Collection, int)
+     */
+    public static int write(File file,
+                            Collection<? extends FSMContext> contexts)
+        throws IOException
+    {
+        return (write(file, contexts, DEFAULT_WINDOW_SIZE));
+    } // end of write(File, Collection)
+
+    /**
+     * Writes each context's record to {@code file}, replacing
+     * its contents, mapping {@code windowSize} bytes of the file
+     * at a time. Each window is forced to storage before the
+     * next is mapped.
+     * @param file the snapshot file.
+     * @param contexts the contexts to write.
+     * @param windowSize the mapped window size in bytes. Grown
+     * if a single record does not fit.
+     * @return the number of records written.
+     * @exception IOException
+     * if the file cannot be written.
+     * @exception IllegalArgumentException
+     * if {@code windowSize} is less than the header size.
+     */
+    public static int write(File file,
+                            Collection<? extends FSMContext> contexts,
+                            int windowSize)
+        throws IOException
+    {
+        RandomAccessFile raf;
+        FileChannel channel;
+        MappedByteBuffer window;
+        long windowStart = 0L;
+        int start;
+        int count = 0;
+
+        if (windowSize < HEADER_SIZE)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "window size " + windowSize + " < " + HEADER_SIZE));
+        }
+
+        raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            channel = raf.getChannel();
+            raf.setLength(0L);
+            window =
+                channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0L, windowSize);
+            window.putInt(MAGIC);
+            window.putInt(VERSION);
+            window.putInt(0);
+
+            for (FSMContext context: contexts)
+            {
+                start = window.position();
+
+                // If the record does not fit in the rest of this
+                // window, map the next window at the record's
+                // start. A record which does not fit in a whole
+                // window needs a larger one.
+                while (_writeRecord(window, start, context) == false)
+                {
+                    if (start == 0)
+                    {
+                        windowSize = _grow(windowSize);
+                    }
+
+                    window.force();
+                    windowStart += start;
+                    start = 0;
+                    window =
+                        channel.map(
+                            FileChannel.MapMode.READ_WRITE,
+                            windowStart,
+                            windowSize);
+                }
+
+                ++count;
+            }
+
+            window.force();
+            windowStart += window.position();
+
+            // Set the record count and trim the unused end of
+            // the last window.
+            window =
+                channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+            window.putInt(COUNT_OFFSET, count);
+            window.force();
+            raf.setLength(windowStart);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return (count);
+    } // end of write(File, Collection, int)
+
+    /**
+     * Restores each context from the records in {@code file},
+     * in order.
+     * @param file the snapshot file.
+     * @param contexts the contexts to restore.
+     * @return the number of records read.
+     * @exception IOException
+     * if the file cannot be read, is not a snapshot file, holds
+     * a different number of records than there are contexts or
+     * holds an invalid record.
+     * @see #read(File, Collection, int)
+     */
+    public static int read(File file,
+                           Collection<? extends FSMContext> contexts)
+        throws IOException
+    {
+        return (read(file, contexts, DEFAULT_WINDOW_SIZE));
+    } // end of read(File, Collection)
+
+    /**
+     * Restores each context from the records in {@code file},
+     * in order, mapping {@code windowSize} bytes of the file at
+     * a time.
+     * @param file the snapshot file.
+     * @param contexts the contexts to restore.
+     * @param windowSize the mapped window size in bytes. Grown
+     * if a single record does not fit.
+     * @return the number of records read.
+     * @exception IOException
+     * if the file cannot be read, is not a snapshot file, holds
+     * a different number of records than there are contexts or
+     * holds an invalid record.
+     * @exception IllegalArgumentException
+     * if {@code windowSize} is less than the header size.
+     */
+    public static int read(File file,
+                           Collection<? extends FSMContext> contexts,
+                           int windowSize)
+        throws IOException
+    {
+        RandomAccessFile raf;
+        FileChannel channel;
+        MappedByteBuffer window;
+        ByteBuffer record;
+        long size;
+        long windowStart = 0L;
+        int start;
+        int length;
+        int count;
+        int index = 0;
+
+        if (windowSize < HEADER_SIZE)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "window size " + windowSize + " < " + HEADER_SIZE));
+        }
+
+        raf = new RandomAccessFile(file, "r");
+        try
+        {
+            channel = raf.getChannel();
+            size = channel.size();
+            if (size < HEADER_SIZE)
+            {
+                throw (new IOException(file + " is not a snapshot file"));
+            }
+
+            window = _mapRead(channel, 0L, windowSize, size);
+            if (window.getInt() != MAGIC)
+            {
+                throw (new IOException(file + " is not a snapshot file"));
+            }
+            else if (window.getInt() != VERSION)
+            {
+                throw (
+                    new IOException(
+                        file + " has an unsupported version"));
+            }
+
+            count = window.getInt();
+            if (count != contexts.size())
+            {
+                throw (
+                    new IOException(
+                        file + " holds " + count + " records for " +
+                        contexts.size() + " contexts"));
+            }
+
+            for (FSMContext context: contexts)
+            {
+                start = window.position();
+
+                // Map the next window at the record's start if
+                // this one does not hold the whole record.
+                if (window.limit() - start < 4 ||
+                    window.limit() - start - 4 <
+                        window.getInt(start))
+                {
+                    windowStart += start;
+                    start = 0;
+                    window =
+                        _mapRead(
+                            channel, windowStart, windowSize, size);
+                    if (window.limit() >= 4 &&
+                        window.getInt(0) > window.limit() - 4)
+                    {
+                        window =
+                            _mapRead(
+                                channel,
+                                windowStart,
+                                _recordWindow(window.getInt(0)),
+                                size);
+                    }
+                }
+
+                length = (window.limit() < 4 ? -1 : window.getInt(start));
+                if (length < 0 || window.limit() - start - 4 < length)
+                {
+                    throw (
+                        new IOException(
+                            file + " record " + index + " is truncated"));
+                }
+
+                record = window.duplicate();
+                record.limit(start + 4 + length);
+                record.position(start + 4);
+                try
+                {
+                    context.readFrom(record.slice());
+                }
+                catch (RuntimeException jex)
+                {
+                    throw (
+                        new IOException(
+                            file + " record " + index + " is invalid",
+                            jex));
+                }
+
+                window.position(start + 4 + length);
+                ++index;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return (count);
+    } // end of read(File, Collection, int)
+
+    // Writes the context's record, preceded by its length, at
+    // start. Returns false if the record does not fit in the
+    // rest of the window.
+    private static boolean _writeRecord(ByteBuffer window,
+                                        int start,
+                                        FSMContext context)
+    {
+        boolean retcode = false;
+
+        if (window.capacity() - start >= 4)
+        {
+            window.position(start + 4);
+            try
+            {
+                context.writeTo(window);
+                window.putInt(start, window.position() - start - 4);
+                retcode = true;
+            }
+            catch (BufferOverflowException overflow)
+            {
+                // The caller maps the next window.
+            }
+        }
+
+        return (retcode);
+    } // end of _writeRecord(ByteBuffer, int, FSMContext)
+
+    // Returns the doubled window size.
+    private static int _grow(int windowSize)
+        throws IOException
+    {
+        if (windowSize >= MAX_WINDOW_SIZE)
+        {
+            throw (new IOException("record too large"));
+        }
+
+        return ((int) Math.min(2L * windowSize, MAX_WINDOW_SIZE));
+    } // end of _grow(int)
+
+    // Returns a window size holding a record of this length.
+    private static int _recordWindow(int length)
+        throws IOException
+    {
+        if (length > MAX_WINDOW_SIZE - 4)
+        {
+            throw (new IOException("record too large"));
+        }
+
+        return (length + 4);
+    } // end of _recordWindow(int)
+
+    // Maps up to windowSize bytes of the file from position.
+    private static MappedByteBuffer _mapRead(FileChannel channel,
+                                             long position,
+                                             int windowSize,
+                                             long size)
+        throws IOException
+    {
+        return (
+            channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                position,
+                Math.min(windowSize, size - position)));
+    } // end of _mapRead(FileChannel, long, int, long)
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The default mapped window size is 64 MiB.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    // The largest window a mapped buffer can hold.
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    // "SMCS" - the first four bytes of a snapshot file.
+    private static final int MAGIC = 0x534d4353;
+
+    private static final int VERSION = 1;
+
+    // Magic number, version and record count.
+    private static final int HEADER_SIZE = 12;
+
+    private static final int COUNT_OFFSET = 8;
+} // end of class SnapshotFile
@@ -33,6 +33,9 @@
 package statemap;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Base class for all SMC-generated context states. This class
@@ -90,10 +93,198 @@ public abstract class State
         return (_id);
     } // end of getId()
 
+    /**
+     * Returns {@code true} if the transition with the given
+     * identifier is defined in this state or in its map's
+     * default state. Returns {@code false} if the transition is
+     * undefined, the identifier is out of range or the state
+     * machine was generated without reflection.
+     * @param transitionId the transition identifier.
+     * @return {@code true} if the transition is defined.
+     */
+    public boolean isTransitionDefined(int transitionId)
+    {
+        return (_isSet(_definedLocally, transitionId) == true ||
+                _isSet(_definedDefault, transitionId) == true);
+    } // end of isTransitionDefined(int)
+
+    /**
+     * Returns {@code true} if the transition with the given
+     * identifier is defined in this state.
+     * @param transitionId the transition identifier.
+     * @return {@code true} if the transition is defined
+     * locally.
+     */
+    public boolean isTransitionDefinedLocally(int transitionId)
+    {
+        return (_isSet(_definedLocally, transitionId));
+    } // end of isTransitionDefinedLocally(int)
+
+    /**
+     * Returns {@code true} if the transition with the given
+     * identifier is not defined in this state but is defined in
+     * its map's default state.
+     * @param transitionId the transition identifier.
+     * @return {@code true} if the transition is defined by the
+     * default state.
+     */
+    public boolean isTransitionDefinedDefault(int transitionId)
+    {
+        return (_isSet(_definedDefault, transitionId));
+    } // end of isTransitionDefinedDefault(int)
+
+    /**
+     * Returns {@link #TRANSITION_DEFINED_LOCALLY},
+     * {@link #TRANSITION_DEFINED_DEFAULT} or
+     * {@link #TRANSITION_UNDEFINED} for the transition with the
+     * given identifier.
+     * @param transitionId the transition identifier.
+     * @return the transition's definition.
+     */
+    public Integer getTransitionDefinition(int transitionId)
+    {
+        Integer retval = TRANSITION_UNDEFINED;
+
+        if (_isSet(_definedLocally, transitionId) == true)
+        {
+            retval = TRANSITION_DEFINED_LOCALLY;
+        }
+        else if (_isSet(_definedDefault, transitionId) == true)
+        {
+            retval = TRANSITION_DEFINED_DEFAULT;
+        }
+
+        return (retval);
+    } // end of getTransitionDefinition(int)
+
+    /**
+     * Returns the identifier of the first transition at or after
+     * {@code transitionId} which is defined in this state or in
+     * its map's default state, or -1 if there is none. Iterates
+     * the defined transitions without allocating:
+     * <pre>
+     * for (int id = state.nextDefinedTransition(0);
+     *      id >= 0;
+     *      id = state.nextDefinedTransition(id + 1))
+     * </pre>
+     * @param transitionId the first identifier to check.
+     * @return the next defined transition identifier or -1.
+     */
+    public int nextDefinedTransition(int transitionId)
+    {
+        long[] local = _definedLocally;
+        long[] dflt = _definedDefault;
+        int length;
+        int index;
+        long word;
+        int retval = -1;
+
+        if (local != null && transitionId >= 0)
+        {
+            length = local.length;
+            index = (transitionId >>> 6);
+            if (index < length)
+            {
+                word = ((local[index] | dflt[index]) &
+                        (-1L << transitionId));
+                while (word == 0L && ++index < length)
+                {
+                    word = (local[index] | dflt[index]);
+                }
+
+                if (word != 0L)
+                {
+                    retval =
+                        ((index << 6) +
+                         Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        return (retval);
+    } // end of nextDefinedTransition(int)
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
 
+    //-----------------------------------------------------------
+    // Set methods.
+    //
+
+    /**
+     * Sets the transitions defined in this state and in its
+     * map's default state. Bit {@code i % 64} of word
+     * {@code i / 64} is set when the transition with identifier
+     * {@code i} is defined. A transition defined locally should
+     * not also be set in {@code definedDefault}. Called by
+     * generated code when reflection is on.
+     * @param definedLocally the locally defined transitions.
+     * @param definedDefault the transitions defined only by the
+     * default state.
+     * @exception IllegalArgumentException
+     * if the arrays are {@code null} or of different length.
+     */
+    protected final void setTransitionMasks(long[] definedLocally,
+                                            long[] definedDefault)
+    {
+        if (definedLocally == null ||
+            definedDefault == null ||
+            definedLocally.length != definedDefault.length)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid transition masks"));
+        }
+
+        _definedLocally = definedLocally;
+        _definedDefault = definedDefault;
+        _transitionMap = null;
+
+        return;
+    } // end of setTransitionMasks(long[], long[])
+
+    //
+    // end of Set methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Returns an immutable map from each transition name to its
+     * {@link #getTransitionDefinition(int) definition} in this
+     * state. {@code transitionNames} is indexed by transition
+     * identifier. The map is built on the first call and then
+     * reused; it is kept for code using the name based
+     * reflection API.
+     * @param transitionNames the transition names.
+     * @return the transition definitions by name.
+     */
+    protected final Map<String, Integer> transitionMap(
+        String[] transitionNames)
+    {
+        Map<String, Integer> retval = _transitionMap;
+
+        if (retval == null)
+        {
+            Map<String, Integer> definitions =
+                new HashMap<String, Integer>();
+            int id;
+
+            for (id = 0; id < transitionNames.length; ++id)
+            {
+                definitions.put(transitionNames[id],
+                                getTransitionDefinition(id));
+            }
+
+            // Racing callers may each build the map; they are
+            // equal and the unmodifiable wrapper is safely
+            // published through its final field.
+            retval = Collections.unmodifiableMap(definitions);
+            _transitionMap = retval;
+        }
+
+        return (retval);
+    } // end of transitionMap(String[])
+
     /**
      * Returns the state name.
      * @return the state name.
@@ -111,6 +302,15 @@ public abstract class State
     private final String _name;
     private final int _id;
 
+    // The transition definitions indexed by transition
+    // identifier. States are shared singletons re-created by
+    // the generated code, so these are not serialized.
+    transient private long[] _definedLocally;
+    transient private long[] _definedDefault;
+
+    // The name based view of the above, built on demand.
+    transient private Map<String, Integer> _transitionMap;
+
     //-----------------------------------------------------------
     // Constants.
     //
@@ -137,6 +337,19 @@ public abstract class State
         new Integer(2);
 
     private static final long serialVersionUID = 0x060000L;
+
+    //-----------------------------------------------------------
+    // Statics.
+    //
+
+    // Returns true if bit id is set in mask.
+    private static boolean _isSet(long[] mask, int id)
+    {
+        return (mask != null &&
+                id >= 0 &&
+                (id >>> 6) < mask.length &&
+                (mask[id >>> 6] & (1L << id)) != 0L);
+    } // end of _isSet(long[], int)
 } // end of class State
 
 //
@@ -0,0 +1,131 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+// 
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+// 
+// The Original Code is  State Machine Compiler(SMC).
+// 
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+// 
+// Contributor(s): 
+//
+// statemap.java --
+//
+//  An immutable view of a finite state machine's current state,
+//  previous state and transition.
+//
+
+package statemap;
+
+/**
+ * An immutable, consistent view of an {@link FSMContext}'s
+ * current state, previous state and transition name taken at
+ * one instant. Returned by {@link FSMContext#getSnapshot()},
+ * which neither locks nor blocks the finite state machine.
+ */
+
+public final class StateSnapshot
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a snapshot of the given values.
+     * @param state the current state. May be {@code null}.
+     * @param previousState the previous state. May be
+     * {@code null}.
+     * @param transition the transition name.
+     */
+    /* package */ StateSnapshot(State state,
+                                State previousState,
+                                String transition)
+    {
+        _state = state;
+        _previousState = previousState;
+        _transition = transition;
+    } // end of StateSnapshot(State, State, String)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the current state. Returns {@code null} if the
+     * finite state machine was in transition.
+     * @return the current state.
+     */
+    public State getState()
+    {
+        return (_state);
+    } // end of getState()
+
+    /**
+     * Returns the state which the last transition left. May
+     * return {@code null}.
+     * @return the previous state.
+     */
+    public State getPreviousState()
+    {
+        return (_previousState);
+    } // end of getPreviousState()
+
+    /**
+     * Returns the transition name or an empty string if the
+     * finite state machine was not in transition.
+     * @return the transition name.
+     */
+    public String getTransition()
+    {
+        return (_transition);
+    } // end of getTransition()
+
+    /**
+     * Returns {@code true} if the finite state machine was in
+     * a transition and {@code false} otherwise.
+     * @return {@code true} if the finite state machine was in
+     * a transition.
+     */
+    public boolean isInTransition()
+    {
+        return (_state == null);
+    } // end of isInTransition()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return (String.format("[current=%s, previous=%s, transition=%s]",
+                              _state,
+                              _previousState,
+                              _transition));
+    } // end of toString()
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final State _state;
+    private final State _previousState;
+    private final String _transition;
+} // end of class StateSnapshot
@@ -0,0 +1,197 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  An array of counters striped across threads.
+//
+
+package statemap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size array of counters which many threads may update
+ * with little contention. Each counter is kept in several
+ * stripes and a thread always updates the stripe selected by
+ * its thread identifier, so threads on different processors
+ * rarely write the same cache line. Reading a counter sums its
+ * stripes, so reads are slower than updates and are not an
+ * atomic snapshot of concurrent updates.
+ * <p>
+ * This plays the role of one {@code LongAdder} per counter,
+ * which is not available on the Java versions this package
+ * supports.
+ * </p>
+ */
+
+public final class StripedCounter
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates {@code size} counters, each with one stripe per
+     * available processor rounded up to a power of two.
+     * @param size the number of counters.
+     * @exception IllegalArgumentException
+     * if {@code size} is &lt; zero.
+     */
+    public StripedCounter(int size)
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+
+        if (size < 0)
+        {
+            throw (
+                new IllegalArgumentException("size must be >= zero"));
+        }
+
+        while (stripes < processors && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+
+        _size = size;
+        _stripeMask = stripes - 1;
+
+        // Round each stripe up to whole cache lines and pad it
+        // by one more so adjacent stripes never share a line.
+        _stride = ((size + LONGS_PER_LINE - 1) & -LONGS_PER_LINE) +
+                  LONGS_PER_LINE;
+        _cells = new AtomicLongArray(stripes * _stride);
+    } // end of StripedCounter(int)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Adds one to the counter.
+     * @param index the counter index.
+     */
+    public void increment(int index)
+    {
+        _cells.getAndIncrement(_cell(index));
+
+        return;
+    } // end of increment(int)
+
+    /**
+     * Adds {@code delta} to the counter.
+     * @param index the counter index.
+     * @param delta the amount to add.
+     */
+    public void add(int index, long delta)
+    {
+        _cells.getAndAdd(_cell(index), delta);
+
+        return;
+    } // end of add(int, long)
+
+    /**
+     * Returns the counter's sum over all stripes.
+     * @param index the counter index.
+     * @return the counter value.
+     * @exception IndexOutOfBoundsException
+     * if {@code index} is out of range.
+     */
+    public long get(int index)
+    {
+        int stripe;
+        long retval = 0L;
+
+        if (index < 0 || index >= _size)
+        {
+            throw (
+                new IndexOutOfBoundsException(
+                    Integer.toString(index)));
+        }
+
+        for (stripe = 0; stripe <= _stripeMask; ++stripe)
+        {
+            retval += _cells.get((stripe * _stride) + index);
+        }
+
+        return (retval);
+    } // end of get(int)
+
+    /**
+     * Returns the number of counters.
+     * @return the counter count.
+     */
+    public int size()
+    {
+        return (_size);
+    } // end of size()
+
+    /**
+     * Sets all counters to zero. Updates made while resetting
+     * may be lost.
+     */
+    public void reset()
+    {
+        int i;
+
+        for (i = 0; i < _cells.length(); ++i)
+        {
+            _cells.set(i, 0L);
+        }
+
+        return;
+    } // end of reset()
+
+    private int _cell(final int index)
+    {
+        int stripe =
+            (int) Thread.currentThread().getId() & _stripeMask;
+
+        if (index < 0 || index >= _size)
+        {
+            throw (
+                new IndexOutOfBoundsException(
+                    Integer.toString(index)));
+        }
+
+        return ((stripe * _stride) + index);
+    } // end of _cell(int)
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final int _size;
+    private final int _stripeMask;
+    private final int _stride;
+    private final AtomicLongArray _cells;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    private static final int LONGS_PER_LINE = 8;
+    private static final int MAX_STRIPES = 64;
+} // end of class StripedCounter
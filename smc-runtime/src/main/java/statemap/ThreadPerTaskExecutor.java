@@ -0,0 +1,223 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  Runs each task on its own thread, using virtual threads
+//  when the Java runtime provides them.
+//
+
+package statemap;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} which starts a new thread for each task.
+ * Used as an {@link EventMailbox}'s executor it gives each
+ * context its own thread for as long as the context has queued
+ * events, so transition actions may block (on sockets, sleeps
+ * or locks) without holding up other contexts. The mailbox
+ * runs at most one drain task at a time, so each context still
+ * sees its transitions one at a time and in order.
+ * <p>
+ * Threads come from a {@link ThreadFactory}.
+ * {@link #virtualThreadFactory()} returns a factory for virtual
+ * threads when running on a Java runtime which has them, so a
+ * large number of contexts may block at once on a few carrier
+ * threads. This class does not depend on that runtime: on
+ * older runtimes the factory makes platform threads.
+ * </p>
+ */
+
+public final class ThreadPerTaskExecutor
+    implements Executor
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an executor using
+     * {@link #virtualThreadFactory()}.
+     */
+    public ThreadPerTaskExecutor()
+    {
+        this (virtualThreadFactory());
+    } // end of ThreadPerTaskExecutor()
+
+    /**
+     * Creates an executor using the given thread factory.
+     * @param factory creates a thread for each task.
+     * @exception IllegalArgumentException
+     * if {@code factory} is {@code null}.
+     */
+    public ThreadPerTaskExecutor(ThreadFactory factory)
+    {
+        if (factory == null)
+        {
+            throw (new IllegalArgumentException("null factory"));
+        }
+
+        _factory = factory;
+        _activeCount = new AtomicInteger(0);
+    } // end of ThreadPerTaskExecutor(ThreadFactory)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Starts a new thread running {@code task}.
+     * @param task the task.
+     * @exception RejectedExecutionException
+     * if the thread factory did not create a thread.
+     */
+    @Override
+    public void execute(final Runnable task)
+    {
+        boolean started = false;
+        Thread thread =
+            _factory.newThread(
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            task.run();
+                        }
+                        finally
+                        {
+                            _activeCount.decrementAndGet();
+                        }
+                    }
+                });
+
+        if (thread == null)
+        {
+            throw (
+                new RejectedExecutionException(
+                    "thread factory returned null"));
+        }
+
+        // Count the task before it can finish, and take it back
+        // if the thread does not start.
+        _activeCount.incrementAndGet();
+        try
+        {
+            thread.start();
+            started = true;
+        }
+        finally
+        {
+            if (started == false)
+            {
+                _activeCount.decrementAndGet();
+            }
+        }
+
+        return;
+    } // end of execute(Runnable)
+
+    /**
+     * Returns the number of tasks started and not yet finished.
+     * @return the active thread count.
+     */
+    public int getActiveCount()
+    {
+        return (_activeCount.get());
+    } // end of getActiveCount()
+
+    /**
+     * Returns a factory for virtual threads if this Java runtime
+     * supports them and otherwise
+     * {@link Executors#defaultThreadFactory()}.
+     * @return a thread factory.
+     */
+    public static ThreadFactory virtualThreadFactory()
+    {
+        return (_virtualThreadFactory != null ?
+                _virtualThreadFactory :
+                Executors.defaultThreadFactory());
+    } // end of virtualThreadFactory()
+
+    /**
+     * Returns {@code true} if {@link #virtualThreadFactory()}
+     * makes virtual threads.
+     * @return {@code true} if virtual threads are supported.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return (_virtualThreadFactory != null);
+    } // end of isVirtualThreadSupported()
+
+    // Returns Thread.ofVirtual().factory() or null if this
+    // runtime cannot make virtual threads. It is looked up
+    // reflectively so this class compiles and runs on older
+    // runtimes. Runtimes with virtual threads as a preview
+    // feature have the method but throw unless the preview is
+    // enabled, so the factory itself is the probe.
+    private static ThreadFactory _findVirtualThreadFactory()
+    {
+        ThreadFactory retval = null;
+
+        try
+        {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory =
+                ofVirtual.getReturnType().getMethod("factory");
+
+            retval = (ThreadFactory) factory.invoke(builder);
+        }
+        catch (Exception jex)
+        {
+            // No virtual threads - use platform threads.
+        }
+
+        return (retval);
+    } // end of _findVirtualThreadFactory()
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final ThreadFactory _factory;
+    private final AtomicInteger _activeCount;
+
+    //-----------------------------------------------------------
+    // Statics.
+    //
+
+    // The virtual thread factory, shared by all executors, or
+    // null if virtual threads are not supported.
+    private static final ThreadFactory _virtualThreadFactory =
+        _findVirtualThreadFactory();
+} // end of class ThreadPerTaskExecutor
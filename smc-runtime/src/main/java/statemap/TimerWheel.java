@@ -0,0 +1,632 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  A hierarchical timing wheel running many cheap timeouts on
+//  one thread.
+//
+
+package statemap;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs timeouts on a single thread using a hierarchical timing
+ * wheel. Scheduling and cancelling a timeout are constant time
+ * and neither takes a lock, so millions of timeouts may be
+ * pending at once; a timeout costs one small object and no
+ * thread. Time advances in ticks; a timeout fires on the first
+ * tick at or after its delay, so the tick duration is the
+ * timer resolution.
+ * <p>
+ * The wheel has four levels of 256 slots. Level 0 holds the
+ * timeouts due within 256 ticks, one slot per tick; each
+ * higher level covers 256 times the span of the one below.
+ * When a lower level wraps, the next higher level's current
+ * slot is cascaded down. Timeouts beyond the top level's span
+ * wait in its last slot and are re-placed as it cascades.
+ * </p>
+ * <p>
+ * Tasks run on the wheel thread and should be short: a
+ * finite state machine timer posts its transition to the
+ * context's mailbox, if it has one. See
+ * {@link FSMContext#startStateTimer(TimerWheel, long, int)}.
+ * A task's exceptions are logged and counted by
+ * {@link #getFailedCount()}. An {@link Error} is logged and
+ * rethrown, stopping the wheel thread.
+ * </p>
+ */
+
+public final class TimerWheel
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates and starts a timing wheel with a ten millisecond
+     * tick.
+     * @param name the wheel thread name.
+     */
+    public TimerWheel(String name)
+    {
+        this (name, DEFAULT_TICK);
+    } // end of TimerWheel(String)
+
+    /**
+     * Creates and starts a timing wheel.
+     * @param name the wheel thread name.
+     * @param tick the tick duration in milliseconds.
+     * @exception IllegalArgumentException
+     * if {@code tick} is less than one.
+     */
+    public TimerWheel(String name, long tick)
+    {
+        if (tick < 1L)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "tick " + tick + " < 1"));
+        }
+
+        _tickNanos = tick * 1000000L;
+        _slots = new Timeout[LEVELS << SLOT_BITS];
+        _added = new ConcurrentLinkedQueue<Timeout>();
+        _cancelled = new ConcurrentLinkedQueue<Timeout>();
+        _scheduledCount = new AtomicLong();
+        _cancelledCount = new AtomicLong();
+        _start = System.nanoTime();
+        _tick = 0L;
+
+        _thread =
+            new Thread(name)
+            {
+                @Override
+                public void run()
+                {
+                    _run();
+                }
+            };
+        _thread.setDaemon(true);
+        _thread.start();
+    } // end of TimerWheel(String, long)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the tick duration in milliseconds.
+     * @return the tick duration.
+     */
+    public long getTick()
+    {
+        return (_tickNanos / 1000000L);
+    } // end of getTick()
+
+    /**
+     * Returns the number of timeouts scheduled.
+     * @return the scheduled count.
+     */
+    public long getScheduledCount()
+    {
+        return (_scheduledCount.get());
+    } // end of getScheduledCount()
+
+    /**
+     * Returns the number of timeouts cancelled before they
+     * expired.
+     * @return the cancelled count.
+     */
+    public long getCancelledCount()
+    {
+        return (_cancelledCount.get());
+    } // end of getCancelledCount()
+
+    /**
+     * Returns the number of timeouts which expired and ran
+     * their task.
+     * @return the expired count.
+     */
+    public long getExpiredCount()
+    {
+        return (_expiredCount);
+    } // end of getExpiredCount()
+
+    /**
+     * Returns the number of expired tasks which threw an
+     * exception.
+     * @return the failed count.
+     */
+    public long getFailedCount()
+    {
+        return (_failedCount);
+    } // end of getFailedCount()
+
+    /**
+     * Returns the number of timeouts neither expired nor
+     * cancelled.
+     * @return the pending count.
+     */
+    public long getPendingCount()
+    {
+        return (
+            _scheduledCount.get() -
+            _cancelledCount.get() -
+            _expiredCount);
+    } // end of getPendingCount()
+
+    /**
+     * Returns the wheel shared by the FSMs which have no wheel
+     * of their own. It is created, with the default tick, on
+     * first use.
+     * @return the shared timing wheel.
+     * @see FSMContext#getTimerWheel()
+     */
+    public static TimerWheel getShared()
+    {
+        return (SharedWheel.WHEEL);
+    } // end of getShared()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Runs {@code task} on the wheel thread after
+     * {@code delay} milliseconds unless the returned timeout is
+     * cancelled first.
+     * @param task the task to run.
+     * @param delay the delay in milliseconds.
+     * @return the timeout.
+     * @exception IllegalArgumentException
+     * if {@code task} is {@code null}.
+     * @exception IllegalStateException
+     * if the wheel is shut down.
+     */
+    public Timeout schedule(Runnable task, long delay)
+    {
+        Timeout retval;
+        long elapsed;
+
+        if (task == null)
+        {
+            throw (new IllegalArgumentException("null task"));
+        }
+        else if (_shutdown == true)
+        {
+            throw (new IllegalStateException("wheel shut down"));
+        }
+
+        // Round up so that a timeout never fires early.
+        elapsed =
+            System.nanoTime() - _start +
+            Math.max(delay, 0L) * 1000000L;
+        retval =
+            new Timeout(
+                this, task, (elapsed + _tickNanos - 1L) / _tickNanos);
+        _scheduledCount.incrementAndGet();
+        _added.add(retval);
+
+        return (retval);
+    } // end of schedule(Runnable, long)
+
+    /**
+     * Stops the wheel thread. Pending timeouts never run.
+     */
+    public void shutdown()
+    {
+        _shutdown = true;
+        LockSupport.unpark(_thread);
+
+        return;
+    } // end of shutdown()
+
+    /**
+     * Returns the wheel counters as text.
+     * @return the wheel counters.
+     */
+    @Override
+    public String toString()
+    {
+        return (
+            String.format(
+                "TimerWheel[%s, tick=%d ms, pending=%d, expired=%d, cancelled=%d, failed=%d]",
+                _thread.getName(),
+                getTick(),
+                getPendingCount(),
+                _expiredCount,
+                _cancelledCount.get(),
+                _failedCount));
+    } // end of toString()
+
+    // The wheel thread: advances one tick at a time until it
+    // catches up with the clock, then sleeps until the next
+    // tick.
+    private void _run()
+    {
+        long target;
+        long wait;
+
+        while (_shutdown == false)
+        {
+            target = (System.nanoTime() - _start) / _tickNanos;
+            while (_tick < target && _shutdown == false)
+            {
+                _drain();
+                _advance();
+            }
+
+            wait =
+                _start + (_tick + 1L) * _tickNanos - System.nanoTime();
+            if (wait > 0L)
+            {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+
+        return;
+    } // end of _run()
+
+    // Unlinks the cancelled timeouts and places the new ones.
+    private void _drain()
+    {
+        Timeout timeout;
+
+        while ((timeout = _cancelled.poll()) != null)
+        {
+            if (timeout.slot >= 0)
+            {
+                _unlink(timeout);
+            }
+        }
+
+        while ((timeout = _added.poll()) != null)
+        {
+            if (timeout.state == PENDING)
+            {
+                _place(timeout);
+            }
+        }
+
+        return;
+    } // end of _drain()
+
+    // Moves to the next tick, cascading higher levels as the
+    // lower ones wrap, and expires the tick's timeouts.
+    private void _advance()
+    {
+        Timeout timeout;
+        Timeout next;
+        int slot;
+
+        ++_tick;
+        if ((_tick & SLOT_MASK) == 0L)
+        {
+            _cascade(1);
+        }
+
+        slot = (int) (_tick & SLOT_MASK);
+        timeout = _slots[slot];
+        _slots[slot] = null;
+        while (timeout != null)
+        {
+            next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.slot = -1;
+            _expire(timeout);
+            timeout = next;
+        }
+
+        return;
+    } // end of _advance()
+
+    // Re-places the timeouts in the level's current slot,
+    // cascading the next level first if this one wrapped.
+    private void _cascade(int level)
+    {
+        int shift = level * SLOT_BITS;
+        int index = (int) ((_tick >>> shift) & SLOT_MASK);
+        int slot = (level << SLOT_BITS) + index;
+        Timeout timeout;
+        Timeout next;
+
+        if (index == 0 && level + 1 < LEVELS)
+        {
+            _cascade(level + 1);
+        }
+
+        timeout = _slots[slot];
+        _slots[slot] = null;
+        while (timeout != null)
+        {
+            next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.slot = -1;
+            _place(timeout);
+            timeout = next;
+        }
+
+        return;
+    } // end of _cascade(int)
+
+    // Links the timeout into the slot for its deadline, or
+    // expires it if it is due.
+    private void _place(Timeout timeout)
+    {
+        long delta = timeout.deadline - _tick;
+        int level;
+        int index;
+        int slot;
+
+        if (delta <= 0L)
+        {
+            _expire(timeout);
+        }
+        else
+        {
+            for (level = 0;
+                 level < LEVELS - 1 &&
+                     delta >= (1L << ((level + 1) * SLOT_BITS));
+                 ++level)
+            {
+                // Find the level covering delta.
+            }
+
+            if (delta < (1L << (LEVELS * SLOT_BITS)))
+            {
+                index =
+                    (int) ((timeout.deadline >>> (level * SLOT_BITS)) &
+                           SLOT_MASK);
+            }
+            else
+            {
+                // Beyond the wheel: wait in the top level's last
+                // slot.
+                index =
+                    (int) (((_tick >>> (level * SLOT_BITS)) - 1L) &
+                           SLOT_MASK);
+            }
+
+            slot = (level << SLOT_BITS) + index;
+            timeout.slot = slot;
+            timeout.prev = null;
+            timeout.next = _slots[slot];
+            if (timeout.next != null)
+            {
+                timeout.next.prev = timeout;
+            }
+            _slots[slot] = timeout;
+        }
+
+        return;
+    } // end of _place(Timeout)
+
+    // Removes the timeout from its slot.
+    private void _unlink(Timeout timeout)
+    {
+        if (timeout.prev == null)
+        {
+            _slots[timeout.slot] = timeout.next;
+        }
+        else
+        {
+            timeout.prev.next = timeout.next;
+        }
+
+        if (timeout.next != null)
+        {
+            timeout.next.prev = timeout.prev;
+        }
+
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+
+        return;
+    } // end of _unlink(Timeout)
+
+    // Runs the timeout's task unless it was cancelled. A task
+    // exception is logged and counted. An Error is logged and
+    // rethrown, which stops the wheel thread.
+    private void _expire(Timeout timeout)
+    {
+        if (STATE.compareAndSet(timeout, PENDING, EXPIRED) == true)
+        {
+            ++_expiredCount;
+            try
+            {
+                timeout.task.run();
+            }
+            catch (RuntimeException jex)
+            {
+                ++_failedCount;
+                _log.warn("timeout task failed", jex);
+            }
+            catch (Error jerror)
+            {
+                ++_failedCount;
+                _log.error("timeout task failed", jerror);
+                throw (jerror);
+            }
+        }
+
+        return;
+    } // end of _expire(Timeout)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // Holds the shared wheel so that it is started only when
+    // first asked for.
+    private static final class SharedWheel
+    {
+        private static final TimerWheel WHEEL =
+            new TimerWheel("statemap-timers");
+    } // end of class SharedWheel
+
+    /**
+     * A scheduled task which may be cancelled until it runs.
+     */
+    public static final class Timeout
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        private Timeout(TimerWheel wheel,
+                        Runnable task,
+                        long deadline)
+        {
+            _wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.slot = -1;
+            this.state = PENDING;
+        } // end of Timeout(TimerWheel, Runnable, long)
+
+        /**
+         * Cancels this timeout.
+         * @return {@code true} if the timeout was pending and
+         * {@code false} if it already expired or was
+         * cancelled.
+         */
+        public boolean cancel()
+        {
+            boolean retcode =
+                STATE.compareAndSet(this, PENDING, CANCELLED);
+
+            if (retcode == true)
+            {
+                _wheel._cancelledCount.incrementAndGet();
+                _wheel._cancelled.add(this);
+            }
+
+            return (retcode);
+        } // end of cancel()
+
+        /**
+         * Returns {@code true} if this timeout was cancelled.
+         * @return {@code true} if cancelled.
+         */
+        public boolean isCancelled()
+        {
+            return (state == CANCELLED);
+        } // end of isCancelled()
+
+        /**
+         * Returns {@code true} if this timeout expired and its
+         * task ran.
+         * @return {@code true} if expired.
+         */
+        public boolean isExpired()
+        {
+            return (state == EXPIRED);
+        } // end of isExpired()
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        private final TimerWheel _wheel;
+        private final Runnable task;
+
+        // The tick on which this timeout is due.
+        private final long deadline;
+
+        // PENDING, CANCELLED or EXPIRED. Not private so that
+        // the field updater may reach it.
+        volatile int state;
+
+        // The slot and its list links, used only by the wheel
+        // thread. slot is -1 when not linked.
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+    } // end of class Timeout
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final long _tickNanos;
+    private final long _start;
+    private final Thread _thread;
+
+    // The slot list heads, level by level.
+    private final Timeout[] _slots;
+
+    // Timeouts scheduled or cancelled since the last tick,
+    // handed to the wheel thread.
+    private final ConcurrentLinkedQueue<Timeout> _added;
+    private final ConcurrentLinkedQueue<Timeout> _cancelled;
+
+    private final AtomicLong _scheduledCount;
+    private final AtomicLong _cancelledCount;
+
+    // Written only by the wheel thread.
+    private long _tick;
+    private volatile long _expiredCount;
+    private volatile long _failedCount;
+
+    private volatile boolean _shutdown;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The default tick is ten milliseconds.
+     */
+    public static final long DEFAULT_TICK = 10L;
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1L;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private static final Logger _log =
+        LoggerFactory.getLogger(TimerWheel.class);
+} // end of class TimerWheel
@@ -0,0 +1,335 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+// 
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+// 
+// The Original Code is  State Machine Compiler(SMC).
+// 
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+// 
+// Contributor(s): 
+//
+// statemap.java --
+//
+//  Flat-combining executor for the transitions of one finite
+//  state machine context.
+//
+
+package statemap;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies the transitions of one finite state machine context
+ * using flat combining rather than a monitor. A thread issuing a
+ * transition publishes a {@link Request} and then either waits
+ * for another thread to apply it or takes the combiner role
+ * itself and applies all the published requests in order.
+ * Requests are applied one at a time and each runs to
+ * completion, so the state machine sees the same run to
+ * completion semantics as with {@code synchronized} transition
+ * methods, while contending threads hand their work to a single
+ * thread instead of convoying on the context monitor.
+ * <p>
+ * A waiting thread spins briefly and then parks until the
+ * combiner has applied its request or gives up the combiner
+ * role, so waiters do not take processors from the combiner.
+ * {@link #combine(Request)} returns when the request has been
+ * applied, and throws any runtime exception or error the
+ * transition threw. A transition issued by an action while
+ * the combiner is applying a request is applied immediately,
+ * just as it is with a monitor.
+ * </p>
+ * <p>
+ * Generated by SMC when the {@code -combine} option is given.
+ * </p>
+ */
+
+public final class TransitionCombiner
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a combiner which applies at most
+     * {@link #DEFAULT_BATCH_SIZE} requests each time a thread
+     * takes the combiner role.
+     */
+    public TransitionCombiner()
+    {
+        this (DEFAULT_BATCH_SIZE);
+    } // end of TransitionCombiner()
+
+    /**
+     * Creates a combiner which applies at most
+     * {@code batchSize} requests each time a thread takes the
+     * combiner role. Bounding the batch keeps one thread from
+     * applying other threads' transitions indefinitely.
+     * @param batchSize the maximum number of requests applied
+     * by one combiner pass.
+     * @exception IllegalArgumentException
+     * if {@code batchSize} is &le; zero.
+     */
+    public TransitionCombiner(int batchSize)
+    {
+        if (batchSize <= 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "batchSize must be > zero"));
+        }
+
+        _batchSize = batchSize;
+        _requests = new ConcurrentLinkedQueue<Request>();
+        _lock = new AtomicBoolean(false);
+        _combiner = null;
+    } // end of TransitionCombiner(int)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Publishes the request and returns once it is applied.
+     * @param request apply this transition request.
+     * @exception RuntimeException
+     * if the transition threw a runtime exception.
+     * @exception Error
+     * if the transition threw an error.
+     */
+    public void combine(Request request)
+    {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        int spins = 0;
+
+        // A transition issued by an action on the combiner
+        // thread is applied immediately. Waiting for it would
+        // deadlock.
+        if (_combiner == current)
+        {
+            request.apply();
+        }
+        else
+        {
+            request._waiter = current;
+            _requests.offer(request);
+
+            while (request._done == false)
+            {
+                if (_lock.get() == false &&
+                    _lock.compareAndSet(false, true) == true)
+                {
+                    _combiner = current;
+                    try
+                    {
+                        _applyBatch();
+                    }
+                    finally
+                    {
+                        _combiner = null;
+                        _lock.set(false);
+                        _wakeNext();
+                    }
+                }
+                else if (++spins > SPIN_LIMIT)
+                {
+                    // The combiner unparks this thread when the
+                    // request is applied or the role is free.
+                    LockSupport.park(this);
+
+                    // The request is published, so it cannot be
+                    // abandoned. Keep the interrupt for later.
+                    if (Thread.interrupted() == true)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+
+            if (interrupted == true)
+            {
+                current.interrupt();
+            }
+
+            if (request._runtimeException != null)
+            {
+                throw (request._runtimeException);
+            }
+            else if (request._error != null)
+            {
+                throw (request._error);
+            }
+        }
+
+        return;
+    } // end of combine(Request)
+
+    /**
+     * Returns the number of combiner passes made. A pass
+     * applies one or more requests.
+     * @return the combiner pass count.
+     */
+    public long getPassCount()
+    {
+        return (_passCount);
+    } // end of getPassCount()
+
+    /**
+     * Returns the number of requests applied.
+     * @return the applied request count.
+     */
+    public long getRequestCount()
+    {
+        return (_requestCount);
+    } // end of getRequestCount()
+
+    // Applies up to _batchSize published requests in order.
+    // Called only by the combiner thread.
+    private void _applyBatch()
+    {
+        Request request;
+        int count;
+
+        for (count = 0;
+             count < _batchSize &&
+                 (request = _requests.poll()) != null;
+             ++count)
+        {
+            try
+            {
+                request.apply();
+            }
+            catch (RuntimeException jex)
+            {
+                request._runtimeException = jex;
+            }
+            catch (Error jerr)
+            {
+                request._error = jerr;
+            }
+
+            // Publishes the transition's effects to the waiting
+            // thread.
+            request._done = true;
+            LockSupport.unpark(request._waiter);
+        }
+
+        if (count > 0)
+        {
+            ++_passCount;
+            _requestCount += count;
+        }
+
+        return;
+    } // end of _applyBatch()
+
+    // Wakes the thread whose request is next, if any, after the
+    // combiner role is given up. Its request was either
+    // published too late for the batch or did not fit in it,
+    // and it may be parked.
+    private void _wakeNext()
+    {
+        Request next = _requests.peek();
+
+        if (next != null)
+        {
+            LockSupport.unpark(next._waiter);
+        }
+
+        return;
+    } // end of _wakeNext()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * A published transition. The generated transition method
+     * implements {@link #apply()} to call the transition body.
+     */
+    public static abstract class Request
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        /**
+         * Default constructor.
+         */
+        protected Request()
+        {
+            _done = false;
+        } // end of Request()
+
+        /**
+         * Applies the transition to the context.
+         */
+        protected abstract void apply();
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        // Set by the combiner once the request is applied.
+        private volatile boolean _done;
+
+        // The thread waiting for the request. Set before the
+        // request is published.
+        private Thread _waiter;
+
+        // The exception or error thrown by apply(), if any.
+        private RuntimeException _runtimeException;
+        private Error _error;
+    } // end of class Request
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The maximum number of requests applied per pass.
+    private final int _batchSize;
+
+    // Published requests waiting to be applied.
+    private final ConcurrentLinkedQueue<Request> _requests;
+
+    // Held by the thread in the combiner role.
+    private final AtomicBoolean _lock;
+
+    // The thread in the combiner role, if any.
+    private volatile Thread _combiner;
+
+    // Statistics, updated by the combiner only.
+    private volatile long _passCount;
+    private volatile long _requestCount;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The default maximum number of requests applied by one
+     * combiner pass.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    // Busy wait this many times for the combiner before
+    // parking.
+    private static final int SPIN_LIMIT = 64;
+} // end of class TransitionCombiner
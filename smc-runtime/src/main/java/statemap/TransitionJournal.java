@@ -0,0 +1,911 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+//
+// statemap.java --
+//
+//  An append-only journal of finite state machine transitions
+//  kept in memory-mapped segment files.
+//
+
+package statemap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Records completed transitions so that contexts can be
+ * restored after a crash without writing a full snapshot on
+ * every event. A context set with
+ * {@link FSMContext#setJournal(TransitionJournal, long)}
+ * appends a fixed size record (context key, transition
+ * identifier, resulting state identifier, state stack depth
+ * and the identifier of the state on top of the stack) after
+ * each transition. Contexts without a journal pay only a
+ * {@code null} check.
+ * <p>
+ * Records are written to memory-mapped segment files in the
+ * journal directory. A segment is rolled when it is full.
+ * Records are committed in groups by a committer thread, when a
+ * batch of records has been appended or a segment rolled and
+ * periodically, or when {@link #commit()} is called. A commit
+ * forces the records to storage and then advances the
+ * segment's committed length, so records appended since the
+ * last commit may be lost in a crash but a committed record is
+ * never torn. Records are forced without holding the append
+ * lock, so transitions do not wait for storage; a rolled
+ * segment is left for the committer to force.
+ * </p>
+ * <p>
+ * {@link #checkpoint(Collection)} rolls the journal, writes a
+ * {@link SnapshotFile} of the contexts and deletes the older
+ * segments and snapshots. {@link #recover} reads the latest
+ * snapshot and replays the segments written since. A replayed
+ * record sets the context's state and its state stack's depth
+ * and top, so replaying a transition already in the snapshot
+ * is harmless: the stack entries below the top are set by the
+ * records which pushed them or come from the snapshot. The
+ * contexts must not be in a transition while a checkpoint
+ * writes them.
+ * </p>
+ */
+
+public final class TransitionJournal
+    implements Closeable
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a journal in {@code directory} with the default
+     * segment size, batch size and commit interval.
+     * @param directory the journal directory. Created if it
+     * does not exist.
+     * @exception IOException
+     * if the first segment cannot be created.
+     */
+    public TransitionJournal(File directory)
+        throws IOException
+    {
+        this (directory,
+              DEFAULT_SEGMENT_SIZE,
+              DEFAULT_BATCH_SIZE,
+              DEFAULT_COMMIT_INTERVAL);
+    } // end of TransitionJournal(File)
+
+    /**
+     * Creates a journal in {@code directory}. Appending starts
+     * in a new segment after any existing ones.
+     * @param directory the journal directory. Created if it
+     * does not exist.
+     * @param segmentSize each segment file's size in bytes.
+     * @param batchSize commit after this many records.
+     * @param commitInterval commit every this many
+     * milliseconds. Zero commits full batches only.
+     * @exception IOException
+     * if the first segment cannot be created.
+     * @exception IllegalArgumentException
+     * if {@code segmentSize} cannot hold a record,
+     * {@code batchSize} is less than one or
+     * {@code commitInterval} is negative.
+     */
+    public TransitionJournal(File directory,
+                             int segmentSize,
+                             int batchSize,
+                             long commitInterval)
+        throws IOException
+    {
+        TreeSet<Long> segments;
+
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "segment size " + segmentSize + " too small"));
+        }
+        else if (batchSize < 1)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "batch size " + batchSize + " < 1"));
+        }
+        else if (commitInterval < 0L)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "commit interval " + commitInterval + " < 0"));
+        }
+
+        if (directory.isDirectory() == false &&
+            directory.mkdirs() == false)
+        {
+            throw (
+                new IOException("cannot create " + directory));
+        }
+
+        _directory = directory;
+        _segmentSize = segmentSize;
+        _batchSize = batchSize;
+        _commitInterval = commitInterval;
+        _commitLock = new Object();
+        _retired = new ArrayList<Retired>();
+
+        segments =
+            _numbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        _segment =
+            (segments.isEmpty() == true ? 0L : segments.last() + 1L);
+        _open();
+
+        _committer =
+            new Thread("journal " + directory)
+            {
+                @Override
+                public void run()
+                {
+                    _commitLoop();
+                }
+            };
+        _committer.setDaemon(true);
+        _committer.start();
+    } // end of TransitionJournal(File, int, int, long)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Closeable Interface Implementation.
+    //
+
+    /**
+     * Commits the appended records and stops the committer
+     * thread. Further appends throw
+     * {@link IllegalStateException}.
+     * @exception IOException
+     * if the segment file cannot be closed.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        synchronized (_commitLock)
+        {
+            synchronized (this)
+            {
+                if (_closed == false)
+                {
+                    for (Retired retired: _retired)
+                    {
+                        retired.commit();
+                    }
+                    _retired.clear();
+                    _commit();
+                    _closed = true;
+                    notifyAll();
+                    _file.close();
+                }
+            }
+        }
+
+        return;
+    } // end of close()
+
+    //
+    // end of Closeable Interface Implementation.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the journal directory.
+     * @return the journal directory.
+     */
+    public File getDirectory()
+    {
+        return (_directory);
+    } // end of getDirectory()
+
+    /**
+     * Returns the number of the segment being appended to.
+     * @return the current segment number.
+     */
+    public synchronized long getSegment()
+    {
+        return (_segment);
+    } // end of getSegment()
+
+    /**
+     * Returns the number of records appended.
+     * @return the append count.
+     */
+    public synchronized long getAppendCount()
+    {
+        return (_appendCount);
+    } // end of getAppendCount()
+
+    /**
+     * Returns the number of commits which forced records to
+     * storage.
+     * @return the commit count.
+     */
+    public long getCommitCount()
+    {
+        return (_commitCount);
+    } // end of getCommitCount()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Appends a transition record, rolling to a new segment if
+     * the current one is full. The full segment is committed by
+     * the committer thread. Called from
+     * {@link FSMContext#journalTransition(int, int, int)}.
+     * @param key the context key.
+     * @param transitionId the completed transition.
+     * @param stateId the resulting state.
+     * @param stackDepth the resulting state stack depth.
+     * @param stackTopId the state on top of the stack.
+     * @exception IllegalStateException
+     * if the journal is closed or a new segment cannot be
+     * created.
+     */
+    public synchronized void append(long key,
+                                    int transitionId,
+                                    int stateId,
+                                    int stackDepth,
+                                    int stackTopId)
+    {
+        if (_closed == true)
+        {
+            throw (new IllegalStateException("journal closed"));
+        }
+
+        if (_buffer.remaining() < RECORD_SIZE)
+        {
+            try
+            {
+                _roll();
+            }
+            catch (IOException ioex)
+            {
+                throw (
+                    new IllegalStateException(
+                        "cannot roll journal segment", ioex));
+            }
+        }
+
+        _buffer.putLong(key);
+        _buffer.putInt(transitionId);
+        _buffer.putInt(stateId);
+        _buffer.putInt(stackDepth);
+        _buffer.putInt(stackTopId);
+        ++_appendCount;
+
+        // Wake the committer when a batch is full.
+        if (++_pending == _batchSize)
+        {
+            notifyAll();
+        }
+
+        return;
+    } // end of append(long, int, int, int, int)
+
+    /**
+     * Forces the records appended before this call to storage
+     * and marks them committed, starting with the rolled
+     * segments. Appends continue while the records are forced.
+     */
+    public void commit()
+    {
+        List<Retired> retired;
+        MappedByteBuffer buffer;
+        int position;
+        int committed;
+
+        synchronized (_commitLock)
+        {
+            synchronized (this)
+            {
+                if (_closed == true)
+                {
+                    return;
+                }
+
+                retired = _retired;
+                _retired = new ArrayList<Retired>();
+                buffer = _buffer;
+                position = buffer.position();
+                committed = _committed;
+                _pending = 0;
+            }
+
+            for (Retired segment: retired)
+            {
+                segment.commit();
+            }
+
+            if (position <= committed)
+            {
+                return;
+            }
+
+            buffer.force();
+
+            synchronized (this)
+            {
+                // The segment was rolled meanwhile and the next
+                // commit finishes it.
+                if (buffer != _buffer)
+                {
+                    return;
+                }
+
+                buffer.putLong(COMMITTED_OFFSET, position);
+                _committed = position;
+                ++_commitCount;
+            }
+
+            buffer.force();
+        }
+
+        return;
+    } // end of commit()
+
+    /**
+     * Continues in a new segment and commits the old one.
+     * Appends go to the new segment while the old one is
+     * forced.
+     * @return the new segment number.
+     * @exception IOException
+     * if the new segment cannot be created.
+     */
+    public long roll()
+        throws IOException
+    {
+        long retval;
+
+        synchronized (this)
+        {
+            if (_closed == true)
+            {
+                throw (new IllegalStateException("journal closed"));
+            }
+
+            _roll();
+            retval = _segment;
+        }
+
+        commit();
+
+        return (retval);
+    } // end of roll()
+
+    /**
+     * Rolls the journal, writes a snapshot of {@code contexts}
+     * and then deletes the segments and snapshots it replaces.
+     * Transitions may be appended while the snapshot is
+     * written; they are replayed on recovery.
+     * @param contexts the contexts to write, in the order
+     * {@link #recover} will restore them.
+     * @return the segment number the snapshot starts from.
+     * @exception IOException
+     * if the snapshot cannot be written.
+     */
+    public long checkpoint(Collection<? extends FSMContext> contexts)
+        throws IOException
+    {
+        long segment = roll();
+        File temporary =
+            new File(
+                _directory, _fileName(SNAPSHOT_PREFIX, segment, ".tmp"));
+        File snapshot =
+            new File(
+                _directory,
+                _fileName(SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+
+        SnapshotFile.write(temporary, contexts);
+        if (temporary.renameTo(snapshot) == false)
+        {
+            throw (
+                new IOException(
+                    "cannot rename " + temporary + " to " + snapshot));
+        }
+
+        _delete(_directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX, segment);
+        _delete(_directory, SEGMENT_PREFIX, SEGMENT_SUFFIX, segment);
+
+        return (segment);
+    } // end of checkpoint(Collection)
+
+    /**
+     * Restores {@code contexts} from the latest snapshot in
+     * {@code directory}, if any, and then replays the segments
+     * written since. Call before opening a journal in the
+     * directory.
+     * @param directory the journal directory.
+     * @param contexts the contexts to restore, created in the
+     * order they were checkpointed.
+     * @param lookup finds the context for each journaled key.
+     * @return the number of records replayed.
+     * @exception IOException
+     * if a snapshot or segment cannot be read or is invalid.
+     */
+    public static long recover(File directory,
+                               Collection<? extends FSMContext> contexts,
+                               ContextLookup lookup)
+        throws IOException
+    {
+        TreeSet<Long> snapshots =
+            _numbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long segment = 0L;
+
+        if (snapshots.isEmpty() == false)
+        {
+            segment = snapshots.last();
+            SnapshotFile.read(
+                new File(
+                    directory,
+                    _fileName(
+                        SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX)),
+                contexts);
+        }
+
+        return (replay(directory, segment, lookup));
+    } // end of recover(File, Collection, ContextLookup)
+
+    /**
+     * Replays the committed records of each segment numbered
+     * {@code fromSegment} or higher, in order, setting each
+     * record's context to the journaled state. Records whose
+     * key {@code lookup} does not know are skipped.
+     * @param directory the journal directory.
+     * @param fromSegment the first segment to replay.
+     * @param lookup finds the context for each journaled key.
+     * @return the number of records replayed.
+     * @exception IOException
+     * if a segment cannot be read or is invalid.
+     */
+    public static long replay(File directory,
+                              long fromSegment,
+                              ContextLookup lookup)
+        throws IOException
+    {
+        long retval = 0L;
+
+        for (Long segment:
+                 _numbers(
+                     directory, SEGMENT_PREFIX, SEGMENT_SUFFIX).tailSet(
+                         fromSegment))
+        {
+            retval +=
+                _replay(
+                    new File(
+                        directory,
+                        _fileName(
+                            SEGMENT_PREFIX, segment, SEGMENT_SUFFIX)),
+                    lookup);
+        }
+
+        return (retval);
+    } // end of replay(File, long, ContextLookup)
+
+    // Creates and maps the current segment file.
+    private void _open()
+        throws IOException
+    {
+        _file =
+            new RandomAccessFile(
+                new File(
+                    _directory,
+                    _fileName(
+                        SEGMENT_PREFIX, _segment, SEGMENT_SUFFIX)),
+                "rw");
+        _buffer =
+            _file.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0L, _segmentSize);
+        // The header is forced by the first commit. Until then
+        // the segment reads as empty.
+        _buffer.putInt(MAGIC);
+        _buffer.putInt(VERSION);
+        _buffer.putLong(HEADER_SIZE);
+        _committed = HEADER_SIZE;
+
+        return;
+    } // end of _open()
+
+    // Leaves the current segment for the committer and
+    // continues in the next one. The mapping stays valid once
+    // its file is closed. Called with this journal locked.
+    private void _roll()
+        throws IOException
+    {
+        _retired.add(new Retired(_buffer, _committed));
+        _file.close();
+        ++_segment;
+        _open();
+        notifyAll();
+
+        return;
+    } // end of _roll()
+
+    // Commits full batches and, if there is an interval,
+    // whatever was appended during the interval until the
+    // journal is closed. Runs on the committer thread.
+    private void _commitLoop()
+    {
+        long deadline;
+        long remaining;
+
+        while (true)
+        {
+            deadline = System.nanoTime() + _commitInterval * 1000000L;
+            synchronized (this)
+            {
+                try
+                {
+                    while (_closed == false &&
+                           _pending < _batchSize &&
+                           _retired.isEmpty() == true)
+                    {
+                        if (_commitInterval == 0L)
+                        {
+                            wait();
+                        }
+                        else
+                        {
+                            remaining = deadline - System.nanoTime();
+                            if (remaining <= 0L)
+                            {
+                                break;
+                            }
+
+                            wait(Math.max(remaining / 1000000L, 1L));
+                        }
+                    }
+                }
+                catch (InterruptedException interrupt)
+                {
+                    // Commit and carry on.
+                }
+
+                if (_closed == true)
+                {
+                    return;
+                }
+            }
+
+            commit();
+        }
+    } // end of _commitLoop()
+
+    // Forces the records and then the committed length, so a
+    // crash never leaves a committed length covering records
+    // which did not reach storage. Called with this journal
+    // locked.
+    private void _commit()
+    {
+        int position = _buffer.position();
+
+        if (position > _committed)
+        {
+            _buffer.force();
+            _buffer.putLong(COMMITTED_OFFSET, position);
+            _buffer.force();
+            _committed = position;
+            _pending = 0;
+            ++_commitCount;
+        }
+
+        return;
+    } // end of _commit()
+
+    // Replays one segment's committed records.
+    private static long _replay(File file, ContextLookup lookup)
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        FSMContext context;
+        long committed;
+        long key;
+        int transitionId;
+        int stateId;
+        int stackDepth;
+        int stackTopId;
+        long retval = 0L;
+
+        try
+        {
+            FileChannel channel = raf.getChannel();
+
+            if (channel.size() < HEADER_SIZE)
+            {
+                throw (new IOException(file + " is truncated"));
+            }
+
+            buffer =
+                channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    0L,
+                    channel.size());
+            committed = buffer.getLong(COMMITTED_OFFSET);
+
+            // A segment which was never committed may not have
+            // its header.
+            if (committed == 0L)
+            {
+                return (0L);
+            }
+            else if (buffer.getInt() != MAGIC ||
+                buffer.getInt() != VERSION)
+            {
+                throw (
+                    new IOException(
+                        file + " is not a journal segment"));
+            }
+            else if (committed < HEADER_SIZE ||
+                     committed > buffer.limit())
+            {
+                throw (
+                    new IOException(
+                        file + " has an invalid committed length"));
+            }
+
+            buffer.limit((int) committed);
+            buffer.position(HEADER_SIZE);
+            while (buffer.remaining() >= RECORD_SIZE)
+            {
+                key = buffer.getLong();
+                transitionId = buffer.getInt();
+                stateId = buffer.getInt();
+                stackDepth = buffer.getInt();
+                stackTopId = buffer.getInt();
+
+                context = lookup.lookup(key);
+                if (context != null)
+                {
+                    try
+                    {
+                        context.replayState(
+                            stateId, stackDepth, stackTopId);
+                    }
+                    catch (RuntimeException jex)
+                    {
+                        throw (
+                            new IOException(
+                                file + " record " + retval +
+                                " (transition " + transitionId +
+                                ") is invalid",
+                                jex));
+                    }
+                }
+
+                ++retval;
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return (retval);
+    } // end of _replay(File, ContextLookup)
+
+    // Returns the numbers of the files named
+    // prefix + number + suffix in directory.
+    private static TreeSet<Long> _numbers(File directory,
+                                          String prefix,
+                                          String suffix)
+    {
+        String[] names = directory.list();
+        TreeSet<Long> retval = new TreeSet<Long>();
+
+        if (names != null)
+        {
+            for (String name: names)
+            {
+                if (name.startsWith(prefix) == true &&
+                    name.endsWith(suffix) == true)
+                {
+                    try
+                    {
+                        retval.add(
+                            Long.valueOf(
+                                name.substring(
+                                    prefix.length(),
+                                    name.length() - suffix.length())));
+                    }
+                    catch (NumberFormatException formex)
+                    {
+                        // Not one of ours.
+                    }
+                }
+            }
+        }
+
+        return (retval);
+    } // end of _numbers(File, String, String)
+
+    // Deletes the files numbered below limit.
+    private static void _delete(File directory,
+                                String prefix,
+                                String suffix,
+                                long limit)
+        throws IOException
+    {
+        File file;
+
+        for (Long number:
+                 _numbers(directory, prefix, suffix).headSet(limit))
+        {
+            file = new File(directory, _fileName(prefix, number, suffix));
+            if (file.delete() == false)
+            {
+                throw (new IOException("cannot delete " + file));
+            }
+        }
+
+        return;
+    } // end of _delete(File, String, String, long)
+
+    // Returns the zero-padded file name, which sorts in number
+    // order.
+    private static String _fileName(String prefix,
+                                    long number,
+                                    String suffix)
+    {
+        return (String.format("%s%019d%s", prefix, number, suffix));
+    } // end of _fileName(String, long, String)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * Finds the context for a journaled key during replay.
+     */
+    public interface ContextLookup
+    {
+        /**
+         * Returns the context for {@code key} or {@code null}
+         * to skip its records.
+         * @param key a journaled context key.
+         * @return the context.
+         */
+        FSMContext lookup(long key);
+    } // end of interface ContextLookup
+
+    // A rolled segment waiting for the committer. Its file is
+    // closed but the mapping stays valid.
+    private static final class Retired
+    {
+        private Retired(MappedByteBuffer buffer, int committed)
+        {
+            _buffer = buffer;
+            _position = buffer.position();
+            _committed = committed;
+        }
+
+        // Forces the records and then the committed length.
+        private void commit()
+        {
+            if (_position > _committed)
+            {
+                _buffer.force();
+                _buffer.putLong(COMMITTED_OFFSET, _position);
+                _buffer.force();
+            }
+
+            return;
+        }
+
+        private final MappedByteBuffer _buffer;
+        private final int _position;
+        private final int _committed;
+    } // end of class Retired
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    private final File _directory;
+    private final int _segmentSize;
+    private final int _batchSize;
+    private final long _commitInterval;
+
+    // Held while committing so that commits are made one at a
+    // time. Taken before this journal's lock.
+    private final Object _commitLock;
+
+    private final Thread _committer;
+
+    // The rolled segments which the committer has yet to
+    // commit, oldest first.
+    private List<Retired> _retired;
+
+    // The current segment and its mapping.
+    private long _segment;
+    private RandomAccessFile _file;
+    private MappedByteBuffer _buffer;
+
+    // The committed length of the current segment and the
+    // number of records appended since.
+    private int _committed;
+    private int _pending;
+
+    private long _appendCount;
+    private volatile long _commitCount;
+    private boolean _closed;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The default segment size is 64 MiB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * By default records are committed in batches of 4096.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * By default records are committed every 10 milliseconds.
+     */
+    public static final long DEFAULT_COMMIT_INTERVAL = 10L;
+
+    // Context key, transition identifier, state identifier,
+    // state stack depth and top state identifier.
+    private static final int RECORD_SIZE = 24;
+
+    // Magic number, version and committed length.
+    private static final int HEADER_SIZE = 16;
+
+    private static final int COMMITTED_OFFSET = 8;
+
+    // "SMCJ" - the first four bytes of a journal segment.
+    private static final int MAGIC = 0x534d434a;
+
+    private static final int VERSION = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+} // end of class TransitionJournal
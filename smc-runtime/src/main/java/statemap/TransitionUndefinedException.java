@@ -94,6 +94,19 @@ public final class TransitionUndefinedException
     // end of Constructors.
     //-----------------------------------------------------------
 
+    // Creates the preallocated exception and removes the stack
+    // trace filled in when it was constructed.
+    private static TransitionUndefinedException _preallocate()
+    {
+        TransitionUndefinedException retval =
+            new TransitionUndefinedException(
+                "transition undefined");
+
+        retval.setStackTrace(new StackTraceElement[0]);
+
+        return (retval);
+    } // end of _preallocate()
+
 //---------------------------------------------------------------
 // Member data.
 //
@@ -102,4 +115,13 @@ public final class TransitionUndefinedException
     // Constants.
     //
     private static final long serialVersionUID = 0x060000L;
+
+    /**
+     * Thrown by an FSM whose undefined transition policy is
+     * {@link UndefinedTransitionPolicy#STACKLESS}. It has no
+     * stack trace, and is shared, so it names neither the state
+     * nor the transition.
+     */
+    public static final TransitionUndefinedException PREALLOCATED =
+        _preallocate();
 } // end fo class TransitionUndefinedException
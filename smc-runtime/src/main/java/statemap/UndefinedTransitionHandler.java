@@ -0,0 +1,51 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+// statemap.java --
+//
+//  Called back for undefined transitions.
+//
+
+package statemap;
+
+/**
+ * Called back by an FSM whose undefined transition policy is
+ * {@link UndefinedTransitionPolicy#CALLBACK}. A generated
+ * context registers its owner as the handler if the owner
+ * implements this interface.
+ *
+ * @see FSMContext#setUndefinedTransitionHandler
+ */
+
+public interface UndefinedTransitionHandler
+{
+    /**
+     * A transition is not defined in the FSM's current state
+     * and there is no Default transition. The FSM stays in the
+     * current state. The handler may throw to abort the
+     * transition.
+     * @param context the finite state machine.
+     * @param transitionId the transition identifier, one of
+     * the generated {@code Xxx_ID} constants.
+     */
+    void undefinedTransition(FSMContext context,
+                             int transitionId);
+} // end of interface UndefinedTransitionHandler
@@ -0,0 +1,71 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+// statemap.java --
+//
+//  What a finite state machine does when a transition is not
+//  defined in the current state.
+//
+
+package statemap;
+
+/**
+ * Selects what {@link FSMContext#undefinedTransition()} does
+ * when a transition is not defined in the current state and
+ * there is no Default transition. Every policy counts the
+ * undefined transition first; see
+ * {@link FSMContext#getUndefinedTransitionCount()}.
+ * <p>
+ * The policy is set with SMC's {@code -undefined} option when
+ * the code is generated and may be changed at any time with
+ * {@link FSMContext#setUndefinedTransitionPolicy}.
+ * </p>
+ */
+
+public enum UndefinedTransitionPolicy
+{
+    /**
+     * Throws a new {@link TransitionUndefinedException} naming
+     * the state and transition. This is the default.
+     */
+    THROW,
+
+    /**
+     * Throws {@link TransitionUndefinedException#PREALLOCATED},
+     * which has no stack trace and does not name the state or
+     * transition, so nothing is allocated.
+     */
+    STACKLESS,
+
+    /**
+     * Calls the context's {@link UndefinedTransitionHandler}.
+     * The generated context registers its owner as the handler
+     * if the owner implements that interface. Throws as
+     * {@link #THROW} does if there is no handler.
+     */
+    CALLBACK,
+
+    /**
+     * Only counts the transition. The FSM stays in the current
+     * state.
+     */
+    IGNORE
+} // end of enum UndefinedTransitionPolicy
@@ -0,0 +1,244 @@
+package statemap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestContextCache
+{
+    @Test(timeout = 60000L)
+    public void testStoreWrittenOutsideMonitor()
+        throws Exception
+    {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final MapStore store =
+            new MapStore()
+            {
+                @Override
+                public void put(Integer key, byte[] record)
+                    throws IOException
+                {
+                    writing.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException interrupt)
+                    {
+                        throw (new IOException(interrupt));
+                    }
+                    super.put(key, record);
+                }
+            };
+        final ContextCache<Integer, Counter> cache = _cache(store);
+        final Exception[] thrown = new Exception[1];
+        Thread evictor;
+
+        cache.dispatch(1, INCREMENT, null);
+        evictor =
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        // Evicts key 1 to make room.
+                        cache.dispatch(2, INCREMENT, null);
+                    }
+                    catch (Exception jex)
+                    {
+                        thrown[0] = jex;
+                    }
+                }
+            };
+        evictor.start();
+        assertTrue(writing.await(30L, TimeUnit.SECONDS));
+
+        // The store is blocked but the cache is not.
+        assertEquals(2, cache.size());
+        cache.dispatch(2, INCREMENT, null);
+
+        release.countDown();
+        evictor.join();
+        assertEquals(null, thrown[0]);
+        assertFalse(cache.isResident(1));
+        assertEquals(1L, cache.getEvictionCount());
+        assertArrayEquals(new byte[] {0, 0, 0, 1}, store.records.get(1));
+
+        // Restored from its record.
+        cache.dispatch(1, INCREMENT, null);
+        assertEquals(1L, cache.getLoadCount());
+        assertEquals(2, _counter(cache, store, 1));
+    }
+
+    @Test
+    public void testTransitionExceptionNotMasked()
+        throws IOException
+    {
+        MapStore store =
+            new MapStore()
+            {
+                @Override
+                public void put(Integer key, byte[] record)
+                    throws IOException
+                {
+                    throw (new IOException("store failed"));
+                }
+            };
+        ContextCache<Integer, Counter> cache = _cache(store);
+
+        cache.dispatch(1, INCREMENT, null);
+        try
+        {
+            cache.dispatch(2, FAIL, null);
+            fail("transition exception not thrown");
+        }
+        catch (IllegalStateException jex)
+        {}
+
+        // The eviction is attempted by the next transition and
+        // its failure leaves the context resident.
+        try
+        {
+            cache.dispatch(2, INCREMENT, null);
+            fail("store exception not thrown");
+        }
+        catch (IOException ioex)
+        {}
+        assertTrue(cache.isResident(1));
+        assertEquals(0L, cache.getEvictionCount());
+    }
+
+    // Returns key's counter after evicting it.
+    private static int _counter(ContextCache<Integer, Counter> cache,
+                                MapStore store,
+                                int key)
+        throws IOException
+    {
+        cache.evictAll();
+        return (ByteBuffer.wrap(store.records.get(key)).getInt());
+    }
+
+    private static ContextCache<Integer, Counter> _cache(MapStore store)
+    {
+        return (
+            new ContextCache<Integer, Counter>(
+                new ContextCache.Factory<Integer, Counter>()
+                {
+                    @Override
+                    public Counter create(Integer key)
+                    {
+                        return (new Counter());
+                    }
+                },
+                new EventLoopGroup.Dispatcher<Counter>()
+                {
+                    @Override
+                    public void dispatch(Counter context,
+                                         int transition,
+                                         Object argument)
+                    {
+                        if (transition == FAIL)
+                        {
+                            throw (
+                                new IllegalStateException(
+                                    "transition failed"));
+                        }
+                        ++context.count;
+                    }
+                },
+                store,
+                1,
+                0L));
+    }
+
+    private static final int INCREMENT = 0;
+    private static final int FAIL = 1;
+
+    private static class MapStore
+        implements ContextStore<Integer>
+    {
+        @Override
+        public void put(Integer key, byte[] record)
+            throws IOException
+        {
+            synchronized (records)
+            {
+                records.put(key, record);
+            }
+        }
+
+        @Override
+        public byte[] get(Integer key)
+        {
+            synchronized (records)
+            {
+                return (records.get(key));
+            }
+        }
+
+        @Override
+        public void remove(Integer key)
+        {
+            synchronized (records)
+            {
+                records.remove(key);
+            }
+        }
+
+        final Map<Integer, byte[]> records =
+            new HashMap<Integer, byte[]>();
+    }
+
+    // A context whose only state is a counter.
+    private static final class Counter
+        extends FSMContext
+    {
+        private Counter()
+        {
+            super(null);
+        }
+
+        @Override
+        public void enterStartState()
+        {}
+
+        @Override
+        public Logger getLog()
+        {
+            return (LOG);
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer)
+        {
+            buffer.putInt(count);
+        }
+
+        @Override
+        public void readFrom(ByteBuffer buffer)
+        {
+            count = buffer.getInt();
+        }
+
+        private int count;
+
+        private static final Logger LOG =
+            LoggerFactory.getLogger(Counter.class);
+    }
+} // end of class TestContextCache
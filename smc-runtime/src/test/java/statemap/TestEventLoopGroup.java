@@ -0,0 +1,200 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestEventLoopGroup
+{
+    @Test(timeout = 60000L)
+    public void testOfferFailsWhenFull()
+        throws InterruptedException
+    {
+        Blocker dispatcher = new Blocker();
+        EventLoopGroup<Recorder> group =
+            new EventLoopGroup<Recorder>("full", 1, 4, dispatcher);
+        Recorder context = new Recorder();
+        int i;
+
+        group.start();
+        try
+        {
+            // The first event holds its slot until the
+            // dispatcher returns, leaving room for three more.
+            assertTrue(group.offer(1, context, 0, null));
+            assertTrue(dispatcher.entered.await(30L, TimeUnit.SECONDS));
+            for (i = 1; i < 4; ++i)
+            {
+                assertTrue(group.offer(1, context, i, null));
+            }
+            assertFalse(group.offer(1, context, 4, null));
+            assertEquals(1L, group.getPartition(0).getRejectedCount());
+        }
+        finally
+        {
+            dispatcher.release.countDown();
+            group.shutdown();
+        }
+
+        assertTrue(group.awaitTermination(30000L));
+        assertEquals(4L, group.getPartition(0).getAppliedCount());
+        assertEquals(_range(4), context.transitions);
+    }
+
+    @Test(timeout = 60000L)
+    public void testPartitionOrder()
+        throws InterruptedException
+    {
+        EventLoopGroup<Recorder> group =
+            new EventLoopGroup<Recorder>("order", 4, 64, new Appender());
+        final int keyCount = 16;
+        final int perKey = 2000;
+        List<Recorder> contexts = new ArrayList<Recorder>();
+        int key;
+        int i;
+
+        for (key = 0; key < keyCount; ++key)
+        {
+            contexts.add(new Recorder());
+        }
+
+        group.start();
+        for (i = 0; i < perKey; ++i)
+        {
+            for (key = 0; key < keyCount; ++key)
+            {
+                group.put(key, contexts.get(key), i, null);
+            }
+        }
+        group.shutdown();
+        assertTrue(group.awaitTermination(30000L));
+
+        // Each context's events are applied in posting order.
+        for (Recorder context: contexts)
+        {
+            assertEquals(_range(perKey), context.transitions);
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testShutdownDrains()
+        throws InterruptedException
+    {
+        Blocker dispatcher = new Blocker();
+        EventLoopGroup<Recorder> group =
+            new EventLoopGroup<Recorder>("drain", 1, 8, dispatcher);
+        Recorder context = new Recorder();
+        int i;
+
+        group.start();
+        group.put(1, context, 0, null);
+        assertTrue(dispatcher.entered.await(30L, TimeUnit.SECONDS));
+        for (i = 1; i < 5; ++i)
+        {
+            group.put(1, context, i, null);
+        }
+
+        group.shutdown();
+        try
+        {
+            group.offer(1, context, 5, null);
+            fail("offer accepted after shutdown");
+        }
+        catch (IllegalStateException statex)
+        {}
+
+        // Events posted before shutdown are still applied.
+        dispatcher.release.countDown();
+        assertTrue(group.awaitTermination(30000L));
+        assertEquals(_range(5), context.transitions);
+    }
+
+    private static List<Integer> _range(int size)
+    {
+        List<Integer> retval = new ArrayList<Integer>();
+        int i;
+
+        for (i = 0; i < size; ++i)
+        {
+            retval.add(i);
+        }
+
+        return (retval);
+    }
+
+    // Records the transitions applied to a context.
+    private static class Appender
+        implements EventLoopGroup.Dispatcher<Recorder>
+    {
+        @Override
+        public void dispatch(Recorder context,
+                             int transition,
+                             Object argument)
+        {
+            context.transitions.add(transition);
+        }
+    }
+
+    // Holds the first transition until released.
+    private static final class Blocker
+        extends Appender
+    {
+        @Override
+        public void dispatch(Recorder context,
+                             int transition,
+                             Object argument)
+        {
+            if (transition == 0)
+            {
+                entered.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException interrupt)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.dispatch(context, transition, argument);
+        }
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+    }
+
+    // A context which only records its transitions.
+    private static final class Recorder
+        extends FSMContext
+    {
+        private Recorder()
+        {
+            super(null);
+        }
+
+        @Override
+        public void enterStartState()
+        {}
+
+        @Override
+        public Logger getLog()
+        {
+            return (LOG);
+        }
+
+        final List<Integer> transitions = new ArrayList<Integer>();
+
+        private static final Logger LOG =
+            LoggerFactory.getLogger(Recorder.class);
+    }
+} // end of class TestEventLoopGroup
@@ -0,0 +1,152 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestStateTimer
+{
+    @Test
+    public void testUnserializedContextRejected()
+    {
+        TimerWheel wheel = new TimerWheel("unserialized", 1L);
+
+        try
+        {
+            new Unserialized().startStateTimer(wheel, 10L, 0);
+            fail("timer started on an unserialized context");
+        }
+        catch (IllegalStateException statex)
+        {}
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testFiresThroughSerializedTransition()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("serialized", 1L);
+        Serialized context = new Serialized();
+
+        try
+        {
+            context.startStateTimer(wheel, 10L, 7);
+            assertTrue(context.fired.await(30L, TimeUnit.SECONDS));
+            assertEquals(7, context.transitionId);
+            assertEquals(1, context.serialized);
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testStaleTimerDiscarded()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("stale", 1L);
+        Serialized context = new Serialized();
+
+        try
+        {
+            // A transition holds the context while the timer
+            // expires and exits the state before releasing it.
+            context.lock.lock();
+            try
+            {
+                context.startStateTimer(wheel, 1L, 7);
+                while (context.lock.hasQueuedThreads() == false)
+                {
+                    Thread.sleep(1L);
+                }
+                context.cancelStateTimers();
+            }
+            finally
+            {
+                context.lock.unlock();
+            }
+
+            assertTrue(context.ran.await(30L, TimeUnit.SECONDS));
+            assertEquals(1L, context.fired.getCount());
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    private static class Unserialized
+        extends FSMContext
+    {
+        private Unserialized()
+        {
+            super(null);
+        }
+
+        @Override
+        public void enterStartState()
+        {}
+
+        @Override
+        public Logger getLog()
+        {
+            return (LOG);
+        }
+
+        private static final Logger LOG =
+            LoggerFactory.getLogger(Unserialized.class);
+    }
+
+    // Serializes transitions with a lock and records the
+    // transition a timer issues.
+    private static final class Serialized
+        extends Unserialized
+    {
+        @Override
+        protected boolean isTransitionSerialized()
+        {
+            return (true);
+        }
+
+        @Override
+        protected void serializeTransition(Runnable task)
+        {
+            lock.lock();
+            try
+            {
+                ++serialized;
+                task.run();
+            }
+            finally
+            {
+                lock.unlock();
+                ran.countDown();
+            }
+        }
+
+        @Override
+        public void dispatch(int transitionId)
+        {
+            this.transitionId = transitionId;
+            fired.countDown();
+        }
+
+        final ReentrantLock lock = new ReentrantLock();
+        final CountDownLatch ran = new CountDownLatch(1);
+        final CountDownLatch fired = new CountDownLatch(1);
+        volatile int transitionId = -1;
+        volatile int serialized;
+    }
+} // end of class TestStateTimer
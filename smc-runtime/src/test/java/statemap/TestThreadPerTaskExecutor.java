@@ -0,0 +1,99 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestThreadPerTaskExecutor
+{
+    @Test(timeout = 60000L)
+    public void testFailedStartNotCounted()
+        throws Exception
+    {
+        final Thread started =
+            new Thread()
+            {
+                @Override
+                public void run()
+                {}
+            };
+        ThreadPerTaskExecutor executor =
+            new ThreadPerTaskExecutor(
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable task)
+                    {
+                        // A started thread cannot be started again.
+                        return (started);
+                    }
+                });
+
+        started.start();
+        started.join();
+        try
+        {
+            executor.execute(NOOP);
+            fail("started thread started again");
+        }
+        catch (IllegalThreadStateException jex)
+        {
+            // Expected.
+        }
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test(timeout = 60000L)
+    public void testActiveCount()
+        throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor();
+
+        executor.execute(
+            new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException interrupt)
+                    {}
+                    done.countDown();
+                }
+            });
+        assertEquals(1, executor.getActiveCount());
+
+        release.countDown();
+        assertTrue(done.await(30L, TimeUnit.SECONDS));
+        while (executor.getActiveCount() != 0)
+        {
+            Thread.sleep(1L);
+        }
+
+        // The default factory makes virtual threads exactly when
+        // they are reported as supported.
+        assertEquals(
+            ThreadPerTaskExecutor.isVirtualThreadSupported(),
+            ThreadPerTaskExecutor.virtualThreadFactory().newThread(
+                NOOP).getClass() != Thread.class);
+    }
+
+    private static final Runnable NOOP =
+        new Runnable()
+        {
+            @Override
+            public void run()
+            {}
+        };
+}
@@ -0,0 +1,165 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTimerWheel
+{
+    @Test(timeout = 60000L)
+    public void testExpiry()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("expiry", 1L);
+        final CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long elapsed;
+        TimerWheel.Timeout timeout;
+
+        try
+        {
+            timeout =
+                wheel.schedule(
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            ran.countDown();
+                        }
+                    },
+                    50L);
+            assertTrue(ran.await(30L, TimeUnit.SECONDS));
+            elapsed = (System.nanoTime() - start) / 1000000L;
+
+            // A timeout never fires early.
+            assertTrue("fired after " + elapsed + " ms", elapsed >= 50L);
+            assertFalse(timeout.cancel());
+            assertFalse(timeout.isCancelled());
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testExpiryOrder()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("order", 1L);
+        final List<Long> fired = new ArrayList<Long>();
+        final CountDownLatch ran = new CountDownLatch(3);
+
+        try
+        {
+            for (final long delay: new long[] {300L, 20L, 150L})
+            {
+                wheel.schedule(
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            // Only the wheel thread adds.
+                            fired.add(delay);
+                            ran.countDown();
+                        }
+                    },
+                    delay);
+            }
+            assertTrue(ran.await(30L, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(20L, 150L, 300L), fired);
+            assertEquals(3L, wheel.getExpiredCount());
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testCancel()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("cancel", 1L);
+        final CountDownLatch ran = new CountDownLatch(1);
+        TimerWheel.Timeout timeout;
+
+        try
+        {
+            timeout =
+                wheel.schedule(
+                    new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            ran.countDown();
+                        }
+                    },
+                    100L);
+            assertTrue(timeout.cancel());
+            assertFalse(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+
+            assertFalse(ran.await(300L, TimeUnit.MILLISECONDS));
+            assertFalse(timeout.isExpired());
+            assertEquals(1L, wheel.getCancelledCount());
+            assertEquals(0L, wheel.getExpiredCount());
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testFailedTask()
+        throws InterruptedException
+    {
+        TimerWheel wheel = new TimerWheel("failed", 1L);
+        final CountDownLatch ran = new CountDownLatch(1);
+
+        try
+        {
+            wheel.schedule(
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        throw (new IllegalStateException("task failed"));
+                    }
+                },
+                10L);
+            wheel.schedule(
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        ran.countDown();
+                    }
+                },
+                50L);
+
+            // The failure is counted and later tasks still run.
+            assertTrue(ran.await(30L, TimeUnit.SECONDS));
+            assertEquals(1L, wheel.getFailedCount());
+            assertEquals(2L, wheel.getExpiredCount());
+        }
+        finally
+        {
+            wheel.shutdown();
+        }
+    }
+} // end of class TestTimerWheel
@@ -0,0 +1,200 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestTransitionCombiner
+{
+    @Test(timeout = 60000L)
+    public void testRequestsAppliedOneAtATime()
+        throws InterruptedException
+    {
+        final TransitionCombiner combiner = new TransitionCombiner(4);
+        final int[] count = new int[1];
+        final boolean[] overlap = new boolean[1];
+        final int perThread = 10000;
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 8; ++i)
+        {
+            threads.add(
+                new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (int j = 0; j < perThread; ++j)
+                        {
+                            combiner.combine(
+                                new TransitionCombiner.Request()
+                                {
+                                    @Override
+                                    protected void apply()
+                                    {
+                                        int before = count[0];
+
+                                        Thread.yield();
+                                        if (count[0] != before)
+                                        {
+                                            overlap[0] = true;
+                                        }
+                                        count[0] = before + 1;
+                                    }
+                                });
+                        }
+                    }
+                });
+        }
+        for (Thread thread: threads)
+        {
+            thread.start();
+        }
+        for (Thread thread: threads)
+        {
+            thread.join();
+        }
+
+        assertFalse("requests overlapped", overlap[0]);
+        assertEquals(8 * perThread, count[0]);
+        assertEquals(8L * perThread, combiner.getRequestCount());
+    }
+
+    @Test
+    public void testExceptionThrownToIssuer()
+    {
+        TransitionCombiner combiner = new TransitionCombiner();
+        final IllegalStateException thrown =
+            new IllegalStateException("transition failed");
+
+        try
+        {
+            combiner.combine(
+                new TransitionCombiner.Request()
+                {
+                    @Override
+                    protected void apply()
+                    {
+                        throw (thrown);
+                    }
+                });
+            assertTrue("exception not thrown", false);
+        }
+        catch (IllegalStateException jex)
+        {
+            assertSame(thrown, jex);
+        }
+    }
+
+    @Test
+    public void testNestedRequestAppliedImmediately()
+    {
+        final TransitionCombiner combiner = new TransitionCombiner();
+        final List<String> applied = new ArrayList<String>();
+
+        combiner.combine(
+            new TransitionCombiner.Request()
+            {
+                @Override
+                protected void apply()
+                {
+                    applied.add("outer");
+                    combiner.combine(
+                        new TransitionCombiner.Request()
+                        {
+                            @Override
+                            protected void apply()
+                            {
+                                applied.add("inner");
+                            }
+                        });
+                    applied.add("outer done");
+                }
+            });
+
+        assertEquals("[outer, inner, outer done]", applied.toString());
+    }
+
+    // A parked waiter whose request misses the combiner's batch
+    // is woken to take the combiner role.
+    @Test(timeout = 60000L)
+    public void testParkedWaiterTakesOver()
+        throws InterruptedException
+    {
+        final TransitionCombiner combiner = new TransitionCombiner(1);
+        final CountDownLatch applying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread first =
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    combiner.combine(
+                        new TransitionCombiner.Request()
+                        {
+                            @Override
+                            protected void apply()
+                            {
+                                applying.countDown();
+                                _await(release);
+                            }
+                        });
+                }
+            };
+        Thread second =
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    combiner.combine(
+                        new TransitionCombiner.Request()
+                        {
+                            @Override
+                            protected void apply()
+                            {
+                                done.countDown();
+                            }
+                        });
+                }
+            };
+
+        first.start();
+        assertTrue(applying.await(5L, TimeUnit.SECONDS));
+        second.start();
+
+        // Long enough for the second thread to stop spinning and
+        // park.
+        Thread.sleep(100L);
+        assertEquals(Thread.State.WAITING, second.getState());
+
+        release.countDown();
+        assertTrue("parked waiter not woken",
+                   done.await(5L, TimeUnit.SECONDS));
+        first.join();
+        second.join();
+        assertEquals(2L, combiner.getPassCount());
+    }
+
+    private static void _await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException interrupt)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+} // end of class TestTransitionCombiner
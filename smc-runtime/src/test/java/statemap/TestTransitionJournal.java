@@ -0,0 +1,173 @@
+package statemap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TestTransitionJournal
+{
+    @Test
+    public void testReplayInOrder()
+        throws IOException
+    {
+        File directory = _directory();
+
+        try
+        {
+            // Two records per segment.
+            TransitionJournal journal =
+                new TransitionJournal(
+                    directory, HEADER_SIZE + 2 * RECORD_SIZE, 1, 0L);
+            final Replayer first = new Replayer();
+            final Replayer second = new Replayer();
+            int i;
+
+            for (i = 0; i < 5; ++i)
+            {
+                journal.append(1L, i, i, 0, 0);
+                journal.append(2L, i, 10 + i, 1, i);
+                journal.append(3L, i, 20 + i, 0, 0);
+            }
+            journal.close();
+
+            // Key 3 is unknown: its records are read but not
+            // applied.
+            assertEquals(
+                15L,
+                TransitionJournal.replay(
+                    directory,
+                    0L,
+                    new TransitionJournal.ContextLookup()
+                    {
+                        @Override
+                        public FSMContext lookup(long key)
+                        {
+                            return (key == 1L ? first :
+                                    key == 2L ? second :
+                                    null);
+                        }
+                    }));
+            assertEquals(
+                Arrays.asList("0 0 0", "1 0 0", "2 0 0", "3 0 0", "4 0 0"),
+                first.replayed);
+            assertEquals(
+                Arrays.asList(
+                    "10 1 0", "11 1 1", "12 1 2", "13 1 3", "14 1 4"),
+                second.replayed);
+        }
+        finally
+        {
+            _delete(directory);
+        }
+    }
+
+    @Test
+    public void testReplayFromSegment()
+        throws IOException
+    {
+        File directory = _directory();
+
+        try
+        {
+            // One record per segment.
+            TransitionJournal journal =
+                new TransitionJournal(
+                    directory, HEADER_SIZE + RECORD_SIZE, 1, 0L);
+            final Replayer context = new Replayer();
+            int i;
+
+            for (i = 0; i < 4; ++i)
+            {
+                journal.append(1L, i, i, 0, 0);
+            }
+            journal.close();
+
+            assertEquals(
+                2L,
+                TransitionJournal.replay(
+                    directory,
+                    2L,
+                    new TransitionJournal.ContextLookup()
+                    {
+                        @Override
+                        public FSMContext lookup(long key)
+                        {
+                            return (context);
+                        }
+                    }));
+            assertEquals(Arrays.asList("2 0 0", "3 0 0"), context.replayed);
+        }
+        finally
+        {
+            _delete(directory);
+        }
+    }
+
+    private static File _directory()
+        throws IOException
+    {
+        File retval = File.createTempFile("journal", "", new File("target"));
+
+        retval.delete();
+        return (retval);
+    }
+
+    private static void _delete(File directory)
+    {
+        File[] files = directory.listFiles();
+
+        if (files != null)
+        {
+            for (File file: files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    // The journal's segment header and record sizes.
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 24;
+
+    // Records the replayed states.
+    private static final class Replayer
+        extends FSMContext
+    {
+        private Replayer()
+        {
+            super(null);
+        }
+
+        @Override
+        public void enterStartState()
+        {}
+
+        @Override
+        public Logger getLog()
+        {
+            return (LOG);
+        }
+
+        @Override
+        public void replayState(int stateId,
+                                int stackDepth,
+                                int stackTopId)
+        {
+            replayed.add(stateId + " " + stackDepth + " " + stackTopId);
+        }
+
+        final List<String> replayed = new ArrayList<String>();
+
+        private static final Logger LOG =
+            LoggerFactory.getLogger(Replayer.class);
+    }
+} // end of class TestTransitionJournal